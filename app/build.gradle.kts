@@ -1,5 +1,7 @@
 plugins {
     alias(libs.plugins.android.application)
+    // Generates the startup profile from :macrobenchmark (./gradlew :app:generateBaselineProfile)
+    alias(libs.plugins.baselineprofile)
 }
 
 android {
@@ -29,10 +31,15 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        // Lets local unit tests call classes that use android.util.Log
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
 
+    implementation(project(":core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
@@ -41,5 +48,8 @@ dependencies {
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
     implementation("com.google.android.gms:play-services-location:21.3.0")
-    implementation("com.google.code.gson:gson:2.10.1")
+    implementation(libs.gson)
+    // Installs the Baseline Profile (src/main/baseline-prof.txt) on devices that did not get it from Play
+    implementation(libs.profileinstaller)
+    baselineProfile(project(":macrobenchmark"))
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package com.srm_campussaftey;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Opens the contacts and feed screens with StrictMode watching the main thread, and fails
+ * if any of our code reads or writes the disk there, or parses JSON there (the stores call
+ * StrictMode.noteSlowCall before parsing old JSON data).
+ *
+ * The old SharedPreferences data is put back first, so the one-time migrations (the slowest
+ * paths) run as part of the test. Needs Android 9+ for StrictMode's penaltyListener.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainThreadIoTest {
+
+    private static final String APP_PACKAGE = "com.srm_campussaftey.";
+    private static final long IO_TIMEOUT_MS = 10_000;
+
+    private final List<String> violations = new ArrayList<>();
+    private StrictMode.ThreadPolicy oldPolicy;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P);
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        // Start from the old prefs-only storage so both migrations have work to do
+        new File(context.getFilesDir(), BinaryContactStore.FILE_NAME).delete();
+        File journalDir = new File(context.getFilesDir(), NewsJournal.DIR_NAME);
+        File[] segments = journalDir.listFiles();
+        if (segments != null) {
+            for (File segment : segments) {
+                segment.delete();
+            }
+        }
+        context.getSharedPreferences(ContactsActivity.PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putString(ContactsActivity.CONTACTS_KEY, "[{\"name\":\"Warden\",\"phone\":\"+911234567890\"}]")
+                .putString(FeedActivity.NEWS_KEY, "[{\"id\":1,\"title\":\"Lights out\",\"description\":\"Block A\",\"timestamp\":1}]")
+                .commit();
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                oldPolicy = StrictMode.getThreadPolicy();
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .detectCustomSlowCalls()
+                        .penaltyListener(new Executor() {
+                            @Override
+                            public void execute(Runnable command) {
+                                command.run();
+                            }
+                        }, new StrictMode.OnThreadViolationListener() {
+                            @Override
+                            public void onThreadViolation(Violation violation) {
+                                recordIfOurs(violation);
+                            }
+                        })
+                        .build());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (oldPolicy == null) {
+            return;
+        }
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.setThreadPolicy(oldPolicy);
+            }
+        });
+    }
+
+    @Test
+    public void contactsScreen_doesNoDiskWorkOnTheMainThread() throws Exception {
+        try (ActivityScenario<ContactsActivity> scenario = ActivityScenario.launch(ContactsActivity.class)) {
+            waitForDiskWork();
+        }
+        assertNoViolations();
+    }
+
+    @Test
+    public void feedScreen_doesNoDiskWorkOnTheMainThread() throws Exception {
+        try (ActivityScenario<FeedActivity> scenario = ActivityScenario.launch(FeedActivity.class)) {
+            waitForDiskWork();
+        }
+        assertNoViolations();
+    }
+
+    /**
+     * Lets the DiskIO thread finish, then lets the main thread handle the results it posted.
+     */
+    private void waitForDiskWork() throws Exception {
+        DiskIO.awaitIdle(IO_TIMEOUT_MS);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+
+    /**
+     * Only violations with our own code on the stack count; the framework has a few of its own.
+     */
+    private void recordIfOurs(Violation violation) {
+        for (StackTraceElement frame : violation.getStackTrace()) {
+            String className = frame.getClassName();
+            if (className.startsWith(APP_PACKAGE) && !className.startsWith(MainThreadIoTest.class.getName())) {
+                synchronized (violations) {
+                    violations.add(violation + " at " + frame);
+                }
+                return;
+            }
+        }
+    }
+
+    private void assertNoViolations() {
+        synchronized (violations) {
+            assertTrue("Main-thread disk access: " + violations, violations.isEmpty());
+        }
+    }
+}
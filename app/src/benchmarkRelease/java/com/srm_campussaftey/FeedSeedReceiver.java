@@ -0,0 +1,92 @@
+package com.srm_campussaftey;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.IOException;
+
+/*
+ * Fills the feed with generated posts for the scroll benchmark (FeedScrollBenchmark in
+ * :macrobenchmark), which needs a big feed on the test device:
+ *
+ *   adb shell am broadcast -n com.srm_campussaftey/.FeedSeedReceiver --ei count 10000
+ *
+ * Lives in the benchmarkRelease source set (the build the macrobenchmarks install), so
+ * release builds do not contain it. Only the shell and the system can send it (its manifest
+ * entry requires the DUMP permission), so other apps cannot add posts. Tops the journal up to "count" items, so sending it
+ * again costs nothing; the result code is the feed size afterwards. Generated posts are
+ * not added to the search index.
+ *
+ * Turns retention off first (FeedRetentionPolicy.keepAll, saved in the prefs), or compaction
+ * would move everything past the default limits to the archive and the benchmark would
+ * scroll only part of the posts it asked for.
+ */
+public class FeedSeedReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "FeedSeedReceiver";
+    public static final String EXTRA_COUNT = "count";
+    private static final int MAX_COUNT = 50_000;
+    private static final long POST_SPACING_MS = 10 * 60 * 1000L; // One post every 10 minutes up to now
+
+    private static final String[] PLACES = {"Library", "Main gate", "Hostel block C", "Canteen", "Parking lot", "Sports ground"};
+    private static final String SENTENCE = "Students are advised to be cautious and report anything unusual to campus security. ";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final int count = Math.min(intent.getIntExtra(EXTRA_COUNT, 0), MAX_COUNT);
+        final NewsJournal journal = NewsJournal.getInstance(context);
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+        DiskIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    FeedRetentionPolicy keepAll = FeedRetentionPolicy.keepAll();
+                    // Saved before the journal opens, which is when it reads them
+                    SharedPreferences prefs = appContext.getSharedPreferences(FeedActivity.PREFS_NAME, Context.MODE_PRIVATE);
+                    prefs.edit()
+                            .putLong(FeedRetentionPolicy.KEY_MAX_AGE_MS, keepAll.getMaxAgeMs())
+                            .putInt(FeedRetentionPolicy.KEY_MAX_ITEMS, keepAll.getMaxItems())
+                            .commit();
+                    journal.setRetention(keepAll); // In case it was already open
+                    int size = journal.size();
+                    long now = System.currentTimeMillis();
+                    // Oldest first, so each record goes at the end of the journal's index
+                    for (int i = size; i < count; i++) {
+                        journal.append(generatedPost(i, now - (count - i) * POST_SPACING_MS));
+                    }
+                    int seeded = journal.size();
+                    Log.i(TAG, "Feed has " + seeded + " posts (" + Math.max(0, count - size) + " added).");
+                    result.setResultCode(seeded);
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not seed the feed", e);
+                } finally {
+                    result.finish();
+                }
+            }
+        });
+    }
+
+    // Descriptions of 1 to 6 sentences, so rows have different heights like a real feed
+    private static NewsItem generatedPost(int number, long timestamp) {
+        StringBuilder description = new StringBuilder();
+        for (int s = 0; s <= number % 6; s++) {
+            description.append(SENTENCE);
+        }
+        NewsItem item = new NewsItem("[Test] Incident " + (number + 1) + " near the " + PLACES[number % PLACES.length],
+                description.toString().trim(), timestamp);
+        if (number % 3 == 0) {
+            item.setLocation(12.8231 + (number % 100) * 0.0001, 80.0442); // Around the campus
+        }
+        // A mix of categories and statuses, so the filter chips have something to narrow down
+        item.setCategory(number % NewsItem.CATEGORY_NAMES.length);
+        item.setSeverity(NewsItem.SEVERITY_LOW + number % 3);
+        if (number % 4 == 0) {
+            item.setStatus(NewsItem.STATUS_RESOLVED);
+        }
+        return item;
+    }
+}
@@ -0,0 +1,132 @@
+package com.srm_campussaftey;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.StrictMode;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Keeps the emergency contacts in a small binary file (files/contacts.bin, see BinaryCodec).
+ * Used by both ContactsActivity and SOSManager, always on the DiskIO thread.
+ * Creating one touches no files; they are only looked up on the first load or save.
+ *
+ * Older versions kept them as one JSON string in SharedPreferences. The first load finds
+ * that string, writes it out as the binary file and only then removes it from the prefs,
+ * so nothing is lost if the app dies in between.
+ */
+public class BinaryContactStore implements ContactStore {
+
+    private static final String TAG = "BinaryContactStore";
+    static final String FILE_NAME = "contacts.bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // ContactsActivity and SOSManager each have their own store; they share the file
+    private static final Object fileLock = new Object();
+
+    private final Context appContext;
+    private File file; // Resolved on first use (getFilesDir can touch the disk)
+
+    public BinaryContactStore(Context context) {
+        appContext = context.getApplicationContext();
+    }
+
+    private File file() {
+        if (file == null) {
+            file = new File(appContext.getFilesDir(), FILE_NAME);
+        }
+        return file;
+    }
+
+    @Override
+    public List<Contact> load() {
+        synchronized (fileLock) {
+            File file = file();
+            if (!file.exists()) {
+                return migrateFromPrefs();
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                return BinaryCodec.readContacts(in);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read contacts file", e);
+                return new ArrayList<>();
+            }
+        }
+    }
+
+    @Override
+    public void save(List<Contact> contacts) {
+        synchronized (fileLock) {
+            try {
+                write(contacts);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not save contacts", e);
+            }
+        }
+    }
+
+    /**
+     * Writes to a temp file and renames it over the old one, so a crash mid-write
+     * never leaves a half-written contacts file behind.
+     */
+    private void write(List<Contact> contacts) throws IOException {
+        File file = file();
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream stream = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            BinaryCodec.writeContacts(out, contacts);
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not rename " + temp);
+        }
+    }
+
+    /**
+     * One-time move of the old JSON contacts out of SharedPreferences.
+     */
+    private List<Contact> migrateFromPrefs() {
+        SharedPreferences sharedPreferences = appContext.getSharedPreferences(ContactsActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        String jsonContacts = sharedPreferences.getString(ContactsActivity.CONTACTS_KEY, null);
+        if (jsonContacts == null) {
+            return new ArrayList<>(); // No contacts saved yet
+        }
+        List<Contact> contacts;
+        try {
+            // Lets StrictMode (detectCustomSlowCalls) catch this if it ever runs on the main thread
+            StrictMode.noteSlowCall("Parsing old contacts JSON");
+            Type type = new TypeToken<ArrayList<Contact>>() {}.getType();
+            contacts = new Gson().fromJson(jsonContacts, type);
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing old contacts JSON", e);
+            return new ArrayList<>(); // Leave the prefs alone so the data is not lost
+        }
+        if (contacts == null) { // Handle case where JSON might be invalid "null"
+            contacts = new ArrayList<>();
+        }
+        try {
+            write(contacts);
+            sharedPreferences.edit().remove(ContactsActivity.CONTACTS_KEY).apply();
+            Log.d(TAG, "Migrated " + contacts.size() + " contacts from SharedPreferences.");
+        } catch (IOException e) {
+            Log.e(TAG, "Could not migrate contacts, will try again next time", e);
+        }
+        return contacts;
+    }
+}
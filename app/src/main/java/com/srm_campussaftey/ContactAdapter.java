@@ -12,19 +12,19 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
-
 /*
- * An Adapter is a "bridge" between your data (the List<Contact>) and the
+ * An Adapter is a "bridge" between your data (the ContactList) and the
  * UI element that displays it (the RecyclerView).
  * It inflates the layout for each row and binds the data to the views.
+ * Rows use the contacts' ids, so RecyclerView can tell which row is which after a change.
  */
 public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactViewHolder> {
 
     // --- Declare variables at class level ---
     private final Context context; // Need context for layout inflater
-    private final List<Contact> contactList;
+    private final ContactList contactList;
     private final OnDeleteClickListener deleteClickListener; // Listener for delete clicks
+    private final OnEditClickListener editClickListener; // Listener for taps on the row itself
     // --- End variable declaration ---
 
 
@@ -33,16 +33,25 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactV
         void onDeleteClick(Contact contact);
     }
 
+    // Interface for handling taps on a row (to edit the contact) back in the Activity
+    public interface OnEditClickListener {
+        void onEditClick(Contact contact);
+    }
+
     /**
      * Constructor for the adapter.
      * @param context The activity context.
      * @param contactList The list of contacts to display.
      * @param deleteClickListener The listener to notify when a delete button is clicked.
+     * @param editClickListener The listener to notify when a row is tapped.
      */
-    public ContactAdapter(Context context, List<Contact> contactList, OnDeleteClickListener deleteClickListener) {
+    public ContactAdapter(Context context, ContactList contactList, OnDeleteClickListener deleteClickListener,
+                          OnEditClickListener editClickListener) {
         this.context = context;
         this.contactList = contactList;
         this.deleteClickListener = deleteClickListener;
+        this.editClickListener = editClickListener;
+        setHasStableIds(true);
     }
 
     /**
@@ -77,6 +86,11 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactV
                 deleteClickListener.onDeleteClick(currentContact);
             }
         });
+        holder.itemView.setOnClickListener(v -> {
+            if (editClickListener != null) {
+                editClickListener.onEditClick(currentContact);
+            }
+        });
     }
 
     /**
@@ -88,6 +102,11 @@ public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ContactV
         return contactList != null ? contactList.size() : 0;
     }
 
+    @Override
+    public long getItemId(int position) {
+        return contactList.get(position).getId();
+    }
+
 
     /**
      * The ViewHolder holds references to the views within each row layout.
@@ -4,25 +4,24 @@ package com.srm_campussaftey;
 import com.srm_campussaftey.R;
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.DialogInterface;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log; // Import Log
+import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.Button; // Correct import
 import android.widget.EditText;
 import android.widget.ImageButton; // Correct import
+import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
-import java.lang.reflect.Type;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
 
 /*
@@ -42,19 +41,21 @@ public class ContactsActivity extends AppCompatActivity {
     private EditText phoneEditText;
     private Button addButton;
     private ImageButton backButton; // Declaration is correct
+    private TextView placeholderText;
     // --- End UI element declaration ---
 
-    private List<Contact> contactList;
+    private final ContactList contactList = new ContactList(); // Filled once loadContacts finishes; indexed by id and number
     private ContactAdapter contactAdapter;
-    private SharedPreferences sharedPreferences;
+    private ContactStore contactStore;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_contacts);
 
-        // Initialize SharedPreferences
-        sharedPreferences = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        // Contacts are kept in a small binary file (moved over from SharedPreferences on first use).
+        // Creating the store does not touch the disk; loadContacts reads it on the DiskIO thread.
+        contactStore = new BinaryContactStore(this);
 
         // --- Initialize UI Elements ---
         // Find UI elements and assign them, WITH EXPLICIT CASTS
@@ -64,11 +65,13 @@ public class ContactsActivity extends AppCompatActivity {
         // Use the CORRECT ID from the XML file
         addButton = (Button) findViewById(R.id.addContactButton);
         backButton = (ImageButton) findViewById(R.id.backButton); // This ID must exist in activity_contacts.xml
+        placeholderText = (TextView) findViewById(R.id.contactsPlaceholderText);
         // --- End Finding UI elements ---
 
         // Basic null check after findViewById (optional but good practice)
         // Note: backButton will be null here until we add it to the XML
-        if (contactsRecyclerView == null || nameEditText == null || phoneEditText == null || addButton == null) {
+        if (contactsRecyclerView == null || nameEditText == null || phoneEditText == null || addButton == null
+                || placeholderText == null) {
             // Removed backButton check for now
             Log.e("ContactsActivity", "Error finding essential views! Check layout file (activity_contacts.xml) for correct IDs (contactsRecyclerView, nameEditText, phoneEditText, addContactButton).");
             Toast.makeText(this, "Error initializing screen.", Toast.LENGTH_LONG).show();
@@ -77,9 +80,9 @@ public class ContactsActivity extends AppCompatActivity {
         }
 
 
-        loadContacts();
-        setupRecyclerView();
+        setupRecyclerView(); // Empty until the contacts arrive
         setupClickListeners(); // Setup listeners after checking essential views
+        loadContacts();
     }
 
     /**
@@ -87,13 +90,18 @@ public class ContactsActivity extends AppCompatActivity {
      */
     private void setupRecyclerView() {
         contactsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        // Create the adapter. We pass "this" to listen for delete clicks.
+        // Create the adapter. We pass "this" to listen for delete clicks and taps on a row.
         contactAdapter = new ContactAdapter(this, contactList, new ContactAdapter.OnDeleteClickListener() {
             @Override
             public void onDeleteClick(Contact contact) {
                 // This code runs when the user clicks a "delete" button in the adapter
                 deleteContact(contact);
             }
+        }, new ContactAdapter.OnEditClickListener() {
+            @Override
+            public void onEditClick(Contact contact) {
+                showEditContactDialog(contact);
+            }
         });
         contactsRecyclerView.setAdapter(contactAdapter);
     }
@@ -125,49 +133,60 @@ public class ContactsActivity extends AppCompatActivity {
     }
 
     /**
-     * Loads the list of contacts from SharedPreferences.
+     * Reads the contacts file on the DiskIO thread and shows the list when it is ready.
+     * Until then the screen shows "Loading contacts..." and adding is switched off,
+     * so a new contact can never be saved over a list that has not been read yet.
      */
     private void loadContacts() {
-        String jsonContacts = sharedPreferences.getString(CONTACTS_KEY, null);
-        Gson gson = new Gson();
-
-        if (jsonContacts == null) {
-            // No contacts saved yet, create a new empty list
-            contactList = new ArrayList<>();
-        } else {
-            // Contacts exist, use Gson to turn the JSON string back into a List
-            Type type = new TypeToken<ArrayList<Contact>>() {}.getType();
-            try {
-                contactList = gson.fromJson(jsonContacts, type);
-                // Ensure list is not null after parsing
-                if (contactList == null) {
-                    contactList = new ArrayList<>();
-                    Log.w("ContactsActivity", "Parsed contact list was null, initialized new list.");
+        addButton.setEnabled(false);
+        DiskIO.run(new DiskIO.Task<List<Contact>>() {
+            @Override
+            public List<Contact> call() {
+                return contactStore.load();
+            }
+        }, new DiskIO.Callback<List<Contact>>() {
+            @Override
+            public void onResult(List<Contact> contacts) {
+                if (isDestroyed()) {
+                    return;
                 }
-            } catch (Exception e) {
-                // Handle potential JSON parsing errors
-                contactList = new ArrayList<>();
-                Log.e("ContactsActivity", "Error parsing contacts JSON", e);
-                Toast.makeText(this, "Error loading contacts.", Toast.LENGTH_SHORT).show();
-                // Optionally clear corrupted data:
-                // sharedPreferences.edit().remove(CONTACTS_KEY).apply();
+                contactList.addLoaded(contacts);
+                contactAdapter.notifyItemRangeInserted(0, contacts.size());
+                addButton.setEnabled(true);
+                updatePlaceholder();
+                Log.d("ContactsActivity", "Loaded " + contacts.size() + " contacts.");
             }
-        }
-        Log.d("ContactsActivity", "Loaded " + contactList.size() + " contacts.");
+
+            @Override
+            public void onError(IOException e) {
+                // load() reports problems itself and returns an empty list, so this is not expected
+                addButton.setEnabled(true);
+                updatePlaceholder();
+            }
+        });
+    }
+
+    private void updatePlaceholder() {
+        placeholderText.setText("No contacts yet");
+        placeholderText.setVisibility(contactList.isEmpty() ? View.VISIBLE : View.GONE);
     }
 
     /**
-     * Saves the entire (modified) contact list back to SharedPreferences.
+     * Saves the entire (modified) contact list back to the contacts file, on the DiskIO thread.
      */
     private void saveContacts() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        Gson gson = new Gson();
-        // Use Gson to turn our List<Contact> into a single JSON string
-        String jsonContacts = gson.toJson(contactList);
-        // Save that string
-        editor.putString(CONTACTS_KEY, jsonContacts);
-        editor.apply();
-        Log.d("ContactsActivity", "Saved " + contactList.size() + " contacts.");
+        final List<Contact> snapshot = contactList.toList(); // The list may change again before the save runs
+        final Context appContext = getApplicationContext();
+        DiskIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                contactStore.save(snapshot);
+                Log.d("ContactsActivity", "Saved " + snapshot.size() + " contacts.");
+                // Re-arm SOS with the new list so triggering never has to read the file again
+                SOSManager.updateDispatchPlan(appContext, snapshot);
+            }
+        });
+        updatePlaceholder();
     }
 
     /**
@@ -182,23 +201,26 @@ public class ContactsActivity extends AppCompatActivity {
             Toast.makeText(this, "Please enter both name and phone number", Toast.LENGTH_SHORT).show();
             return;
         }
-        // Basic phone number format check (optional, can be improved)
-        if (!phone.matches("\\+?[0-9\\s-]+")) { // Allows digits, spaces, hyphens, optional leading +
+        if (!isValidPhone(phone)) {
             Toast.makeText(this, "Please enter a valid phone number", Toast.LENGTH_SHORT).show();
             return;
         }
 
         // --- Add to list and save ---
         Contact newContact = new Contact(name, phone);
-        contactList.add(newContact);
+        int position = contactList.add(newContact);
+        if (position == ContactList.DUPLICATE_PHONE) {
+            Toast.makeText(this, "This number is already in your contacts", Toast.LENGTH_SHORT).show();
+            return;
+        }
         saveContacts();
 
         // --- Update the UI ---
         // Notify the adapter that a new item was added at the end of the list
         if(contactAdapter != null) { // Add null check for adapter
-            contactAdapter.notifyItemInserted(contactList.size() - 1);
+            contactAdapter.notifyItemInserted(position);
             // Scroll to the newly added item (optional)
-            contactsRecyclerView.smoothScrollToPosition(contactList.size() - 1);
+            contactsRecyclerView.smoothScrollToPosition(position);
         }
         // Clear the text boxes
         nameEditText.setText("");
@@ -206,38 +228,83 @@ public class ContactsActivity extends AppCompatActivity {
         Toast.makeText(this, "Contact added", Toast.LENGTH_SHORT).show();
     }
 
+    // Basic phone number format check: digits, spaces, hyphens, optional leading +
+    private static boolean isValidPhone(String phone) {
+        return phone.matches("\\+?[0-9\\s-]+");
+    }
+
     /**
      * Called when the "delete" button in the adapter is clicked.
+     * The id index finds the row straight away, and only that row is removed from the list.
      */
     private void deleteContact(Contact contact) {
-        // Find the position of the contact in the list
-        int position = -1;
-        for(int i = 0; i < contactList.size(); i++){
-            // Compare content, not just object reference
-            if(contactList.get(i).getName().equals(contact.getName()) && contactList.get(i).getPhone().equals(contact.getPhone())){
-                position = i;
-                break;
-            }
+        int position = contactList.remove(contact.getId());
+        if (position == ContactList.NOT_FOUND) {
+            Log.w("ContactsActivity", "Could not find contact to delete: " + contact.getName());
+            return;
         }
+        // Save the new, smaller list
+        saveContacts();
+        // Rows below move up by themselves; their content did not change, so nothing is rebound
+        if(contactAdapter != null) { // Add null check for adapter
+            contactAdapter.notifyItemRemoved(position);
+        }
+        Toast.makeText(this, "Contact deleted", Toast.LENGTH_SHORT).show();
+    }
 
-        if (position != -1) {
-            // Remove the contact from the list
-            contactList.remove(position);
-            // Save the new, smaller list
-            saveContacts();
-            // Notify the adapter that an item was removed at that position
-            if(contactAdapter != null) { // Add null check for adapter
-                contactAdapter.notifyItemRemoved(position);
-                // Optional: Notify for range change if positions shift
-                contactAdapter.notifyItemRangeChanged(position, contactList.size());
-            }
-            Toast.makeText(this, "Contact deleted", Toast.LENGTH_SHORT).show();
-        } else {
-            Log.w("ContactsActivity", "Could not find contact to delete: " + contact.getName());
-            // Maybe refresh the list if contact wasn't found?
-            // loadContacts();
-            // contactAdapter.notifyDataSetChanged();
+    /**
+     * Shows a pop-up to change a contact's name or number (opened by tapping the row).
+     */
+    private void showEditContactDialog(final Contact contact) {
+        LayoutInflater inflater = this.getLayoutInflater();
+        View dialogView = inflater.inflate(R.layout.dialog_edit_contact, null);
+        final EditText editName = dialogView.findViewById(R.id.editNameEditText);
+        final EditText editPhone = dialogView.findViewById(R.id.editPhoneEditText);
+        editName.setText(contact.getName());
+        editPhone.setText(contact.getPhone());
+
+        new AlertDialog.Builder(this)
+                .setView(dialogView)
+                .setTitle("Edit Contact")
+                .setPositiveButton("Save", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int id) {
+                        editContact(contact.getId(), editName.getText().toString().trim(), editPhone.getText().toString().trim());
+                    }
+                })
+                .setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int id) {
+                        dialog.cancel();
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Changes one contact (ContactList swaps in a new Contact) and rebinds only its row.
+     */
+    private void editContact(long id, String name, String phone) {
+        if (TextUtils.isEmpty(name) || TextUtils.isEmpty(phone)) {
+            Toast.makeText(this, "Please enter both name and phone number", Toast.LENGTH_SHORT).show();
+            return;
         }
+        if (!isValidPhone(phone)) {
+            Toast.makeText(this, "Please enter a valid phone number", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        int position = contactList.update(id, name, phone);
+        if (position == ContactList.DUPLICATE_PHONE) {
+            Toast.makeText(this, "This number is already in your contacts", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (position == ContactList.NOT_FOUND) {
+            Log.w("ContactsActivity", "Could not find contact to edit: " + id);
+            return;
+        }
+        saveContacts();
+        if (contactAdapter != null) {
+            contactAdapter.notifyItemChanged(position);
+        }
+        Toast.makeText(this, "Contact updated", Toast.LENGTH_SHORT).show();
     }
 }
-
@@ -0,0 +1,88 @@
+package com.srm_campussaftey;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.ImageButton;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * A debug-only screen that shows how long each stage of an SOS took (p50/p95/p99/max),
+ * as collected by SOSTracer, how many events the accessibility service has been sent
+ * per minute, and how often an SOS found a cached fix in the location warmer. Opened by
+ * long-pressing the title on the main screen in debuggable builds.
+ */
+public class DebugMetricsActivity extends AppCompatActivity {
+
+    private TextView metricsText;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_debug_metrics);
+
+        metricsText = findViewById(R.id.metricsText);
+        ImageButton backButton = findViewById(R.id.backButton);
+        Button dumpButton = findViewById(R.id.dumpButton);
+        Button resetButton = findViewById(R.id.resetButton);
+
+        backButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                finish();
+            }
+        });
+
+        dumpButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                final Context appContext = getApplicationContext();
+                DiskIO.run(new DiskIO.Task<File>() {
+                    @Override
+                    public File call() throws IOException {
+                        return SOSTracer.writeDump(appContext);
+                    }
+                }, new DiskIO.Callback<File>() {
+                    @Override
+                    public void onResult(File file) {
+                        Toast.makeText(appContext, "Saved to " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+                    }
+
+                    @Override
+                    public void onError(IOException e) {
+                        Log.e("DebugMetricsActivity", "Could not write latency dump", e);
+                        Toast.makeText(appContext, "Could not save dump.", Toast.LENGTH_SHORT).show();
+                    }
+                });
+            }
+        });
+
+        resetButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                SOSTracer.reset();
+                refresh();
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refresh();
+    }
+
+    private void refresh() {
+        // Latency per SOS stage, what the accessibility service has been sent, location cache hits
+        metricsText.setText(SOSTracer.formatReport() + "\n" + SOSAccessibilityService.formatEventCounts()
+                + "\n\n" + SOSLocationWarmer.formatStats());
+    }
+}
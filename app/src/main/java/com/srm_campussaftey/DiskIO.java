@@ -0,0 +1,99 @@
+package com.srm_campussaftey;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The one background thread that reads and writes the app's stores: the contacts file,
+ * the feed journal, the SOS dispatch plan after contact edits and the latency dump.
+ * (Loading the plan for an SOS has its own thread in SOSManager, so an emergency never
+ * waits behind feed work queued here.)
+ *
+ * Screens hand it a Task and get the result back through a Callback on the main thread,
+ * so no disk access (or parsing of what was read) ever blocks drawing. Having a single
+ * thread also means writes happen in the order they were asked for, and a load queued
+ * after a save always sees the saved data.
+ */
+public final class DiskIO {
+
+    private static final String TAG = "DiskIO";
+
+    // Work that runs on the I/O thread and may fail
+    public interface Task<T> {
+        T call() throws IOException;
+    }
+
+    // Called on the main thread with the Task's result
+    public interface Callback<T> {
+        void onResult(T result);
+        void onError(IOException e);
+    }
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "disk-io");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private DiskIO() {
+    }
+
+    /**
+     * Runs a task on the I/O thread and reports the result (or error) on the main thread.
+     */
+    public static <T> void run(final Task<T> task, final Callback<T> callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final T result = task.call();
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onResult(result);
+                        }
+                    });
+                } catch (final IOException e) {
+                    Log.e(TAG, "Disk task failed", e);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onError(e);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs work on the I/O thread when nobody needs to hear back (e.g. a save).
+     */
+    public static void execute(Runnable work) {
+        executor.execute(work);
+    }
+
+    /**
+     * Waits until everything queued so far has run. For tests only.
+     */
+    static void awaitIdle(long timeoutMs) throws Exception {
+        Future<?> marker = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        marker.get(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -2,31 +2,38 @@ package com.srm_campussaftey;
 
 // Correct R import
 
-import android.content.Context;
+import android.Manifest;
 import android.content.DialogInterface;
-import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.CompoundButton;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
+import android.widget.Spinner;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.android.material.chip.Chip;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
-import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.io.IOException;
 import java.util.List;
 
 /*
@@ -37,52 +44,111 @@ public class FeedActivity extends AppCompatActivity {
 
     // --- Constants for saving/loading data ---
     public static final String PREFS_NAME = "CampusSafetyPrefs"; // Same prefs file as Contacts
-    public static final String NEWS_KEY = "CampusNewsFeed";
+    public static final String NEWS_KEY = "CampusNewsFeed"; // Old single-string feed, migrated into NewsJournal
+    private static final int PREFETCH_DISTANCE = 10; // Load the next page this many rows before the end
+    private static final double NEAR_ME_RADIUS_METERS = 300;
+    private static final long NEAR_ME_WINDOW_MS = 24 * 60 * 60 * 1000L; // Last 24 hours
+    private static final long MAX_POST_FIX_AGE_MS = 10 * 60 * 1000L; // Older fixes are not attached to posts
+    private static final int VIEW_CACHE_SIZE = 4; // Rows just scrolled off, kept bound for a quick scroll back
+    private static final int MAX_RECYCLED_ROWS = 12; // About two screens of rows, so a fling never inflates
+    private static final long RECENT_FILTER_MS = 2 * 60 * 60 * 1000L; // "Last 2 h" chip
     // --- End of Constants ---
 
     // --- Declare UI elements at class level ---
     private RecyclerView newsRecyclerView;
     private FloatingActionButton addNewsButton; // Correct type
     private ImageButton backButton; // Correct type
+    private EditText searchEditText;
+    private TextView searchEmptyText;
+    private TextView feedPlaceholderText;
+    private Chip nearMeChip;
+    private Chip lastTwoHoursChip;
+    private Chip categoryChip;
+    private Chip unresolvedChip;
+    private Button showOlderButton;
     // --- End UI element declaration ---
 
-    private List<NewsItem> newsList;
+    private LinearLayoutManager layoutManager;
+    private FeedModel feedModel;
+    private FeedPagingSource pagingSource;
     private NewsAdapter newsAdapter;
-    private SharedPreferences sharedPreferences;
+    private NewsRowPreparer rowPreparer; // Shared by the feed and the search results
+    private NewsJournal newsJournal;
+    private FeedSearch feedSearch;
+    private FeedSync feedSync; // Brings in incidents from the campus security server
+    private FeedModel searchModel; // Search results, shown instead of the feed while searching
+    private NewsAdapter searchAdapter;
+    private LocationSource locationSource; // Null without location permission
+    private LocationFix postFix; // Last known location, attached to new posts
+    private int filterCategory = IncidentIndex.ANY_CATEGORY; // Picked with the "Category" chip
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_feed); // Links to the correct XML
 
-        // Initialize SharedPreferences
-        sharedPreferences = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        // Nothing is read here; the journal opens itself on the DiskIO thread when the first page loads
+        newsJournal = NewsJournal.getInstance(this);
 
         // --- Load UI elements from XML ---
         // Use the CORRECT IDs from activity_feed.xml
         newsRecyclerView = findViewById(R.id.feedRecyclerView);
         addNewsButton = findViewById(R.id.addPostButton);
         backButton = findViewById(R.id.backButton); // Ensure this ID exists in activity_feed.xml
+        searchEditText = findViewById(R.id.searchEditText);
+        searchEmptyText = findViewById(R.id.searchEmptyText);
+        feedPlaceholderText = findViewById(R.id.feedPlaceholderText);
+        nearMeChip = findViewById(R.id.nearMeChip);
+        lastTwoHoursChip = findViewById(R.id.lastTwoHoursChip);
+        categoryChip = findViewById(R.id.categoryChip);
+        unresolvedChip = findViewById(R.id.unresolvedChip);
+        showOlderButton = findViewById(R.id.showOlderButton);
         // --- End Finding UI elements ---
 
         // Basic null check
-        if (newsRecyclerView == null || addNewsButton == null || backButton == null) {
+        if (newsRecyclerView == null || addNewsButton == null || backButton == null
+                || searchEditText == null || searchEmptyText == null || feedPlaceholderText == null || nearMeChip == null
+                || lastTwoHoursChip == null || categoryChip == null || unresolvedChip == null
+                || showOlderButton == null) {
             Log.e("FeedActivity", "Error finding essential views! Check layout file (activity_feed.xml) for correct IDs.");
             Toast.makeText(this, "Error initializing feed screen.", Toast.LENGTH_LONG).show();
             finish(); // Close the activity if views aren't found
             return;
         }
 
-        // Load saved news items
-        loadNews();
-
         // --- Setup RecyclerView ---
-        newsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        // Pass "this" (the Context) and the List to the adapter constructor
-        newsAdapter = new NewsAdapter(this, newsList);
+        layoutManager = new LinearLayoutManager(this);
+        // LinearLayoutManager prefetches the next row in the idle time between frames; prepared
+        // rows keep each of those binds short enough to fit, and the pool below keeps inflation out of flings
+        newsRecyclerView.setLayoutManager(layoutManager);
+        newsRecyclerView.setHasFixedSize(true); // The list fills the screen whatever it holds
+        newsRecyclerView.setItemViewCacheSize(VIEW_CACHE_SIZE);
+        newsRecyclerView.getRecycledViewPool().setMaxRecycledViews(0, MAX_RECYCLED_ROWS);
+        // The adapter shows whatever pages the paging source has loaded into the model so far
+        feedModel = new FeedModel();
+        rowPreparer = new NewsRowPreparer();
+        newsAdapter = new NewsAdapter(this, feedModel, rowPreparer);
+        // The model reports exactly which rows changed, straight to the adapter
+        feedModel.setUpdateCallback(new AdapterListUpdateCallback(newsAdapter));
+        pagingSource = new FeedPagingSource(newsJournal, feedModel);
+        // Dates and description layouts are prepared with each page, on the DiskIO thread
+        pagingSource.setRowPreparer(rowPreparer);
         newsRecyclerView.setAdapter(newsAdapter);
+        newsAdapter.createFirstRow(newsRecyclerView); // Before the first page, which needs its text settings
+        setupPaging();
         // --- End RecyclerView Setup ---
 
+        // Location is optional here: posts just go without coordinates and "Near me" explains why
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED ||
+                ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
+            locationSource = new FusedLocationSource(SOSManager.getLocationClient(this));
+        }
+
+        setupSearch();
+        setupNearMe();
+        setupFilters();
+        setupSync();
+
         // --- Set Click Listeners ---
         addNewsButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -100,53 +166,436 @@ public class FeedActivity extends AppCompatActivity {
         // --- End Set Click Listeners ---
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (feedSync != null) {
+            feedSync.setFeedVisible(true); // Opens the live stream, shows what came in meanwhile
+            feedSync.syncNow(); // Skipped if the last sync was moments ago
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (feedSearch != null) {
+            feedSearch.save(); // Only writes if posts were added to the index
+        }
+        if (feedSync != null) {
+            feedSync.setFeedVisible(false); // Changes wait until we are back
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (pagingSource != null) {
+            pagingSource.close();
+        }
+        if (feedSearch != null) {
+            feedSearch.close();
+        }
+        if (feedSync != null) {
+            feedSync.setListener(null);
+        }
+    }
+
     /**
-     * Loads the list of news items from SharedPreferences.
+     * Starts loading the next page of the feed when the user is close to the bottom.
      */
-    private void loadNews() {
-        String jsonNews = sharedPreferences.getString(NEWS_KEY, null);
-        Gson gson = new Gson();
-
-        if (jsonNews == null) {
-            newsList = new ArrayList<>();
-            // Optional: Add a default welcome message if the list is empty
-            // newsList.add(new NewsItem("Welcome", "No incidents reported yet.", System.currentTimeMillis()));
-        } else {
-            Type type = new TypeToken<ArrayList<NewsItem>>() {}.getType();
-            newsList = gson.fromJson(jsonNews, type);
-            // Sort news by timestamp, newest first
-            Collections.sort(newsList, new Comparator<NewsItem>() {
-                @Override
-                public int compare(NewsItem o1, NewsItem o2) {
-                    return Long.compare(o2.getTimestamp(), o1.getTimestamp()); // Descending order
+    private void setupPaging() {
+        pagingSource.setListener(new FeedPagingSource.Listener() {
+            @Override
+            public void onPageLoaded(int totalItems) {
+                // "Loading feed..." until the first page is in, then only if the feed is empty
+                if (totalItems > 0) {
+                    feedPlaceholderText.setVisibility(View.GONE);
+                } else if (pagingSource.getFilter().isAll()) {
+                    feedPlaceholderText.setText("No incidents reported yet");
+                } else {
+                    feedPlaceholderText.setText("No incidents match these filters");
                 }
-            });
+                updateShowOlderButton();
+            }
+
+            @Override
+            public void onLoadError(IOException e) {
+                feedPlaceholderText.setText("Could not load the feed");
+                Toast.makeText(FeedActivity.this, "Error loading feed.", Toast.LENGTH_SHORT).show();
+            }
+        });
+
+        newsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (newsRecyclerView.getAdapter() != newsAdapter) {
+                    return; // Search results are not paged
+                }
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= feedModel.size() - PREFETCH_DISTANCE) {
+                    pagingSource.loadNextPage();
+                }
+            }
+        });
+
+        // Past the end of the live feed: posts from the archive, only when asked for
+        showOlderButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                pagingSource.showOlder();
+                updateShowOlderButton();
+            }
+        });
+
+        // Load the first page
+        pagingSource.loadNextPage();
+    }
+
+    private void updateShowOlderButton() {
+        boolean show = pagingSource.canShowOlder() && newsRecyclerView.getAdapter() == newsAdapter;
+        showOlderButton.setVisibility(show ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Searches as the user types. While there is a query the list shows the results
+     * instead of the feed; clearing the box brings the feed back where it was.
+     */
+    private void setupSearch() {
+        feedSearch = new FeedSearch(this, newsJournal);
+        searchModel = new FeedModel();
+        searchAdapter = new NewsAdapter(this, searchModel, rowPreparer);
+        searchModel.setUpdateCallback(new AdapterListUpdateCallback(searchAdapter));
+        NewsAdapter.OnItemLongClickListener resolveListener = new NewsAdapter.OnItemLongClickListener() {
+            @Override
+            public void onItemLongClick(NewsItem item) {
+                showResolveDialog(item);
+            }
+        };
+        newsAdapter.setOnItemLongClickListener(resolveListener);
+        searchAdapter.setOnItemLongClickListener(resolveListener);
+
+        feedSearch.setListener(new FeedSearch.Listener() {
+            @Override
+            public void onResults(String query, List<NewsItem> results) {
+                if (!isSearching()) {
+                    return; // Box was cleared while searching
+                }
+                showSearchResults(results);
+            }
+
+            @Override
+            public void onNearbyResults(LocationFix origin, List<NewsItem> results) {
+                if (!nearMeChip.isChecked()) {
+                    return; // Switched off while looking
+                }
+                searchAdapter.setDistanceOrigin(origin);
+                searchEmptyText.setText("No incidents within " + (int) NEAR_ME_RADIUS_METERS + " m in the last 24 h");
+                showSearchResults(results);
+            }
+
+            @Override
+            public void onSearchError(IOException e) {
+                Toast.makeText(FeedActivity.this, "Error searching feed.", Toast.LENGTH_SHORT).show();
+            }
+        });
+
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (isSearching() && nearMeChip.isChecked()) {
+                    nearMeChip.setChecked(false); // Typing switches back to keyword search
+                }
+                runSearch();
+            }
+        });
+
+        // Load the saved index now, so the first search is quick
+        feedSearch.warmUp();
+    }
+
+    /**
+     * "Near me" shows incidents reported within NEAR_ME_RADIUS_METERS in the last
+     * 24 hours, closest first, in place of the feed.
+     */
+    private void setupNearMe() {
+        nearMeChip.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (!isChecked) {
+                    runSearch(); // Back to the keyword results or the feed
+                    return;
+                }
+                if (locationSource == null) {
+                    Toast.makeText(FeedActivity.this, "Location permission is needed for Near me.", Toast.LENGTH_SHORT).show();
+                    nearMeChip.setChecked(false);
+                    return;
+                }
+                searchEditText.setText(""); // The two filters are not combined
+                locationSource.getLastFix(new LocationSource.Callback() {
+                    @Override
+                    public void onResult(LocationFix fix) {
+                        if (!nearMeChip.isChecked()) {
+                            return;
+                        }
+                        if (fix == null) {
+                            Toast.makeText(FeedActivity.this, "Location not available yet.", Toast.LENGTH_SHORT).show();
+                            nearMeChip.setChecked(false);
+                            return;
+                        }
+                        showResultsList();
+                        feedSearch.findNear(fix, NEAR_ME_RADIUS_METERS, NEAR_ME_WINDOW_MS);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * The filter chips narrow the feed itself ("Last 2 h", one category, "Unresolved", or
+     * any mix). Each change reloads the feed from the first page with the new filter; the
+     * journal answers it from its indexes, so only matching posts are read.
+     */
+    private void setupFilters() {
+        CompoundButton.OnCheckedChangeListener filterListener = new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                applyFilter();
+            }
+        };
+        lastTwoHoursChip.setOnCheckedChangeListener(filterListener);
+        unresolvedChip.setOnCheckedChangeListener(filterListener);
+
+        categoryChip.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                // The chip shows the picked category, not the tap; the dialog decides
+                categoryChip.setChecked(filterCategory != IncidentIndex.ANY_CATEGORY);
+                showCategoryPicker();
+            }
+        });
+    }
+
+    private void showCategoryPicker() {
+        final String[] choices = new String[NewsItem.CATEGORY_NAMES.length + 1];
+        choices[0] = "Any category";
+        System.arraycopy(NewsItem.CATEGORY_NAMES, 0, choices, 1, NewsItem.CATEGORY_NAMES.length);
+        new AlertDialog.Builder(this)
+                .setTitle("Show category")
+                .setSingleChoiceItems(choices, filterCategory + 1, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        filterCategory = which - 1; // "Any category" is ANY_CATEGORY (-1)
+                        boolean any = filterCategory == IncidentIndex.ANY_CATEGORY;
+                        categoryChip.setText(any ? "Category" : choices[which]);
+                        categoryChip.setChecked(!any);
+                        applyFilter();
+                        dialog.dismiss();
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Reloads the feed with the filters the chips show. Leaves search and "Near me", whose
+     * lists replace the feed, so the filtered feed is what the user sees.
+     */
+    private void applyFilter() {
+        long since = lastTwoHoursChip.isChecked() ? System.currentTimeMillis() - RECENT_FILTER_MS : Long.MIN_VALUE;
+        IncidentIndex.Filter filter = new IncidentIndex.Filter(since, filterCategory, unresolvedChip.isChecked());
+        nearMeChip.setChecked(false);
+        searchEditText.setText("");
+        feedPlaceholderText.setText("Loading feed...");
+        feedPlaceholderText.setVisibility(View.VISIBLE);
+        pagingSource.setFilter(filter);
+    }
+
+    /**
+     * Incidents from the campus server (synced or pushed live) show up in the open feed as
+     * they arrive.
+     */
+    private void setupSync() {
+        feedSync = FeedSync.getInstance(this);
+        feedSearch.catchUp(); // Incidents synced while no feed screen was open
+        feedSync.setListener(new FeedSync.Listener() {
+            @Override
+            public void onIncidentsSynced(List<NewsItem> changed) {
+                showSyncedIncidents(changed);
+            }
+
+            @Override
+            public void onFeedOutOfDate() {
+                pagingSource.setFilter(pagingSource.getFilter()); // Reload from the first page
+                feedSearch.catchUp();
+            }
+        });
+    }
+
+    /**
+     * New incidents go into their place in the feed (if they match the filters and fall
+     * within the pages loaded so far; older ones come with later pages). Known ones get
+     * their new status, in the feed and in the search results.
+     */
+    private void showSyncedIncidents(List<NewsItem> changed) {
+        IncidentIndex.Filter filter = pagingSource.getFilter();
+        for (NewsItem item : changed) {
+            feedSearch.add(item); // Words it already has are skipped
+            showStatus(searchModel, item.getId(), item.getStatus(), IncidentIndex.Filter.ALL);
+            if (feedModel.indexOf(item.getId()) >= 0) {
+                showStatus(feedModel, item.getId(), item.getStatus(), filter);
+                continue;
+            }
+            NewsItem oldest = feedModel.last();
+            boolean inLoadedPages = oldest == null ? pagingSource.isEndReached()
+                    : pagingSource.isEndReached() || FeedModel.NEWEST_FIRST.compare(item, oldest) < 0;
+            if (filter.matches(item) && inLoadedPages) {
+                feedModel.insert(item);
+            }
+        }
+        if (feedModel.size() > 0) {
+            feedPlaceholderText.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Long press on a post: mark the incident resolved, or open again.
+     */
+    private void showResolveDialog(final NewsItem item) {
+        final int newStatus = item.isResolved() ? NewsItem.STATUS_OPEN : NewsItem.STATUS_RESOLVED;
+        new AlertDialog.Builder(this)
+                .setTitle(item.getTitle())
+                .setMessage(item.isResolved() ? "Mark this incident as still open?" : "Mark this incident as resolved?")
+                .setPositiveButton(item.isResolved() ? "Reopen" : "Resolve", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        updateStatus(item.getId(), newStatus);
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Saves the new status on the DiskIO thread (one byte in the journal), then updates the
+     * row in the feed and in the search results.
+     */
+    private void updateStatus(final long id, final int status) {
+        DiskIO.run(new DiskIO.Task<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                return newsJournal.updateStatus(id, status);
+            }
+        }, new DiskIO.Callback<Boolean>() {
+            @Override
+            public void onResult(Boolean updated) {
+                if (isDestroyed() || !updated) {
+                    return;
+                }
+                showStatus(feedModel, id, status, pagingSource.getFilter());
+                showStatus(searchModel, id, status, IncidentIndex.Filter.ALL);
+            }
+
+            @Override
+            public void onError(IOException e) {
+                Log.e("FeedActivity", "Error updating incident status", e);
+                Toast.makeText(FeedActivity.this, "Could not update incident.", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private static void showStatus(FeedModel model, long id, int status, IncidentIndex.Filter filter) {
+        int position = model.indexOf(id);
+        if (position < 0) {
+            return;
+        }
+        NewsItem item = model.get(position);
+        item.setStatus(status);
+        if (filter.matches(item)) {
+            model.changed(position);
+        } else {
+            model.remove(position); // e.g. resolved while "Unresolved" is on
         }
     }
 
     /**
-     * Saves the entire (modified) news list back to SharedPreferences.
+     * Prepares the rows for the results on the DiskIO thread (like feed pages), then shows them.
+     * DiskIO runs tasks in order, so results still arrive in the order they were found.
      */
-    private void saveNews() {
-        // Sort before saving to maintain order (optional, but good practice)
-        Collections.sort(newsList, new Comparator<NewsItem>() {
+    private void showSearchResults(final List<NewsItem> results) {
+        final LocationFix origin = searchAdapter.getDistanceOrigin();
+        DiskIO.run(new DiskIO.Task<List<NewsRow>>() {
             @Override
-            public int compare(NewsItem o1, NewsItem o2) {
-                return Long.compare(o2.getTimestamp(), o1.getTimestamp()); // Descending order
+            public List<NewsRow> call() {
+                return rowPreparer.prepare(results, origin);
+            }
+        }, new DiskIO.Callback<List<NewsRow>>() {
+            @Override
+            public void onResult(List<NewsRow> rows) {
+                if (isDestroyed() || (!isSearching() && !nearMeChip.isChecked())) {
+                    return; // Back on the feed in the meantime
+                }
+                searchModel.replaceAll(results, rows);
+                searchEmptyText.setVisibility(results.isEmpty() ? View.VISIBLE : View.GONE);
+            }
+
+            @Override
+            public void onError(IOException e) {
+                // Preparing rows does not touch the disk
             }
         });
+    }
+
+    private boolean isSearching() {
+        return searchEditText.getText().toString().trim().length() > 0;
+    }
+
+    private void runSearch() {
+        if (nearMeChip.isChecked()) {
+            return; // Near me has its own results
+        }
+        if (!isSearching()) {
+            searchEmptyText.setVisibility(View.GONE);
+            if (newsRecyclerView.getAdapter() != newsAdapter) {
+                newsRecyclerView.swapAdapter(newsAdapter, false);
+                feedPlaceholderText.setVisibility(feedModel.size() == 0 ? View.VISIBLE : View.GONE);
+                updateShowOlderButton();
+            }
+            return;
+        }
+        showResultsList();
+        searchAdapter.setDistanceOrigin(null);
+        searchEmptyText.setText("No matching incidents");
+        feedSearch.search(searchEditText.getText().toString());
+    }
 
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        Gson gson = new Gson();
-        String jsonNews = gson.toJson(newsList);
-        editor.putString(NEWS_KEY, jsonNews);
-        editor.apply();
+    private void showResultsList() {
+        feedPlaceholderText.setVisibility(View.GONE);
+        if (newsRecyclerView.getAdapter() != searchAdapter) {
+            newsRecyclerView.swapAdapter(searchAdapter, false);
+        }
+        updateShowOlderButton();
     }
 
     /**
      * Shows a pop-up dialog for the user to add a new incident report.
      */
     private void showAddNewsDialog() {
+        // Look up where we are while the user types, so the post can carry a location
+        if (locationSource != null) {
+            locationSource.getLastFix(new LocationSource.Callback() {
+                @Override
+                public void onResult(LocationFix fix) {
+                    postFix = fix;
+                }
+            });
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         LayoutInflater inflater = this.getLayoutInflater();
         View dialogView = inflater.inflate(R.layout.dialog_add_post, null); // Use the dialog layout
@@ -154,6 +603,13 @@ public class FeedActivity extends AppCompatActivity {
         // Find views within the dialog layout using the CORRECT IDs
         final EditText titleEditText = dialogView.findViewById(R.id.postTitleEditText); // Ensure these IDs exist
         final EditText descriptionEditText = dialogView.findViewById(R.id.postDescriptionEditText); // Ensure these IDs exist
+        final Spinner categorySpinner = dialogView.findViewById(R.id.postCategorySpinner);
+        final Spinner severitySpinner = dialogView.findViewById(R.id.postSeveritySpinner);
+        categorySpinner.setAdapter(new ArrayAdapter<>(this, android.R.layout.simple_spinner_dropdown_item, NewsItem.CATEGORY_NAMES));
+        // Position 0 is SEVERITY_LOW
+        final String[] severities = {"Low severity", "Medium severity", "High severity"};
+        severitySpinner.setAdapter(new ArrayAdapter<>(this, android.R.layout.simple_spinner_dropdown_item, severities));
+        severitySpinner.setSelection(NewsItem.SEVERITY_MEDIUM - NewsItem.SEVERITY_LOW);
 
         builder.setView(dialogView)
                 .setTitle("Report New Incident")
@@ -164,7 +620,8 @@ public class FeedActivity extends AppCompatActivity {
                         String description = descriptionEditText.getText().toString().trim();
 
                         if (!TextUtils.isEmpty(title) && !TextUtils.isEmpty(description)) {
-                            addNewPost(title, description);
+                            addNewPost(title, description, categorySpinner.getSelectedItemPosition(),
+                                    NewsItem.SEVERITY_LOW + severitySpinner.getSelectedItemPosition());
                         } else {
                             Toast.makeText(FeedActivity.this, "Title and description cannot be empty", Toast.LENGTH_SHORT).show();
                         }
@@ -180,29 +637,62 @@ public class FeedActivity extends AppCompatActivity {
     }
 
     /**
-     * Adds a new post to the list, saves it, and updates the RecyclerView.
+     * Appends a new post to the journal on the DiskIO thread, then adds it to the search
+     * index and the top of the list.
      */
-    private void addNewPost(String title, String description) {
-        NewsItem newItem = new NewsItem(title, description, System.currentTimeMillis());
-        // We add to the beginning, but our layout is reversed, so it appears at the top
-        // newsList.add(0, newItem); // Add to the beginning for newest first effect
-        // OR add to the end and rely on sorting during load/save
-        newsList.add(newItem);
-        saveNews(); // Save the updated list (which also sorts it)
-
-        // Reload and resort the list to ensure order is correct immediately
-        loadNews();
+    private void addNewPost(String title, String description, int category, int severity) {
+        final NewsItem newItem = new NewsItem(title, description, System.currentTimeMillis());
+        newItem.setCategory(category);
+        newItem.setSeverity(severity);
+        // FusedLocationSource times fixes with elapsedRealtimeNanos
+        if (postFix != null && SystemClock.elapsedRealtimeNanos() - postFix.getTimeNanos() <= MAX_POST_FIX_AGE_MS * 1_000_000L) {
+            newItem.setLocation(postFix.getLatitude(), postFix.getLongitude());
+        }
+        DiskIO.run(new DiskIO.Task<NewsRow>() {
+            @Override
+            public NewsRow call() throws IOException {
+                // Only the new record is written, the rest of the feed is left untouched
+                newsJournal.append(newItem);
+                // Its row is prepared here too, so binding it does no work on the main thread
+                return rowPreparer.prepare(newItem, null);
+            }
+        }, new DiskIO.Callback<NewsRow>() {
+            @Override
+            public void onResult(NewsRow row) {
+                if (!isDestroyed()) {
+                    showNewPost(newItem, row);
+                }
+            }
 
-        // Notify the adapter that the data set has changed completely
-        newsAdapter.notifyDataSetChanged(); // Simple way to refresh after sorting
+            @Override
+            public void onError(IOException e) {
+                Log.e("FeedActivity", "Error saving news item", e);
+                Toast.makeText(FeedActivity.this, "Could not save incident.", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
 
-        // Optionally scroll to the top
-        if (newsList.size() > 0) {
-            newsRecyclerView.scrollToPosition(0);
+    /**
+     * Called once the post is saved (and has its journal id) and its row is prepared.
+     */
+    private void showNewPost(NewsItem newItem, NewsRow row) {
+        // Only the new post's words are added to the index
+        feedSearch.add(newItem);
+
+        // Binary search puts it in place and only that one row is added to the list
+        // (unless the feed is filtered to something else, e.g. another category)
+        int position = pagingSource.getFilter().matches(newItem) ? feedModel.insert(newItem, row) : -1;
+        if (position >= 0) {
+            feedPlaceholderText.setVisibility(View.GONE); // The feed is not empty any more
+        }
+        if (nearMeChip.isChecked()) {
+            nearMeChip.setChecked(false); // Show the new post in the feed
+        } else if (isSearching()) {
+            runSearch(); // Show it in the results if it matches
+        } else if (position >= 0) {
+            newsRecyclerView.scrollToPosition(position);
         }
-
 
         Toast.makeText(this, "Incident posted", Toast.LENGTH_SHORT).show();
     }
 }
-
@@ -0,0 +1,218 @@
+package com.srm_campussaftey;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * The feed items currently on screen, always kept newest first.
+ *
+ * Instead of re-sorting the whole list after every change, each new item is put
+ * straight into its place with a binary search, and only that one position is
+ * reported to the adapter (through a ListUpdateCallback). That keeps adding a post
+ * O(log n) to find the spot and lets RecyclerView animate just the new row.
+ */
+public class FeedModel {
+
+    // Newest first; the id breaks ties between posts made in the same millisecond
+    public static final Comparator<NewsItem> NEWEST_FIRST = new Comparator<NewsItem>() {
+        @Override
+        public int compare(NewsItem o1, NewsItem o2) {
+            int result = Long.compare(o2.getTimestamp(), o1.getTimestamp());
+            return result != 0 ? result : Long.compare(o2.getId(), o1.getId());
+        }
+    };
+
+    private final List<NewsItem> items = new ArrayList<>();
+    private final List<NewsRow> rows = new ArrayList<>(); // Same positions as items; null until prepared
+    private final Set<Long> ids = new HashSet<>(); // So the same item is never shown twice
+    private ListUpdateCallback updateCallback;
+
+    public void setUpdateCallback(ListUpdateCallback updateCallback) {
+        this.updateCallback = updateCallback;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public NewsItem get(int position) {
+        return items.get(position);
+    }
+
+    /**
+     * The prepared row for the item at this position, or null if it has none yet.
+     */
+    public NewsRow getRow(int position) {
+        return rows.get(position);
+    }
+
+    /**
+     * Keeps a row prepared late (in the background, after the item was first shown) for the next bind.
+     */
+    public void setRow(int position, NewsRow row) {
+        rows.set(position, row);
+    }
+
+    /**
+     * Position of the item with this id, or -1. A plain scan: only the pages loaded so far
+     * are in the model, and this runs once per user action, not per frame.
+     */
+    public int indexOf(long id) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getId() == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reports that the item at this position changed (e.g. it was resolved). Its prepared
+     * row is marked stale: it stays on screen until the adapter has prepared the new one.
+     */
+    public void changed(int position) {
+        NewsRow row = rows.get(position);
+        rows.set(position, row == null ? null : row.stale());
+        if (updateCallback != null) {
+            updateCallback.onChanged(position, 1, null);
+        }
+    }
+
+    /**
+     * Removes one item (e.g. it no longer matches the feed filter) and reports a single-row remove.
+     */
+    public void remove(int position) {
+        NewsItem removed = items.remove(position);
+        rows.remove(position);
+        ids.remove(removed.getId());
+        if (updateCallback != null) {
+            updateCallback.onRemoved(position, 1);
+        }
+    }
+
+    /**
+     * Puts one item into its sorted position and reports a single-row insert.
+     * @return The position it was inserted at, or -1 if it was already in the model.
+     */
+    public int insert(NewsItem item) {
+        return insert(item, null);
+    }
+
+    /**
+     * Same as insert(item), with the row already prepared for it (may be null).
+     */
+    public int insert(NewsItem item, NewsRow row) {
+        if (!ids.add(item.getId())) {
+            return -1;
+        }
+        int position = insertionPoint(item);
+        items.add(position, item);
+        rows.add(position, row);
+        if (updateCallback != null) {
+            updateCallback.onInserted(position, 1);
+        }
+        return position;
+    }
+
+    /**
+     * Adds a page of items. With keyset paging every item on the page is older than
+     * everything already in the model, so the page is added at the end in one step.
+     * Anything else (overlaps, out-of-order items) falls back to one-by-one inserts.
+     *
+     * @param pageRows The prepared rows, one per item in the same order, or null for none.
+     */
+    public void appendPage(List<NewsItem> page, List<NewsRow> pageRows) {
+        if (!belongsAtEnd(page)) {
+            for (int i = 0; i < page.size(); i++) {
+                insert(page.get(i), pageRows == null ? null : pageRows.get(i));
+            }
+            return;
+        }
+        int positionStart = items.size();
+        items.addAll(page);
+        addRows(page.size(), pageRows);
+        for (NewsItem item : page) {
+            ids.add(item.getId());
+        }
+        if (updateCallback != null && !page.isEmpty()) {
+            updateCallback.onInserted(positionStart, page.size());
+        }
+    }
+
+    /**
+     * Replaces everything with a new list (search results, or nearby incidents sorted by
+     * distance), kept in the order given. A model filled this way is not meant for insert(),
+     * which assumes newest-first order.
+     *
+     * @param newRows The prepared rows, one per item in the same order, or null for none.
+     */
+    public void replaceAll(List<NewsItem> newItems, List<NewsRow> newRows) {
+        int oldSize = items.size();
+        items.clear();
+        rows.clear();
+        ids.clear();
+        if (updateCallback != null && oldSize > 0) {
+            updateCallback.onRemoved(0, oldSize);
+        }
+        for (int i = 0; i < newItems.size(); i++) {
+            NewsItem item = newItems.get(i);
+            if (ids.add(item.getId())) {
+                items.add(item);
+                rows.add(newRows == null ? null : newRows.get(i));
+            }
+        }
+        if (updateCallback != null && !items.isEmpty()) {
+            updateCallback.onInserted(0, items.size());
+        }
+    }
+
+    private void addRows(int count, List<NewsRow> newRows) {
+        if (newRows != null) {
+            rows.addAll(newRows);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            rows.add(null);
+        }
+    }
+
+    private boolean belongsAtEnd(List<NewsItem> page) {
+        NewsItem previous = last();
+        for (NewsItem item : page) {
+            if (ids.contains(item.getId()) || (previous != null && NEWEST_FIRST.compare(previous, item) >= 0)) {
+                return false;
+            }
+            previous = item;
+        }
+        return true;
+    }
+
+    /**
+     * The oldest item in the model.
+     */
+    public NewsItem last() {
+        return items.isEmpty() ? null : items.get(items.size() - 1);
+    }
+
+    /**
+     * Binary search for where an item belongs in the newest-first order.
+     */
+    private int insertionPoint(NewsItem item) {
+        int low = 0;
+        int high = items.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (NEWEST_FIRST.compare(items.get(mid), item) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
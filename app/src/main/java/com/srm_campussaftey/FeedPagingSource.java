@@ -0,0 +1,204 @@
+package com.srm_campussaftey;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Loads the campus feed from the NewsJournal one page at a time, newest first.
+ *
+ * Pages are found with a "keyset" instead of an offset: the next page is simply
+ * "the PAGE_SIZE items older than the oldest one we already have". That stays correct
+ * even when new posts are added at the top while the user is scrolling.
+ *
+ * Disk reads happen on the DiskIO thread; results are handed back on the main thread
+ * and added to the FeedModel, which tells the adapter exactly which rows are new.
+ * With a NewsRowPreparer set, each page's rows (dates, measured descriptions) are prepared
+ * in the same background task, right after the read.
+ *
+ * With a filter set (the feed's filter chips), pages come from NewsJournal.readFiltered,
+ * which uses the journal's IncidentIndex instead of reading and skipping posts.
+ *
+ * Posts past the journal's retention limits are in its archive. When the live feed runs
+ * out, canShowOlder() says whether there is more there; only after showOlder() do the next
+ * pages come from the archive (same keys, same filter).
+ */
+public class FeedPagingSource {
+
+    private static final String TAG = "FeedPagingSource";
+    public static final int PAGE_SIZE = 30;
+
+    // Interface for telling the screen when a page arrived or could not be loaded
+    public interface Listener {
+        void onPageLoaded(int totalItems);
+        void onLoadError(IOException e);
+    }
+
+    private final NewsJournal journal;
+    private final FeedModel feedModel;
+    private NewsRowPreparer rowPreparer; // Null: rows are prepared when they are first shown
+    private Listener listener;
+    private boolean closed;
+
+    // --- Paging state (only touched on the main thread) ---
+    private boolean loading;
+    private boolean endReached;
+    private boolean archiveAvailable; // Found out when the live feed ran out
+    private boolean readingArchive;   // After showOlder()
+    private long cursorTimestamp = Long.MAX_VALUE; // Key of the oldest item loaded from the journal
+    private long cursorId = Long.MAX_VALUE;
+    private IncidentIndex.Filter filter = IncidentIndex.Filter.ALL;
+    private int generation; // Bumped by setFilter, so pages still loading for the old filter are dropped
+    // --- End paging state ---
+
+    public FeedPagingSource(NewsJournal journal, FeedModel feedModel) {
+        this.journal = journal;
+        this.feedModel = feedModel;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void setRowPreparer(NewsRowPreparer rowPreparer) {
+        this.rowPreparer = rowPreparer;
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    /**
+     * True when every live post is loaded and the archive holds older ones.
+     */
+    public boolean canShowOlder() {
+        return endReached && archiveAvailable && !readingArchive;
+    }
+
+    /**
+     * Goes on loading past the end of the live feed, from the archive. Must be called on the
+     * main thread.
+     */
+    public void showOlder() {
+        if (!canShowOlder()) {
+            return;
+        }
+        readingArchive = true;
+        endReached = false;
+        loadNextPage();
+    }
+
+    public IncidentIndex.Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Shows only the posts that match a new filter: empties the model and loads the first
+     * matching page. Must be called on the main thread.
+     */
+    public void setFilter(IncidentIndex.Filter filter) {
+        this.filter = filter;
+        generation++;
+        loading = false;
+        endReached = false;
+        archiveAvailable = false;
+        readingArchive = false;
+        cursorTimestamp = Long.MAX_VALUE;
+        cursorId = Long.MAX_VALUE;
+        feedModel.replaceAll(Collections.<NewsItem>emptyList(), null);
+        loadNextPage();
+    }
+
+    /**
+     * Starts loading the next page, unless one is already loading or the end was reached.
+     * Must be called on the main thread.
+     */
+    public void loadNextPage() {
+        if (loading || endReached) {
+            return;
+        }
+        loading = true;
+        // The next page is everything older than the oldest item we already loaded
+        final long beforeTimestamp = cursorTimestamp;
+        final long beforeId = cursorId;
+        final NewsRowPreparer preparer = rowPreparer;
+        final IncidentIndex.Filter pageFilter = filter;
+        final int pageGeneration = generation;
+        final boolean fromArchive = readingArchive;
+
+        DiskIO.run(new DiskIO.Task<Page>() {
+            @Override
+            public Page call() throws IOException {
+                List<NewsItem> items = fromArchive
+                        ? journal.readArchived(pageFilter, beforeTimestamp, beforeId, PAGE_SIZE)
+                        : journal.readFiltered(pageFilter, beforeTimestamp, beforeId, PAGE_SIZE);
+                // At the end of the live feed, check (file size only) whether there is anything older
+                boolean older = !fromArchive && items.size() < PAGE_SIZE && journal.hasArchive();
+                return new Page(items, preparer == null ? null : preparer.prepare(items, null), older);
+            }
+        }, new DiskIO.Callback<Page>() {
+            @Override
+            public void onResult(Page page) {
+                if (!closed && pageGeneration == generation) {
+                    onPageReady(page);
+                }
+            }
+
+            @Override
+            public void onError(IOException e) {
+                Log.e(TAG, "Error loading feed page", e);
+                if (pageGeneration != generation) {
+                    return;
+                }
+                loading = false;
+                if (listener != null) {
+                    listener.onLoadError(e);
+                }
+            }
+        });
+    }
+
+    private void onPageReady(Page loaded) {
+        List<NewsItem> page = loaded.items;
+        loading = false;
+        if (page.size() < PAGE_SIZE) {
+            endReached = true;
+            archiveAvailable |= loaded.olderAvailable;
+        }
+        if (!page.isEmpty()) {
+            NewsItem oldest = page.get(page.size() - 1);
+            cursorTimestamp = oldest.getTimestamp();
+            cursorId = oldest.getId();
+        }
+        feedModel.appendPage(page, loaded.rows);
+        Log.d(TAG, "Loaded page of " + page.size() + " items (total " + feedModel.size() + ").");
+        if (listener != null) {
+            listener.onPageLoaded(feedModel.size());
+        }
+    }
+
+    /*
+     * One page read from the journal and its prepared rows (null without a preparer).
+     */
+    private static final class Page {
+        final List<NewsItem> items;
+        final List<NewsRow> rows;
+        final boolean olderAvailable; // The live feed ended here and the archive has more
+
+        Page(List<NewsItem> items, List<NewsRow> rows, boolean olderAvailable) {
+            this.items = items;
+            this.rows = rows;
+            this.olderAvailable = olderAvailable;
+        }
+    }
+
+    /**
+     * Ignores pages that arrive from now on. Call from the screen's onDestroy.
+     */
+    public void close() {
+        closed = true;
+        listener = null;
+    }
+}
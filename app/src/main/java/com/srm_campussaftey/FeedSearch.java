@@ -0,0 +1,317 @@
+package com.srm_campussaftey;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Keyword search over the campus feed, backed by a SearchIndex (core module), and
+ * "near me" queries, backed by the journal's GeoIndex.
+ *
+ * - The index is saved to files/search_index.bin, so opening the feed does not have to
+ *   split every post into words again. On load, only posts newer than the saved index
+ *   (posted since the last save, or before a crash) are read from the journal and added.
+ * - New posts are added to the index one at a time (add), nothing is rebuilt.
+ * - Posts that move to the journal's archive are dropped from the index (they are only
+ *   read for "show older"), so it stays the size of the live feed.
+ * - Searching and reading the matching posts happen on a background thread; results are
+ *   handed back on the main thread. Results for an older query are dropped.
+ *
+ * The index itself is shared by the whole app (loaded once per process).
+ */
+public class FeedSearch {
+
+    private static final String TAG = "FeedSearch";
+    static final String FILE_NAME = "search_index.bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    public static final int MAX_RESULTS = 200;
+
+    // Interface for the screen showing the results
+    public interface Listener {
+        void onResults(String query, List<NewsItem> results);          // Newest first
+        void onNearbyResults(LocationFix origin, List<NewsItem> results); // Closest first
+        void onSearchError(IOException e);
+    }
+
+    // --- Shared index (guarded by indexLock) ---
+    private static final Object indexLock = new Object();
+    private static SearchIndex sharedIndex;
+    private static boolean dirty; // Changed since it was last saved
+    private static int prunedGeneration = -1; // Journal archive generation last pruned for
+    // --- End shared index ---
+
+    private final Context appContext;
+    private File indexFile; // Resolved on the search thread; getFilesDir() touches the disk
+    private final NewsJournal journal;
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Listener listener;
+    private int latestQuery; // Main thread only; results of older queries are ignored
+
+    public FeedSearch(Context context, NewsJournal journal) {
+        this.appContext = context.getApplicationContext();
+        this.journal = journal;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Loads the index in the background, so it is ready by the time the user types.
+     */
+    public void warmUp() {
+        searchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    index();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error loading search index", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts a search. Must be called on the main thread; the listener gets the
+     * matching posts (newest first) unless another search was started in the meantime.
+     */
+    public void search(final String query) {
+        final int queryNumber = ++latestQuery;
+        searchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long start = System.nanoTime();
+                    long[] ids;
+                    synchronized (indexLock) {
+                        ids = index().search(query, MAX_RESULTS);
+                    }
+                    long searchMicros = (System.nanoTime() - start) / 1000;
+                    final List<NewsItem> results = journal.readByIds(ids);
+                    Collections.sort(results, FeedModel.NEWEST_FIRST);
+                    Log.d(TAG, "Search \"" + query + "\": " + ids.length + " matches in " + searchMicros + " us");
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (queryNumber == latestQuery && listener != null) {
+                                listener.onResults(query, results);
+                            }
+                        }
+                    });
+                } catch (IOException e) {
+                    Log.e(TAG, "Error searching feed", e);
+                    postError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts looking for incidents reported within radiusMeters of a fix in the last
+     * windowMs. Must be called on the main thread; replaces any search still running.
+     */
+    public void findNear(final LocationFix origin, final double radiusMeters, final long windowMs) {
+        final int queryNumber = ++latestQuery;
+        final long since = System.currentTimeMillis() - windowMs;
+        searchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long start = System.nanoTime();
+                    final List<NewsItem> results = journal.readNear(origin.getLatitude(), origin.getLongitude(),
+                            radiusMeters, since, MAX_RESULTS);
+                    Log.d(TAG, "Near me: " + results.size() + " incidents in " + (System.nanoTime() - start) / 1000 + " us");
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (queryNumber == latestQuery && listener != null) {
+                                listener.onNearbyResults(origin, results);
+                            }
+                        }
+                    });
+                } catch (IOException e) {
+                    Log.e(TAG, "Error finding nearby incidents", e);
+                    postError(e);
+                }
+            }
+        });
+    }
+
+    private void postError(final IOException e) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (listener != null) {
+                    listener.onSearchError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds a new post (already appended to the journal, so it has an id) to the index.
+     */
+    public void add(final NewsItem item) {
+        searchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (indexLock) {
+                        dirty |= index().add(item);
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Error updating search index", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds every post the journal got since the index last saw one, like on load, and drops
+     * the ones that moved to the archive. For when the journal changed without going through
+     * add() (incidents that came from the server while the feed screen was not there to show
+     * them, or a compaction that archived posts).
+     */
+    public void catchUp() {
+        searchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (indexLock) {
+                        SearchIndex index = index();
+                        for (NewsItem item : journal.readSince(index.getLastId())) {
+                            dirty |= index.add(item);
+                        }
+                        if (journal.getArchiveGeneration() != prunedGeneration) {
+                            prune(index);
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Error updating search index", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Saves the index in the background if it changed. Call from the screen's onStop.
+     */
+    public void save() {
+        searchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (indexLock) {
+                    if (sharedIndex == null || !dirty) {
+                        return;
+                    }
+                    try {
+                        write(sharedIndex);
+                        dirty = false;
+                    } catch (IOException e) {
+                        Log.e(TAG, "Could not save search index", e); // Rebuilt from the journal next time
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops handing out results. Work already queued (like a save) still finishes.
+     * Call from the screen's onDestroy.
+     */
+    public void close() {
+        listener = null;
+        searchExecutor.shutdown();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * Returns the shared index, loading it and catching up with the journal on first use.
+     */
+    private SearchIndex index() throws IOException {
+        synchronized (indexLock) {
+            if (sharedIndex != null) {
+                return sharedIndex;
+            }
+            long start = System.nanoTime();
+            SearchIndex index = read();
+            if (index == null) {
+                index = new SearchIndex();
+                dirty = true;
+            }
+            // Only the posts the saved index has not seen yet
+            List<NewsItem> newer = journal.readSince(index.getLastId());
+            for (NewsItem item : newer) {
+                dirty |= index.add(item);
+            }
+            prune(index);
+            sharedIndex = index;
+            Log.d(TAG, "Search index ready: " + index.getTermCount() + " words, " + newer.size()
+                    + " posts added, " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return index;
+        }
+    }
+
+    /**
+     * Drops the posts that are no longer in the live journal. Called with indexLock held.
+     */
+    private void prune(SearchIndex index) throws IOException {
+        int generation = journal.getArchiveGeneration(); // Read first: archiving meanwhile means pruning again
+        dirty |= index.retainOnly(journal.liveIds());
+        prunedGeneration = generation;
+    }
+
+    private File indexFile() {
+        if (indexFile == null) {
+            indexFile = new File(appContext.getFilesDir(), FILE_NAME);
+        }
+        return indexFile;
+    }
+
+    private SearchIndex read() {
+        File indexFile = indexFile();
+        if (!indexFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            return SearchIndex.readFrom(in);
+        } catch (IOException e) {
+            Log.w(TAG, "Search index unreadable, rebuilding from the journal", e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes to a temp file and renames it over the old one, like BinaryContactStore.
+     */
+    private void write(SearchIndex index) throws IOException {
+        File indexFile = indexFile();
+        File temp = new File(indexFile.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream stream = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            index.writeTo(out);
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (!temp.renameTo(indexFile)) {
+            temp.delete();
+            throw new IOException("Could not rename " + temp);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.srm_campussaftey;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+ * Keeps the campus feed in step with the campus security server.
+ *
+ * FeedSyncEngine (core) does the work: it asks the server only for what changed since the
+ * saved cursor and backs off after failures. This class gives it a thread of its own (network
+ * calls must not hold up DiskIO), a Store that merges the incidents into the NewsJournal and
+ * keeps the cursor and ETag in CampusSafetyPrefs, and hands the results to the feed screen on
+ * the main thread.
+ *
+ * While the feed screen is open, IncidentStream (core) also keeps a connection to the server
+ * open, so new incidents show up within a second instead of on the next sync. It has a thread
+ * of its own too, since reading the stream blocks. When the screen goes into the background
+ * the stream stays up for STREAM_HIDDEN_MS (switching apps for a moment costs no reconnect),
+ * then closes to save battery; the next sync and the Last-Event-ID fill in the gap. What
+ * arrives while the screen is hidden waits in a bounded IncidentBuffer; if too much arrives,
+ * the feed just reloads from the journal when it comes back.
+ *
+ * The server address is the feed_sync_url string resource. While it is empty, sync is off
+ * and the feed only shows posts made on this device.
+ */
+public class FeedSync {
+
+    private static final String TAG = "FeedSync";
+
+    // --- Keys in CampusSafetyPrefs ---
+    static final String KEY_CURSOR = "FeedSyncCursor";
+    static final String KEY_ETAG = "FeedSyncETag";
+    static final String KEY_LAST_EVENT_ID = "FeedStreamLastEventId";
+    // --- End of Keys ---
+
+    private static final long STREAM_HIDDEN_MS = 60_000;
+    private static final int MAX_HIDDEN_CHANGES = 200; // More than this and the feed reloads instead
+
+    // Interface for the feed screen. Called on the main thread
+    public interface Listener {
+        void onIncidentsSynced(List<NewsItem> changed);
+
+        // Too much changed while the feed was hidden: load it again from the journal
+        void onFeedOutOfDate();
+    }
+
+    private static FeedSync instance;
+
+    private final FeedSyncEngine engine; // Null when no server is set up
+    private final IncidentStream stream; // Null when no server is set up
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // --- Main thread only ---
+    private Listener listener;
+    private boolean feedVisible;
+    private final IncidentBuffer hiddenChanges = new IncidentBuffer(MAX_HIDDEN_CHANGES);
+    // --- End Main thread only ---
+
+    private final Runnable stopStream = new Runnable() {
+        @Override
+        public void run() {
+            stream.stop();
+        }
+    };
+
+    /**
+     * Returns the shared instance. Touches no files and no network, so it is safe on the main thread.
+     */
+    public static synchronized FeedSync getInstance(Context context) {
+        if (instance == null) {
+            instance = new FeedSync(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private FeedSync(Context appContext) {
+        String url = appContext.getString(R.string.feed_sync_url);
+        if (TextUtils.isEmpty(url)) {
+            engine = null;
+            stream = null;
+            return;
+        }
+        final NewsJournal journal = NewsJournal.getInstance(appContext);
+        final SharedPreferences prefs = appContext.getSharedPreferences(FeedActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        FeedSyncEngine.Store store = new FeedSyncEngine.Store() {
+            @Override
+            public String getCursor() {
+                return prefs.getString(KEY_CURSOR, null);
+            }
+
+            @Override
+            public String getETag() {
+                return prefs.getString(KEY_ETAG, null);
+            }
+
+            @Override
+            public List<NewsItem> apply(List<NewsItem> incidents, String cursor, String etag) throws IOException {
+                // Incidents first, cursor second: a crash in between only means this page comes again
+                List<NewsItem> changed = journal.applyRemote(incidents);
+                prefs.edit().putString(KEY_CURSOR, cursor).putString(KEY_ETAG, etag).commit();
+                return changed;
+            }
+        };
+        engine = new FeedSyncEngine(new ExecutorScheduler("FeedSync"), new FeedSyncClient(url), store,
+                new FeedSyncEngine.Listener() {
+                    @Override
+                    public void onSynced(final List<NewsItem> changed) {
+                        Log.d(TAG, "Synced, " + changed.size() + " incidents added or changed");
+                        if (!changed.isEmpty()) {
+                            deliver(changed);
+                        }
+                    }
+
+                    @Override
+                    public void onSyncFailed(IOException e, long retryInMs) {
+                        Log.w(TAG, "Sync failed, retrying in " + retryInMs / 1000 + " s", e);
+                    }
+                });
+
+        IncidentStream.Store streamStore = new IncidentStream.Store() {
+            @Override
+            public String getLastEventId() {
+                return prefs.getString(KEY_LAST_EVENT_ID, null);
+            }
+
+            @Override
+            public List<NewsItem> apply(List<NewsItem> incidents, String lastEventId) throws IOException {
+                List<NewsItem> changed = journal.applyRemote(incidents);
+                prefs.edit().putString(KEY_LAST_EVENT_ID, lastEventId).commit();
+                return changed;
+            }
+        };
+        stream = new IncidentStream(new ExecutorScheduler("FeedStream"), url, streamStore,
+                new IncidentStream.Listener() {
+                    @Override
+                    public void onIncidents(List<NewsItem> changed) {
+                        deliver(changed);
+                    }
+
+                    @Override
+                    public void onDisconnected(IOException e, long reconnectInMs) {
+                        Log.w(TAG, "Stream lost, reconnecting in " + reconnectInMs / 1000 + " s", e);
+                    }
+                });
+    }
+
+    /**
+     * Hands changes to the feed screen if it is showing, or keeps them until it is.
+     * May be called from any thread.
+     */
+    private void deliver(final List<NewsItem> changed) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (feedVisible && listener != null) {
+                    listener.onIncidentsSynced(changed);
+                } else {
+                    hiddenChanges.addAll(changed);
+                }
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return engine != null;
+    }
+
+    /**
+     * Must be called on the main thread. A new screen loads the feed from the journal, so
+     * whatever was kept for the old one is dropped.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        hiddenChanges.clear();
+    }
+
+    /**
+     * Call from the feed screen's onStart (true) and onStop (false), on the main thread.
+     * Showing the feed opens the stream and hands over what arrived while it was hidden.
+     */
+    public void setFeedVisible(boolean visible) {
+        feedVisible = visible;
+        if (stream == null) {
+            return;
+        }
+        mainHandler.removeCallbacks(stopStream);
+        if (!visible) {
+            mainHandler.postDelayed(stopStream, STREAM_HIDDEN_MS);
+            return;
+        }
+        stream.start(); // Does nothing if it never closed
+        if (listener == null || hiddenChanges.isEmpty()) {
+            return;
+        }
+        if (hiddenChanges.isOverflowed()) {
+            hiddenChanges.clear();
+            listener.onFeedOutOfDate();
+        } else {
+            listener.onIncidentsSynced(hiddenChanges.drain());
+        }
+    }
+
+    /**
+     * Fetches what changed on the server, in the background. Cheap to call often: it does
+     * nothing right after a sync or while waiting to retry.
+     */
+    public void syncNow() {
+        if (engine != null) {
+            engine.requestSync();
+        }
+    }
+}
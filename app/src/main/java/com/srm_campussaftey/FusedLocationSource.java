@@ -0,0 +1,70 @@
+package com.srm_campussaftey;
+
+import android.annotation.SuppressLint;
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.location.CurrentLocationRequest;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.CancellationTokenSource;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+
+/*
+ * Gives SOSLocationFlow its fixes from Google's fused location provider.
+ * Results arrive on the main thread, so the flow must use a main-thread HandlerScheduler.
+ * The caller has already checked the location permission.
+ */
+class FusedLocationSource implements LocationSource {
+
+    private final FusedLocationProviderClient locationClient;
+
+    FusedLocationSource(FusedLocationProviderClient locationClient) {
+        this.locationClient = locationClient;
+    }
+
+    @SuppressLint("MissingPermission")
+    @Override
+    public void getLastFix(final Callback callback) {
+        locationClient.getLastLocation().addOnCompleteListener(new OnCompleteListener<Location>() {
+            @Override
+            public void onComplete(@NonNull Task<Location> task) {
+                callback.onResult(task.isSuccessful() ? toFix(task.getResult()) : null);
+            }
+        });
+    }
+
+    @SuppressLint("MissingPermission")
+    @Override
+    public Request getFreshFix(long maxWaitMs, final Callback callback) {
+        CurrentLocationRequest request = new CurrentLocationRequest.Builder()
+                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
+                .setDurationMillis(maxWaitMs) // The fused provider gives up (null result) after this
+                .setMaxUpdateAgeMillis(0)     // Must be a brand new fix
+                .build();
+        final CancellationTokenSource cancellation = new CancellationTokenSource();
+        locationClient.getCurrentLocation(request, cancellation.getToken())
+                .addOnCompleteListener(new OnCompleteListener<Location>() {
+                    @Override
+                    public void onComplete(@NonNull Task<Location> task) {
+                        callback.onResult(task.isSuccessful() ? toFix(task.getResult()) : null);
+                    }
+                });
+        return new Request() {
+            @Override
+            public void cancel() {
+                cancellation.cancel();
+            }
+        };
+    }
+
+    static LocationFix toFix(Location location) {
+        if (location == null) {
+            return null;
+        }
+        return new LocationFix(location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : -1, location.getElapsedRealtimeNanos());
+    }
+}
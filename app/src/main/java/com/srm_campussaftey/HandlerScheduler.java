@@ -0,0 +1,32 @@
+package com.srm_campussaftey;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/*
+ * Runs the SOS core classes on an Android Handler's thread.
+ * The clock is SystemClock.elapsedRealtimeNanos(), the same one Location fixes use.
+ */
+class HandlerScheduler implements Scheduler {
+
+    private final Handler handler;
+
+    HandlerScheduler(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public long nanoTime() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    @Override
+    public void post(Runnable task) {
+        handler.post(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        handler.postDelayed(task, delayMs);
+    }
+}
@@ -0,0 +1,237 @@
+package com.srm_campussaftey;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.location.Location;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.NotificationChannelCompat;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.Priority;
+
+/*
+ * Keeps sharing the location with the emergency contacts after an SOS ("live follow").
+ *
+ * A foreground service (with an ongoing notification and a "Stop sharing" button) so the
+ * location keeps coming when the screen is off or the app is closed. The decisions live in
+ * LiveFollowSession (core module); this class feeds it fixes from the fused location
+ * provider and the battery level, re-registers for fixes when it asks for another rate,
+ * and sends its messages through SOSManager. Everything runs on the main thread.
+ */
+public class LiveFollowService extends Service {
+
+    private static final String TAG = "LiveFollowService";
+
+    // --- Intent actions and notification ---
+    private static final String ACTION_START = "com.srm_campussaftey.LIVE_FOLLOW_START";
+    private static final String ACTION_STOP = "com.srm_campussaftey.LIVE_FOLLOW_STOP";
+    private static final String CHANNEL_ID = "live_follow";
+    private static final int NOTIFICATION_ID = 1001;
+    // --- End of Constants ---
+
+    private LiveFollowSession session;
+    private SOSDispatchPlan plan;
+    private FusedLocationProviderClient locationClient;
+    private boolean batteryReceiverRegistered;
+
+    /**
+     * Starts sharing after an SOS, if live follow is on, there is someone to share with and
+     * the location permission was granted. Does nothing if it is already running.
+     *
+     * @param context Any context.
+     * @param plan    The dispatch plan the SOS was sent with.
+     */
+    static void start(Context context, SOSDispatchPlan plan) {
+        if (plan.getLiveFollowPolicy() == null || plan.getContacts().isEmpty()) {
+            return;
+        }
+        if (ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
+                ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "No location permission, live follow not started.");
+            return;
+        }
+        Intent intent = new Intent(context, LiveFollowService.class).setAction(ACTION_START);
+        try {
+            ContextCompat.startForegroundService(context, intent);
+        } catch (IllegalStateException e) {
+            // Android may refuse to start a foreground service from the background
+            Log.w(TAG, "Could not start live follow", e);
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            if (session != null) {
+                session.stop("stopped by user");
+            } else {
+                stopSelf();
+            }
+            return START_NOT_STICKY;
+        }
+        if (session != null && !session.isFinished()) {
+            return START_NOT_STICKY; // Already sharing; a second SOS does not start another one
+        }
+
+        // startForegroundService() requires this within a few seconds, even if we stop right away
+        try {
+            ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(),
+                    Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION : 0);
+        } catch (RuntimeException e) {
+            // E.g. the location permission was revoked in the meantime
+            Log.e(TAG, "Could not go to the foreground", e);
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        plan = SOSManager.getArmedPlan();
+        if (plan == null || plan.getLiveFollowPolicy() == null) {
+            stopForegroundAndSelf();
+            return START_NOT_STICKY;
+        }
+        locationClient = SOSManager.getLocationClient(this);
+        session = new LiveFollowSession(new HandlerScheduler(new Handler(Looper.getMainLooper())),
+                plan.getLiveFollowPolicy(), sessionListener);
+
+        // The sticky broadcast gives the current level straight away, before the first fix rate is picked
+        Intent battery = ContextCompat.registerReceiver(this, batteryReceiver,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
+        batteryReceiverRegistered = true;
+        if (battery != null) {
+            onBatteryChanged(battery);
+        }
+        session.start();
+        Log.i(TAG, "Live follow started.");
+        // Not restarted by the system if killed: a restart would not know an SOS was going on
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (session != null) {
+            session.stop("service destroyed"); // Calls release() through onFinished
+        }
+        release();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null; // Not a bound service
+    }
+
+    // --- Session callbacks ---
+
+    private final LiveFollowSession.Listener sessionListener = new LiveFollowSession.Listener() {
+        @SuppressLint("MissingPermission") // Checked in start()
+        @Override
+        public void onUpdateRateChanged(long intervalMs, boolean highAccuracy) {
+            Log.d(TAG, "Fix every " + intervalMs + " ms, high accuracy: " + highAccuracy);
+            LocationRequest request = new LocationRequest.Builder(
+                    highAccuracy ? Priority.PRIORITY_HIGH_ACCURACY : Priority.PRIORITY_BALANCED_POWER_ACCURACY, intervalMs)
+                    .setMinUpdateIntervalMillis(intervalMs / 2)
+                    .build();
+            // Replaces the previous request made with the same callback
+            locationClient.requestLocationUpdates(request, locationCallback, Looper.getMainLooper());
+        }
+
+        @Override
+        public void onSend(String message) {
+            SOSManager.dispatchMessage(LiveFollowService.this, plan, message, -1);
+        }
+
+        @Override
+        public void onFinished(String reason, int updatesSent, int fixesReceived) {
+            Log.i(TAG, "Live follow finished (" + reason + "): " + updatesSent + " update(s) from " + fixesReceived + " fix(es).");
+            release();
+            stopForegroundAndSelf();
+        }
+    };
+
+    private final LocationCallback locationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            for (Location location : result.getLocations()) {
+                session.onFix(FusedLocationSource.toFix(location));
+            }
+        }
+    };
+
+    private final BroadcastReceiver batteryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onBatteryChanged(intent);
+        }
+    };
+
+    // --- Helpers ---
+
+    private void onBatteryChanged(Intent battery) {
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        boolean charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        session.onBatteryChanged(level >= 0 && scale > 0 ? level * 100 / scale : -1, charging);
+    }
+
+    /**
+     * Stops the location updates and the battery receiver. Safe to call more than once.
+     */
+    private void release() {
+        if (locationClient != null) {
+            locationClient.removeLocationUpdates(locationCallback);
+            locationClient = null;
+        }
+        if (batteryReceiverRegistered) {
+            unregisterReceiver(batteryReceiver);
+            batteryReceiverRegistered = false;
+        }
+    }
+
+    private void stopForegroundAndSelf() {
+        ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        stopSelf();
+    }
+
+    private Notification buildNotification() {
+        NotificationManagerCompat.from(this).createNotificationChannel(
+                new NotificationChannelCompat.Builder(CHANNEL_ID, NotificationManagerCompat.IMPORTANCE_LOW)
+                        .setName("Live location sharing")
+                        .build());
+        PendingIntent stopIntent = PendingIntent.getService(this, 0,
+                new Intent(this, LiveFollowService.class).setAction(ACTION_STOP), PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent openApp = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_menu_mylocation)
+                .setContentTitle("Sharing your live location")
+                .setContentText("Your emergency contacts get an SMS when you move.")
+                .setContentIntent(openApp)
+                .setOngoing(true)
+                .addAction(0, "Stop sharing", stopIntent)
+                .build();
+    }
+}
@@ -8,6 +8,7 @@ import android.Manifest;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.location.Location; // Correct Location import
 import android.net.Uri;
@@ -17,7 +18,10 @@ import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.Log; // <<<--- IMPORT ADDED
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button; // Correct Button import
+import android.widget.CompoundButton;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -28,15 +32,9 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat; // Correct ActivityCompat import
 import androidx.core.content.ContextCompat; // Correct ContextCompat import
 
-// --- Import FusedLocationProviderClient and related classes ---
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.tasks.OnSuccessListener;
-// --- End FusedLocationProviderClient Imports ---
-
-
 import com.google.android.material.button.MaterialButton; // Correct MaterialButton import
 
+import java.io.IOException;
 import java.util.ArrayList; // <<<--- IMPORT ADDED
 import java.util.List;
 import java.util.Map; // <<<--- IMPORT ADDED (needed for ActivityResultContracts)
@@ -51,11 +49,27 @@ public class MainActivity extends AppCompatActivity {
     private Button sosButton; // Main SOS is a Button
     private MaterialButton contactsButton; // Use MaterialButton
     private MaterialButton feedButton; // Use MaterialButton
+    private TextView sosStatusText; // Shows how many contacts the SOS reached
+    private TextView helperText; // Describes the volume-button shortcut; tap to change it
+    private CompoundButton locationWarmerSwitch; // Opt-in: keep a location ready for SOS
     // --- End UI element declaration ---
 
-    // --- Declare FusedLocationProviderClient ---
-    private FusedLocationProviderClient fusedLocationClient;
-    // --- End FusedLocationProviderClient Declaration ---
+    // Updates sosStatusText as the SMS engine reports sent/delivered/failed contacts
+    private final SmsDispatchEngine.Listener dispatchListener = new SmsDispatchEngine.Listener() {
+        @Override
+        public void onDispatchUpdate(DispatchSession.Summary summary) {
+            sosStatusText.setVisibility(View.VISIBLE);
+            String status = "SOS: " + summary.sent + "/" + summary.total + " sent, "
+                    + summary.delivered + " delivered";
+            if (summary.failed > 0) {
+                status += ", " + summary.failed + " failed";
+            }
+            if (!summary.complete) {
+                status += "...";
+            }
+            sosStatusText.setText(status);
+        }
+    };
 
     // Permission request launcher
     // Use Map<String, Boolean> for the result type
@@ -86,25 +100,32 @@ public class MainActivity extends AppCompatActivity {
                 checkAndPromptAccessibility();
             });
 
+    // Asks for "Allow all the time" location, so the location warmer also works in the background
+    private final ActivityResultLauncher<String> backgroundLocationLauncher =
+            registerForActivityResult(new ActivityResultContracts.RequestPermission(), granted -> {
+                if (!granted) {
+                    Toast.makeText(this, "Location will only be kept ready while the app is open.", Toast.LENGTH_LONG).show();
+                }
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
-
-        // --- Initialize FusedLocationProviderClient ---
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-        // --- End FusedLocationProviderClient Initialization ---
-
+        // The location client is created by SOSManager when an SOS first needs it, not here
 
         // --- Initialize UI Elements ---
         sosButton = findViewById(R.id.sosButton);
         contactsButton = findViewById(R.id.contactsButton);
         feedButton = findViewById(R.id.feedButton);
+        sosStatusText = findViewById(R.id.sosStatusText);
+        helperText = findViewById(R.id.helperTextView);
+        locationWarmerSwitch = findViewById(R.id.locationWarmerSwitch);
         // --- End Initialize UI Elements ---
 
 
         // Basic null check (Important!)
-        if (sosButton == null || contactsButton == null || feedButton == null) {
+        if (sosButton == null || contactsButton == null || feedButton == null || sosStatusText == null) {
             Log.e("MainActivity", "Error finding essential views! Check layout file (activity_main.xml) for correct IDs.");
             Toast.makeText(this, "Critical Error initializing screen. Cannot find buttons.", Toast.LENGTH_LONG).show();
             finish(); // Close the activity if views aren't found
@@ -112,8 +133,15 @@ public class MainActivity extends AppCompatActivity {
         }
 
 
-        // Check and request necessary permissions on startup
-        checkAndRequestPermissions(); // This now also handles Accessibility prompt
+        // Prepare the SOS contacts/message in the background so the button can send right away
+        SOSManager.armDispatchPlan(this);
+
+        // Permission checks, the permission dialog and the Accessibility check (which reads and
+        // splits a system setting) wait until the SOS button is on screen
+        runAfterFirstDraw(() -> {
+            reportFullyDrawn(); // The SOS button is usable from here; startup benchmarks measure up to this
+            checkAndRequestPermissions(); // This now also handles Accessibility prompt
+        });
 
 
         // --- Set Click Listeners ---
@@ -140,10 +168,67 @@ public class MainActivity extends AppCompatActivity {
             Intent intent = new Intent(MainActivity.this, FeedActivity.class);
             startActivity(intent);
         });
+
+        if (helperText != null) {
+            helperText.setOnClickListener(v -> showTriggerPatternDialog());
+            loadTriggerPattern();
+        }
+
+        if (locationWarmerSwitch != null) {
+            loadLocationWarmerSetting();
+        }
+
+        // Hidden entry to the SOS latency screen, only in debuggable builds
+        View titleView = findViewById(R.id.titleTextView);
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        if (titleView != null && debuggable) {
+            titleView.setOnLongClickListener(v -> {
+                startActivity(new Intent(MainActivity.this, DebugMetricsActivity.class));
+                return true;
+            });
+        }
         // --- End Click Listeners ---
 
     } // End of onCreate
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        SmsDispatchEngine.getInstance(this).addListener(dispatchListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        SmsDispatchEngine.getInstance(this).removeListener(dispatchListener);
+    }
+
+
+    /**
+     * Runs work once, right after the first frame of this screen has been drawn.
+     */
+    private void runAfterFirstDraw(Runnable work) {
+        final View content = findViewById(android.R.id.content);
+        content.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) {
+                    return;
+                }
+                drawn = true;
+                final ViewTreeObserver.OnDrawListener listener = this;
+                // Listeners can't be removed (or dialogs shown) in the middle of drawing,
+                // so the work is posted to run just after this frame
+                content.post(() -> {
+                    content.getViewTreeObserver().removeOnDrawListener(listener);
+                    work.run();
+                });
+            }
+        });
+    }
+
 
     /**
      * Checks if SMS and Location permissions are granted. If not, requests them.
@@ -219,6 +304,114 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
+    // --- Volume-button shortcut pattern ---
+
+    /**
+     * Reads the saved shortcut pattern (on the DiskIO thread) and shows it under the SOS button.
+     */
+    private void loadTriggerPattern() {
+        final Context appContext = getApplicationContext();
+        DiskIO.run(new DiskIO.Task<String>() {
+            @Override
+            public String call() {
+                return appContext.getSharedPreferences(ContactsActivity.PREFS_NAME, Context.MODE_PRIVATE)
+                        .getString(TriggerPattern.KEY_TRIGGER_PATTERNS, TriggerPattern.DEFAULT_PATTERNS);
+            }
+        }, new DiskIO.Callback<String>() {
+            @Override
+            public void onResult(String spec) {
+                showTriggerPattern(spec);
+            }
+
+            @Override
+            public void onError(IOException e) {
+                showTriggerPattern(TriggerPattern.DEFAULT_PATTERNS);
+            }
+        });
+    }
+
+    private void showTriggerPattern(String spec) {
+        String description;
+        try {
+            description = TriggerPattern.parseList(spec).get(0).describe();
+        } catch (IllegalArgumentException e) {
+            description = TriggerPattern.parse(TriggerPattern.DEFAULT_PATTERNS).describe();
+        }
+        helperText.setText(description + " for silent alert (tap to change)");
+    }
+
+    /**
+     * Lets the user pick one of the preset shortcut patterns. The accessibility service
+     * listens for the change and uses the new pattern straight away.
+     */
+    private void showTriggerPatternDialog() {
+        final String[] labels = new String[TriggerPattern.PRESETS.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = TriggerPattern.parse(TriggerPattern.PRESETS[i]).describe();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Silent SOS shortcut")
+                .setItems(labels, (dialog, which) -> {
+                    final String spec = TriggerPattern.PRESETS[which];
+                    final Context appContext = getApplicationContext();
+                    DiskIO.execute(() -> appContext.getSharedPreferences(ContactsActivity.PREFS_NAME, Context.MODE_PRIVATE)
+                            .edit().putString(TriggerPattern.KEY_TRIGGER_PATTERNS, spec).apply());
+                    showTriggerPattern(spec);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    // --- Location warmer ---
+
+    /**
+     * Reads the setting (on the DiskIO thread), shows it and starts the warmer if it is on.
+     */
+    private void loadLocationWarmerSetting() {
+        final Context appContext = getApplicationContext();
+        DiskIO.run(new DiskIO.Task<Boolean>() {
+            @Override
+            public Boolean call() {
+                return SOSLocationWarmer.isEnabled(appContext);
+            }
+        }, new DiskIO.Callback<Boolean>() {
+            @Override
+            public void onResult(Boolean enabled) {
+                locationWarmerSwitch.setChecked(enabled);
+                // Listen only now, so showing the saved value does not count as a change
+                locationWarmerSwitch.setOnCheckedChangeListener((button, checked) -> setLocationWarmerEnabled(checked));
+                if (enabled) {
+                    SOSLocationWarmer.start(appContext);
+                }
+            }
+
+            @Override
+            public void onError(IOException e) {
+                // Reading a preference does not throw
+            }
+        });
+    }
+
+    private void setLocationWarmerEnabled(boolean enabled) {
+        if (enabled && !hasLocationPermission()) {
+            Toast.makeText(this, "Location permission is needed to keep a location ready.", Toast.LENGTH_LONG).show();
+            locationWarmerSwitch.setChecked(false);
+            return;
+        }
+        final Context appContext = getApplicationContext();
+        DiskIO.execute(() -> appContext.getSharedPreferences(ContactsActivity.PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().putBoolean(LocationWarmer.KEY_ENABLED, enabled).apply());
+        if (!enabled) {
+            SOSLocationWarmer.stop();
+            return;
+        }
+        SOSLocationWarmer.start(appContext);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q &&
+                ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_BACKGROUND_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            backgroundLocationLauncher.launch(Manifest.permission.ACCESS_BACKGROUND_LOCATION);
+        }
+    }
+
     // --- Accessibility Service Check and Prompt ---
 
     /**
@@ -3,34 +3,83 @@ package com.srm_campussaftey;
 // Correct R import
 
 import android.content.Context;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /*
- * An Adapter is a "bridge" between your data (the List<NewsItem>) and the
+ * An Adapter is a "bridge" between your data (the FeedModel) and the
  * UI element that displays it (the RecyclerView).
  * - It inflates the layout for each row and binds the data to the views.
+ * - Only the pages loaded so far are shown; FeedActivity asks for more while scrolling.
+ * - The FeedModel reports row-level changes, so there is no notifyDataSetChanged here.
+ * - Binding only sets text prepared in the background (NewsRowPreparer): no date
+ *   formatting, no string building and no new objects per bind. A row that was not
+ *   prepared yet (a post that just arrived) or is out of date (resolved since) shows what
+ *   it has, while its new row is prepared on the DiskIO thread; then only that row is rebound.
+ * - A long press on a row is passed to the OnItemLongClickListener (resolving an incident).
  */
 public class NewsAdapter extends RecyclerView.Adapter<NewsAdapter.NewsViewHolder> {
 
+    // Payload for notifyItemChanged when a row arrives: same item, new text, no change animation
+    private static final Object ROW_PREPARED = new Object();
+
     private final Context context; // Need context for LayoutInflater
-    private final List<NewsItem> newsList;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, hh:mm a", Locale.getDefault());
+    private final FeedModel feedModel;
+    private final NewsRowPreparer rowPreparer;
+    private boolean descriptionParamsSet;
+    // Items whose row is being prepared in the background, with the row they had when it was asked for
+    private final Map<Long, NewsRow> pendingRows = new HashMap<>();
+    private LocationFix distanceOrigin; // When set, rows with a location also show how far away they are
+    private OnItemLongClickListener longClickListener;
+
+    // Interface to send long presses back to the Activity
+    public interface OnItemLongClickListener {
+        void onItemLongClick(NewsItem item);
+    }
 
     // Constructor updated to accept Context
-    public NewsAdapter(Context context, List<NewsItem> newsList) {
+    public NewsAdapter(Context context, FeedModel feedModel, NewsRowPreparer rowPreparer) {
         this.context = context;
-        this.newsList = newsList;
+        this.feedModel = feedModel;
+        this.rowPreparer = rowPreparer;
+        // Every item has a journal id, which lets RecyclerView keep rows stable while animating
+        setHasStableIds(true);
+    }
+
+    /**
+     * Shows "... m away" on every row with a location, measured from this fix. Pass null to hide it.
+     */
+    public void setDistanceOrigin(LocationFix origin) {
+        this.distanceOrigin = origin;
+    }
+
+    public LocationFix getDistanceOrigin() {
+        return distanceOrigin;
+    }
+
+    public void setOnItemLongClickListener(OnItemLongClickListener longClickListener) {
+        this.longClickListener = longClickListener;
+    }
+
+    /**
+     * Creates the first row before there is any data, so its text settings are known when
+     * the first page is prepared. The row goes into the RecyclerView's pool and is reused
+     * for the first item, so nothing is inflated twice.
+     */
+    public void createFirstRow(RecyclerView recyclerView) {
+        recyclerView.getRecycledViewPool().putRecycledView(createViewHolder(recyclerView, 0));
     }
 
     // Called when RecyclerView needs a new ViewHolder (a new row layout)
@@ -39,25 +88,135 @@ public class NewsAdapter extends RecyclerView.Adapter<NewsAdapter.NewsViewHolder
     public NewsViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         // Inflate (create) the XML layout for a single news item row
         View view = LayoutInflater.from(context).inflate(R.layout.list_item_news, parent, false);
-        return new NewsViewHolder(view);
+        final NewsViewHolder holder = new NewsViewHolder(view);
+        // Set once per row, not per bind, so binding still creates no objects
+        view.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                int position = holder.getBindingAdapterPosition();
+                if (longClickListener == null || position == RecyclerView.NO_POSITION) {
+                    return false;
+                }
+                longClickListener.onItemLongClick(feedModel.get(position));
+                return true;
+            }
+        });
+        // Descriptions are measured in the background with exactly this TextView's settings.
+        // Every row uses the same layout, so the first one is enough
+        if (!descriptionParamsSet) {
+            rowPreparer.setDescriptionParams(TextViewCompat.getTextMetricsParams(holder.descriptionTextView));
+            descriptionParamsSet = true;
+        }
+        return holder;
     }
 
     // Called when RecyclerView wants to display data at a specific position (row)
     @Override
     public void onBindViewHolder(@NonNull NewsViewHolder holder, int position) {
         // Get the data for the current row
-        NewsItem currentItem = newsList.get(position);
+        NewsItem currentItem = feedModel.get(position);
+        NewsRow row = feedModel.getRow(position);
+        if (!isReady(row)) {
+            // Not prepared yet, resolved since, or prepared for another "Near me" location.
+            // Show what there is now; the new row is prepared in the background
+            requestRow(currentItem, row);
+        }
 
         // Bind the data to the views inside the ViewHolder
         holder.titleTextView.setText(currentItem.getTitle());
-        holder.descriptionTextView.setText(currentItem.getDescription());
-        holder.timestampTextView.setText(dateFormat.format(new Date(currentItem.getTimestamp())));
+        if (row == null) {
+            holder.descriptionTextView.setText(currentItem.getDescription());
+            holder.timestampTextView.setText("");
+            return;
+        }
+        if (!setDescription(holder.descriptionTextView, row)) {
+            holder.descriptionTextView.setText(currentItem.getDescription());
+            if (isReady(row)) {
+                // Precompute is off from now on, so the new row gets the plain text
+                row = row.stale();
+                feedModel.setRow(position, row);
+                requestRow(currentItem, row);
+            }
+        }
+        holder.timestampTextView.setText(row.getWhen());
     }
 
-    // Called by RecyclerView to get the total number of items in the list
+    private boolean isReady(NewsRow row) {
+        return row != null && !row.isStale() && row.getOrigin() == distanceOrigin;
+    }
+
+    /**
+     * Prepares the row for an item on the DiskIO thread, then rebinds just that row. Asked
+     * once per item at a time, however often the row is bound meanwhile.
+     *
+     * @param current The row the item has now (may be null).
+     */
+    private void requestRow(final NewsItem item, NewsRow current) {
+        if (pendingRows.containsKey(item.getId())) {
+            return;
+        }
+        pendingRows.put(item.getId(), current);
+        final LocationFix origin = distanceOrigin;
+        DiskIO.run(new DiskIO.Task<NewsRow>() {
+            @Override
+            public NewsRow call() {
+                return rowPreparer.prepare(item, origin);
+            }
+        }, new DiskIO.Callback<NewsRow>() {
+            @Override
+            public void onResult(NewsRow prepared) {
+                NewsRow askedFor = pendingRows.remove(item.getId());
+                int position = feedModel.indexOf(item.getId());
+                if (position < 0) {
+                    return; // No longer in the list
+                }
+                NewsRow now = feedModel.getRow(position);
+                if (now != askedFor || origin != distanceOrigin) {
+                    // Changed again while it was being prepared (e.g. resolved): try again if needed
+                    if (!isReady(now)) {
+                        requestRow(feedModel.get(position), now);
+                    }
+                    return;
+                }
+                feedModel.setRow(position, prepared);
+                notifyItemChanged(position, ROW_PREPARED);
+            }
+
+            @Override
+            public void onError(IOException e) {
+                pendingRows.remove(item.getId()); // Preparing a row does no I/O
+            }
+        });
+    }
+
+    /**
+     * @return False if the TextView turned the measured text down (its settings no longer
+     *         match the ones it was measured with); the row then needs the plain text.
+     */
+    private boolean setDescription(TextView textView, NewsRow row) {
+        if (!(row.getDescription() instanceof PrecomputedTextCompat)) {
+            textView.setText(row.getDescription());
+            return true;
+        }
+        try {
+            TextViewCompat.setPrecomputedText(textView, (PrecomputedTextCompat) row.getDescription());
+            return true;
+        } catch (IllegalArgumentException e) {
+            Log.w("NewsAdapter", "Precomputed text rejected, measuring on bind from now on", e);
+            rowPreparer.disablePrecompute();
+            return false;
+        }
+    }
+
+    // Called by RecyclerView to get the number of rows loaded so far
     @Override
     public int getItemCount() {
-        return newsList.size();
+        return feedModel.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return feedModel.get(position).getId();
     }
 
     /*
@@ -80,4 +239,3 @@ public class NewsAdapter extends RecyclerView.Adapter<NewsAdapter.NewsViewHolder
         }
     }
 }
-
@@ -0,0 +1,1160 @@
+package com.srm_campussaftey;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.StrictMode;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * An append-only, on-disk journal of NewsItem records.
+ *
+ * Instead of rewriting the whole feed as one JSON string every time a post is added,
+ * each post is appended as a single small record to the end of the current "segment" file.
+ * When a segment fills up it is sealed and a new one is started. Once enough sealed
+ * segments pile up, they are merged into one on a background thread (compaction).
+ *
+ * Record layout inside a segment file:
+ *   [int length][byte format][long timestamp][long id][byte category][byte severity][byte status][payload bytes]
+ * where "length" counts everything after itself. New records are written as
+ * FORMAT_TAGGED: a BinaryCodec payload (no reflection, decoded straight from the file)
+ * behind a header that also holds the fields the feed filters on. FORMAT_BINARY and
+ * FORMAT_JSON records from older versions have no category/severity/status bytes; a
+ * segment holding any of them is rewritten as FORMAT_TAGGED, once, when it is opened.
+ *
+ * The timestamp, id and filter fields sit in the record header so the journal can keep
+ * small in-memory indexes (timestamp, id -> file position, and IncidentIndex for the feed
+ * filters) without decoding any payloads. That is what lets the feed load one page at a time.
+ *
+ * The status byte is at a fixed place in the header, so resolving an incident overwrites
+ * that one byte instead of appending a second copy of the post.
+ *
+ * Locations live in the payload, so the spatial index (GeoIndex) is only built the first
+ * time someone asks for incidents near them; after that appends keep it current. The same
+ * goes for the server ids of synced incidents (applyRemote).
+ *
+ * Retention: the journal only keeps the "live" feed (FeedRetentionPolicy: a max age and a
+ * max count). Compaction moves the oldest posts past those limits out of the sealed segments
+ * into a compressed FeedArchive (archive.bin), which is only read when the user asks for
+ * older posts (readArchived). So the headers read on open, the indexes in memory and the
+ * segment files stay the same size however long the feed's history gets. Compaction also
+ * runs right after opening when posts have aged out since the last run.
+ */
+public class NewsJournal {
+
+    private static final String TAG = "NewsJournal";
+
+    // --- Constants for the on-disk layout ---
+    public static final String DIR_NAME = "news_journal";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // A finished compaction waiting to replace its input segments (see compact)
+    private static final String MERGED_PREFIX = "merged-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    static final byte FORMAT_JSON = 1;   // Older versions, read only
+    static final byte FORMAT_BINARY = 2; // Older versions, read only
+    static final byte FORMAT_TAGGED = 3;
+    private static final int HEADER_SIZE = 1 + 8 + 8; // format + timestamp + id
+    private static final int TAGS_SIZE = 1 + 1 + 1;   // category + severity + status (FORMAT_TAGGED only)
+    private static final int STATUS_POSITION = 4 + HEADER_SIZE + 2; // From the start of the record
+    static final int MAX_RECORDS_PER_SEGMENT = 512;
+    static final int COMPACTION_TRIGGER_SEGMENTS = 4;
+    static final String ARCHIVE_FILE_NAME = "archive.bin";
+    // Posts are only archived this many at a time, so a post aging out does not mean a compaction
+    static final int MIN_ARCHIVE_BATCH = 128;
+    // --- End of Constants ---
+
+    private static NewsJournal instance;
+
+    private File directory; // Resolved on first open when created from a Context
+    private final Context appContext; // Null in tests
+    private boolean migrationChecked;
+    private final Gson gson = new Gson();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor();
+
+    // Segments that are full and will never be written again (oldest first)
+    private final List<File> sealedSegments = new ArrayList<>();
+    private File activeSegment;
+    private DataOutputStream activeOut;
+    private long activeLength;
+    private int activeRecordCount;
+    private int nextSegmentNumber = 1;
+    private long nextId = 1;
+    private boolean opened;
+    private boolean compactionRunning;
+    private FeedRetentionPolicy retention; // Null: keep everything (tests)
+    private FeedArchive archive; // Set up on open, but only read when asked for older posts
+    private int archiveGeneration; // Bumped each time posts move to the archive
+
+    // Where every record lives, sorted oldest to newest by (timestamp, id)
+    private final List<IndexEntry> index = new ArrayList<>();
+    // The same entries by id, for looking up search results
+    private final Map<Long, IndexEntry> entriesById = new HashMap<>();
+    // Incidents with a location, by grid cell. Built on the first readNear, then kept up to date
+    private GeoIndex geoIndex;
+    // Time, category and status indexes for the feed filters. Built from the headers on open
+    private final IncidentIndex incidentIndex = new IncidentIndex();
+    // Local id of every incident that came from the campus server, by server id. Built on the first applyRemote
+    private Map<String, Long> idsByRemoteId;
+    // Newest timestamp in the archive. Server incidents at or before it belong there, not in the live feed
+    private long archivedThrough = Long.MIN_VALUE;
+
+    /*
+     * One entry of the in-memory index: the sort key of a record, its filter fields and
+     * where to find it on disk.
+     */
+    private static final class IndexEntry {
+        final long timestamp;
+        final long id;
+        final byte format;
+        final int category;
+        int status;
+        int segment;
+        long offset;
+
+        IndexEntry(long timestamp, long id, byte format, int category, int status, int segment, long offset) {
+            this.timestamp = timestamp;
+            this.id = id;
+            this.format = format;
+            this.category = category;
+            this.status = status;
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Returns the shared journal stored in the app's private files directory.
+     * This touches no files, so it is safe on the main thread; the journal is opened (and
+     * any feed still saved in SharedPreferences moved into it) by the first read or write,
+     * which callers make on a background thread.
+     */
+    public static synchronized NewsJournal getInstance(Context context) {
+        if (instance == null) {
+            instance = new NewsJournal(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * A journal in the given directory, for tests. Keeps every post unless setRetention is called.
+     */
+    NewsJournal(File directory) {
+        this.directory = directory;
+        this.appContext = null;
+    }
+
+    synchronized void setRetention(FeedRetentionPolicy retention) {
+        this.retention = retention;
+    }
+
+    private NewsJournal(Context appContext) {
+        this.appContext = appContext;
+    }
+
+    /**
+     * Appends one item to the end of the journal. This writes a single record and
+     * never touches the existing ones, so the cost does not depend on the feed size.
+     * The item is given a unique id as part of the append.
+     */
+    public synchronized NewsItem append(NewsItem item) throws IOException {
+        ensureOpen();
+        item.setId(nextId++);
+        long offset = activeLength;
+        activeLength += writeRecord(activeOut, item);
+        activeOut.flush();
+        activeRecordCount++;
+        addToIndex(newEntry(item, segmentNumber(activeSegment), offset));
+        if (geoIndex != null) {
+            geoIndex.add(item);
+        }
+        if (idsByRemoteId != null && item.getRemoteId() != null) {
+            idsByRemoteId.put(item.getRemoteId(), item.getId());
+        }
+
+        if (activeRecordCount >= MAX_RECORDS_PER_SEGMENT) {
+            rollSegment();
+        }
+        return item;
+    }
+
+    /**
+     * Reads every item in the journal, in the order they were appended.
+     */
+    public synchronized List<NewsItem> readAll() throws IOException {
+        ensureOpen();
+        List<NewsItem> items = new ArrayList<>();
+        for (File segment : sealedSegments) {
+            readSegment(segment, items, null);
+        }
+        readSegment(activeSegment, items, null);
+        if (items.size() == entriesById.size()) {
+            return items;
+        }
+        // A record is on disk twice (see ensureOpen): return only the copy the index uses
+        List<NewsItem> unique = new ArrayList<>(entriesById.size());
+        Set<Long> seen = new HashSet<>();
+        for (int i = items.size() - 1; i >= 0; i--) {
+            if (seen.add(items.get(i).getId())) {
+                unique.add(items.get(i));
+            }
+        }
+        Collections.reverse(unique);
+        return unique;
+    }
+
+    /**
+     * Reads one page of the feed, newest first, using the (timestamp, id) of the last
+     * item the caller already has as the key. Only the records on the page are read
+     * from disk. Pass Long.MAX_VALUE for both to get the first page.
+     *
+     * @param beforeTimestamp Timestamp of the oldest item already loaded.
+     * @param beforeId        Id of the oldest item already loaded (breaks timestamp ties).
+     * @param limit           Maximum number of items to return.
+     * @return Items strictly older than the key, newest first. Empty when there are no more.
+     */
+    public synchronized List<NewsItem> readPage(long beforeTimestamp, long beforeId, int limit) throws IOException {
+        ensureOpen();
+        int end = lowerBound(beforeTimestamp, beforeId); // First entry that is NOT older than the key
+        int start = Math.max(0, end - limit);
+        List<IndexEntry> entries = new ArrayList<>();
+        for (int i = end - 1; i >= start; i--) {
+            entries.add(index.get(i));
+        }
+        return readEntries(entries);
+    }
+
+    /**
+     * Reads the items with the given ids (e.g. search results), in the same order.
+     * Ids that are not in the journal are left out.
+     */
+    public synchronized List<NewsItem> readByIds(long[] ids) throws IOException {
+        ensureOpen();
+        List<IndexEntry> entries = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            IndexEntry entry = entriesById.get(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return readEntries(entries);
+    }
+
+    /**
+     * Reads every item with an id above the given one, oldest first. Lets a cache that
+     * remembers the last id it saw catch up without reading the whole journal.
+     */
+    public synchronized List<NewsItem> readSince(long afterId) throws IOException {
+        ensureOpen();
+        List<IndexEntry> entries = new ArrayList<>();
+        for (IndexEntry entry : index) {
+            if (entry.id > afterId) {
+                entries.add(entry);
+            }
+        }
+        return readEntries(entries);
+    }
+
+    /**
+     * Reads the incidents reported within radiusMeters of a point since a given time,
+     * closest first. Only the grid cells around the point are looked at, and only the
+     * matching records are read from disk.
+     */
+    public synchronized List<NewsItem> readNear(double latitude, double longitude, double radiusMeters,
+                                                long sinceTimestamp, int limit) throws IOException {
+        ensureOpen();
+        if (geoIndex == null) {
+            buildGeoIndex();
+        }
+        List<GeoIndex.Hit> hits = geoIndex.findNear(latitude, longitude, radiusMeters, sinceTimestamp, limit);
+        List<IndexEntry> entries = new ArrayList<>(hits.size());
+        for (GeoIndex.Hit hit : hits) {
+            IndexEntry entry = entriesById.get(hit.id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return readEntries(entries);
+    }
+
+    /**
+     * One pass over every record to find the ones with a location.
+     */
+    private void buildGeoIndex() throws IOException {
+        long start = System.nanoTime();
+        GeoIndex built = new GeoIndex();
+        List<NewsItem> items = new ArrayList<>();
+        for (File segment : sealedSegments) {
+            readSegment(segment, items, null);
+        }
+        readSegment(activeSegment, items, null);
+        for (NewsItem item : items) {
+            built.add(item);
+        }
+        geoIndex = built;
+        Log.d(TAG, "Built geo index: " + built.size() + " of " + items.size() + " items have a location, "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Reads one page of the feed filtered by time, category and/or status, newest first.
+     * Works like readPage (same keys), but IncidentIndex picks the ids, so only matching
+     * records are read from disk.
+     */
+    public synchronized List<NewsItem> readFiltered(IncidentIndex.Filter filter, long beforeTimestamp, long beforeId,
+                                                    int limit) throws IOException {
+        if (filter.isAll()) {
+            return readPage(beforeTimestamp, beforeId, limit);
+        }
+        ensureOpen();
+        return readByIds(incidentIndex.query(filter, beforeTimestamp, beforeId, limit));
+    }
+
+    /**
+     * Reads one page of the posts that moved to the archive, newest first, like readFiltered
+     * (same keys, same filters). Slower than the live feed: whole archive blocks are inflated
+     * and filtered, so only call it when the user asks for older posts.
+     */
+    public List<NewsItem> readArchived(IncidentIndex.Filter filter, long beforeTimestamp, long beforeId,
+                                       int limit) throws IOException {
+        FeedArchive cold;
+        synchronized (this) {
+            ensureOpen();
+            cold = archive;
+        }
+        // The archive has its own lock, so the live feed is not held up meanwhile
+        return cold.readPage(filter.isAll() ? null : filter, beforeTimestamp, beforeId, limit);
+    }
+
+    /**
+     * True if any posts were ever moved to the archive.
+     */
+    public synchronized boolean hasArchive() throws IOException {
+        ensureOpen();
+        return archive.hasPosts();
+    }
+
+    /**
+     * Changes every time posts move to the archive, so caches holding post ids (FeedSearch)
+     * know when to drop the ones that left.
+     */
+    public synchronized int getArchiveGeneration() {
+        return archiveGeneration;
+    }
+
+    /**
+     * The ids of every post still in the live journal.
+     */
+    public synchronized BitSet liveIds() throws IOException {
+        ensureOpen();
+        BitSet ids = new BitSet(index.isEmpty() ? 0 : (int) Math.min(Integer.MAX_VALUE, nextId));
+        for (IndexEntry entry : index) {
+            if (entry.id <= Integer.MAX_VALUE) {
+                ids.set((int) entry.id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Marks an incident resolved (or open again). Overwrites the status byte of its record.
+     *
+     * @return False if there is no item with this id.
+     */
+    public synchronized boolean updateStatus(long id, int status) throws IOException {
+        ensureOpen();
+        IndexEntry entry = entriesById.get(id);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.status != status) {
+            writeStatus(segmentFile(entry.segment), entry.offset, status);
+            entry.status = status;
+            incidentIndex.put(entry.id, entry.timestamp, entry.category, status);
+        }
+        return true;
+    }
+
+    /**
+     * Merges incidents downloaded from the campus server (FeedSyncEngine), matched up by
+     * their server id: new ones are appended, known ones take the server's status (the
+     * only part of a post that changes after it is made). Applying the same incidents
+     * twice changes nothing.
+     *
+     * @return The incidents that were added or changed, with their local ids.
+     */
+    public synchronized List<NewsItem> applyRemote(List<NewsItem> incidents) throws IOException {
+        ensureOpen();
+        if (idsByRemoteId == null) {
+            buildRemoteIds();
+        }
+        List<NewsItem> changed = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (NewsItem incident : incidents) {
+            Long localId = idsByRemoteId.get(incident.getRemoteId());
+            if (localId == null) {
+                if (incident.getTimestamp() <= archivedThrough) {
+                    continue; // Archived already (and changed since), or older than posts that were
+                }
+                if (retention != null && retention.isExpired(incident.getTimestamp(), now)) {
+                    continue; // Already too old for the live feed
+                }
+                changed.add(append(incident));
+                continue;
+            }
+            IndexEntry entry = entriesById.get(localId);
+            if (entry != null && entry.status != incident.getStatus()) {
+                updateStatus(localId, incident.getStatus());
+                incident.setId(localId);
+                changed.add(incident);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * One pass over every record to find the ones that came from the server. Archived
+     * incidents are not listed; the archive's newest timestamp stands in for them.
+     */
+    private void buildRemoteIds() throws IOException {
+        archivedThrough = archive.newestTimestamp();
+        Map<String, Long> built = new HashMap<>();
+        for (NewsItem item : readAll()) {
+            if (item.getRemoteId() != null) {
+                built.put(item.getRemoteId(), item.getId());
+            }
+        }
+        idsByRemoteId = built;
+    }
+
+    /**
+     * Reads the records behind the given index entries, in order. Each segment file is
+     * opened once, however many of its records are needed.
+     */
+    private List<NewsItem> readEntries(List<IndexEntry> entries) throws IOException {
+        List<NewsItem> items = new ArrayList<>(entries.size());
+        Map<Integer, RandomAccessFile> openFiles = new HashMap<>();
+        BinaryCodec.Decoder decoder = new BinaryCodec.Decoder();
+        try {
+            for (IndexEntry entry : entries) {
+                RandomAccessFile file = openFiles.get(entry.segment);
+                if (file == null) {
+                    file = new RandomAccessFile(segmentFile(entry.segment), "r");
+                    openFiles.put(entry.segment, file);
+                }
+                NewsItem item = readRecordAt(file, entry.offset, decoder);
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+        } finally {
+            for (RandomAccessFile file : openFiles.values()) {
+                file.close();
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Returns how many items the journal holds.
+     */
+    public synchronized int size() throws IOException {
+        ensureOpen();
+        return index.size();
+    }
+
+    /**
+     * Moves the old single-string feed (FeedActivity.NEWS_KEY) into the journal, once.
+     * The migrated records are written to a temporary file and renamed into place, so a
+     * crash half way through never leaves a partly migrated feed behind.
+     */
+    synchronized void migrateFromPrefs(SharedPreferences prefs) {
+        String jsonNews = prefs.getString(FeedActivity.NEWS_KEY, null);
+        if (jsonNews == null) {
+            return;
+        }
+        try {
+            ensureOpen();
+            if (index.isEmpty()) {
+                StrictMode.noteSlowCall("Parsing old news feed JSON"); // Flags it if this ever runs on the main thread
+                Type type = new TypeToken<ArrayList<NewsItem>>() {}.getType();
+                List<NewsItem> oldItems = gson.fromJson(jsonNews, type);
+                if (oldItems != null && !oldItems.isEmpty()) {
+                    // Oldest first, so the journal keeps its "append order = time order" shape
+                    Collections.sort(oldItems, new Comparator<NewsItem>() {
+                        @Override
+                        public int compare(NewsItem o1, NewsItem o2) {
+                            return Long.compare(o1.getTimestamp(), o2.getTimestamp());
+                        }
+                    });
+                    closeActive();
+                    int migratedNumber = nextSegmentNumber++;
+                    File migrated = segmentFile(migratedNumber);
+                    File temp = new File(directory, migrated.getName() + TEMP_SUFFIX);
+                    List<IndexEntry> entries = new ArrayList<>();
+                    try (DataOutputStream out = openForAppend(temp)) {
+                        long offset = 0;
+                        for (NewsItem item : oldItems) {
+                            item.setId(nextId++);
+                            entries.add(newEntry(item, migratedNumber, offset));
+                            offset += writeRecord(out, item);
+                        }
+                    }
+                    if (!temp.renameTo(migrated)) {
+                        throw new IOException("Could not rename " + temp);
+                    }
+                    activeSegment.delete(); // It was empty, the migrated segment takes its place
+                    sealedSegments.add(migrated);
+                    for (IndexEntry entry : entries) {
+                        addToIndex(entry);
+                    }
+                    openNewActiveSegment();
+                    Log.i(TAG, "Migrated " + oldItems.size() + " news items from SharedPreferences.");
+                }
+            }
+            // Either migrated just now or by an earlier run that died before this point
+            prefs.edit().remove(FeedActivity.NEWS_KEY).commit();
+        } catch (Exception e) {
+            // Leave the old data in place so the migration is retried on the next start
+            Log.e(TAG, "Error migrating news feed from SharedPreferences", e);
+        }
+    }
+
+    /**
+     * Opens the journal directory: finds the existing segments, builds the index from the
+     * record headers, works out the next id, and cuts off any half-written record left at
+     * the end by a crash.
+     */
+    private void ensureOpen() throws IOException {
+        if (opened) {
+            return;
+        }
+        if (directory == null) {
+            directory = new File(appContext.getFilesDir(), DIR_NAME);
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create journal directory " + directory);
+        }
+
+        File[] files = directory.listFiles();
+        List<File> segments = new ArrayList<>();
+        List<File> mergedFiles = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    file.delete(); // Left over from an interrupted migration or compaction
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(file);
+                } else if (name.startsWith(MERGED_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    mergedFiles.add(file);
+                }
+            }
+        }
+        for (File merged : mergedFiles) {
+            finishMerge(merged, segments); // A compaction that was cut off after its merged file was complete
+        }
+        File[] sorted = segments.toArray(new File[0]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Integer.compare(segmentNumber(f1), segmentNumber(f2));
+            }
+        });
+
+        index.clear();
+        int lastSegmentRecords = 0;
+        for (File segment : sorted) {
+            int before = index.size();
+            long validLength = readSegment(segment, null, index);
+            if (validLength < segment.length()) {
+                Log.w(TAG, "Truncating torn record at the end of " + segment.getName());
+                try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+                    raf.setLength(validLength);
+                }
+            }
+            if (hasUntaggedRecords(before)) {
+                index.subList(before, index.size()).clear();
+                rewriteTagged(segment);
+                readSegment(segment, null, index);
+            }
+            lastSegmentRecords = index.size() - before;
+            nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(segment) + 1);
+        }
+        entriesById.clear();
+        List<IndexEntry> repeated = new ArrayList<>();
+        for (IndexEntry entry : index) {
+            nextId = Math.max(nextId, entry.id + 1);
+            IndexEntry earlier = entriesById.put(entry.id, entry);
+            if (earlier != null) {
+                repeated.add(earlier); // The same record in two segments: keep the copy read last
+            }
+            incidentIndex.put(entry.id, entry.timestamp, entry.category, entry.status);
+        }
+        if (!repeated.isEmpty()) {
+            Log.w(TAG, "Ignoring " + repeated.size() + " records that are in more than one segment.");
+            Set<IndexEntry> dropped = Collections.newSetFromMap(new IdentityHashMap<IndexEntry, Boolean>());
+            dropped.addAll(repeated);
+            index.removeAll(dropped);
+        }
+        sortIndex();
+
+        if (sorted.length > 0) {
+            // The newest segment keeps taking appends until it is full
+            for (int i = 0; i < sorted.length - 1; i++) {
+                sealedSegments.add(sorted[i]);
+            }
+            activeSegment = sorted[sorted.length - 1];
+            activeRecordCount = lastSegmentRecords;
+            activeLength = activeSegment.length();
+            activeOut = openForAppend(activeSegment);
+        } else {
+            openNewActiveSegment();
+        }
+        archive = new FeedArchive(new File(directory, ARCHIVE_FILE_NAME));
+        opened = true;
+        Log.d(TAG, "Opened journal with " + index.size() + " items in " + sorted.length + " segments.");
+
+        if (appContext != null && !migrationChecked) {
+            migrationChecked = true;
+            SharedPreferences prefs = appContext.getSharedPreferences(FeedActivity.PREFS_NAME, Context.MODE_PRIVATE);
+            retention = new FeedRetentionPolicy(
+                    prefs.getLong(FeedRetentionPolicy.KEY_MAX_AGE_MS, FeedRetentionPolicy.DEFAULT_MAX_AGE_MS),
+                    prefs.getInt(FeedRetentionPolicy.KEY_MAX_ITEMS, FeedRetentionPolicy.DEFAULT_MAX_ITEMS));
+            migrateFromPrefs(prefs);
+        }
+        if (hasPostsToArchive()) {
+            startCompaction(); // Posts aged out while the app was closed
+        }
+    }
+
+    private boolean hasUntaggedRecords(int from) {
+        for (int i = from; i < index.size(); i++) {
+            if (index.get(i).format != FORMAT_TAGGED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rewrites a segment from an older version with every record in FORMAT_TAGGED, so the
+     * filter fields are in the headers and the status byte can be overwritten in place.
+     * Only runs while opening, before anything else can touch the file. Written to a
+     * temporary file and renamed into place, like the migration.
+     */
+    private void rewriteTagged(File segment) throws IOException {
+        List<NewsItem> items = new ArrayList<>();
+        readSegment(segment, items, null);
+        File temp = new File(directory, segment.getName() + TEMP_SUFFIX);
+        try (DataOutputStream out = openForAppend(temp)) {
+            for (NewsItem item : items) {
+                writeRecord(out, item);
+            }
+        }
+        if (!temp.renameTo(segment)) {
+            temp.delete();
+            throw new IOException("Could not rename " + temp);
+        }
+        Log.i(TAG, "Upgraded " + items.size() + " records in " + segment.getName());
+    }
+
+    /**
+     * Seals the current segment and starts a new one. Schedules compaction when
+     * enough sealed segments have piled up, or posts have to leave for the archive.
+     */
+    private void rollSegment() throws IOException {
+        closeActive();
+        sealedSegments.add(activeSegment);
+        openNewActiveSegment();
+
+        if (sealedSegments.size() >= COMPACTION_TRIGGER_SEGMENTS || hasPostsToArchive()) {
+            startCompaction();
+        }
+    }
+
+    /**
+     * Compacts every sealed segment on the compaction thread, unless that is already running.
+     */
+    private void startCompaction() {
+        if (compactionRunning || sealedSegments.isEmpty()) {
+            return;
+        }
+        compactionRunning = true;
+        final List<File> toMerge = new ArrayList<>(sealedSegments);
+        compactionExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                compact(toMerge);
+            }
+        });
+    }
+
+    /**
+     * How many of the oldest posts the retention policy wants out of the live journal now.
+     */
+    private int archiveCount() {
+        if (retention == null || index.isEmpty()) {
+            return 0;
+        }
+        int expired = lowerBound(retention.cutoff(System.currentTimeMillis()), Long.MIN_VALUE);
+        return retention.countToArchive(index.size(), expired);
+    }
+
+    /**
+     * True when enough of the oldest posts are due for the archive, and they are in sealed
+     * segments (the only ones compaction rewrites).
+     */
+    private boolean hasPostsToArchive() {
+        return archiveCount() >= MIN_ARCHIVE_BATCH && index.get(0).segment != segmentNumber(activeSegment);
+    }
+
+    /**
+     * Picks the posts to archive: the oldest archiveCount() ones, as far as they are in the
+     * given (sealed) segments. Posts in the active segment wait until it is sealed.
+     *
+     * @return Their ids, with the status each one has right now.
+     */
+    private synchronized Map<Long, Integer> pickExpired(List<File> segments) {
+        Map<Long, Integer> expired = new HashMap<>();
+        int count = archiveCount();
+        if (count == 0) {
+            return expired;
+        }
+        List<Integer> numbers = new ArrayList<>();
+        for (File segment : segments) {
+            numbers.add(segmentNumber(segment));
+        }
+        for (int i = 0; i < count; i++) {
+            IndexEntry entry = index.get(i);
+            if (numbers.contains(entry.segment)) {
+                expired.put(entry.id, entry.status);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Merges the given sealed segments into one file. Runs on the compaction thread.
+     * The merged file is written next to the originals and only swapped in (under the
+     * journal lock) once it is complete, so readers always see a consistent set of files.
+     * Swapping it in is crash safe: the complete file is first renamed to
+     * "merged-<first>-<last>.log", then the inputs are deleted, then it is renamed to the
+     * first input's name. A crash before the first rename leaves the inputs, one after it
+     * is finished by the next open (finishMerge), so no record is ever on disk twice.
+     * Posts the retention policy no longer wants are left out of the merged file; they are
+     * added to the archive (and synced) first, so a crash never loses them. A crash between
+     * the two only means they are archived again next time (the archive skips repeats).
+     */
+    void compact(List<File> toMerge) {
+        int mergedNumber = Integer.MAX_VALUE;
+        int lastNumber = Integer.MIN_VALUE;
+        for (File segment : toMerge) {
+            mergedNumber = Math.min(mergedNumber, segmentNumber(segment));
+            lastNumber = Math.max(lastNumber, segmentNumber(segment));
+        }
+        File merged = segmentFile(mergedNumber);
+        File published = new File(directory, mergedName(mergedNumber, lastNumber));
+        File temp = new File(directory, published.getName() + TEMP_SUFFIX);
+        FeedArchive cold;
+        synchronized (this) {
+            cold = archive; // close() waits for this run to finish, so it is still set
+        }
+        try {
+            List<NewsItem> all = new ArrayList<>();
+            for (File segment : toMerge) {
+                readSegment(segment, all, null);
+            }
+            Map<Long, Integer> expiredStatus = pickExpired(toMerge);
+            List<NewsItem> items = new ArrayList<>(all.size() - expiredStatus.size());
+            List<NewsItem> expired = new ArrayList<>(expiredStatus.size());
+            Set<Long> seen = new HashSet<>();
+            for (NewsItem item : all) {
+                if (!seen.add(item.getId())) {
+                    continue; // Repeated by an older version's interrupted compaction
+                }
+                Integer status = expiredStatus.get(item.getId());
+                if (status == null) {
+                    items.add(item);
+                } else {
+                    item.setStatus(status); // Resolved since the segment was read
+                    expired.add(item);
+                }
+            }
+            cold.append(expired);
+
+            Map<Long, Long> newOffsets = new HashMap<>();
+            try (DataOutputStream out = openForAppend(temp)) {
+                long offset = 0;
+                for (NewsItem item : items) {
+                    newOffsets.put(item.getId(), offset);
+                    offset += writeRecord(out, item);
+                }
+            }
+
+            synchronized (this) {
+                if (!temp.renameTo(published)) {
+                    throw new IOException("Could not rename " + temp);
+                }
+                // From here on the merged file wins: if we stop now, the next open finishes the swap
+                for (File segment : toMerge) {
+                    segment.delete();
+                }
+                if (!published.renameTo(merged)) {
+                    throw new IOException("Could not rename " + published);
+                }
+                sealedSegments.removeAll(toMerge);
+                sealedSegments.add(0, merged);
+
+                // Point the index at the records' new home
+                for (IndexEntry entry : index) {
+                    Long offset = newOffsets.get(entry.id);
+                    if (offset != null) {
+                        entry.segment = mergedNumber;
+                        entry.offset = offset;
+                    }
+                }
+                // An incident resolved while the copy was being written still has its old
+                // status in the merged file
+                for (NewsItem item : items) {
+                    IndexEntry entry = entriesById.get(item.getId());
+                    if (entry != null && entry.status != item.getStatus()) {
+                        writeStatus(merged, entry.offset, entry.status);
+                    }
+                }
+                if (!expired.isEmpty()) {
+                    removeArchived(expiredStatus.keySet());
+                }
+            }
+            Log.d(TAG, "Compacted " + toMerge.size() + " segments (" + items.size() + " items, "
+                    + expired.size() + " moved to the archive).");
+        } catch (IOException e) {
+            temp.delete();
+            Log.e(TAG, "Journal compaction failed", e);
+        } finally {
+            synchronized (this) {
+                compactionRunning = false;
+                notifyAll(); // close() may be waiting
+            }
+        }
+    }
+
+    /**
+     * Closes the current segment. Used by tests and when the app is shutting the journal down.
+     * Waits for a running compaction first, so it never finds the journal half torn down.
+     */
+    synchronized void close() throws IOException {
+        while (compactionRunning) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for compaction", e);
+            }
+        }
+        closeActive();
+        opened = false;
+        sealedSegments.clear();
+        index.clear();
+        entriesById.clear();
+        incidentIndex.clear();
+        geoIndex = null;
+        idsByRemoteId = null;
+        archivedThrough = Long.MIN_VALUE;
+        archive = null;
+    }
+
+    /**
+     * Forgets posts that moved to the archive. Called with the journal lock held.
+     */
+    private void removeArchived(Set<Long> ids) {
+        List<IndexEntry> kept = new ArrayList<>(index.size() - ids.size());
+        for (IndexEntry entry : index) {
+            if (ids.contains(entry.id)) {
+                archivedThrough = Math.max(archivedThrough, entry.timestamp);
+                entriesById.remove(entry.id);
+                incidentIndex.remove(entry.id);
+            } else {
+                kept.add(entry);
+            }
+        }
+        index.clear();
+        index.addAll(kept);
+        if (idsByRemoteId != null) {
+            idsByRemoteId.values().removeAll(ids);
+        }
+        geoIndex = null; // Rebuilt from the live posts when next needed
+        archiveGeneration++;
+    }
+
+    // --- Index helpers ---
+
+    private static int compareKey(long timestamp1, long id1, long timestamp2, long id2) {
+        int result = Long.compare(timestamp1, timestamp2);
+        return result != 0 ? result : Long.compare(id1, id2);
+    }
+
+    /**
+     * Adds an entry, keeping the index sorted. Posts almost always arrive in time order,
+     * so this is normally a plain add at the end.
+     */
+    private void addToIndex(IndexEntry entry) {
+        entriesById.put(entry.id, entry);
+        incidentIndex.put(entry.id, entry.timestamp, entry.category, entry.status);
+        int size = index.size();
+        if (size == 0 || compareKey(index.get(size - 1).timestamp, index.get(size - 1).id, entry.timestamp, entry.id) <= 0) {
+            index.add(entry);
+        } else {
+            index.add(lowerBound(entry.timestamp, entry.id), entry);
+        }
+    }
+
+    /**
+     * Binary search for the position of the first entry that is not older than the given key.
+     */
+    private int lowerBound(long timestamp, long id) {
+        int low = 0;
+        int high = index.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            IndexEntry entry = index.get(mid);
+            if (compareKey(entry.timestamp, entry.id, timestamp, id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static IndexEntry newEntry(NewsItem item, int segment, long offset) {
+        return new IndexEntry(item.getTimestamp(), item.getId(), FORMAT_TAGGED, item.getCategory(), item.getStatus(),
+                segment, offset);
+    }
+
+    private void sortIndex() {
+        Collections.sort(index, new Comparator<IndexEntry>() {
+            @Override
+            public int compare(IndexEntry e1, IndexEntry e2) {
+                return compareKey(e1.timestamp, e1.id, e2.timestamp, e2.id);
+            }
+        });
+    }
+
+    // --- Segment helpers ---
+
+    private void openNewActiveSegment() throws IOException {
+        activeSegment = segmentFile(nextSegmentNumber++);
+        activeOut = openForAppend(activeSegment);
+        activeLength = 0;
+        activeRecordCount = 0;
+    }
+
+    private void closeActive() throws IOException {
+        if (activeOut != null) {
+            activeOut.close();
+            activeOut = null;
+        }
+    }
+
+    private File segmentFile(int number) {
+        return new File(directory, String.format(java.util.Locale.US, "%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    static String mergedName(int first, int last) {
+        return String.format(java.util.Locale.US, "%s%06d-%06d%s", MERGED_PREFIX, first, last, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Finishes a compaction that stopped after its merged file was complete: deletes the
+     * segments it replaces (numbers first to last) and puts it in place under the first
+     * one's name. Safe to repeat if this is cut off too.
+     *
+     * @param segments The segment files found on open; updated to match.
+     */
+    private void finishMerge(File merged, List<File> segments) throws IOException {
+        String name = merged.getName();
+        String[] range = name.substring(MERGED_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()).split("-");
+        int first = Integer.parseInt(range[0]);
+        int last = Integer.parseInt(range[1]);
+        for (Iterator<File> it = segments.iterator(); it.hasNext(); ) {
+            File segment = it.next();
+            int number = segmentNumber(segment);
+            if (number >= first && number <= last) {
+                segment.delete();
+                it.remove();
+            }
+        }
+        File target = segmentFile(first);
+        if (!merged.renameTo(target)) {
+            throw new IOException("Could not rename " + merged);
+        }
+        segments.add(target);
+        Log.i(TAG, "Finished an interrupted compaction of segments " + first + " to " + last);
+    }
+
+    private static int segmentNumber(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static DataOutputStream openForAppend(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /**
+     * Writes one record.
+     * @return The number of bytes written.
+     */
+    private int writeRecord(DataOutputStream out, NewsItem item) throws IOException {
+        byte[] payload = BinaryCodec.encodeNewsItem(item);
+        out.writeInt(HEADER_SIZE + TAGS_SIZE + payload.length);
+        out.writeByte(FORMAT_TAGGED);
+        out.writeLong(item.getTimestamp());
+        out.writeLong(item.getId());
+        out.writeByte(item.getCategory());
+        out.writeByte(item.getSeverity());
+        out.writeByte(item.getStatus());
+        out.write(payload);
+        return 4 + HEADER_SIZE + TAGS_SIZE + payload.length;
+    }
+
+    /**
+     * Overwrites the status byte of the record at the given offset. A single byte write,
+     * so a crash leaves either the old or the new status.
+     */
+    private static void writeStatus(File segment, long offset, int status) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(offset + STATUS_POSITION);
+            file.writeByte(status);
+        }
+    }
+
+    /**
+     * Decodes one payload, consuming exactly payloadLength bytes from the input.
+     * Returns null (after skipping it) if the format is unknown.
+     */
+    private NewsItem readPayload(DataInput in, byte format, int payloadLength, long timestamp, long id,
+                                 BinaryCodec.Decoder decoder) throws IOException {
+        if (format == FORMAT_TAGGED) {
+            int category = in.readByte();
+            int severity = in.readByte();
+            int status = in.readByte();
+            NewsItem item = decoder.readNewsItem(in, payloadLength - TAGS_SIZE, timestamp, id);
+            item.setCategory(category);
+            item.setSeverity(severity);
+            item.setStatus(status);
+            return item;
+        }
+        if (format == FORMAT_BINARY) {
+            return decoder.readNewsItem(in, payloadLength, timestamp, id);
+        }
+        if (format == FORMAT_JSON) {
+            StrictMode.noteSlowCall("Parsing JSON journal record");
+            byte[] payload = new byte[payloadLength];
+            in.readFully(payload);
+            return gson.fromJson(new String(payload, StandardCharsets.UTF_8), NewsItem.class);
+        }
+        Log.w(TAG, "Skipping record with unknown format " + format);
+        in.skipBytes(payloadLength);
+        return null;
+    }
+
+    private NewsItem readRecordAt(RandomAccessFile file, long offset, BinaryCodec.Decoder decoder) throws IOException {
+        file.seek(offset);
+        int length = file.readInt();
+        // One read for the whole record; RandomAccessFile is unbuffered
+        byte[] record = new byte[length];
+        file.readFully(record);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte format = in.readByte();
+        long timestamp = in.readLong();
+        long id = in.readLong();
+        return readPayload(in, format, length - HEADER_SIZE, timestamp, id, decoder);
+    }
+
+    /**
+     * Reads all complete records of a segment. Decoded items go into "items" and
+     * header-only index entries go into "entries"; either may be null. When only the
+     * index is wanted, payloads are skipped without being decoded.
+     *
+     * @return The number of bytes that hold complete records. Anything after that is a torn write.
+     */
+    private long readSegment(File segment, List<NewsItem> items, List<IndexEntry> entries) throws IOException {
+        if (segment == null || !segment.exists()) {
+            return 0;
+        }
+        int number = segmentNumber(segment);
+        long validLength = 0;
+        long fileLength = segment.length();
+        BinaryCodec.Decoder decoder = new BinaryCodec.Decoder();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+            while (validLength + 4 <= fileLength) {
+                int length = in.readInt();
+                if (length < HEADER_SIZE || validLength + 4 + length > fileLength) {
+                    break; // Torn or corrupt tail
+                }
+                byte format = in.readByte();
+                long timestamp = in.readLong();
+                long id = in.readLong();
+                int payloadLength = length - HEADER_SIZE;
+                // Older formats have no filter fields: "Other", still open
+                int category = NewsItem.CATEGORY_OTHER;
+                int status = NewsItem.STATUS_OPEN;
+                if (items != null) {
+                    NewsItem item = readPayload(in, format, payloadLength, timestamp, id, decoder);
+                    if (item != null) {
+                        items.add(item);
+                        category = item.getCategory();
+                        status = item.getStatus();
+                    }
+                } else if (format == FORMAT_TAGGED) {
+                    category = in.readByte();
+                    in.readByte(); // Severity is not indexed
+                    status = in.readByte();
+                    in.skipBytes(payloadLength - TAGS_SIZE);
+                } else {
+                    in.skipBytes(payloadLength);
+                }
+                if (entries != null) {
+                    entries.add(new IndexEntry(timestamp, id, format, category, status, number, validLength));
+                }
+                validLength += 4 + length;
+            }
+        } catch (EOFException e) {
+            // Treated the same as a torn tail
+        }
+        return validLength;
+    }
+}
@@ -0,0 +1,52 @@
+package com.srm_campussaftey;
+
+/*
+ * The text of one feed row, ready to put on screen: the description (already measured when
+ * it was prepared in the background, see NewsRowPreparer) and the "when" line with the
+ * formatted date and, for "Near me", the distance.
+ *
+ * Kept next to its item in the FeedModel, so binding a row only sets text that already exists.
+ * A stale row (its item changed since, e.g. it was resolved) is still shown until the new
+ * one has been prepared in the background.
+ */
+public final class NewsRow {
+
+    private final CharSequence description;
+    private final String when;
+    private final LocationFix origin; // The distance in "when" was measured from here, null if none
+    private final boolean stale;
+
+    NewsRow(CharSequence description, String when, LocationFix origin) {
+        this(description, when, origin, false);
+    }
+
+    private NewsRow(CharSequence description, String when, LocationFix origin, boolean stale) {
+        this.description = description;
+        this.when = when;
+        this.origin = origin;
+        this.stale = stale;
+    }
+
+    /**
+     * The same text, marked as out of date.
+     */
+    public NewsRow stale() {
+        return stale ? this : new NewsRow(description, when, origin, true);
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    public CharSequence getDescription() {
+        return description;
+    }
+
+    public String getWhen() {
+        return when;
+    }
+
+    public LocationFix getOrigin() {
+        return origin;
+    }
+}
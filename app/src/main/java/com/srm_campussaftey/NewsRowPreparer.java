@@ -0,0 +1,91 @@
+package com.srm_campussaftey;
+
+import androidx.core.text.PrecomputedTextCompat;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Builds the NewsRow for feed items before they are shown.
+ *
+ * Binding a row used to format the date (a new Date and a SimpleDateFormat call) every time
+ * it scrolled into view, and the description was measured on the main thread while the
+ * list was being laid out, which made long descriptions stutter during a fling. Now both
+ * happen once per item, on the DiskIO thread, while the page is loaded:
+ *  - the date (and distance) line is formatted,
+ *  - the description is measured with PrecomputedTextCompat, using the text settings of
+ *    the real row layout (taken from the first row NewsAdapter creates).
+ *
+ * prepare() may be called from any thread. Rows prepared before the settings are known
+ * (or with precompute off) carry the plain description; they still have the cached date.
+ */
+public class NewsRowPreparer {
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, hh:mm a", Locale.getDefault()); // Guarded by this
+    private volatile PrecomputedTextCompat.Params descriptionParams; // Null until the first row exists
+    private volatile boolean precomputeDisabled;
+
+    /**
+     * The text settings of the description TextView. Called on the main thread when the
+     * first row is created; later rows share the same layout, so the first one is enough.
+     */
+    public void setDescriptionParams(PrecomputedTextCompat.Params params) {
+        if (descriptionParams == null && !precomputeDisabled) {
+            descriptionParams = params;
+        }
+    }
+
+    /**
+     * Stops measuring descriptions in advance, e.g. after a TextView turned one down
+     * because its settings changed. Rows from then on carry the plain text.
+     */
+    public void disablePrecompute() {
+        precomputeDisabled = true;
+        descriptionParams = null;
+    }
+
+    /**
+     * Prepares the rows for a list of items (one row per item, in the same order).
+     * Meant for the DiskIO thread: measuring long descriptions takes a while.
+     *
+     * @param origin Where distances are measured from, or null to leave them out.
+     */
+    public List<NewsRow> prepare(List<NewsItem> items, LocationFix origin) {
+        List<NewsRow> rows = new ArrayList<>(items.size());
+        for (NewsItem item : items) {
+            rows.add(prepare(item, origin));
+        }
+        return rows;
+    }
+
+    /**
+     * Prepares one row. Also for the DiskIO thread (NewsAdapter asks for rows it is missing).
+     */
+    public NewsRow prepare(NewsItem item, LocationFix origin) {
+        String description = item.getDescription() == null ? "" : item.getDescription();
+        PrecomputedTextCompat.Params params = descriptionParams;
+        CharSequence text = params != null ? PrecomputedTextCompat.create(description, params) : description;
+        return new NewsRow(text, formatWhen(item, origin), origin);
+    }
+
+    // e.g. "Theft (High) - Oct 18, 09:30 PM - Resolved - 120 m away"
+    private String formatWhen(NewsItem item, LocationFix origin) {
+        String when;
+        synchronized (this) {
+            when = dateFormat.format(new Date(item.getTimestamp()));
+        }
+        when = NewsItem.categoryName(item.getCategory()) + " (" + NewsItem.SEVERITY_NAMES[item.getSeverity()] + ") - " + when;
+        if (item.isResolved()) {
+            when += " - Resolved";
+        }
+        if (origin != null && item.hasLocation()) {
+            double meters = GeoIndex.distanceMeters(origin.getLatitude(), origin.getLongitude(),
+                    item.getLatitude(), item.getLongitude());
+            when += " - " + Math.round(meters) + " m away";
+        }
+        return when;
+    }
+}
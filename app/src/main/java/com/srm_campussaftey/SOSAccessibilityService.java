@@ -4,16 +4,20 @@ package com.srm_campussaftey;
 import com.srm_campussaftey.R;
 
 import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
 import android.accessibilityservice.GestureDescription;
 import android.content.Context; // Import Context
 import android.content.Intent;
-import android.os.Handler;
-import android.os.Looper; // Corrected from Loos
+import android.content.SharedPreferences;
+import android.os.SystemClock;
 import android.util.Log; // Import Log
 import android.view.KeyEvent;
 import android.view.accessibility.AccessibilityEvent;
 import android.widget.Toast;
 
+import java.io.IOException;
+import java.util.List;
+
 
 /*
  * This is an Accessibility Service, which is a special background service.
@@ -22,27 +26,45 @@ import android.widget.Toast;
  *
  * IMPORTANT: This service must be manually enabled by the user in the phone's
  * Accessibility Settings for it to work. MainActivity prompts the user to do this.
+ *
+ * Which key pattern triggers SOS is up to the user (TriggerPattern, saved in
+ * CampusSafetyPrefs). The service listens for changes to that setting and swaps the
+ * new patterns into its TriggerEngine, so no restart is needed.
+ *
+ * It is a key-filter-only service: accessibility_service_config.xml asks for no
+ * accessibility events and no window content, so the system doesn't build an event for
+ * every UI change in every app just to hand it to us. The counters below (shown on the
+ * debug metrics screen) are there to check that no events arrive.
  */
 public class SOSAccessibilityService extends AccessibilityService {
 
     private static final String TAG = "SOSAccessibilityService";
-    private static final int PRESS_THRESHOLD = 3; // Number of presses needed
-    private static final long TIME_WINDOW_MS = 2000; // Time window in milliseconds (2 seconds)
-
-    private int volumeDownPressCount = 0;
-    private long lastVolumeDownPressTime = 0;
-    private final Handler handler = new Handler(Looper.getMainLooper());
-    private final Runnable resetCounterRunnable = new Runnable() {
-        @Override
-        public void run() {
-            volumeDownPressCount = 0;
-            Log.d(TAG, "Volume down press counter reset due to timeout.");
-        }
-    };
+
+    // --- Delivery counters (main thread only) ---
+    static final EventRateCounter accessibilityEvents = new EventRateCounter(); // Should stay at 0
+    static final EventRateCounter keyEvents = new EventRateCounter();
+    // --- End delivery counters ---
+
+    // Starts with the default pattern; the saved one is loaded in onServiceConnected
+    private final TriggerEngine triggerEngine = new TriggerEngine(TriggerPattern.parseList(TriggerPattern.DEFAULT_PATTERNS));
+    private SharedPreferences prefs;
+    // Kept in a field: SharedPreferences only holds on to its listeners weakly
+    private final SharedPreferences.OnSharedPreferenceChangeListener patternListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                    if (TriggerPattern.KEY_TRIGGER_PATTERNS.equals(key)) {
+                        triggerEngine.setPatterns(readPatterns(sharedPreferences));
+                        Log.i(TAG, "Trigger patterns reloaded: " + triggerEngine.getPatterns());
+                    }
+                }
+            };
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        // We don't need to handle general accessibility events for this feature.
+        // We don't need to handle general accessibility events for this feature, and the
+        // config asks for none. Counted so the debug screen shows if any still get through.
+        accessibilityEvents.record(SystemClock.elapsedRealtime());
     }
 
     @Override
@@ -53,73 +75,130 @@ public class SOSAccessibilityService extends AccessibilityService {
 
     @Override
     protected boolean onKeyEvent(KeyEvent event) {
-        int action = event.getAction();
+        keyEvents.record(SystemClock.elapsedRealtime());
         int keyCode = event.getKeyCode();
 
-        // We only care about KEY DOWN events for the Volume Down button
-        if (action == KeyEvent.ACTION_DOWN && keyCode == KeyEvent.KEYCODE_VOLUME_DOWN) {
-            long currentTime = System.currentTimeMillis();
-            Log.d(TAG, "Volume Down Pressed. Count: " + (volumeDownPressCount + 1));
-
-            // Remove any pending reset runnable
-            handler.removeCallbacks(resetCounterRunnable);
-
-            // Check if this press is within the time window of the previous press
-            if (currentTime - lastVolumeDownPressTime <= TIME_WINDOW_MS) {
-                volumeDownPressCount++;
-            } else {
-                // First press or outside time window, reset count to 1
-                volumeDownPressCount = 1;
-            }
-
-            lastVolumeDownPressTime = currentTime;
-
-            // Check if threshold is met
-            if (volumeDownPressCount >= PRESS_THRESHOLD) {
-                Log.i(TAG, "SOS Triggered via Volume Down!");
-                Toast.makeText(this, "SOS Triggered!", Toast.LENGTH_SHORT).show();
+        // We only care about the volume buttons
+        if (keyCode != KeyEvent.KEYCODE_VOLUME_DOWN && keyCode != KeyEvent.KEYCODE_VOLUME_UP) {
+            // Let the system handle other key events
+            return super.onKeyEvent(event);
+        }
 
-                // Reset count immediately after triggering
-                volumeDownPressCount = 0;
+        // Called on every press, so no logging or other allocation until a pattern matches.
+        // Event times are uptime, which doesn't jump when the wall clock is changed.
+        int matched = triggerEngine.onKey(keyCode, event.getAction() == KeyEvent.ACTION_DOWN,
+                event.getRepeatCount(), event.getEventTime());
+        if (matched == TriggerEngine.NO_MATCH) {
+            // Allow the volume to change normally
+            return false;
+        }
 
-                // --- Trigger the SOS action ---
-                // Get the application context for the SOSManager
-                Context context = getApplicationContext();
-                // Send SOS without location since we are in the background service
-                SOSManager.sendSOS(context, false); // Pass context and false for includeLocation <<<--- FIXED THIS CALL
+        // How long the key event waited before we recognised the pattern
+        SOSTracer.record(SOSTracer.Stage.KEY_DETECT, (SystemClock.uptimeMillis() - event.getEventTime()) * 1_000_000L);
+        Log.i(TAG, "SOS Triggered via " + triggerEngine.getPatterns().get(matched).describe());
+        Toast.makeText(this, "SOS Triggered!", Toast.LENGTH_SHORT).show();
 
-                // --- Important: Consume the event ---
-                // Return true to prevent the volume from actually changing
-                return true;
+        // --- Trigger the SOS action ---
+        // Get the application context for the SOSManager
+        Context context = getApplicationContext();
+        // Send SOS without location since we are in the background service
+        SOSManager.sendSOS(context, false); // Pass context and false for includeLocation
 
-            } else {
-                // If threshold not met, schedule a reset after the time window
-                handler.postDelayed(resetCounterRunnable, TIME_WINDOW_MS);
-            }
+        // --- Important: Consume the event ---
+        // Return true to prevent the volume from actually changing
+        return true;
+    }
 
-            // Return false if we haven't triggered SOS, allowing volume to change normally.
-            // If we returned true above, the volume change is blocked.
-            return false;
+    /**
+     * Reads the saved trigger patterns, falling back to the default if they can't be parsed.
+     */
+    static List<TriggerPattern> readPatterns(SharedPreferences prefs) {
+        String spec = prefs.getString(TriggerPattern.KEY_TRIGGER_PATTERNS, TriggerPattern.DEFAULT_PATTERNS);
+        try {
+            return TriggerPattern.parseList(spec);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Bad trigger patterns \"" + spec + "\", using the default", e);
+            return TriggerPattern.parseList(TriggerPattern.DEFAULT_PATTERNS);
         }
-
-        // Let the system handle other key events
-        return super.onKeyEvent(event);
     }
 
     @Override
     protected void onServiceConnected() {
         super.onServiceConnected();
         Log.i(TAG, "Accessibility Service Connected.");
+        useKeyFilterOnly();
+        long now = SystemClock.elapsedRealtime();
+        accessibilityEvents.start(now);
+        keyEvents.start(now);
+        // Get the SOS dispatch plan ready before the first shortcut press
+        SOSManager.armDispatchPlan(this);
+        // Finish any SOS that was cut off when the app was killed
+        SmsDispatchEngine.getInstance(this).resumeUnfinished();
+        // Keep a fix ready for the shortcut, if the user turned that on
+        SOSLocationWarmer.startIfEnabled(this);
+        loadPatterns();
         // Configuration is done via XML (accessibility_service_config.xml)
         // Ensure you have android:canRetrieveWindowContent="false" if you don't need screen content
         // Ensure you have android:accessibilityFlags="flagRequestFilterKeyEvents"
     }
 
+    /**
+     * Makes sure the service only gets key events, even if an older config (with a dozen
+     * event types and window content) is still cached by the system.
+     */
+    private void useKeyFilterOnly() {
+        AccessibilityServiceInfo info = getServiceInfo();
+        if (info == null) {
+            return;
+        }
+        info.eventTypes = 0; // No accessibility events
+        info.flags = AccessibilityServiceInfo.FLAG_REQUEST_FILTER_KEY_EVENTS;
+        setServiceInfo(info);
+    }
+
+    /**
+     * Events delivered since the service connected, for the debug metrics screen.
+     */
+    static String formatEventCounts() {
+        long now = SystemClock.elapsedRealtime();
+        return "Accessibility events: " + accessibilityEvents.format(now) + "\n"
+                + "Key events: " + keyEvents.format(now) + "\n";
+    }
+
+    /**
+     * Loads the user's trigger patterns on the DiskIO thread and starts listening for changes.
+     */
+    private void loadPatterns() {
+        final Context appContext = getApplicationContext();
+        DiskIO.run(new DiskIO.Task<SharedPreferences>() {
+            @Override
+            public SharedPreferences call() {
+                SharedPreferences loaded = appContext.getSharedPreferences(ContactsActivity.PREFS_NAME, Context.MODE_PRIVATE);
+                loaded.getAll(); // Waits for the file to be read here rather than on the main thread
+                return loaded;
+            }
+        }, new DiskIO.Callback<SharedPreferences>() {
+            @Override
+            public void onResult(SharedPreferences loaded) {
+                prefs = loaded;
+                prefs.registerOnSharedPreferenceChangeListener(patternListener);
+                triggerEngine.setPatterns(readPatterns(prefs));
+                Log.i(TAG, "Trigger patterns: " + triggerEngine.getPatterns());
+            }
+
+            @Override
+            public void onError(IOException e) {
+                // Reading SharedPreferences doesn't throw; the default pattern stays in place
+            }
+        });
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
-        // Clean up handler callbacks if the service is destroyed
-        handler.removeCallbacks(resetCounterRunnable);
+        if (prefs != null) {
+            prefs.unregisterOnSharedPreferenceChangeListener(patternListener);
+        }
         Log.i(TAG, "Accessibility Service Destroyed.");
     }
 }
@@ -0,0 +1,109 @@
+package com.srm_campussaftey;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.telephony.SmsManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Everything SOSManager needs to send an alert, prepared ahead of time ("armed").
+ *
+ * Building this means reading and decoding the contacts file, which
+ * we do not want to do in the middle of an emergency. SOSManager keeps one plan ready
+ * and ContactsActivity swaps in a new one whenever the contacts change, so pressing SOS
+ * goes straight to sending.
+ */
+public class SOSDispatchPlan {
+
+    private final List<Contact> contacts; // Phone numbers already normalized
+    private final String messagePrefix;
+    private final SmsManager smsManager;
+    private final SOSLocationPolicy locationPolicy;
+    private final LiveFollowPolicy liveFollowPolicy; // Null if live follow is turned off
+
+    private SOSDispatchPlan(List<Contact> contacts, String messagePrefix, SmsManager smsManager,
+                            SOSLocationPolicy locationPolicy, LiveFollowPolicy liveFollowPolicy) {
+        this.contacts = contacts;
+        this.messagePrefix = messagePrefix;
+        this.smsManager = smsManager;
+        this.locationPolicy = locationPolicy;
+        this.liveFollowPolicy = liveFollowPolicy;
+    }
+
+    /**
+     * Creates a plan from an already loaded list of contacts. Apart from the location
+     * and live follow settings (read from the already cached CampusSafetyPrefs) this does no disk I/O.
+     *
+     * @param context  Used to look up the SmsManager and the location settings.
+     * @param contacts The saved emergency contacts.
+     */
+    public static SOSDispatchPlan create(Context context, List<Contact> contacts) {
+        List<Contact> normalized = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            normalized.add(new Contact(contact.getName(), Contact.normalizePhone(contact.getPhone())));
+        }
+        SharedPreferences prefs = context.getSharedPreferences(ContactsActivity.PREFS_NAME, Context.MODE_PRIVATE);
+        return new SOSDispatchPlan(Collections.unmodifiableList(normalized), SOSMessageBuilder.MESSAGE_PREFIX,
+                resolveSmsManager(context), readLocationPolicy(prefs), readLiveFollowPolicy(prefs));
+    }
+
+    /**
+     * Reads the location settings from SharedPreferences, falling back to the defaults.
+     */
+    static SOSLocationPolicy readLocationPolicy(SharedPreferences prefs) {
+        return new SOSLocationPolicy(
+                prefs.getLong(SOSLocationPolicy.KEY_BUDGET_MS, SOSLocationPolicy.DEFAULT_BUDGET_MS),
+                prefs.getLong(SOSLocationPolicy.KEY_MAX_FIX_AGE_MS, SOSLocationPolicy.DEFAULT_MAX_FIX_AGE_MS),
+                prefs.getLong(SOSLocationPolicy.KEY_FRESH_FIX_AGE_MS, SOSLocationPolicy.DEFAULT_FRESH_FIX_AGE_MS),
+                prefs.getInt(SOSLocationPolicy.KEY_GOOD_ACCURACY_METERS, SOSLocationPolicy.DEFAULT_GOOD_ACCURACY_METERS));
+    }
+
+    /**
+     * Reads the live follow settings, or returns null if live follow is turned off.
+     */
+    static LiveFollowPolicy readLiveFollowPolicy(SharedPreferences prefs) {
+        if (!prefs.getBoolean(LiveFollowPolicy.KEY_ENABLED, LiveFollowPolicy.DEFAULT_ENABLED)) {
+            return null;
+        }
+        return new LiveFollowPolicy(
+                prefs.getLong(LiveFollowPolicy.KEY_DURATION_MS, LiveFollowPolicy.DEFAULT_DURATION_MS),
+                prefs.getLong(LiveFollowPolicy.KEY_SMS_INTERVAL_MS, LiveFollowPolicy.DEFAULT_SMS_INTERVAL_MS));
+    }
+
+    static SmsManager resolveSmsManager(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            SmsManager smsManager = context.getSystemService(SmsManager.class);
+            if (smsManager != null) {
+                return smsManager;
+            }
+        }
+        return SmsManager.getDefault();
+    }
+
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    public String getMessagePrefix() {
+        return messagePrefix;
+    }
+
+    public SmsManager getSmsManager() {
+        return smsManager;
+    }
+
+    public SOSLocationPolicy getLocationPolicy() {
+        return locationPolicy;
+    }
+
+    /**
+     * How to share the live location after an SOS, or null if that is turned off.
+     */
+    public LiveFollowPolicy getLiveFollowPolicy() {
+        return liveFollowPolicy;
+    }
+}
@@ -0,0 +1,93 @@
+package com.srm_campussaftey;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+
+import java.util.Map;
+
+/*
+ * Connects one run of SOSLocationFlow (the cached-fix-first, budgeted refinement logic in
+ * the core module) to the phone: fixes come from the fused location provider, messages go
+ * out through SOSManager, and the spans are recorded in SOSTracer. If the location warmer
+ * (SOSLocationWarmer) holds a usable fix, that is the "last known fix" and the provider is
+ * not asked for it.
+ */
+class SOSLocationPipeline {
+
+    private static final String TAG = "SOSLocationPipeline";
+
+    private final Context context;
+    private final SOSDispatchPlan plan;
+    private final FusedLocationProviderClient locationClient;
+    private final long triggerNanos;
+
+    SOSLocationPipeline(Context context, SOSDispatchPlan plan, FusedLocationProviderClient locationClient, long triggerNanos) {
+        this.context = context;
+        this.plan = plan;
+        this.locationClient = locationClient;
+        this.triggerNanos = triggerNanos;
+    }
+
+    /**
+     * Starts the flow on the main thread. The caller has already checked the location permission.
+     */
+    void start() {
+        final FusedLocationSource fusedSource = new FusedLocationSource(locationClient);
+        final long maxFixAgeMs = plan.getLocationPolicy().getMaxFixAgeMs();
+        LocationSource source = new LocationSource() {
+            @Override
+            public void getLastFix(Callback callback) {
+                LocationFix warm = SOSLocationWarmer.lookup(maxFixAgeMs);
+                if (warm != null) {
+                    callback.onResult(warm); // Already in memory, no round trip to Play services
+                } else {
+                    fusedSource.getLastFix(callback);
+                }
+            }
+
+            @Override
+            public Request getFreshFix(long maxWaitMs, Callback callback) {
+                return fusedSource.getFreshFix(maxWaitMs, callback);
+            }
+        };
+        SOSLocationFlow flow = new SOSLocationFlow(
+                new HandlerScheduler(new Handler(Looper.getMainLooper())),
+                source,
+                plan.getLocationPolicy(),
+                plan.getMessagePrefix(),
+                triggerNanos,
+                new SOSLocationFlow.Listener() {
+                    @Override
+                    public void onSend(String message, boolean followUp) {
+                        // Only the first message counts towards trigger-to-send latency
+                        SOSManager.dispatchMessage(context, plan, message, followUp ? -1 : triggerNanos);
+                    }
+
+                    @Override
+                    public void onSpan(SOSLocationFlow.Span span, long nanos) {
+                        switch (span) {
+                            case CACHED_FIX:
+                                SOSTracer.record(SOSTracer.Stage.LOCATION_CACHED, nanos);
+                                break;
+                            case REFINED_FIX:
+                                SOSTracer.record(SOSTracer.Stage.LOCATION_REFINED, nanos);
+                                break;
+                            case MESSAGE_BUILD:
+                                SOSTracer.record(SOSTracer.Stage.MESSAGE_BUILD, nanos);
+                                break;
+                        }
+                    }
+
+                    @Override
+                    public void onFinished(String reason, Map<String, Long> stageTimings) {
+                        Log.i(TAG, "Location pipeline finished (" + reason + "). Stage timings (ms): " + stageTimings);
+                        SOSManager.recordStageTimings(stageTimings);
+                    }
+                });
+        flow.start();
+    }
+}
@@ -0,0 +1,195 @@
+package com.srm_campussaftey;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.BatteryManager;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+
+import java.io.IOException;
+
+/*
+ * Opt-in background location "pre-warming": keeps a recent fix in memory so both SOS paths
+ * can attach a location right away. The volume shortcut used to always send "location
+ * unknown", and the button had to wait for the provider's answer.
+ *
+ * LocationWarmer (core module) holds the fix, picks the request rate (balanced accuracy,
+ * backing off while the phone does not move, passive on low battery) and counts hits.
+ * This class requests the fixes from the fused location provider. Started by MainActivity and
+ * SOSAccessibilityService when the setting is on; the service keeps the process alive.
+ * Fixes after the app left the screen need the "Allow all the time" location permission
+ * (Android 10+); without it the cache only stays warm while the app is open.
+ *
+ * Main thread only, except lookup().
+ */
+final class SOSLocationWarmer {
+
+    private static final String TAG = "SOSLocationWarmer";
+
+    private static LocationWarmer warmer; // Null while off
+    private static volatile LocationWarmer activeWarmer; // For lookup() from any thread
+    private static Context appContext;
+    private static FusedLocationProviderClient locationClient;
+
+    private SOSLocationWarmer() {
+    }
+
+    /**
+     * Reads the setting on the DiskIO thread and starts the warmer if it is on.
+     */
+    static void startIfEnabled(Context context) {
+        final Context app = context.getApplicationContext();
+        DiskIO.run(new DiskIO.Task<Boolean>() {
+            @Override
+            public Boolean call() {
+                return isEnabled(app);
+            }
+        }, new DiskIO.Callback<Boolean>() {
+            @Override
+            public void onResult(Boolean enabled) {
+                if (enabled) {
+                    start(app);
+                }
+            }
+
+            @Override
+            public void onError(IOException e) {
+                // Reading a preference does not throw
+            }
+        });
+    }
+
+    /**
+     * Whether the user turned the warmer on. Reads SharedPreferences: not on the main thread.
+     */
+    static boolean isEnabled(Context context) {
+        return context.getSharedPreferences(ContactsActivity.PREFS_NAME, Context.MODE_PRIVATE)
+                .getBoolean(LocationWarmer.KEY_ENABLED, LocationWarmer.DEFAULT_ENABLED);
+    }
+
+    /**
+     * Starts requesting background fixes. Does nothing if it already runs or there is no
+     * location permission.
+     */
+    @SuppressLint("MissingPermission") // Checked below
+    static void start(Context context) {
+        if (warmer != null) {
+            return;
+        }
+        if (ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
+                ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "No location permission, warmer not started.");
+            return;
+        }
+        appContext = context.getApplicationContext();
+        locationClient = SOSManager.getLocationClient(appContext);
+        warmer = new LocationWarmer(rateListener);
+        activeWarmer = warmer;
+        readBattery();
+        warmer.start();
+        // Whatever the system already has is a good first entry
+        locationClient.getLastLocation().addOnCompleteListener(new OnCompleteListener<Location>() {
+            @Override
+            public void onComplete(@NonNull Task<Location> task) {
+                if (warmer != null && task.isSuccessful()) {
+                    warmer.onFix(FusedLocationSource.toFix(task.getResult()));
+                }
+            }
+        });
+        Log.i(TAG, "Location warmer started.");
+    }
+
+    static void stop() {
+        if (warmer == null) {
+            return;
+        }
+        locationClient.removeLocationUpdates(locationCallback);
+        warmer = null;
+        activeWarmer = null;
+        Log.i(TAG, "Location warmer stopped.");
+    }
+
+    /**
+     * The cached fix if the warmer runs and has one at most maxAgeMs old, otherwise null.
+     * Counts towards the hit rate. Any thread.
+     */
+    static LocationFix lookup(long maxAgeMs) {
+        LocationWarmer current = activeWarmer;
+        return current == null ? null : current.lookup(SystemClock.elapsedRealtimeNanos(), maxAgeMs);
+    }
+
+    /**
+     * Hit rate and fix ages for the debug screen.
+     */
+    static String formatStats() {
+        LocationWarmer current = activeWarmer;
+        if (current == null) {
+            return "Location warmer: off";
+        }
+        return "Location warmer:\n" + current.format(SystemClock.elapsedRealtimeNanos());
+    }
+
+    // --- Callbacks ---
+
+    private static final LocationWarmer.Listener rateListener = new LocationWarmer.Listener() {
+        @SuppressLint("MissingPermission") // Checked in start()
+        @Override
+        public void onRateChanged(long intervalMs, boolean passive) {
+            Log.d(TAG, "Fix every " + intervalMs + " ms, passive: " + passive);
+            LocationRequest request = new LocationRequest.Builder(
+                    passive ? Priority.PRIORITY_PASSIVE : Priority.PRIORITY_BALANCED_POWER_ACCURACY, intervalMs)
+                    // Take fixes other apps asked for in between, they cost nothing
+                    .setMinUpdateIntervalMillis(LocationWarmer.MIN_INTERVAL_MS / 4)
+                    .build();
+            // Replaces the previous request made with the same callback
+            locationClient.requestLocationUpdates(request, locationCallback, Looper.getMainLooper());
+        }
+    };
+
+    private static final LocationCallback locationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            if (warmer == null) {
+                return;
+            }
+            readBattery();
+            for (Location location : result.getLocations()) {
+                warmer.onFix(FusedLocationSource.toFix(location));
+            }
+        }
+    };
+
+    /**
+     * Passes the battery level to the warmer. The sticky broadcast is read without registering
+     * a receiver, so this costs one call per batch of fixes.
+     */
+    private static void readBattery() {
+        Intent battery = ContextCompat.registerReceiver(appContext, null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
+        if (battery == null) {
+            return;
+        }
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        boolean charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        warmer.onBatteryChanged(level >= 0 && scale > 0 ? level * 100 / scale : -1, charging);
+    }
+}
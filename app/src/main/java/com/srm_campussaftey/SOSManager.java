@@ -4,29 +4,25 @@ package com.srm_campussaftey;
 
 import android.Manifest;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.location.Location;
+import android.os.Handler;
 import android.os.Looper;
-import android.telephony.SmsManager;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 
 import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
-import java.lang.reflect.Type;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /*
  * Manages the core SOS logic: getting location and sending SMS alerts.
@@ -36,157 +32,277 @@ public class SOSManager {
     private static final String TAG = "SOSManager"; // Tag for logging
 
     // --- Variables for Location ---
+    // One client for the whole app, created the first time something needs a location
+    // (not at app start: creating it connects to Play services)
     private static FusedLocationProviderClient fusedLocationClient;
-    private static LocationCallback locationCallback;
-    private static Location lastLocation; // Store the last obtained location
+    // Stage timings (ms since trigger) of the most recent location pipeline run
+    private static volatile Map<String, Long> lastStageTimings = Collections.emptyMap();
     // --- End Location Variables ---
 
+    // --- Armed dispatch plan ---
+    // Contacts, message prefix and SmsManager prepared ahead of time, so triggering SOS
+    // does not read the contacts file. Rebuilt whenever contacts change.
+    private static volatile SOSDispatchPlan dispatchPlan;
+    // Loads the plan. Its own thread, not DiskIO: an SOS that fires before the plan is armed
+    // must not wait behind feed work queued there (compaction, index rebuilds, seeding).
+    // The contacts file is saved with a rename, so reading it from here is safe.
+    private static final ExecutorService planLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "sos-plan");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    // --- End dispatch plan ---
+
+    private static SmsDispatchEngine.Listener resultToastListener;
+
+
+    /**
+     * Prepares the dispatch plan in the background if it is not ready yet.
+     * Called when the app or the shortcut service starts.
+     *
+     * @param context Any context; the application context is kept.
+     */
+    public static void armDispatchPlan(Context context) {
+        if (dispatchPlan != null) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        planLoader.execute(new Runnable() {
+            @Override
+            public void run() {
+                SOSDispatchPlan plan = loadDispatchPlan(appContext);
+                Log.d(TAG, "Dispatch plan armed with " + plan.getContacts().size() + " contacts.");
+            }
+        });
+    }
+
+    /**
+     * Replaces the dispatch plan after the contacts were edited. The contacts file is not
+     * read again, but building a plan reads SharedPreferences, so call this on the DiskIO
+     * thread (ContactsActivity does it right after saving).
+     *
+     * @param context  Any context; used to look up the SmsManager.
+     * @param contacts The new list of emergency contacts.
+     */
+    public static void updateDispatchPlan(Context context, List<Contact> contacts) {
+        SOSDispatchPlan plan = SOSDispatchPlan.create(context.getApplicationContext(), contacts);
+        synchronized (SOSManager.class) {
+            dispatchPlan = plan;
+        }
+    }
+
+    /**
+     * The armed plan, or null if it is not loaded yet.
+     */
+    static SOSDispatchPlan getArmedPlan() {
+        return dispatchPlan;
+    }
+
+    /**
+     * Builds the plan from the contacts file and arms it, unless a newer plan was set by
+     * updateDispatchPlan while we were loading. Runs on the planLoader thread.
+     */
+    private static SOSDispatchPlan loadDispatchPlan(Context appContext) {
+        SOSDispatchPlan plan = SOSDispatchPlan.create(appContext, loadContacts(appContext));
+        synchronized (SOSManager.class) {
+            if (dispatchPlan == null) {
+                dispatchPlan = plan;
+            }
+            return dispatchPlan;
+        }
+    }
+
 
     /**
      * Sends the SOS SMS message to all saved emergency contacts.
      * Attempts to get current location if includeLocation is true.
      *
      * @param context         The application context.
-     * @param includeLocation If true, attempts to get current location before sending.
-     * If false, sends immediately without location (e.g., for shortcut).
+     * @param includeLocation If true, sends with the freshest cached fix and follows up once
+     * if a better fix arrives within the location budget (see SOSLocationPolicy).
+     * If false, sends immediately (e.g., for shortcut), with the location warmer's cached fix
+     * if there is one, otherwise without location.
      */
-    public static void sendSOS(Context context, boolean includeLocation) {
+    public static void sendSOS(final Context context, final boolean includeLocation) {
+        final long triggerNanos = SystemClock.elapsedRealtimeNanos();
         Log.d(TAG, "sendSOS called. includeLocation: " + includeLocation);
 
-        // Initialize FusedLocationProviderClient if it hasn't been already
-        if (fusedLocationClient == null) {
-            fusedLocationClient = LocationServices.getFusedLocationProviderClient(context);
+        SOSDispatchPlan plan = dispatchPlan;
+        if (plan != null) {
+            sendWithPlan(context, plan, includeLocation, triggerNanos);
+            return;
         }
-
-        if (includeLocation) {
-            // --- Attempt to get current location ---
-            Log.d(TAG, "Attempting to get current location...");
-            // Check location permission before requesting updates
-            if (ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
-                    ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED)
-            {
-                Log.w(TAG, "Location permission not granted. Cannot get location for SOS.");
-                Toast.makeText(context, "Location permission needed for SOS.", Toast.LENGTH_SHORT).show();
-                // Send SMS without location as a fallback
-                sendSmsMessage(context, loadContacts(context), null);
-                return;
+        // SOS fired before arming finished: load the plan on the planLoader thread (never on
+        // the caller's thread, never behind DiskIO work) and carry on from there on the main
+        // thread. Arming queued earlier is simply waited for.
+        Log.w(TAG, "Dispatch plan not armed yet, loading contacts first.");
+        final Context appContext = context.getApplicationContext();
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        planLoader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final SOSDispatchPlan loadedPlan;
+                try {
+                    loadedPlan = loadDispatchPlan(appContext);
+                } catch (RuntimeException e) {
+                    // loadContacts returns an empty list on read errors; this is anything else
+                    Log.e(TAG, "Could not load the dispatch plan, SOS not sent", e);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            Toast.makeText(appContext, "SOS failed: could not load emergency contacts.", Toast.LENGTH_LONG).show();
+                        }
+                    });
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        sendWithPlan(context, loadedPlan, includeLocation, triggerNanos);
+                    }
+                });
             }
+        });
+    }
 
-            // Define location request parameters
-            // PRIORITY_HIGH_ACCURACY is preferred for emergencies
-            LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 5000) // Interval 5 seconds
-                    .setMinUpdateIntervalMillis(1000) // Fastest update 1 second
-                    .setMaxUpdates(1) // Only need one update
-                    .build();
-
-
-            // Define the callback to handle location updates
-            locationCallback = new LocationCallback() {
-                @Override
-                public void onLocationResult(@NonNull LocationResult locationResult) {
-                    super.onLocationResult(locationResult);
-                    fusedLocationClient.removeLocationUpdates(locationCallback); // Stop listening after getting the location
-                    if (locationResult.getLastLocation() != null) {
-                        lastLocation = locationResult.getLastLocation();
-                        Log.i(TAG, "Current location obtained: " + lastLocation.getLatitude() + ", " + lastLocation.getLongitude());
-                        sendSmsMessage(context, loadContacts(context), lastLocation);
-                    } else {
-                        Log.w(TAG, "Failed to get current location (result was null). Sending without location.");
-                        sendSmsMessage(context, loadContacts(context), null); // Send without location if fetching failed
-                    }
+    /**
+     * The rest of sendSOS, once the dispatch plan is in memory.
+     */
+    private static void sendWithPlan(Context context, SOSDispatchPlan plan, boolean includeLocation, long triggerNanos) {
+        try {
+            if (includeLocation) {
+                // --- Attempt to get current location ---
+                Log.d(TAG, "Attempting to get current location...");
+                // Check location permission before requesting updates
+                if (ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
+                        ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED)
+                {
+                    Log.w(TAG, "Location permission not granted. Cannot get location for SOS.");
+                    Toast.makeText(context, "Location permission needed for SOS.", Toast.LENGTH_SHORT).show();
+                    // Send SMS without location as a fallback
+                    long buildStart = SOSTracer.start();
+                    String message = SOSMessageBuilder.buildMessageWithoutLocation(plan.getMessagePrefix());
+                    SOSTracer.end(SOSTracer.Stage.MESSAGE_BUILD, buildStart);
+                    dispatchMessage(context, plan, message, triggerNanos);
+                    return;
                 }
-            };
 
-            // Request location updates
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
-            Log.d(TAG, "Location updates requested...");
+                // Send right away with the cached fix, then at most one refined follow-up within the budget
+                new SOSLocationPipeline(context.getApplicationContext(), plan, getLocationClient(context), triggerNanos).start();
+                // Then keep the contacts updated while the person moves
+                LiveFollowService.start(context, plan);
 
-        } else {
-            // --- Send immediately without location (for shortcut) ---
-            Log.d(TAG, "Sending SOS immediately without location.");
-            sendSmsMessage(context, loadContacts(context), null);
+            } else {
+                // --- Send immediately, without waiting for a location (for shortcut) ---
+                // The location warmer's cached fix costs nothing to attach, if it runs and has one
+                LocationFix warm = SOSLocationWarmer.lookup(plan.getLocationPolicy().getMaxFixAgeMs());
+                Log.d(TAG, "Sending SOS immediately, cached location: " + (warm != null));
+                long buildStart = SOSTracer.start();
+                String message;
+                if (warm != null) {
+                    long ageMs = (SystemClock.elapsedRealtimeNanos() - warm.getTimeNanos()) / 1_000_000;
+                    message = SOSMessageBuilder.buildMessage(plan.getMessagePrefix(), warm.getLatitude(), warm.getLongitude(),
+                            warm.getAccuracyMeters(), ageMs);
+                } else {
+                    message = SOSMessageBuilder.buildMessageWithoutLocation(plan.getMessagePrefix());
+                }
+                SOSTracer.end(SOSTracer.Stage.MESSAGE_BUILD, buildStart);
+                dispatchMessage(context, plan, message, triggerNanos);
+                // The first SMS goes out without waiting for GPS; live follow sends the location
+                // afterwards (if the location permission was granted)
+                LiveFollowService.start(context, plan);
+            }
+        } finally {
+            SOSTracer.end(SOSTracer.Stage.SEND_SOS, triggerNanos);
         }
     }
 
 
     /**
-     * Loads the list of emergency contacts from SharedPreferences.
+     * Returns the app's shared location client, creating it on first use.
+     * Screens that need a location (SOS, the feed) all go through here.
+     */
+    public static synchronized FusedLocationProviderClient getLocationClient(Context context) {
+        if (fusedLocationClient == null) {
+            fusedLocationClient = LocationServices.getFusedLocationProviderClient(context.getApplicationContext());
+        }
+        return fusedLocationClient;
+    }
+
+    /**
+     * Loads the list of emergency contacts from the contacts file.
      * @param context The application context.
      * @return List of Contact objects. Returns an empty list if none saved or error occurs.
      */
     private static List<Contact> loadContacts(Context context) {
-        SharedPreferences sharedPreferences = context.getSharedPreferences(ContactsActivity.PREFS_NAME, Context.MODE_PRIVATE);
-        String jsonContacts = sharedPreferences.getString(ContactsActivity.CONTACTS_KEY, null);
-        Gson gson = new Gson();
-        List<Contact> contacts = new ArrayList<>(); // Default to empty list
-
-        if (jsonContacts != null) {
-            try {
-                Type type = new TypeToken<ArrayList<Contact>>() {}.getType();
-                contacts = gson.fromJson(jsonContacts, type);
-                if (contacts == null) { // Handle case where JSON might be invalid "null"
-                    contacts = new ArrayList<>();
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error parsing contacts JSON: " + e.getMessage());
-                contacts = new ArrayList<>(); // Reset to empty list on error
-            }
-        }
+        long spanStart = SOSTracer.start();
+        List<Contact> contacts = new BinaryContactStore(context).load();
         Log.d(TAG, "Loaded " + contacts.size() + " contacts.");
+        SOSTracer.end(SOSTracer.Stage.LOAD_CONTACTS, spanStart);
         return contacts;
     }
 
     /**
-     * Constructs and sends the SMS message to the list of contacts.
+     * Sends an SMS message to the contacts in the dispatch plan.
+     * The actual sending, retries and delivery tracking happen in SmsDispatchEngine on a
+     * background thread; this returns right away.
+     *
      * @param context The application context.
-     * @param contacts List of contacts to send to.
-     * @param location The current location (can be null).
+     * @param plan The armed dispatch plan (contacts and SmsManager).
+     * @param message The full text to send.
+     * @param triggerNanos When SOS was triggered (SystemClock.elapsedRealtimeNanos) for latency logging, or -1 to skip it.
      */
-    private static void sendSmsMessage(Context context, List<Contact> contacts, Location location) {
-        if (contacts == null || contacts.isEmpty()) {
+    static void dispatchMessage(Context context, SOSDispatchPlan plan, String message, long triggerNanos) {
+        if (plan.getContacts().isEmpty()) {
             Log.w(TAG, "No emergency contacts found. Cannot send SOS.");
             Toast.makeText(context, "No emergency contacts added.", Toast.LENGTH_LONG).show();
             return;
         }
 
-        // --- Construct the Message ---
-        String message = "EMERGENCY SOS! I need help.";
-        if (location != null) {
-            // If we have a location, add a Google Maps link
-            message += " My approximate location is: "
-                    + "https://maps.google.com/?q=" + location.getLatitude() + "," + location.getLongitude();
-        } else {
-            message += " My location is unknown.";
+        SmsDispatchEngine engine = SmsDispatchEngine.getInstance(context);
+        ensureResultToasts(context.getApplicationContext(), engine);
+        engine.dispatch(plan, message, triggerNanos);
+    } // End dispatchMessage
+
+    /**
+     * Shows one Toast per SOS once every contact has either been sent to or given up on.
+     */
+    private static synchronized void ensureResultToasts(final Context appContext, SmsDispatchEngine engine) {
+        if (resultToastListener != null) {
+            return;
         }
-        // --- End of Message Construction ---
-
-
-        // --- Send the SMS ---
-        // Get the default Android SMS Manager
-        SmsManager smsManager = SmsManager.getDefault();
-        int contactsSent = 0;
-
-        // Loop through every contact and send them the SMS
-        for (Contact contact : contacts) {
-            try {
-                smsManager.sendTextMessage(contact.getPhone(), null, message, null, null);
-                contactsSent++;
-                Log.i(TAG, "SOS SMS sent to: " + contact.getName() + " (" + contact.getPhone() + ")");
-            } catch (Exception e) {
-                // Handle error (e.g., invalid phone number)
-                Log.e(TAG, "Could not send SMS to " + contact.getName() + ": " + e.getMessage());
-                Toast.makeText(context, "Could not send to " + contact.getName(), Toast.LENGTH_SHORT).show();
+        resultToastListener = new SmsDispatchEngine.Listener() {
+            private long lastToastedSession = -1;
+
+            @Override
+            public void onDispatchUpdate(DispatchSession.Summary summary) {
+                if (!summary.complete || summary.sessionId == lastToastedSession) {
+                    return;
+                }
+                lastToastedSession = summary.sessionId;
+                if (summary.sent > 0) {
+                    Toast.makeText(appContext, "SOS sent to " + summary.sent + " of " + summary.total + " contact(s).", Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(appContext, "Failed to send SOS to any contacts.", Toast.LENGTH_LONG).show();
+                }
             }
-        }
-        // --- End Sending SMS ---
+        };
+        engine.addListener(resultToastListener);
+    }
 
-        if (contactsSent > 0) {
-            Toast.makeText(context, "SOS sent to " + contactsSent + " contact(s).", Toast.LENGTH_LONG).show();
-        } else {
-            Toast.makeText(context, "Failed to send SOS to any contacts.", Toast.LENGTH_LONG).show();
-        }
+    static void recordStageTimings(Map<String, Long> timings) {
+        lastStageTimings = Collections.unmodifiableMap(new LinkedHashMap<>(timings));
+    }
 
-    } // End sendSmsMessage
+    /**
+     * Stage timings (milliseconds since the trigger) of the last SOS with location.
+     */
+    public static Map<String, Long> getLastStageTimings() {
+        return lastStageTimings;
+    }
 
 } // End SOSManager class
 
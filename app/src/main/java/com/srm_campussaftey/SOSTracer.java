@@ -0,0 +1,162 @@
+package com.srm_campussaftey;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * Times each step of an SOS, from the volume key press to the last SMS handed to the radio.
+ *
+ * Every stage has its own LatencyHistogram in memory, so recording a span costs two clock
+ * reads and an atomic increment. The percentiles can be viewed on the debug screen
+ * (DebugMetricsActivity) and are written to a JSON file after each SOS, so numbers from
+ * different releases can be compared.
+ */
+public final class SOSTracer {
+
+    private static final String TAG = "SOSTracer";
+    public static final String DUMP_FILE_NAME = "sos_latency.json";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // The stages of an SOS, in the order they normally happen
+    public enum Stage {
+        KEY_DETECT("key_detect"),                  // Key event time -> pattern recognised in onKeyEvent
+        SEND_SOS("send_sos"),                      // Time spent inside SOSManager.sendSOS
+        LOAD_CONTACTS("load_contacts"),            // Reading + decoding the contacts file
+        LOCATION_CACHED("location_cached"),        // Asking for the last known fix -> answer
+        LOCATION_REFINED("location_refined"),      // Asking for a high-accuracy fix -> answer
+        MESSAGE_BUILD("message_build"),            // Building the SMS text
+        SMS_HANDOFF("sms_handoff"),                // One sendTextMessage / sendMultipartTextMessage call
+        TRIGGER_TO_FIRST_SEND("trigger_to_first_send"),
+        TRIGGER_TO_LAST_SEND("trigger_to_last_send");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private SOSTracer() {
+    }
+
+    /**
+     * Starts a span.
+     * @return The start time to pass to end().
+     */
+    public static long start() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * Ends a span started with start() and records its duration.
+     */
+    public static void end(Stage stage, long startNanos) {
+        record(stage, SystemClock.elapsedRealtimeNanos() - startNanos);
+    }
+
+    public static void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    public static LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * A readable table of every stage, for the debug screen.
+     */
+    public static String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%-22s %6s %9s %9s %9s %9s%n", "stage", "count", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = getHistogram(stage);
+            report.append(String.format(Locale.US, "%-22s %6d %9.2f %9.2f %9.2f %9.2f%n",
+                    stage.getLabel(),
+                    histogram.getCount(),
+                    histogram.getPercentileNanos(50) / 1e6,
+                    histogram.getPercentileNanos(95) / 1e6,
+                    histogram.getPercentileNanos(99) / 1e6,
+                    histogram.getMaxNanos() / 1e6));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes all histograms to files/sos_latency.json, tagged with the app version.
+     * Call it on the DiskIO thread. Written to a temporary file and renamed into place, so
+     * the file is never seen half written.
+     */
+    public static File writeDump(Context context) throws IOException {
+        Map<String, Object> dump = new LinkedHashMap<>();
+        dump.put("appVersion", appVersion(context));
+        dump.put("writtenAtMillis", System.currentTimeMillis());
+
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = getHistogram(stage);
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", histogram.getCount());
+            values.put("meanMicros", histogram.getMeanNanos() / 1000);
+            values.put("p50Micros", histogram.getPercentileNanos(50) / 1000);
+            values.put("p95Micros", histogram.getPercentileNanos(95) / 1000);
+            values.put("p99Micros", histogram.getPercentileNanos(99) / 1000);
+            values.put("maxMicros", histogram.getMaxNanos() / 1000);
+            stages.put(stage.getLabel(), values);
+        }
+        dump.put("stages", stages);
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        File file = new File(context.getFilesDir(), DUMP_FILE_NAME);
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            gson.toJson(dump, writer);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not rename " + temp);
+        }
+        Log.d(TAG, "Wrote latency dump to " + file);
+        return file;
+    }
+
+    private static String appVersion(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionName;
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.srm_campussaftey;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.telephony.SmsManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Sends SOS messages to every contact through the phone's radio, on a background thread.
+ *
+ * The fan-out, retry and timeout decisions live in DispatchScheduler (core module). This class
+ * is the Android side of it:
+ * - RadioGateway hands the parts to SmsManager with "sent" and "delivered" PendingIntents,
+ *   and a BroadcastReceiver passes the results back to the scheduler.
+ * - Handoffs and trigger-to-send latencies are recorded in SOSTracer.
+ * - Listeners get a DispatchSession.Summary on the main thread after every change.
+ * - Every session is recorded in an SOSOutbox (files/sos_outbox.wal) before the first send.
+ *   If the app was killed mid-session, the contacts still waiting are sent to when the
+ *   engine starts again or the accessibility service reconnects.
+ *
+ * Everything runs on the engine's own thread, so no locking is needed.
+ */
+public class SmsDispatchEngine {
+
+    private static final String TAG = "SmsDispatchEngine";
+
+    // --- Broadcast actions and extras for the PendingIntents ---
+    private static final String ACTION_SMS_SENT = "com.srm_campussaftey.SMS_SENT";
+    private static final String ACTION_SMS_DELIVERED = "com.srm_campussaftey.SMS_DELIVERED";
+    private static final String EXTRA_REQUEST_ID = "requestId";
+    // --- End of Constants ---
+
+    // Keep listening for a send's results this long, so late delivery reports are still counted
+    private static final long RESULT_WINDOW_MS = DispatchScheduler.SENT_TIMEOUT_MS + 10 * 60_000;
+
+    // Interface for screens that want to show progress
+    public interface Listener {
+        void onDispatchUpdate(DispatchSession.Summary summary);
+    }
+
+    /*
+     * One send() waiting for its results from the radio.
+     */
+    private static class PendingSend {
+        final SmsGateway.Callback callback;
+        final int partCount;
+        int partsDelivered;
+
+        PendingSend(SmsGateway.Callback callback, int partCount) {
+            this.callback = callback;
+            this.partCount = partCount;
+        }
+    }
+
+    private static SmsDispatchEngine instance;
+
+    private final Context appContext;
+    private final Handler engineHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final DispatchScheduler dispatchScheduler;
+    private final Map<Long, PendingSend> pendingSends = new HashMap<>(); // Engine thread only
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Ids start from the wall clock so results for a previous process's sends never match
+    private final AtomicLong nextSessionId = new AtomicLong(System.currentTimeMillis());
+    private long nextRequestId = System.currentTimeMillis(); // Engine thread only
+    private SOSOutbox outbox; // Engine thread only
+
+    public static synchronized SmsDispatchEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new SmsDispatchEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmsDispatchEngine(Context appContext) {
+        this.appContext = appContext;
+        HandlerThread thread = new HandlerThread("SmsDispatchEngine");
+        thread.start();
+        engineHandler = new Handler(thread.getLooper());
+        dispatchScheduler = new DispatchScheduler(new HandlerScheduler(engineHandler), schedulerListener);
+
+        // Results are delivered straight onto the engine thread
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(ACTION_SMS_SENT);
+        filter.addAction(ACTION_SMS_DELIVERED);
+        filter.addDataScheme("sos");
+        ContextCompat.registerReceiver(appContext, resultReceiver, filter, null, engineHandler,
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+
+        // Open the outbox on the engine thread (it reads the file) and finish any interrupted SOS.
+        // Posted before any dispatch, so no session is sent without it.
+        engineHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                outbox = new SOSOutbox(new File(SmsDispatchEngine.this.appContext.getFilesDir(), SOSOutbox.FILE_NAME),
+                        new HandlerScheduler(engineHandler), outboxListener);
+                dispatchScheduler.setJournal(outbox);
+                resumeOnEngineThread();
+            }
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts sending a message to every contact in the plan. Returns immediately.
+     *
+     * @param plan         The armed dispatch plan.
+     * @param message      Full message text (split into parts automatically if too long).
+     * @param triggerNanos When SOS was triggered, for the first-send latency log, or -1.
+     * @return The id of the new session.
+     */
+    public long dispatch(SOSDispatchPlan plan, String message, long triggerNanos) {
+        long sessionId = nextSessionId.incrementAndGet();
+        dispatchScheduler.dispatch(sessionId, new RadioGateway(plan.getSmsManager()), plan.getContacts(), message, triggerNanos);
+        return sessionId;
+    }
+
+    /**
+     * Sends to the contacts an interrupted SOS (app killed or crashed) never got to.
+     * Safe to call any number of times: each session is resumed once. Returns immediately.
+     */
+    public void resumeUnfinished() {
+        engineHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                resumeOnEngineThread();
+            }
+        });
+    }
+
+    private void resumeOnEngineThread() {
+        for (SOSOutbox.PendingSession pending : outbox.claimUnfinished(System.currentTimeMillis())) {
+            List<Contact> remaining = pending.getRemainingContacts();
+            long sessionId = nextSessionId.incrementAndGet();
+            Log.w(TAG, "Resuming SOS session " + pending.getId() + " as " + sessionId + ": "
+                    + remaining.size() + " contact(s) left, " + pending.getPossiblyDuplicated() + " may get it twice");
+            dispatchScheduler.dispatch(sessionId, new RadioGateway(SOSDispatchPlan.resolveSmsManager(appContext)),
+                    remaining, pending.getMessage(), -1);
+        }
+    }
+
+    private final SOSOutbox.Listener outboxListener = new SOSOutbox.Listener() {
+        @Override
+        public void onJournalError(String what, IOException e) {
+            // The SOS is still sent; it just can't be resumed after a crash
+            Log.e(TAG, what, e);
+        }
+    };
+
+    /*
+     * Sends through one SmsManager. Only used on the engine thread.
+     */
+    private class RadioGateway implements SmsGateway {
+        private final SmsManager smsManager;
+
+        RadioGateway(SmsManager smsManager) {
+            this.smsManager = smsManager;
+        }
+
+        @Override
+        public List<String> divideMessage(String message) {
+            return smsManager.divideMessage(message);
+        }
+
+        @Override
+        public void send(String phone, List<String> parts, Callback callback) {
+            final long requestId = ++nextRequestId;
+            ArrayList<PendingIntent> sentIntents = new ArrayList<>(parts.size());
+            ArrayList<PendingIntent> deliveredIntents = new ArrayList<>(parts.size());
+            for (int part = 0; part < parts.size(); part++) {
+                sentIntents.add(resultIntent(ACTION_SMS_SENT, requestId, part));
+                deliveredIntents.add(resultIntent(ACTION_SMS_DELIVERED, requestId, part));
+            }
+
+            pendingSends.put(requestId, new PendingSend(callback, parts.size()));
+            try {
+                if (parts.size() == 1) {
+                    smsManager.sendTextMessage(phone, null, parts.get(0), sentIntents.get(0), deliveredIntents.get(0));
+                } else {
+                    smsManager.sendMultipartTextMessage(phone, null, new ArrayList<>(parts), sentIntents, deliveredIntents);
+                }
+            } catch (RuntimeException e) {
+                pendingSends.remove(requestId);
+                throw e; // DispatchScheduler decides whether to retry
+            }
+
+            engineHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    pendingSends.remove(requestId);
+                }
+            }, RESULT_WINDOW_MS);
+        }
+    }
+
+    private final BroadcastReceiver resultReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            long requestId = intent.getLongExtra(EXTRA_REQUEST_ID, -1);
+            PendingSend pending = pendingSends.get(requestId);
+            if (pending == null) {
+                return; // Already finished, or from an older process
+            }
+
+            int resultCode = getResultCode();
+            if (ACTION_SMS_SENT.equals(intent.getAction())) {
+                boolean success = resultCode == Activity.RESULT_OK;
+                pending.callback.onPartSent(success, isTransient(resultCode), success ? null : describe(resultCode));
+            } else {
+                boolean delivered = resultCode == Activity.RESULT_OK;
+                pending.callback.onPartDelivered(delivered);
+                if (delivered && ++pending.partsDelivered >= pending.partCount) {
+                    pendingSends.remove(requestId); // Nothing more to hear about this send
+                }
+            }
+        }
+    };
+
+    private final DispatchScheduler.Listener schedulerListener = new DispatchScheduler.Listener() {
+        @Override
+        public void onHandoff(DispatchSession session, int contactIndex, int attempt, long handoffNanos) {
+            SOSTracer.record(SOSTracer.Stage.SMS_HANDOFF, handoffNanos);
+            Log.i(TAG, "SOS SMS (attempt " + attempt + ") handed off for " + contactName(session, contactIndex));
+        }
+
+        @Override
+        public void onSendError(DispatchSession session, int contactIndex, String error, long retryDelayMs) {
+            if (retryDelayMs >= 0) {
+                Log.w(TAG, "Send failed (" + error + "), retrying " + contactName(session, contactIndex) + " in " + retryDelayMs + " ms");
+            } else {
+                Log.e(TAG, "Could not send SMS to " + contactName(session, contactIndex) + ": " + error);
+            }
+        }
+
+        @Override
+        public void onFirstSend(DispatchSession session, long latencyNanos) {
+            SOSTracer.record(SOSTracer.Stage.TRIGGER_TO_FIRST_SEND, latencyNanos);
+            Log.i(TAG, "Trigger-to-first-send latency: " + latencyNanos / 1000 + " us");
+        }
+
+        @Override
+        public void onAllHandedOff(DispatchSession session, long latencyNanos) {
+            SOSTracer.record(SOSTracer.Stage.TRIGGER_TO_LAST_SEND, latencyNanos);
+        }
+
+        @Override
+        public void onUpdate(final DispatchSession.Summary summary) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (Listener listener : listeners) {
+                        listener.onDispatchUpdate(summary);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onComplete(DispatchSession.Summary summary) {
+            // Keep the latency dump file up to date after every SOS. Written on the DiskIO
+            // thread, so the next dispatch does not wait for it
+            DiskIO.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        SOSTracer.writeDump(appContext);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Could not write latency dump", e);
+                    }
+                }
+            });
+        }
+    };
+
+    private static String contactName(DispatchSession session, int contactIndex) {
+        return session.getStatuses().get(contactIndex).getContact().getName();
+    }
+
+    private static boolean isTransient(int resultCode) {
+        return resultCode == SmsManager.RESULT_ERROR_RADIO_OFF
+                || resultCode == SmsManager.RESULT_ERROR_NO_SERVICE
+                || resultCode == SmsManager.RESULT_ERROR_GENERIC_FAILURE;
+    }
+
+    private static String describe(int resultCode) {
+        switch (resultCode) {
+            case Activity.RESULT_OK:
+                return "OK";
+            case SmsManager.RESULT_ERROR_RADIO_OFF:
+                return "Radio off";
+            case SmsManager.RESULT_ERROR_NO_SERVICE:
+                return "No service";
+            case SmsManager.RESULT_ERROR_NULL_PDU:
+                return "Null PDU";
+            case SmsManager.RESULT_ERROR_GENERIC_FAILURE:
+                return "Generic failure";
+            default:
+                return "Error " + resultCode;
+        }
+    }
+
+    /**
+     * Builds a PendingIntent that is unique per send and part (through its data URI),
+     * so results for different parts never overwrite each other.
+     */
+    private PendingIntent resultIntent(String action, long requestId, int part) {
+        Intent intent = new Intent(action)
+                .setPackage(appContext.getPackageName())
+                .setData(Uri.parse("sos://sms/" + requestId + "/" + part))
+                .putExtra(EXTRA_REQUEST_ID, requestId);
+        return PendingIntent.getBroadcast(appContext, 0, intent, PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_ONE_SHOT);
+    }
+}
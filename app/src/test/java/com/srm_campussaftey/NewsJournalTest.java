@@ -0,0 +1,379 @@
+package com.srm_campussaftey;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the append-only news journal.
+ */
+public class NewsJournalTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File journalDir;
+
+    @Before
+    public void setUp() {
+        journalDir = new File(tempFolder.getRoot(), NewsJournal.DIR_NAME);
+    }
+
+    @Test
+    public void append_isReadBackAfterReopen() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        journal.append(new NewsItem("Theft", "Bike stolen near library", 1000L));
+        journal.append(new NewsItem("Power cut", "Hostel block B", 2000L));
+        journal.close();
+
+        List<NewsItem> items = new NewsJournal(journalDir).readAll();
+        assertEquals(2, items.size());
+        assertEquals("Theft", items.get(0).getTitle());
+        assertEquals(1L, items.get(0).getId());
+        assertEquals(2L, items.get(1).getId());
+    }
+
+    @Test
+    public void tornTail_isDroppedAndAppendsContinue() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        journal.append(new NewsItem("First", "ok", 1000L));
+        journal.close();
+
+        // Simulate a crash in the middle of writing a record
+        File[] segments = journalDir.listFiles();
+        assertNotNull(segments);
+        try (FileOutputStream out = new FileOutputStream(segments[0], true)) {
+            out.write(new byte[]{0, 0, 0, 50, 1, 2});
+        }
+
+        NewsJournal reopened = new NewsJournal(journalDir);
+        reopened.append(new NewsItem("Second", "ok", 2000L));
+        List<NewsItem> items = reopened.readAll();
+        assertEquals(2, items.size());
+        assertEquals("Second", items.get(1).getTitle());
+        assertEquals(2L, items.get(1).getId());
+    }
+
+    @Test
+    public void compaction_keepsEveryItemInOrder() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        int total = NewsJournal.MAX_RECORDS_PER_SEGMENT * 3 + 5;
+        for (int i = 0; i < total; i++) {
+            journal.append(new NewsItem("Item " + i, "desc", i));
+        }
+
+        File[] files = journalDir.listFiles();
+        assertNotNull(files);
+        Arrays.sort(files);
+        List<File> sealed = new ArrayList<>(Arrays.asList(files).subList(0, 3));
+        journal.compact(sealed);
+
+        assertEquals(2, journalDir.listFiles().length);
+        List<NewsItem> items = journal.readAll();
+        assertEquals(total, items.size());
+        for (int i = 0; i < total; i++) {
+            assertEquals(i, items.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    public void compaction_inputLeftNextToMergedSegment_isReadOnce() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        int total = NewsJournal.MAX_RECORDS_PER_SEGMENT * 3 + 5;
+        for (int i = 0; i < total; i++) {
+            journal.append(new NewsItem("Item " + i, "desc", i));
+        }
+        File input = new File(journalDir, "segment-000002.log");
+        byte[] inputBytes = Files.readAllBytes(input.toPath());
+
+        File[] files = journalDir.listFiles();
+        assertNotNull(files);
+        Arrays.sort(files);
+        journal.compact(new ArrayList<>(Arrays.asList(files).subList(0, 3)));
+        journal.close();
+
+        // A crash after the merged segment was in place but before this input was deleted
+        Files.write(input.toPath(), inputBytes);
+
+        assertUniqueIds(new NewsJournal(journalDir).readAll(), total);
+    }
+
+    @Test
+    public void interruptedCompaction_isFinishedOnOpen() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        int total = NewsJournal.MAX_RECORDS_PER_SEGMENT * 3 + 5;
+        for (int i = 0; i < total; i++) {
+            journal.append(new NewsItem("Item " + i, "desc", i));
+        }
+        journal.close();
+
+        // The merged file was published, then the crash came before any input was deleted
+        File merged = new File(journalDir, NewsJournal.mergedName(1, 3));
+        try (FileOutputStream out = new FileOutputStream(merged)) {
+            for (int number = 1; number <= 3; number++) {
+                out.write(Files.readAllBytes(new File(journalDir, "segment-00000" + number + ".log").toPath()));
+            }
+        }
+
+        NewsJournal reopened = new NewsJournal(journalDir);
+        assertUniqueIds(reopened.readAll(), total);
+        assertFalse(merged.exists());
+        assertFalse(new File(journalDir, "segment-000002.log").exists());
+        assertFalse(new File(journalDir, "segment-000003.log").exists());
+
+        reopened.append(new NewsItem("After", "desc", total));
+        reopened.close();
+        assertUniqueIds(new NewsJournal(journalDir).readAll(), total + 1);
+    }
+
+    private static void assertUniqueIds(List<NewsItem> items, int expected) {
+        Set<Long> ids = new HashSet<>();
+        for (NewsItem item : items) {
+            assertTrue("Repeated id " + item.getId(), ids.add(item.getId()));
+        }
+        assertEquals(expected, items.size());
+    }
+
+    @Test
+    public void readPage_walksBackwardsByTimestampKey() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        for (int i = 0; i < 25; i++) {
+            journal.append(new NewsItem("Item " + i, "desc", 1000L + i));
+        }
+        // Posted with an older timestamp than everything above, and a tie on the oldest one
+        journal.append(new NewsItem("Late", "desc", 500L));
+        journal.append(new NewsItem("Tie", "desc", 1000L));
+
+        List<NewsItem> first = journal.readPage(Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        assertEquals(10, first.size());
+        assertEquals(1024L, first.get(0).getTimestamp());
+
+        List<NewsItem> all = new ArrayList<>(first);
+        List<NewsItem> page = first;
+        while (!page.isEmpty()) {
+            NewsItem last = page.get(page.size() - 1);
+            page = journal.readPage(last.getTimestamp(), last.getId(), 10);
+            all.addAll(page);
+        }
+        assertEquals(27, all.size());
+        assertEquals("Tie", all.get(24).getTitle());
+        assertEquals("Item 0", all.get(25).getTitle());
+        assertEquals("Late", all.get(26).getTitle());
+    }
+
+    @Test
+    public void oldJsonRecords_areStillReadNextToBinaryOnes() throws Exception {
+        // A segment as an older version wrote it: Gson JSON payloads
+        assertTrue(journalDir.mkdirs());
+        File oldSegment = new File(journalDir, "segment-000001.log");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(oldSegment))) {
+            byte[] json = "{\"title\":\"Old\",\"description\":\"from JSON\",\"timestamp\":1000,\"id\":1}"
+                    .getBytes(StandardCharsets.UTF_8);
+            out.writeInt(1 + 8 + 8 + json.length);
+            out.writeByte(NewsJournal.FORMAT_JSON);
+            out.writeLong(1000L);
+            out.writeLong(1L);
+            out.write(json);
+        }
+
+        NewsJournal journal = new NewsJournal(journalDir);
+        journal.append(new NewsItem("New", "binary", 2000L));
+        List<NewsItem> items = journal.readAll();
+        assertEquals(2, items.size());
+        assertEquals("from JSON", items.get(0).getDescription());
+        assertEquals(1L, items.get(0).getId());
+        assertEquals("New", items.get(1).getTitle());
+        assertEquals(2L, items.get(1).getId());
+    }
+
+    @Test
+    public void readByIds_andReadSince_findRecordsAcrossSegments() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        int total = NewsJournal.MAX_RECORDS_PER_SEGMENT + 10;
+        for (int i = 0; i < total; i++) {
+            journal.append(new NewsItem("Item " + i, "desc", i));
+        }
+
+        List<NewsItem> found = journal.readByIds(new long[]{total, 3, 9999});
+        assertEquals(2, found.size());
+        assertEquals("Item " + (total - 1), found.get(0).getTitle());
+        assertEquals(3L, found.get(1).getId());
+
+        List<NewsItem> newer = journal.readSince(total - 2);
+        assertEquals(2, newer.size());
+        assertEquals(total - 1, newer.get(0).getId());
+    }
+
+    @Test
+    public void readNear_findsLocatedItemsBeforeAndAfterTheIndexIsBuilt() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        NewsItem gate = new NewsItem("Gate", "crowd", 1000L);
+        gate.setLocation(12.8231, 80.0442);
+        journal.append(gate);
+        journal.append(new NewsItem("No location", "desc", 2000L));
+
+        List<NewsItem> near = journal.readNear(12.8231, 80.0442, 300, 0, 10);
+        assertEquals(1, near.size());
+        assertTrue(near.get(0).hasLocation());
+
+        NewsItem library = new NewsItem("Library", "power cut", 3000L);
+        library.setLocation(12.8240, 80.0442); // About 100 m north
+        journal.append(library);
+        near = journal.readNear(12.8231, 80.0442, 300, 0, 10);
+        assertEquals(2, near.size());
+        assertEquals("Gate", near.get(0).getTitle());
+        assertEquals(1, journal.readNear(12.8231, 80.0442, 300, 2500L, 10).size());
+    }
+
+    @Test
+    public void readFiltered_andUpdateStatus_surviveReopen() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        for (int i = 0; i < 20; i++) {
+            NewsItem item = new NewsItem("Item " + i, "desc", 1000L + i);
+            item.setCategory(i % 4 == 0 ? NewsItem.CATEGORY_THEFT : NewsItem.CATEGORY_HAZARD);
+            journal.append(item);
+        }
+        IncidentIndex.Filter openThefts = new IncidentIndex.Filter(1008L, NewsItem.CATEGORY_THEFT, true);
+        assertEquals(3, journal.readFiltered(openThefts, Long.MAX_VALUE, Long.MAX_VALUE, 10).size()); // 16, 12, 8
+
+        assertTrue(journal.updateStatus(13, NewsItem.STATUS_RESOLVED)); // "Item 12"
+        assertFalse(journal.updateStatus(999, NewsItem.STATUS_RESOLVED));
+        journal.close();
+
+        NewsJournal reopened = new NewsJournal(journalDir);
+        List<NewsItem> page = reopened.readFiltered(openThefts, Long.MAX_VALUE, Long.MAX_VALUE, 10);
+        assertEquals(2, page.size());
+        assertEquals("Item 16", page.get(0).getTitle());
+        assertEquals("Item 8", page.get(1).getTitle());
+        assertEquals(NewsItem.CATEGORY_THEFT, page.get(0).getCategory());
+        assertTrue(reopened.readByIds(new long[]{13}).get(0).isResolved());
+    }
+
+    @Test
+    public void oldSegments_areUpgradedSoTheirStatusCanChange() throws Exception {
+        assertTrue(journalDir.mkdirs());
+        File oldSegment = new File(journalDir, "segment-000001.log");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(oldSegment))) {
+            byte[] payload = BinaryCodec.encodeNewsItem(new NewsItem("Old", "binary v2", 1000L));
+            out.writeInt(1 + 8 + 8 + payload.length);
+            out.writeByte(NewsJournal.FORMAT_BINARY);
+            out.writeLong(1000L);
+            out.writeLong(1L);
+            out.write(payload);
+        }
+
+        NewsJournal journal = new NewsJournal(journalDir);
+        assertEquals(1, journal.readFiltered(new IncidentIndex.Filter(Long.MIN_VALUE, NewsItem.CATEGORY_OTHER, true),
+                Long.MAX_VALUE, Long.MAX_VALUE, 10).size());
+        assertTrue(journal.updateStatus(1, NewsItem.STATUS_RESOLVED));
+        journal.close();
+
+        List<NewsItem> items = new NewsJournal(journalDir).readAll();
+        assertEquals("binary v2", items.get(0).getDescription());
+        assertTrue(items.get(0).isResolved());
+        assertEquals(NewsItem.SEVERITY_MEDIUM, items.get(0).getSeverity());
+    }
+
+    @Test
+    public void applyRemote_addsNewIncidentsOnceAndTakesTheServerStatus() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        journal.append(new NewsItem("Local", "posted here", 500L));
+        NewsItem first = remote("srv-1", 1000L, NewsItem.STATUS_OPEN);
+        NewsItem second = remote("srv-2", 2000L, NewsItem.STATUS_OPEN);
+        assertEquals(2, journal.applyRemote(Arrays.asList(first, second)).size());
+        journal.close();
+
+        // After a restart: the same page again (a crash before the cursor was saved) plus a status change
+        NewsJournal reopened = new NewsJournal(journalDir);
+        List<NewsItem> changed = reopened.applyRemote(Arrays.asList(remote("srv-1", 1000L, NewsItem.STATUS_OPEN),
+                remote("srv-2", 2000L, NewsItem.STATUS_RESOLVED)));
+        assertEquals(1, changed.size());
+        assertEquals(3L, changed.get(0).getId());
+        assertEquals(3, reopened.size());
+        List<NewsItem> items = reopened.readAll();
+        assertEquals("srv-1", items.get(1).getRemoteId());
+        assertTrue(items.get(2).isResolved());
+        assertNull(items.get(0).getRemoteId());
+    }
+
+    private static NewsItem remote(String remoteId, long timestamp, int status) {
+        NewsItem item = new NewsItem("Server " + remoteId, "from the campus server", timestamp);
+        item.setRemoteId(remoteId);
+        item.setStatus(status);
+        return item;
+    }
+
+    @Test
+    public void compaction_movesExpiredAndExcessPostsToTheArchive() throws Exception {
+        NewsJournal journal = new NewsJournal(journalDir);
+        long day = 24 * 60 * 60 * 1000L;
+        long now = System.currentTimeMillis();
+        int total = NewsJournal.MAX_RECORDS_PER_SEGMENT * 3 + 5;
+        for (int i = 0; i < total; i++) {
+            NewsItem item = new NewsItem("Item " + i, "desc", (i < 300 ? now - 60 * day : now - day) + i);
+            item.setCategory(i % 2 == 0 ? NewsItem.CATEGORY_THEFT : NewsItem.CATEGORY_HAZARD);
+            if (i == 400) {
+                item.setRemoteId("srv-400"); // Archived for the count limit, not its age
+            }
+            journal.append(item);
+        }
+        journal.updateStatus(1, NewsItem.STATUS_RESOLVED);
+        File[] files = journalDir.listFiles();
+        assertNotNull(files);
+        Arrays.sort(files);
+        List<File> sealed = new ArrayList<>(Arrays.asList(files).subList(0, 3));
+
+        // 300 posts are past 30 days, but 541 have to go to get down to 1000
+        journal.setRetention(new FeedRetentionPolicy(30 * day, 1000));
+        journal.compact(sealed);
+
+        assertEquals(1000, journal.size());
+        List<NewsItem> live = journal.readAll();
+        assertEquals("Item 541", live.get(0).getTitle());
+        assertFalse(journal.liveIds().get(1));
+        assertTrue(journal.liveIds().get(542));
+
+        // "Show older" carries on from the oldest live post
+        NewsItem oldestLive = live.get(0);
+        List<NewsItem> older = journal.readArchived(IncidentIndex.Filter.ALL, oldestLive.getTimestamp(),
+                oldestLive.getId(), 30);
+        assertEquals("Item 540", older.get(0).getTitle());
+        IncidentIndex.Filter thefts = new IncidentIndex.Filter(Long.MIN_VALUE, NewsItem.CATEGORY_THEFT, false);
+        assertEquals(271, journal.readArchived(thefts, Long.MAX_VALUE, Long.MAX_VALUE, total).size());
+        List<NewsItem> archived = journal.readArchived(IncidentIndex.Filter.ALL, Long.MAX_VALUE, Long.MAX_VALUE, total);
+        assertEquals(541, archived.size());
+        assertTrue(archived.get(540).isResolved());
+
+        // Server incidents that are already too old do not come back into the live feed
+        NewsItem stale = new NewsItem("Old", "from the server", now - 45 * day);
+        stale.setRemoteId("srv-old");
+        assertTrue(journal.applyRemote(Arrays.asList(stale)).isEmpty());
+        // Nor do archived ones the server changes later
+        NewsItem resolved = new NewsItem("Item 400", "desc", archived.get(140).getTimestamp());
+        resolved.setRemoteId("srv-400");
+        resolved.setStatus(NewsItem.STATUS_RESOLVED);
+        assertTrue(journal.applyRemote(Arrays.asList(resolved)).isEmpty());
+        assertEquals(1000, journal.size());
+        journal.close();
+
+        NewsJournal reopened = new NewsJournal(journalDir);
+        assertEquals(1000, reopened.size());
+        assertTrue(reopened.hasArchive());
+        assertTrue(reopened.applyRemote(Arrays.asList(resolved)).isEmpty());
+        assertEquals(1000, reopened.size());
+    }
+}
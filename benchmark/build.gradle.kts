@@ -0,0 +1,37 @@
+// JVM-only benchmarks (JMH) for the parts of the app that don't need Android:
+// the model classes (from :core), Gson vs binary persistence and SOS message building.
+// Run with: ./gradlew :benchmark:jmh
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":core"))
+    implementation(libs.gson)
+    jmh(libs.jmh.core)
+    jmh(libs.jmh.generator.annprocess)
+}
+
+// Fixed settings so two runs (or two releases) produce reports that can be diffed
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    fork.set(2)
+    warmupIterations.set(3)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    benchmarkMode.set(listOf("avgt"))
+    timeUnit.set("us")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+    humanOutputFile.set(layout.buildDirectory.file("reports/jmh/human.txt"))
+    jvmArgs.set(listOf("-Xms1g", "-Xmx1g"))
+    // Adds gc.alloc.rate.norm (bytes allocated per operation) to every result
+    profilers.set(listOf("gc"))
+}
@@ -0,0 +1,89 @@
+package com.srm_campussaftey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Cost of "Show older posts": reading a page of 30 from the FeedArchive (a real file).
+ *
+ * - firstOlderPage: a fresh FeedArchive (block headers not loaded yet) and its newest page,
+ *   what the first tap after the live feed runs out pays.
+ * - olderPageAnywhere: pages at keys spread over the whole archive on one FeedArchive, so
+ *   nearly every call inflates a different block.
+ *
+ * The archive is written the way the journal's compaction does it, in batches of oldest posts.
+ */
+@State(Scope.Benchmark)
+public class ArchiveBenchmark {
+
+    private static final int PAGE_SIZE = 30; // FeedPagingSource.PAGE_SIZE
+    private static final int COMPACTION_BATCH = 1_000;
+    private static final int KEYS = 64;
+
+    @Param({"10000", "100000"})
+    public int archived;
+
+    private File directory;
+    private File file;
+    private FeedArchive archive;
+    private long[] keyTimestamps;
+    private long[] keyIds;
+    private int nextKey;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("archive-bench").toFile();
+        file = new File(directory, "archive.bin");
+        List<NewsItem> posts = BenchmarkData.news(archived);
+        Collections.sort(posts, new Comparator<NewsItem>() {
+            @Override
+            public int compare(NewsItem o1, NewsItem o2) {
+                return Long.compare(o1.getTimestamp(), o2.getTimestamp());
+            }
+        });
+        for (int i = 0; i < posts.size(); i++) {
+            posts.get(i).setId(i + 1);
+        }
+        FeedArchive writer = new FeedArchive(file);
+        for (int from = 0; from < posts.size(); from += COMPACTION_BATCH) {
+            writer.append(posts.subList(from, Math.min(posts.size(), from + COMPACTION_BATCH)));
+        }
+
+        keyTimestamps = new long[KEYS];
+        keyIds = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            NewsItem post = posts.get((int) ((long) posts.size() * (i * 37 % KEYS) / KEYS));
+            keyTimestamps[i] = post.getTimestamp();
+            keyIds[i] = post.getId();
+        }
+        archive = new FeedArchive(file);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public List<NewsItem> firstOlderPage() throws IOException {
+        return new FeedArchive(file).readPage(null, Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<NewsItem> olderPageAnywhere() throws IOException {
+        int key = nextKey++ % KEYS;
+        return archive.readPage(null, keyTimestamps[key], keyIds[key], PAGE_SIZE);
+    }
+}
@@ -0,0 +1,57 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Makes fake contacts and news posts for the benchmarks.
+ * Everything comes from a fixed seed, so every run (and every release) measures
+ * exactly the same data.
+ */
+final class BenchmarkData {
+
+    static final long SEED = 42L;
+
+    // Roughly the length of a real incident post
+    private static final String[] WORDS = {
+            "gate", "hostel", "library", "parking", "lights", "broken", "suspicious", "person",
+            "near", "block", "reported", "security", "evening", "phone", "stolen", "help"
+    };
+
+    private BenchmarkData() {
+    }
+
+    static List<Contact> contacts(int count) {
+        Random random = new Random(SEED);
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String phone = String.format("+91 %05d %05d", random.nextInt(100000), random.nextInt(100000));
+            contacts.add(new Contact("Contact " + i, phone));
+        }
+        return contacts;
+    }
+
+    static List<NewsItem> news(int count) {
+        Random random = new Random(SEED);
+        long now = 1_700_000_000_000L; // Fixed "now" so the timestamps never change between runs
+        List<NewsItem> news = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Random (unsorted) timestamps within the last 30 days, like posts loaded from storage
+            long timestamp = now - (long) (random.nextDouble() * 30L * 24 * 60 * 60 * 1000);
+            news.add(new NewsItem(sentence(random, 4), sentence(random, 25), timestamp));
+        }
+        return news;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.srm_campussaftey;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Decoding the stored contacts and news: the old Gson path against BinaryCodec.
+ *
+ * Both sides start from bytes in memory, the way they come off disk, so the Gson side
+ * includes turning the bytes into the one big JSON String (as SharedPreferences did).
+ * Run with the gc profiler (set in build.gradle.kts) to get bytes allocated per decode.
+ */
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private final Gson gson = new Gson();
+    private byte[] contactsJson;
+    private byte[] contactsBinary;
+    private byte[] newsJson;
+    private byte[] newsPayloads;   // Binary news payloads back to back, like a journal segment
+    private int[] newsLengths;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Contact> contacts = BenchmarkData.contacts(size);
+        contactsJson = gson.toJson(contacts).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryCodec.writeContacts(out, contacts);
+        }
+        contactsBinary = bytes.toByteArray();
+
+        List<NewsItem> news = BenchmarkData.news(size);
+        newsJson = gson.toJson(news).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream payloads = new ByteArrayOutputStream();
+        newsLengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            byte[] payload = BinaryCodec.encodeNewsItem(news.get(i));
+            newsLengths[i] = payload.length;
+            payloads.write(payload);
+        }
+        newsPayloads = payloads.toByteArray();
+    }
+
+    @Benchmark
+    public List<Contact> contactsGson() {
+        Type type = new TypeToken<ArrayList<Contact>>() {}.getType();
+        return gson.fromJson(new String(contactsJson, StandardCharsets.UTF_8), type);
+    }
+
+    @Benchmark
+    public List<Contact> contactsGsonStreaming() throws IOException {
+        // Fairer Gson baseline: no whole-file String, still reflective
+        Type type = new TypeToken<ArrayList<Contact>>() {}.getType();
+        try (InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(contactsJson), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, type);
+        }
+    }
+
+    @Benchmark
+    public List<Contact> contactsBinary() throws IOException {
+        return BinaryCodec.readContacts(new DataInputStream(new ByteArrayInputStream(contactsBinary)));
+    }
+
+    @Benchmark
+    public List<NewsItem> newsGson() {
+        Type type = new TypeToken<ArrayList<NewsItem>>() {}.getType();
+        return gson.fromJson(new String(newsJson, StandardCharsets.UTF_8), type);
+    }
+
+    @Benchmark
+    public List<NewsItem> newsBinary() throws IOException {
+        // Same as NewsJournal.readSegment: one stream and one Decoder for every record
+        List<NewsItem> items = new ArrayList<>(newsLengths.length);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(newsPayloads));
+        BinaryCodec.Decoder decoder = new BinaryCodec.Decoder();
+        for (int i = 0; i < newsLengths.length; i++) {
+            items.add(decoder.readNewsItem(in, newsLengths[i], 0, i));
+        }
+        return items;
+    }
+}
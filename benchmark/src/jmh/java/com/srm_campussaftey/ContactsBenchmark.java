@@ -0,0 +1,83 @@
+package com.srm_campussaftey;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Contact persistence, as done by SOSManager.loadContacts and ContactsActivity.
+ */
+@State(Scope.Benchmark)
+public class ContactsBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private final Gson gson = new Gson();
+    private List<Contact> contacts;
+    private String contactsJson;
+    private Contact lastContact;
+    private ContactList contactList;
+
+    @Setup
+    public void setUp() {
+        contacts = BenchmarkData.contacts(size);
+        contactsJson = gson.toJson(contacts);
+        Contact last = contacts.get(contacts.size() - 1);
+        // A different object with the same content, like the one the adapter hands to deleteContact
+        lastContact = new Contact(last.getName(), last.getPhone());
+        contactList = new ContactList();
+        contactList.addLoaded(BenchmarkData.contacts(size));
+        lastContact.setId(contactList.get(size - 1).getId());
+    }
+
+    /**
+     * Gson TypeToken parse of the saved contacts list (SOSManager.loadContacts).
+     */
+    @Benchmark
+    public List<Contact> loadContacts() {
+        Type type = new TypeToken<ArrayList<Contact>>() {}.getType();
+        return gson.fromJson(contactsJson, type);
+    }
+
+    /**
+     * Serialising the whole list again after every change (ContactsActivity.saveContacts).
+     */
+    @Benchmark
+    public String saveContacts() {
+        return gson.toJson(contacts);
+    }
+
+    /**
+     * The linear name+phone scan in ContactsActivity.deleteContact, for the worst case
+     * (the contact is last). The list is not changed so every call does the same work.
+     */
+    @Benchmark
+    public int deleteContactScan() {
+        int position = -1;
+        for (int i = 0; i < contacts.size(); i++) {
+            if (contacts.get(i).getName().equals(lastContact.getName()) && contacts.get(i).getPhone().equals(lastContact.getPhone())) {
+                position = i;
+                break;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * The same lookup through ContactList's id index (what deleteContact does now).
+     */
+    @Benchmark
+    public int deleteContactIndexed() {
+        return contactList.indexOf(lastContact.getId());
+    }
+}
@@ -0,0 +1,73 @@
+package com.srm_campussaftey;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * The original SharedPreferences feed storage (FeedActivity.loadNews / saveNews before the
+ * feed moved to NewsJournal). Kept as the baseline the journal is compared against.
+ */
+@State(Scope.Benchmark)
+public class FeedBenchmark {
+
+    // Same order FeedActivity used: newest first
+    private static final Comparator<NewsItem> NEWEST_FIRST = new Comparator<NewsItem>() {
+        @Override
+        public int compare(NewsItem o1, NewsItem o2) {
+            return Long.compare(o2.getTimestamp(), o1.getTimestamp());
+        }
+    };
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private final Gson gson = new Gson();
+    private List<NewsItem> shuffledNews;
+    private List<NewsItem> newsList;
+    private String newsJson;
+
+    @Setup
+    public void setUp() {
+        shuffledNews = BenchmarkData.news(size);
+        newsJson = gson.toJson(shuffledNews);
+    }
+
+    // saveNews sorts in place, so every call starts again from the same unsorted order
+    @Setup(Level.Invocation)
+    public void resetList() {
+        newsList = new ArrayList<>(shuffledNews);
+    }
+
+    /**
+     * Gson TypeToken parse plus the newest-first sort (FeedActivity.loadNews).
+     */
+    @Benchmark
+    public List<NewsItem> loadNews() {
+        Type type = new TypeToken<ArrayList<NewsItem>>() {}.getType();
+        List<NewsItem> loaded = gson.fromJson(newsJson, type);
+        Collections.sort(loaded, NEWEST_FIRST);
+        return loaded;
+    }
+
+    /**
+     * Sort plus serialising the whole feed (FeedActivity.saveNews), paid on every new post.
+     */
+    @Benchmark
+    public String saveNews() {
+        Collections.sort(newsList, NEWEST_FIRST);
+        return gson.toJson(newsList);
+    }
+}
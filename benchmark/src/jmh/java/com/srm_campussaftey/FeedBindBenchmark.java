@@ -0,0 +1,78 @@
+package com.srm_campussaftey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * The work NewsAdapter.onBindViewHolder does for the text of one row, scrolling through a
+ * 10,000-post feed ("Near me" on, so rows with a location also show a distance).
+ * bindFormatEachTime is the old bind (new Date, SimpleDateFormat, string building);
+ * bindPrepared reads the line NewsRowPreparer made in the background. Setting the text on
+ * the TextViews, and the description layout, need a device: see FeedScrollBenchmark in
+ * :macrobenchmark for frame times.
+ */
+@State(Scope.Benchmark)
+public class FeedBindBenchmark {
+
+    private static final int SIZE = 10_000;
+    private static final double LAT = 12.8231;
+    private static final double LNG = 80.0442;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, hh:mm a", Locale.US);
+    private List<NewsItem> news;
+    private String[] preparedWhen; // Stands in for FeedModel's NewsRow list
+    private int position;
+
+    @Setup
+    public void setUp() {
+        news = BenchmarkData.news(SIZE);
+        preparedWhen = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            if (i % 2 == 0) {
+                news.get(i).setLocation(LAT + (i % 100) * 0.0001, LNG);
+            }
+            preparedWhen[i] = formatWhen(news.get(i)); // Done on the DiskIO thread in the app
+        }
+    }
+
+    @Benchmark
+    public void bindFormatEachTime(Blackhole blackhole) {
+        NewsItem item = next();
+        blackhole.consume(item.getTitle());
+        blackhole.consume(item.getDescription());
+        blackhole.consume(formatWhen(item));
+    }
+
+    @Benchmark
+    public void bindPrepared(Blackhole blackhole) {
+        int current = position;
+        NewsItem item = next();
+        blackhole.consume(item.getTitle());
+        blackhole.consume(item.getDescription());
+        blackhole.consume(preparedWhen[current]);
+    }
+
+    private NewsItem next() {
+        NewsItem item = news.get(position);
+        position = position + 1 == SIZE ? 0 : position + 1;
+        return item;
+    }
+
+    // Same as the old NewsAdapter bind
+    private String formatWhen(NewsItem item) {
+        String when = dateFormat.format(new Date(item.getTimestamp()));
+        if (item.hasLocation()) {
+            double meters = GeoIndex.distanceMeters(LAT, LNG, item.getLatitude(), item.getLongitude());
+            when += " - " + Math.round(meters) + " m away";
+        }
+        return when;
+    }
+}
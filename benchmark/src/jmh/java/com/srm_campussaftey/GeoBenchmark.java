@@ -0,0 +1,67 @@
+package com.srm_campussaftey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * "Incidents within 300 m in the last 24 h": the grid index against checking every post.
+ * Posts are spread over a 3 km square around the campus and over the last 30 days.
+ */
+@State(Scope.Benchmark)
+public class GeoBenchmark {
+
+    private static final double LAT = 12.8231;
+    private static final double LNG = 80.0442;
+    private static final double AREA_METERS = 3000;
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    @Param({"1000", "50000", "100000"})
+    public int size;
+
+    private List<NewsItem> news;
+    private GeoIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkData.SEED);
+        double metersPerDegreeLng = GeoIndex.METERS_PER_DEGREE * Math.cos(Math.toRadians(LAT));
+        news = new ArrayList<>(size);
+        index = new GeoIndex();
+        for (int i = 0; i < size; i++) {
+            // Time order, as the journal hands them out
+            NewsItem item = new NewsItem("Incident", "", NOW - 30 * DAY_MS + (30 * DAY_MS * i) / size);
+            item.setId(i + 1);
+            item.setLocation(LAT + (random.nextDouble() - 0.5) * AREA_METERS / GeoIndex.METERS_PER_DEGREE,
+                    LNG + (random.nextDouble() - 0.5) * AREA_METERS / metersPerDegreeLng);
+            news.add(item);
+            index.add(item);
+        }
+    }
+
+    @Benchmark
+    public List<GeoIndex.Hit> nearMeIndexed() {
+        return index.findNear(LAT, LNG, 300, NOW - DAY_MS, 200);
+    }
+
+    @Benchmark
+    public int nearMeScan() {
+        // What the feed would have to do without the index
+        int count = 0;
+        long since = NOW - DAY_MS;
+        for (NewsItem item : news) {
+            if (item.getTimestamp() >= since
+                    && GeoIndex.distanceMeters(LAT, LNG, item.getLatitude(), item.getLongitude()) <= 300) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,94 @@
+package com.srm_campussaftey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * The first page (30 posts) of the feed filter chips: IncidentIndex against walking the
+ * newest-first feed and checking every post. Posts are spread over the last 30 days; most
+ * are thefts or "other", medical incidents are rare, and a quarter are resolved.
+ *
+ * The scan here runs over posts already in memory. In the app each post it skips would
+ * also have to be read and decoded from the journal first, so this is the best case for it.
+ */
+@State(Scope.Benchmark)
+public class IncidentQueryBenchmark {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final int PAGE_SIZE = 30;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private List<NewsItem> newestFirst;
+    private IncidentIndex index;
+    private IncidentIndex.Filter openThefts;
+    private IncidentIndex.Filter medical;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkData.SEED);
+        List<NewsItem> news = new ArrayList<>(size);
+        index = new IncidentIndex();
+        for (int i = 0; i < size; i++) {
+            // Time order, as the journal hands them out
+            NewsItem item = new NewsItem("Incident", "", NOW - 30 * DAY_MS + (30 * DAY_MS * i) / size);
+            item.setId(i + 1);
+            int roll = random.nextInt(100);
+            item.setCategory(roll < 40 ? NewsItem.CATEGORY_THEFT
+                    : roll < 41 ? NewsItem.CATEGORY_MEDICAL
+                    : roll < 60 ? NewsItem.CATEGORY_HAZARD
+                    : NewsItem.CATEGORY_OTHER);
+            if (random.nextInt(4) == 0) {
+                item.setStatus(NewsItem.STATUS_RESOLVED);
+            }
+            news.add(item);
+            index.put(item.getId(), item.getTimestamp(), item.getCategory(), item.getStatus());
+        }
+        newestFirst = new ArrayList<>(size);
+        for (int i = size - 1; i >= 0; i--) {
+            newestFirst.add(news.get(i));
+        }
+        openThefts = new IncidentIndex.Filter(Long.MIN_VALUE, NewsItem.CATEGORY_THEFT, true);
+        medical = new IncidentIndex.Filter(Long.MIN_VALUE, NewsItem.CATEGORY_MEDICAL, false);
+    }
+
+    @Benchmark
+    public long[] openTheftsIndexed() {
+        return index.query(openThefts, Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public int openTheftsScan() {
+        return scan(openThefts);
+    }
+
+    @Benchmark
+    public long[] medicalIndexed() {
+        return index.query(medical, Long.MAX_VALUE, Long.MAX_VALUE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public int medicalScan() {
+        return scan(medical);
+    }
+
+    // What the feed would have to do without the index
+    private int scan(IncidentIndex.Filter filter) {
+        int count = 0;
+        for (NewsItem item : newestFirst) {
+            if (filter.matches(item) && ++count == PAGE_SIZE) {
+                break;
+            }
+        }
+        return count;
+    }
+}
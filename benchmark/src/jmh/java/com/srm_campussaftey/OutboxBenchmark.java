@@ -0,0 +1,134 @@
+package com.srm_campussaftey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Cost of journaling one SOS session in the SOSOutbox (a real file, with fsync).
+ *
+ * - triggerPath: the session start record, the part the first SMS waits for (one write + fsync).
+ * - groupCommit: a whole session as the app journals it: the start, a handoff and a result per
+ *   contact and the completion, with everything after the start batched into one more fsync.
+ * - syncEveryRecord: the whole session with an fsync after every record, for comparison.
+ *
+ * fsync cost depends on the disk, so compare the three with each other, not across machines.
+ */
+@State(Scope.Benchmark)
+public class OutboxBenchmark {
+
+    private static final String MESSAGE = "EMERGENCY! I need help. My location: https://maps.google.com/?q=12.8231,80.0442";
+
+    @Param({"5"})
+    public int contacts;
+
+    private File directory;
+    private SOSOutbox outbox;
+    private final List<Runnable> pendingFlushes = new ArrayList<>();
+    private List<Contact> contactList;
+    private long nextId;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("outbox-bench").toFile();
+        contactList = new ArrayList<>();
+        for (int i = 0; i < contacts; i++) {
+            contactList.add(new Contact("Contact " + i, "+91987654" + (3210 + i)));
+        }
+        // The flush timer only runs when the benchmark says so
+        Scheduler scheduler = new Scheduler() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public void post(Runnable task) {
+                pendingFlushes.add(task);
+            }
+
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+                pendingFlushes.add(task);
+            }
+        };
+        outbox = new SOSOutbox(new File(directory, SOSOutbox.FILE_NAME), scheduler, new SOSOutbox.Listener() {
+            @Override
+            public void onJournalError(String what, IOException e) {
+                throw new IllegalStateException(what, e);
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        outbox.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public long triggerPath() {
+        DispatchSession session = new DispatchSession(++nextId, MESSAGE, contactList);
+        outbox.onSessionStarted(session);
+        long id = session.getId();
+        // Close the session so the file does not grow; the next start writes the close record
+        outbox.onSessionComplete(session);
+        pendingFlushes.clear();
+        return id;
+    }
+
+    @Benchmark
+    public long groupCommit() {
+        DispatchSession session = new DispatchSession(++nextId, MESSAGE, contactList);
+        outbox.onSessionStarted(session);
+        for (int i = 0; i < contacts; i++) {
+            outbox.onHandedOff(session, i, 1);
+        }
+        for (int i = 0; i < contacts; i++) {
+            outbox.onContactFinished(session, i);
+        }
+        outbox.onSessionComplete(session);
+        runPendingFlushes();
+        return session.getId();
+    }
+
+    @Benchmark
+    public long syncEveryRecord() throws IOException {
+        DispatchSession session = new DispatchSession(++nextId, MESSAGE, contactList);
+        outbox.onSessionStarted(session);
+        for (int i = 0; i < contacts; i++) {
+            outbox.onHandedOff(session, i, 1);
+            outbox.flush();
+        }
+        for (int i = 0; i < contacts; i++) {
+            outbox.onContactFinished(session, i);
+            outbox.flush();
+        }
+        outbox.onSessionComplete(session);
+        outbox.flush();
+        pendingFlushes.clear(); // Timers for records that were already written
+        return session.getId();
+    }
+
+    private void runPendingFlushes() {
+        for (int i = 0; i < pendingFlushes.size(); i++) {
+            pendingFlushes.get(i).run();
+        }
+        pendingFlushes.clear();
+    }
+}
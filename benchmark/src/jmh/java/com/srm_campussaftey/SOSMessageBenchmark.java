@@ -0,0 +1,53 @@
+package com.srm_campussaftey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/*
+ * Building the SOS text (SOSMessageBuilder) and preparing every contact's number for sending,
+ * which is the work done between the trigger and the first SMS.
+ */
+@State(Scope.Benchmark)
+public class SOSMessageBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private List<Contact> contacts;
+
+    // Fixed location so the output string is the same every run
+    private final double latitude = 12.823;
+    private final double longitude = 80.0444;
+
+    @Setup
+    public void setUp() {
+        contacts = BenchmarkData.contacts(size);
+    }
+
+    @Benchmark
+    public String buildMessage() {
+        return SOSMessageBuilder.buildMessage(SOSMessageBuilder.MESSAGE_PREFIX, latitude, longitude, 23f, 95_000L);
+    }
+
+    @Benchmark
+    public String buildMessageWithoutLocation() {
+        return SOSMessageBuilder.buildMessageWithoutLocation(SOSMessageBuilder.MESSAGE_PREFIX);
+    }
+
+    /**
+     * One message plus a normalised number per contact, as SOSDispatchPlan prepares them.
+     */
+    @Benchmark
+    public void buildForAllContacts(Blackhole blackhole) {
+        blackhole.consume(SOSMessageBuilder.buildMessage(SOSMessageBuilder.MESSAGE_PREFIX, latitude, longitude, 23f, 95_000L));
+        for (int i = 0; i < contacts.size(); i++) {
+            blackhole.consume(Contact.normalizePhone(contacts.get(i).getPhone()));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.srm_campussaftey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Feed search: one query against the index (must stay well under a 16 ms frame),
+ * adding one post, and loading the saved index versus building it from every post.
+ *
+ * BenchmarkData's posts only use a handful of words, which makes search unrealistically
+ * easy, so the posts here draw from a larger made-up vocabulary where a few words are
+ * common and most are rare (like real text).
+ */
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final int VOCABULARY_SIZE = 20_000;
+    private static final int MAX_RESULTS = 200; // Same as FeedSearch.MAX_RESULTS in the app
+
+    @Param({"1000", "50000"})
+    public int size;
+
+    private List<NewsItem> news;
+    private SearchIndex index;
+    private byte[] savedIndex;
+    private NewsItem newPost;
+    private String twoWordQuery;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(BenchmarkData.SEED);
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = randomWord(random);
+        }
+        news = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            NewsItem item = new NewsItem(sentence(random, vocabulary, 4), sentence(random, vocabulary, 25), i);
+            item.setId(i + 1);
+            news.add(item);
+        }
+        // A common word's first 3 letters plus a less common word's first 2
+        twoWordQuery = vocabulary[1].substring(0, 3) + " " + vocabulary[40].substring(0, 2);
+
+        index = buildIndex();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        savedIndex = bytes.toByteArray();
+        newPost = new NewsItem("Bike theft", "Near the library again", size);
+        newPost.setId(size + 1);
+    }
+
+    @Benchmark
+    public long[] searchOneLetter() {
+        // Worst case while typing: the first letter matches thousands of words
+        return index.search("s", MAX_RESULTS);
+    }
+
+    @Benchmark
+    public long[] searchTwoWords() {
+        return index.search(twoWordQuery, MAX_RESULTS);
+    }
+
+    @Benchmark
+    public boolean addPost() {
+        return index.add(newPost); // The same post again, so the index does not grow
+    }
+
+    @Benchmark
+    public SearchIndex loadSavedIndex() throws IOException {
+        return SearchIndex.readFrom(new DataInputStream(new ByteArrayInputStream(savedIndex)));
+    }
+
+    @Benchmark
+    public SearchIndex buildIndex() {
+        SearchIndex built = new SearchIndex();
+        for (NewsItem item : news) {
+            built.add(item);
+        }
+        return built;
+    }
+
+    private static String randomWord(Random random) {
+        char[] letters = new char[3 + random.nextInt(7)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    private static String sentence(Random random, String[] vocabulary, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            // Skewed towards the start of the vocabulary: low indexes are the common words
+            sentence.append(vocabulary[random.nextInt(random.nextInt(vocabulary.length) + 1)]);
+        }
+        return sentence.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package com.srm_campussaftey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/*
+ * Cost of handling one volume key event in the accessibility service.
+ *
+ * A fixed stream of 4096 events (taps on both keys, some held down with key repeats, random
+ * gaps) is replayed over and over; every benchmark call handles one event. Times keep
+ * increasing across replays, as on a phone.
+ *
+ * legacyCounter is the old onKeyEvent logic minus its Handler calls (Android only): the log
+ * string built on every press and the press counter. The gc profiler's gc.alloc.rate.norm
+ * shows the per-event allocation of each.
+ */
+@State(Scope.Benchmark)
+public class TriggerEngineBenchmark {
+
+    private static final int EVENTS = 4096; // Power of two, for the wrap-around mask
+    private static final int KEY_VOLUME_DOWN = TriggerPattern.KEY_VOLUME_DOWN;
+
+    @Param({"presses:down:3:2000", "sequence:up,down,up,down:1500",
+            "presses:down:3:2000;presses:down:5:2000;sequence:up,down,up,down:1500;hold:down:2000"})
+    public String patterns;
+
+    private final int[] keys = new int[EVENTS];
+    private final boolean[] downs = new boolean[EVENTS];
+    private final int[] repeats = new int[EVENTS];
+    private final long[] times = new long[EVENTS];
+    private long streamSpanMs;
+
+    private TriggerEngine engine;
+    private int cursor;
+    private long lap; // How many times the stream was replayed
+
+    // --- Old onKeyEvent state ---
+    private int volumeDownPressCount;
+    private long lastVolumeDownPressTime;
+    public String lastLog; // Public so the log string can't be optimized away
+    // --- End old state ---
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkData.SEED);
+        long time = 0;
+        int i = 0;
+        while (i < EVENTS) {
+            int key = random.nextBoolean() ? KEY_VOLUME_DOWN : TriggerPattern.KEY_VOLUME_UP;
+            time += 100 + random.nextInt(1500);
+            i = add(i, key, true, 0, time);
+            if (random.nextInt(10) == 0) { // Held: repeats every 50 ms after 400 ms
+                for (int repeat = 1; repeat <= 1 + random.nextInt(50); repeat++) {
+                    i = add(i, key, true, repeat, time + 400 + repeat * 50L);
+                }
+                time += 400 + 50 * 51;
+            }
+            time += 80;
+            i = add(i, key, false, 0, time);
+        }
+        streamSpanMs = time + 1000;
+        engine = new TriggerEngine(TriggerPattern.parseList(patterns));
+    }
+
+    private int add(int i, int key, boolean down, int repeat, long time) {
+        if (i < EVENTS) {
+            keys[i] = key;
+            downs[i] = down;
+            repeats[i] = repeat;
+            times[i] = time;
+        }
+        return i + 1;
+    }
+
+    @Benchmark
+    public int triggerEngine() {
+        int i = nextEvent();
+        return engine.onKey(keys[i], downs[i], repeats[i], lap * streamSpanMs + times[i]);
+    }
+
+    @Benchmark
+    public int legacyCounter() {
+        int i = nextEvent();
+        if (!downs[i] || keys[i] != KEY_VOLUME_DOWN) {
+            return -1;
+        }
+        long currentTime = lap * streamSpanMs + times[i];
+        lastLog = "Volume Down Pressed. Count: " + (volumeDownPressCount + 1);
+        if (currentTime - lastVolumeDownPressTime <= 2000) {
+            volumeDownPressCount++;
+        } else {
+            volumeDownPressCount = 1;
+        }
+        lastVolumeDownPressTime = currentTime;
+        if (volumeDownPressCount >= 3) {
+            volumeDownPressCount = 0;
+            return 0;
+        }
+        return -1;
+    }
+
+    private int nextEvent() {
+        int i = cursor;
+        cursor = (cursor + 1) & (EVENTS - 1);
+        if (cursor == 0) {
+            lap++;
+        }
+        return i;
+    }
+}
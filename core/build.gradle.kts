@@ -0,0 +1,22 @@
+// The SOS logic with no Android dependencies: contacts, message building, dispatch
+// scheduling and the location budget, plus simulated radio/GPS for running it off-device.
+// Load test: ./gradlew :core:run --args="--sessions 5000 --contacts 5 --lanes 4"
+plugins {
+    `java-library`
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+application {
+    mainClass.set("com.srm_campussaftey.SOSLoadRunner")
+}
+
+dependencies {
+    // Only the streaming JsonReader, for the feed sync responses (FeedSyncClient)
+    implementation(libs.gson)
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,207 @@
+package com.srm_campussaftey;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A small hand-written binary format for Contact and NewsItem, used instead of Gson.
+ *
+ * No reflection, and decoding streams straight from the file: there is never a String
+ * holding the whole dataset, and string bytes go through one reused buffer.
+ *
+ * Contacts file:
+ *   [int magic "SRMC"][byte version][int count] then per contact:
+ *   [int length][string name][string phone][long id]
+ *   (the id was added in version 2; contacts without one get a new id when loaded)
+ * News record payload (the journal keeps timestamp and id in its own header):
+ *   [string title][string description][byte hasLocation][double latitude][double longitude][string remoteId]
+ *   (the location fields and then the server id were added later; records without them
+ *   have no location / were posted on this device)
+ * A string is [int byteCount][UTF-8 bytes], with byteCount -1 for null.
+ *
+ * Newer versions may only ADD fields at the end of a record. Older readers skip what
+ * they don't know using the record length, so files stay readable in both directions.
+ */
+public final class BinaryCodec {
+
+    public static final int CONTACTS_MAGIC = 0x53524D43; // "SRMC"
+    public static final byte CONTACTS_VERSION = 2;
+
+    private static final int NULL_STRING = -1;
+    // Guard against reading garbage as a huge length
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    private BinaryCodec() {
+    }
+
+    // --- Contacts ---
+
+    public static void writeContacts(DataOutputStream out, List<Contact> contacts) throws IOException {
+        out.writeInt(CONTACTS_MAGIC);
+        out.writeByte(CONTACTS_VERSION);
+        out.writeInt(contacts.size());
+        // Each record is built in a reused buffer first, so its length can go in front of it
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        for (Contact contact : contacts) {
+            record.reset();
+            writeString(recordOut, contact.getName());
+            writeString(recordOut, contact.getPhone());
+            recordOut.writeLong(contact.getId());
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+    }
+
+    public static List<Contact> readContacts(DataInput in) throws IOException {
+        if (in.readInt() != CONTACTS_MAGIC) {
+            throw new IOException("Not a contacts file");
+        }
+        in.readByte(); // Version: every version can be read field by field (see class comment)
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Bad contact count " + count);
+        }
+        List<Contact> contacts = new ArrayList<>(Math.min(count, 1024));
+        Decoder decoder = new Decoder();
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            decoder.startRecord(in, length);
+            String name = decoder.readString();
+            String phone = decoder.readString();
+            long id = decoder.readLong(0);
+            decoder.finishRecord();
+            Contact contact = new Contact(name, phone);
+            contact.setId(id);
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    // --- News ---
+
+    /**
+     * Encodes the payload of one journal record.
+     */
+    public static byte[] encodeNewsItem(NewsItem item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, item.getTitle());
+        writeString(out, item.getDescription());
+        out.writeBoolean(item.hasLocation());
+        out.writeDouble(item.getLatitude());
+        out.writeDouble(item.getLongitude());
+        writeString(out, item.getRemoteId());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes one journal payload. For many records in a row, reuse one Decoder instead.
+     */
+    public static NewsItem readNewsItem(DataInput in, int length, long timestamp, long id) throws IOException {
+        return new Decoder().readNewsItem(in, length, timestamp, id);
+    }
+
+    // --- Strings ---
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /*
+     * Reads records through one reused string buffer and keeps count of how much of the
+     * current record has been read, so unknown trailing fields can be skipped.
+     * Not thread-safe; use one per reading thread.
+     */
+    public static final class Decoder {
+        private DataInput in;
+        private byte[] buffer = new byte[128];
+        private int remaining;
+
+        /**
+         * Decodes one journal payload straight from the stream, consuming exactly "length" bytes.
+         */
+        public NewsItem readNewsItem(DataInput in, int length, long timestamp, long id) throws IOException {
+            startRecord(in, length);
+            String title = readString();
+            String description = readString();
+            NewsItem item = new NewsItem(title, description, timestamp);
+            item.setId(id);
+            if (remaining >= 1 + 8 + 8) { // Not in records from before locations were added
+                boolean hasLocation = in.readBoolean();
+                double latitude = in.readDouble();
+                double longitude = in.readDouble();
+                remaining -= 1 + 8 + 8;
+                if (hasLocation) {
+                    item.setLocation(latitude, longitude);
+                }
+                item.setRemoteId(readString()); // Null in records from before sync
+            }
+            finishRecord();
+            return item;
+        }
+
+        void startRecord(DataInput in, int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("Bad record length " + length);
+            }
+            this.in = in;
+            remaining = length;
+        }
+
+        String readString() throws IOException {
+            if (remaining < 4) {
+                return null; // Field added in a newer version than the writer's
+            }
+            int byteCount = in.readInt();
+            remaining -= 4;
+            if (byteCount == NULL_STRING) {
+                return null;
+            }
+            if (byteCount < 0 || byteCount > remaining || byteCount > MAX_STRING_BYTES) {
+                throw new IOException("Bad string length " + byteCount);
+            }
+            if (byteCount > buffer.length) {
+                buffer = new byte[Math.max(byteCount, buffer.length * 2)];
+            }
+            in.readFully(buffer, 0, byteCount);
+            remaining -= byteCount;
+            return new String(buffer, 0, byteCount, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @param missing Returned for records written before this field existed.
+         */
+        long readLong(long missing) throws IOException {
+            if (remaining < 8) {
+                return missing;
+            }
+            remaining -= 8;
+            return in.readLong();
+        }
+
+        void finishRecord() throws IOException {
+            // Skip fields written by a newer version
+            while (remaining > 0) {
+                int skipped = in.skipBytes(remaining);
+                if (skipped <= 0) {
+                    in.readByte(); // skipBytes may give up early; force progress or hit EOF
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+    }
+}
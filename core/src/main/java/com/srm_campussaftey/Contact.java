@@ -2,10 +2,12 @@ package com.srm_campussaftey;
 
 /**
  * This is a simple "data class" that just holds information about a single contact.
- * It has two properties: a name and a phone number.
+ * It has two properties: a name and a phone number, plus an id that ContactList gives it
+ * so two contacts with the same name can still be told apart.
  */
 public class Contact {
 
+    private long id; // 0 until ContactList assigns one; saved with the contact after that
     private String name;
     private String phone;
 
@@ -23,6 +25,10 @@ public class Contact {
     // --- Getters ---
     // These are methods that allow other classes to READ the private data.
 
+    public long getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -34,6 +40,10 @@ public class Contact {
     // --- Setters ---
     // These are methods that allow other classes to CHANGE the private data.
 
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public void setName(String name) {
         this.name = name;
     }
@@ -41,5 +51,19 @@ public class Contact {
     public void setPhone(String phone) {
         this.phone = phone;
     }
-}
 
+    /**
+     * Strips spaces and hyphens so "98765 43210" and "98765-43210" become the same number.
+     * A leading "+" is kept.
+     */
+    public static String normalizePhone(String phone) {
+        StringBuilder normalized = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (Character.isDigit(c) || (c == '+' && normalized.length() == 0)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+}
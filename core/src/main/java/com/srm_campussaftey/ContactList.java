@@ -0,0 +1,187 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The emergency contacts as the contacts screen edits them, in the order they were added.
+ *
+ * Every contact gets a stable id (saved with it), and two hash maps point from the id and
+ * from the normalized phone number to the contact's position. Finding the contact to
+ * delete or edit is one map lookup instead of comparing names and numbers one by one, and
+ * the screen gets back the single position that changed for its adapter.
+ *
+ * A number can only be in the list once ("98765 43210" and "98765-43210" are the same
+ * number): add() and update() turn a second one down. Lists saved by older versions may
+ * still hold duplicates; they are kept, and the phone index points at the first one.
+ *
+ * Not thread-safe: the screen uses it on the main thread and saves copies (toList()).
+ * Contacts in the list are never changed once added (update() puts a new Contact in
+ * their place), so a copy handed to the DiskIO thread never sees a half-applied edit.
+ */
+public class ContactList {
+
+    // --- Results of add(), update() and remove() ---
+    public static final int NOT_FOUND = -1;
+    public static final int DUPLICATE_PHONE = -2;
+    // --- End of Results ---
+
+    private final List<Contact> contacts = new ArrayList<>();
+    private final Map<Long, Integer> positionById = new HashMap<>();
+    private final Map<String, Integer> positionByPhone = new HashMap<>();
+    private long nextId = 1;
+
+    /**
+     * Adds the contacts read from storage, in order. Contacts saved before ids existed
+     * (id 0) get one now; it is stored with the next save.
+     */
+    public void addLoaded(List<Contact> loaded) {
+        for (Contact contact : loaded) {
+            nextId = Math.max(nextId, contact.getId() + 1);
+        }
+        for (Contact contact : loaded) {
+            if (contact.getId() <= 0 || positionById.containsKey(contact.getId())) {
+                contact.setId(nextId++);
+            }
+            int position = contacts.size();
+            contacts.add(contact);
+            positionById.put(contact.getId(), position);
+            String phone = phoneKey(contact.getPhone());
+            if (!positionByPhone.containsKey(phone)) {
+                positionByPhone.put(phone, position);
+            }
+        }
+    }
+
+    public int size() {
+        return contacts.size();
+    }
+
+    public boolean isEmpty() {
+        return contacts.isEmpty();
+    }
+
+    public Contact get(int position) {
+        return contacts.get(position);
+    }
+
+    /**
+     * A copy of the list, for saving it or arming SOS with it.
+     */
+    public List<Contact> toList() {
+        return new ArrayList<>(contacts);
+    }
+
+    /**
+     * @return The contact's position, or NOT_FOUND. O(1).
+     */
+    public int indexOf(long id) {
+        Integer position = positionById.get(id);
+        return position == null ? NOT_FOUND : position;
+    }
+
+    /**
+     * @return The position of the contact with this number (in any format), or NOT_FOUND. O(1).
+     */
+    public int indexOfPhone(String phone) {
+        Integer position = positionByPhone.get(phoneKey(phone));
+        return position == null ? NOT_FOUND : position;
+    }
+
+    /**
+     * Adds a new contact at the end and gives it an id.
+     *
+     * @return Its position, or DUPLICATE_PHONE if the number is already in the list.
+     */
+    public int add(Contact contact) {
+        String phone = phoneKey(contact.getPhone());
+        if (positionByPhone.containsKey(phone)) {
+            return DUPLICATE_PHONE;
+        }
+        contact.setId(nextId++);
+        int position = contacts.size();
+        contacts.add(contact);
+        positionById.put(contact.getId(), position);
+        positionByPhone.put(phone, position);
+        return position;
+    }
+
+    /**
+     * Changes a contact's name and number, keeping its id and position. The old Contact
+     * object is replaced, not changed, since earlier toList() copies may still be saving it.
+     *
+     * @return Its position, NOT_FOUND, or DUPLICATE_PHONE if another contact has the new number.
+     */
+    public int update(long id, String name, String phone) {
+        int position = indexOf(id);
+        if (position == NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        Contact contact = contacts.get(position);
+        String oldKey = phoneKey(contact.getPhone());
+        String newKey = phoneKey(phone);
+        if (!newKey.equals(oldKey)) {
+            Integer other = positionByPhone.get(newKey);
+            if (other != null && other != position) {
+                return DUPLICATE_PHONE;
+            }
+            unindexPhone(oldKey, position);
+            positionByPhone.put(newKey, position);
+        }
+        Contact updated = new Contact(name, phone);
+        updated.setId(id);
+        contacts.set(position, updated);
+        return position;
+    }
+
+    /**
+     * Removes a contact. Finding it is O(1); the contacts after it move up one place, so
+     * their index entries are shifted too (the list keeps its order, which is the order SOS
+     * messages go out in).
+     *
+     * @return The position it had, or NOT_FOUND.
+     */
+    public int remove(long id) {
+        int position = indexOf(id);
+        if (position == NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        unindexPhone(phoneKey(contacts.get(position).getPhone()), position);
+        contacts.remove(position);
+        positionById.remove(id);
+        for (int i = position; i < contacts.size(); i++) {
+            Contact moved = contacts.get(i);
+            positionById.put(moved.getId(), i);
+            String phone = phoneKey(moved.getPhone());
+            Integer indexed = positionByPhone.get(phone);
+            if (indexed != null && indexed == i + 1) {
+                positionByPhone.put(phone, i);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Drops the phone entry that points at this position. An older duplicate of the same
+     * number (only possible in lists saved before duplicates were turned down) takes over.
+     */
+    private void unindexPhone(String key, int position) {
+        Integer indexed = positionByPhone.get(key);
+        if (indexed == null || indexed != position) {
+            return;
+        }
+        positionByPhone.remove(key);
+        for (int i = 0; i < contacts.size(); i++) {
+            if (i != position && phoneKey(contacts.get(i).getPhone()).equals(key)) {
+                positionByPhone.put(key, i);
+                return;
+            }
+        }
+    }
+
+    private static String phoneKey(String phone) {
+        return phone == null ? "" : Contact.normalizePhone(phone);
+    }
+}
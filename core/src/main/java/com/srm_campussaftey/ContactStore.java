@@ -0,0 +1,17 @@
+package com.srm_campussaftey;
+
+import java.util.List;
+
+/*
+ * Where the emergency contacts are kept: SharedPreferences on the phone (PrefsContactStore)
+ * or plain memory for simulations and tests (InMemoryContactStore).
+ */
+public interface ContactStore {
+
+    /**
+     * @return The saved contacts, or an empty list if there are none (never null).
+     */
+    List<Contact> load();
+
+    void save(List<Contact> contacts);
+}
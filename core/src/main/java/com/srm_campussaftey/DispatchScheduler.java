@@ -0,0 +1,222 @@
+package com.srm_campussaftey;
+
+import java.util.List;
+
+/*
+ * Sends one SOS message to every contact through an SmsGateway and follows what
+ * happens to each one.
+ *
+ * - The message is split into parts once per session, then handed off to every contact
+ *   back to back (results arrive asynchronously, so nobody waits on the previous contact).
+ * - Results are recorded in a DispatchSession.
+ * - Transient failures are retried with exponential backoff. If the gateway never reports
+ *   back, the attempt counts as a transient failure after SENT_TIMEOUT_MS.
+ *
+ * - An optional Journal (SOSOutbox) records the session before the first send and each
+ *   contact's result, so an interrupted session can be resumed.
+ *
+ * Everything runs on the Scheduler's thread, so no locking is needed. It has no Android
+ * dependencies: SmsDispatchEngine runs it against the radio, SOSLoadRunner against
+ * SimulatedSmsGateway.
+ */
+public class DispatchScheduler {
+
+    // If the gateway never reports back on a part, treat it as a transient failure after this long
+    public static final long SENT_TIMEOUT_MS = 60_000;
+
+    // Interface for whoever wants to log, trace or show progress
+    public interface Listener {
+        /** One gateway send() call finished, taking handoffNanos. */
+        void onHandoff(DispatchSession session, int contactIndex, int attempt, long handoffNanos);
+
+        /** A send failed. retryDelayMs is -1 if the contact was given up on. */
+        void onSendError(DispatchSession session, int contactIndex, String error, long retryDelayMs);
+
+        /** The first contact's message was handed off, latencyNanos after the trigger. */
+        void onFirstSend(DispatchSession session, long latencyNanos);
+
+        /** Every contact's first attempt was handed off, latencyNanos after the trigger. */
+        void onAllHandedOff(DispatchSession session, long latencyNanos);
+
+        /** Something changed. Called after every result. */
+        void onUpdate(DispatchSession.Summary summary);
+
+        /** Every contact was either sent to or given up on. Called once per session. */
+        void onComplete(DispatchSession.Summary summary);
+    }
+
+    // Interface for a durable record of sessions. Called on the scheduler thread.
+    public interface Journal {
+        /** A session is about to be sent. Must be on disk when this returns. */
+        void onSessionStarted(DispatchSession session);
+
+        /** One contact's message was handed to the gateway. */
+        void onHandedOff(DispatchSession session, int contactIndex, int attempt);
+
+        /** One contact was sent to or given up on. */
+        void onContactFinished(DispatchSession session, int contactIndex);
+
+        /** Every contact was either sent to or given up on. */
+        void onSessionComplete(DispatchSession session);
+    }
+
+    /*
+     * A session plus what is needed to (re)send it.
+     */
+    private static class ActiveDispatch {
+        final DispatchSession session;
+        final SmsGateway gateway;
+        final List<String> parts;
+        final long triggerNanos;
+        boolean firstSendReported;
+        boolean completeReported;
+
+        ActiveDispatch(DispatchSession session, SmsGateway gateway, List<String> parts, long triggerNanos) {
+            this.session = session;
+            this.gateway = gateway;
+            this.parts = parts;
+            this.triggerNanos = triggerNanos;
+        }
+    }
+
+    private final Scheduler scheduler;
+    private final Listener listener;
+    private Journal journal; // Null if nothing is recorded
+
+    public DispatchScheduler(Scheduler scheduler, Listener listener) {
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets (or with null, removes) the journal. Call on the scheduler thread.
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Starts sending a message to every contact. Returns immediately.
+     *
+     * @param sessionId    Id for the new session (unique per process).
+     * @param gateway      What to send through.
+     * @param contacts     Who to send to.
+     * @param message      Full message text (split into parts by the gateway).
+     * @param triggerNanos When SOS was triggered (Scheduler clock), or -1 to skip the latency reports.
+     */
+    public void dispatch(long sessionId, final SmsGateway gateway, List<Contact> contacts, final String message, final long triggerNanos) {
+        final DispatchSession session = new DispatchSession(sessionId, message, contacts);
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                ActiveDispatch dispatch = new ActiveDispatch(session, gateway, gateway.divideMessage(message), triggerNanos);
+                if (journal != null) {
+                    journal.onSessionStarted(session); // Write-ahead: before the first send
+                }
+                for (int i = 0; i < session.getStatuses().size(); i++) {
+                    sendToContact(dispatch, i);
+                }
+                if (triggerNanos >= 0) {
+                    listener.onAllHandedOff(session, scheduler.nanoTime() - triggerNanos);
+                }
+                publish(dispatch);
+            }
+        });
+    }
+
+    /**
+     * Hands the message for one contact to the gateway. Runs on the scheduler thread.
+     */
+    private void sendToContact(final ActiveDispatch dispatch, final int contactIndex) {
+        final DispatchSession session = dispatch.session;
+        Contact contact = session.getStatuses().get(contactIndex).getContact();
+        final int attempt = session.beginAttempt(contactIndex, dispatch.parts.size());
+
+        long handoffStart = scheduler.nanoTime();
+        try {
+            dispatch.gateway.send(contact.getPhone(), dispatch.parts, new SmsGateway.Callback() {
+                @Override
+                public void onPartSent(boolean success, boolean transientFailure, String error) {
+                    handleSentResult(dispatch, contactIndex, attempt, success, transientFailure, error);
+                    publish(dispatch);
+                }
+
+                @Override
+                public void onPartDelivered(boolean success) {
+                    session.onPartDelivered(contactIndex, attempt, success);
+                    publish(dispatch);
+                }
+            });
+        } catch (IllegalArgumentException | SecurityException e) {
+            // Bad number or not allowed to send: retrying will not help
+            session.fail(contactIndex, e.getMessage());
+            listener.onSendError(session, contactIndex, e.getMessage(), -1);
+            if (journal != null) {
+                journal.onContactFinished(session, contactIndex);
+            }
+            return;
+        } catch (RuntimeException e) {
+            handleSentResult(dispatch, contactIndex, attempt, false, true, e.getMessage());
+            return;
+        }
+
+        long now = scheduler.nanoTime();
+        listener.onHandoff(session, contactIndex, attempt, now - handoffStart);
+        if (journal != null) {
+            journal.onHandedOff(session, contactIndex, attempt);
+        }
+        if (!dispatch.firstSendReported && dispatch.triggerNanos >= 0) {
+            dispatch.firstSendReported = true;
+            listener.onFirstSend(session, now - dispatch.triggerNanos);
+        }
+
+        // Backstop in case the gateway never reports back for this attempt
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                DispatchSession.ContactStatus status = session.getStatuses().get(contactIndex);
+                if (status.getAttempts() == attempt && status.getState() == DispatchSession.State.SENDING) {
+                    handleSentResult(dispatch, contactIndex, attempt, false, true, "No result from radio");
+                    publish(dispatch);
+                }
+            }
+        }, SENT_TIMEOUT_MS);
+    }
+
+    private void handleSentResult(final ActiveDispatch dispatch, final int contactIndex, int attempt,
+                                  boolean success, boolean transientFailure, String error) {
+        DispatchSession session = dispatch.session;
+        DispatchSession.ContactStatus status = session.getStatuses().get(contactIndex);
+        DispatchSession.State before = status.getState();
+        long retryDelayMs = session.onPartSent(contactIndex, attempt, success, transientFailure, error);
+        if (retryDelayMs >= 0) {
+            listener.onSendError(session, contactIndex, error, retryDelayMs);
+            scheduler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    sendToContact(dispatch, contactIndex);
+                    publish(dispatch);
+                }
+            }, retryDelayMs);
+        } else if (before == DispatchSession.State.SENDING && status.getState() == DispatchSession.State.FAILED) {
+            // Reported once, not again for the other parts of the same attempt
+            listener.onSendError(session, contactIndex, error, -1);
+        }
+        if (journal != null && before == DispatchSession.State.SENDING
+                && (status.getState() == DispatchSession.State.SENT || status.getState() == DispatchSession.State.FAILED)) {
+            journal.onContactFinished(session, contactIndex);
+        }
+    }
+
+    private void publish(ActiveDispatch dispatch) {
+        DispatchSession.Summary summary = dispatch.session.summarize();
+        listener.onUpdate(summary);
+        if (summary.complete && !dispatch.completeReported) {
+            dispatch.completeReported = true;
+            listener.onComplete(summary);
+            if (journal != null) {
+                journal.onSessionComplete(dispatch.session);
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Book-keeping for one SOS message being sent to every emergency contact.
+ *
+ * It tracks, per contact, how many parts of the (possibly multipart) SMS the radio has
+ * accepted and how many were reported delivered, and decides when a failed send should
+ * be retried and after how long. It does not send anything itself and has no Android
+ * dependencies; DispatchScheduler feeds it the results coming back from an SmsGateway.
+ */
+public class DispatchSession {
+
+    // --- Retry settings ---
+    public static final int MAX_ATTEMPTS = 4;
+    public static final long BASE_BACKOFF_MS = 1_000;
+    public static final long MAX_BACKOFF_MS = 16_000;
+    // --- End Retry settings ---
+
+    public enum State {
+        PENDING,    // Not handed to the radio yet (or waiting to retry)
+        SENDING,    // Handed to the radio, waiting for the "sent" results
+        SENT,       // Every part accepted by the network
+        DELIVERED,  // Every part reported delivered to the recipient's phone
+        FAILED      // Gave up
+    }
+
+    /*
+     * The delivery status of one contact.
+     */
+    public static class ContactStatus {
+        private final Contact contact;
+        private State state = State.PENDING;
+        private int attempts;
+        private int partCount;
+        private int partsSent;
+        private int partsDelivered;
+        private String lastError;
+
+        ContactStatus(Contact contact) {
+            this.contact = contact;
+        }
+
+        public Contact getContact() {
+            return contact;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+    }
+
+    /*
+     * A snapshot of the whole session's progress, safe to hand to the UI thread.
+     */
+    public static class Summary {
+        public final long sessionId;
+        public final int total;
+        public final int sent;       // Includes delivered
+        public final int delivered;
+        public final int failed;
+        public final boolean complete; // Nothing is pending, sending or waiting to retry
+
+        Summary(long sessionId, int total, int sent, int delivered, int failed, boolean complete) {
+            this.sessionId = sessionId;
+            this.total = total;
+            this.sent = sent;
+            this.delivered = delivered;
+            this.failed = failed;
+            this.complete = complete;
+        }
+    }
+
+    private final long id;
+    private final String message;
+    private final List<ContactStatus> statuses;
+
+    public DispatchSession(long id, String message, List<Contact> contacts) {
+        this.id = id;
+        this.message = message;
+        List<ContactStatus> list = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            list.add(new ContactStatus(contact));
+        }
+        this.statuses = Collections.unmodifiableList(list);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public List<ContactStatus> getStatuses() {
+        return statuses;
+    }
+
+    /**
+     * Records that the message is being handed to the radio for a contact.
+     * @return The attempt number (1 for the first try).
+     */
+    public int beginAttempt(int contactIndex, int partCount) {
+        ContactStatus status = statuses.get(contactIndex);
+        status.attempts++;
+        status.state = State.SENDING;
+        status.partCount = partCount;
+        status.partsSent = 0;
+        status.partsDelivered = 0;
+        return status.attempts;
+    }
+
+    /**
+     * Records a "sent" result for one part.
+     *
+     * @param attempt   The attempt the result belongs to; results from older attempts are ignored.
+     * @param success   Whether the radio accepted the part.
+     * @param transientFailure Whether the failure might go away by itself (no service, radio off...).
+     * @param error     Description of the failure, for logs and the UI.
+     * @return How long to wait before retrying this contact, or -1 for no retry.
+     */
+    public long onPartSent(int contactIndex, int attempt, boolean success, boolean transientFailure, String error) {
+        ContactStatus status = statuses.get(contactIndex);
+        if (attempt != status.attempts || status.state != State.SENDING) {
+            return -1;
+        }
+        if (success) {
+            status.partsSent++;
+            if (status.partsSent >= status.partCount) {
+                status.state = State.SENT;
+            }
+            return -1;
+        }
+
+        status.lastError = error;
+        if (transientFailure && status.attempts < MAX_ATTEMPTS) {
+            status.state = State.PENDING;
+            return backoffDelayMs(status.attempts);
+        }
+        status.state = State.FAILED;
+        return -1;
+    }
+
+    /**
+     * Records a delivery report for one part.
+     */
+    public void onPartDelivered(int contactIndex, int attempt, boolean success) {
+        ContactStatus status = statuses.get(contactIndex);
+        if (attempt != status.attempts || !success) {
+            return;
+        }
+        status.partsDelivered++;
+        if (status.partsDelivered >= status.partCount && status.state == State.SENT) {
+            status.state = State.DELIVERED;
+        }
+    }
+
+    /**
+     * Marks a contact as failed without retrying (e.g. invalid number, missing permission).
+     */
+    public void fail(int contactIndex, String error) {
+        ContactStatus status = statuses.get(contactIndex);
+        status.lastError = error;
+        status.state = State.FAILED;
+    }
+
+    public Summary summarize() {
+        int sent = 0;
+        int delivered = 0;
+        int failed = 0;
+        boolean complete = true;
+        for (ContactStatus status : statuses) {
+            switch (status.state) {
+                case DELIVERED:
+                    delivered++;
+                    sent++;
+                    break;
+                case SENT:
+                    sent++;
+                    break;
+                case FAILED:
+                    failed++;
+                    break;
+                default:
+                    complete = false;
+                    break;
+            }
+        }
+        return new Summary(id, statuses.size(), sent, delivered, failed, complete);
+    }
+
+    /**
+     * Exponential backoff: 1 s, 2 s, 4 s... capped at MAX_BACKOFF_MS.
+     */
+    public static long backoffDelayMs(int attempt) {
+        long delay = BASE_BACKOFF_MS << Math.min(attempt - 1, 16);
+        return Math.min(delay, MAX_BACKOFF_MS);
+    }
+}
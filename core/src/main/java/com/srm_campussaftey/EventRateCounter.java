@@ -0,0 +1,85 @@
+package com.srm_campussaftey;
+
+import java.util.Locale;
+
+/*
+ * Counts how many events of one kind arrive per minute, e.g. accessibility events delivered
+ * to SOSAccessibilityService. Cheap enough to call on every event: record() only bumps
+ * counters, nothing is allocated or stored per event.
+ *
+ * Keeps the total since start(), the count for the current wall-clock minute (of the
+ * caller's clock) and the count for the minute before it, which is the last complete minute.
+ *
+ * Not thread-safe; each counter is used from one thread.
+ */
+public class EventRateCounter {
+
+    private static final long MINUTE_MS = 60_000;
+
+    private long startMs = -1;
+    private long total;
+    private long currentMinute = -1; // Index of the minute being counted
+    private long currentMinuteCount;
+    private long previousMinuteCount;
+
+    /**
+     * Starts (or restarts) counting from zero.
+     */
+    public void start(long nowMs) {
+        startMs = nowMs;
+        total = 0;
+        currentMinute = nowMs / MINUTE_MS;
+        currentMinuteCount = 0;
+        previousMinuteCount = 0;
+    }
+
+    public void record(long nowMs) {
+        if (startMs < 0) {
+            start(nowMs);
+        }
+        roll(nowMs);
+        currentMinuteCount++;
+        total++;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Events in the last complete minute.
+     */
+    public long getLastMinuteCount(long nowMs) {
+        roll(nowMs);
+        return previousMinuteCount;
+    }
+
+    /**
+     * Average events per minute since start().
+     */
+    public double getAveragePerMinute(long nowMs) {
+        if (startMs < 0 || nowMs <= startMs) {
+            return 0;
+        }
+        return total * (double) MINUTE_MS / (nowMs - startMs);
+    }
+
+    /**
+     * One line for the debug screen, e.g. "12 total, 0.4/min average, 0 in the last minute".
+     */
+    public String format(long nowMs) {
+        return String.format(Locale.US, "%d total, %.1f/min average, %d in the last minute",
+                getTotal(), getAveragePerMinute(nowMs), getLastMinuteCount(nowMs));
+    }
+
+    private void roll(long nowMs) {
+        long minute = nowMs / MINUTE_MS;
+        if (minute == currentMinute) {
+            return;
+        }
+        // The counted minute is now the previous one, unless more than a minute went by
+        previousMinuteCount = minute == currentMinute + 1 ? currentMinuteCount : 0;
+        currentMinuteCount = 0;
+        currentMinute = minute;
+    }
+}
@@ -0,0 +1,44 @@
+package com.srm_campussaftey;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * A Scheduler backed by one plain Java thread, for running the SOS core off-device.
+ */
+public class ExecutorScheduler implements Scheduler {
+
+    private final ScheduledExecutorService executor;
+
+    public ExecutorScheduler(final String threadName) {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void post(Runnable task) {
+        executor.execute(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
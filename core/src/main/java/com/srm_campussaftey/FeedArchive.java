@@ -0,0 +1,363 @@
+package com.srm_campussaftey;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/*
+ * The cold tier of the campus feed: posts that left the live journal (FeedRetentionPolicy),
+ * kept compressed in one append-only file and only read when the user asks for older posts.
+ *
+ * File layout:
+ *   [int magic "SRMA"][byte version] then blocks of up to BLOCK_ITEMS posts each:
+ *   [int length][int count][long oldestTimestamp][long oldestId][long newestTimestamp][long newestId][deflated posts]
+ * where "length" counts everything after itself. Inside a block, oldest first, each post is
+ *   [long timestamp][long id][byte category][byte severity][byte status][int length][BinaryCodec payload]
+ * Posts are compressed a block at a time: titles and descriptions of campus incidents repeat
+ * a lot, so a block is a fraction of the size of the same records in the journal.
+ *
+ * Nothing is read until the first readPage. Then only the block headers are read (a few
+ * bytes per BLOCK_ITEMS posts, skipping the compressed data), and a page only inflates the
+ * blocks it needs. The last block inflated is kept, since the next page usually comes from
+ * the same block.
+ *
+ * Posts are archived oldest first, but a block can still overlap older ones (an incident from
+ * the server with an old timestamp, archived later). And a crash between archiving posts and
+ * removing them from the journal archives them twice. So pages merge every block whose time
+ * range fits and leave out repeated posts.
+ *
+ * A torn block at the end (a crash while appending) is ignored and cut off by the next append.
+ * Archived posts are not changed any more: resolving one later is not possible.
+ *
+ * Thread safe (every method is synchronized); the journal appends on its compaction thread
+ * while the feed reads on the DiskIO thread.
+ */
+public class FeedArchive {
+
+    public static final int MAGIC = 0x53524D41; // "SRMA"
+    public static final byte VERSION = 1;
+    static final int BLOCK_ITEMS = 256;
+    private static final int FILE_HEADER_SIZE = 4 + 1;
+    private static final int BLOCK_HEADER_SIZE = 4 + 8 * 4; // count + oldest and newest keys
+    // Guard against reading garbage as a huge length
+    private static final int MAX_BLOCK_BYTES = 16 << 20;
+
+    /*
+     * Where one block is and which posts it holds, read from its header.
+     */
+    private static final class Block {
+        final long offset; // Of its length field
+        final int length;
+        final int count;
+        final long oldestTimestamp;
+        final long oldestId;
+        final long newestTimestamp;
+        final long newestId;
+
+        Block(long offset, int length, int count, long oldestTimestamp, long oldestId,
+              long newestTimestamp, long newestId) {
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.oldestTimestamp = oldestTimestamp;
+            this.oldestId = oldestId;
+            this.newestTimestamp = newestTimestamp;
+            this.newestId = newestId;
+        }
+    }
+
+    // Oldest first by (timestamp, id), the order posts are archived in
+    private static final Comparator<NewsItem> OLDEST_FIRST = new Comparator<NewsItem>() {
+        @Override
+        public int compare(NewsItem o1, NewsItem o2) {
+            return compareKey(o1.getTimestamp(), o1.getId(), o2.getTimestamp(), o2.getId());
+        }
+    };
+
+    private final File file;
+    private List<Block> blocks; // Null until first needed
+    private long validLength;   // Bytes of complete blocks (and the file header)
+    private Block cachedBlock;
+    private List<NewsItem> cachedItems; // Oldest first
+
+    public FeedArchive(File file) {
+        this.file = file;
+    }
+
+    /**
+     * True if anything was ever archived. Only checks the file size.
+     */
+    public synchronized boolean hasPosts() {
+        return blocks != null ? !blocks.isEmpty() : file.length() > FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Number of posts in the archive (a post archived twice counts twice).
+     */
+    public synchronized int size() throws IOException {
+        loadBlocks();
+        int size = 0;
+        for (Block block : blocks) {
+            size += block.count;
+        }
+        return size;
+    }
+
+    /**
+     * Timestamp of the newest archived post, or Long.MIN_VALUE if there is none. Only reads
+     * the block headers.
+     */
+    public synchronized long newestTimestamp() throws IOException {
+        loadBlocks();
+        long newest = Long.MIN_VALUE;
+        for (Block block : blocks) {
+            newest = Math.max(newest, block.newestTimestamp);
+        }
+        return newest;
+    }
+
+    /**
+     * Adds posts to the end of the archive, in blocks of BLOCK_ITEMS, and syncs the file.
+     * The posts do not have to be in order.
+     */
+    public synchronized void append(List<NewsItem> items) throws IOException {
+        if (items.isEmpty()) {
+            return;
+        }
+        loadBlocks();
+        List<NewsItem> sorted = new ArrayList<>(items);
+        Collections.sort(sorted, OLDEST_FIRST);
+
+        if (file.length() != validLength) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength); // Torn block from a crash, or a new file
+            }
+        }
+        List<Block> written = new ArrayList<>();
+        try (FileOutputStream stream = new FileOutputStream(file, true);
+             DataOutputStream out = new DataOutputStream(stream)) {
+            long offset = validLength;
+            if (offset == 0) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                offset = FILE_HEADER_SIZE;
+            }
+            for (int start = 0; start < sorted.size(); start += BLOCK_ITEMS) {
+                List<NewsItem> part = sorted.subList(start, Math.min(sorted.size(), start + BLOCK_ITEMS));
+                Block block = writeBlock(out, offset, part);
+                written.add(block);
+                offset += 4 + block.length;
+            }
+            out.flush();
+            stream.getFD().sync();
+            validLength = offset;
+        }
+        blocks.addAll(written);
+    }
+
+    /**
+     * Reads one page of archived posts, newest first, older than the given key (like
+     * NewsJournal.readPage). Pass Long.MAX_VALUE for both to start at the newest.
+     *
+     * @param filter Only posts matching it, or null for all.
+     */
+    public synchronized List<NewsItem> readPage(IncidentIndex.Filter filter, long beforeTimestamp, long beforeId,
+                                                int limit) throws IOException {
+        loadBlocks();
+        long since = filter == null ? Long.MIN_VALUE : filter.getSinceTimestamp();
+        // Blocks that can hold posts older than the key, newest first
+        List<Block> candidates = new ArrayList<>();
+        for (Block block : blocks) {
+            if (compareKey(block.oldestTimestamp, block.oldestId, beforeTimestamp, beforeId) < 0
+                    && block.newestTimestamp >= since) {
+                candidates.add(block);
+            }
+        }
+        Collections.sort(candidates, new Comparator<Block>() {
+            @Override
+            public int compare(Block b1, Block b2) {
+                return compareKey(b2.newestTimestamp, b2.newestId, b1.newestTimestamp, b1.newestId);
+            }
+        });
+
+        List<NewsItem> found = new ArrayList<>();
+        for (Block block : candidates) {
+            if (found.size() >= limit) {
+                // Done once no remaining block can hold anything newer than the page's oldest post
+                NewsItem oldest = found.get(limit - 1);
+                if (compareKey(block.newestTimestamp, block.newestId, oldest.getTimestamp(), oldest.getId()) < 0) {
+                    break;
+                }
+            }
+            for (NewsItem item : readBlock(block)) {
+                if (compareKey(item.getTimestamp(), item.getId(), beforeTimestamp, beforeId) < 0
+                        && (filter == null || filter.matches(item))) {
+                    found.add(item);
+                }
+            }
+            Collections.sort(found, Collections.reverseOrder(OLDEST_FIRST));
+            removeRepeats(found);
+            if (found.size() > limit) {
+                found.subList(limit, found.size()).clear();
+            }
+        }
+        return found;
+    }
+
+    // --- Blocks ---
+
+    /**
+     * Reads the block headers, once. Stops at the first incomplete block.
+     */
+    private void loadBlocks() throws IOException {
+        if (blocks != null) {
+            return;
+        }
+        List<Block> loaded = new ArrayList<>();
+        long length = 0;
+        if (file.length() >= FILE_HEADER_SIZE) {
+            long fileLength = file.length();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a feed archive: " + file);
+                }
+                in.readByte(); // Version 1 is the only one so far
+                length = FILE_HEADER_SIZE;
+                while (length + 4 + BLOCK_HEADER_SIZE <= fileLength) {
+                    int blockLength = in.readInt();
+                    if (blockLength < BLOCK_HEADER_SIZE || blockLength > MAX_BLOCK_BYTES
+                            || length + 4 + blockLength > fileLength) {
+                        break; // Torn or corrupt tail
+                    }
+                    loaded.add(new Block(length, blockLength, in.readInt(), in.readLong(), in.readLong(),
+                            in.readLong(), in.readLong()));
+                    skipFully(in, blockLength - BLOCK_HEADER_SIZE);
+                    length += 4 + blockLength;
+                }
+            } catch (EOFException e) {
+                // Treated the same as a torn tail
+            }
+        }
+        blocks = loaded;
+        validLength = length;
+    }
+
+    private static Block writeBlock(DataOutputStream out, long offset, List<NewsItem> items) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION); // Written once, kept for long
+        try {
+            DataOutputStream posts = new DataOutputStream(new DeflaterOutputStream(compressed, deflater));
+            for (NewsItem item : items) {
+                byte[] payload = BinaryCodec.encodeNewsItem(item);
+                posts.writeLong(item.getTimestamp());
+                posts.writeLong(item.getId());
+                posts.writeByte(item.getCategory());
+                posts.writeByte(item.getSeverity());
+                posts.writeByte(item.getStatus());
+                posts.writeInt(payload.length);
+                posts.write(payload);
+            }
+            posts.close();
+        } finally {
+            deflater.end();
+        }
+        NewsItem oldest = items.get(0);
+        NewsItem newest = items.get(items.size() - 1);
+        int length = BLOCK_HEADER_SIZE + compressed.size();
+        out.writeInt(length);
+        out.writeInt(items.size());
+        out.writeLong(oldest.getTimestamp());
+        out.writeLong(oldest.getId());
+        out.writeLong(newest.getTimestamp());
+        out.writeLong(newest.getId());
+        compressed.writeTo(out);
+        return new Block(offset, length, items.size(), oldest.getTimestamp(), oldest.getId(),
+                newest.getTimestamp(), newest.getId());
+    }
+
+    /**
+     * Inflates one block. Its posts, oldest first.
+     */
+    private List<NewsItem> readBlock(Block block) throws IOException {
+        if (block == cachedBlock) {
+            return cachedItems;
+        }
+        byte[] compressed = new byte[block.length - BLOCK_HEADER_SIZE];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(block.offset + 4 + BLOCK_HEADER_SIZE);
+            raf.readFully(compressed);
+        }
+        List<NewsItem> items = new ArrayList<>(block.count);
+        BinaryCodec.Decoder decoder = new BinaryCodec.Decoder();
+        Inflater inflater = new Inflater();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(compressed), inflater)))) {
+            for (int i = 0; i < block.count; i++) {
+                long timestamp = in.readLong();
+                long id = in.readLong();
+                int category = in.readByte();
+                int severity = in.readByte();
+                int status = in.readByte();
+                NewsItem item = decoder.readNewsItem(in, in.readInt(), timestamp, id);
+                item.setCategory(category);
+                item.setSeverity(severity);
+                item.setStatus(status);
+                items.add(item);
+            }
+        } finally {
+            inflater.end();
+        }
+        cachedBlock = block;
+        cachedItems = items;
+        return items;
+    }
+
+    // --- Helpers ---
+
+    private static int compareKey(long timestamp1, long id1, long timestamp2, long id2) {
+        int result = Long.compare(timestamp1, timestamp2);
+        return result != 0 ? result : Long.compare(id1, id2);
+    }
+
+    /**
+     * Drops posts archived twice. The list is sorted, so repeats sit next to each other.
+     */
+    private static void removeRepeats(List<NewsItem> sorted) {
+        int kept = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            NewsItem item = sorted.get(i);
+            if (kept > 0 && sorted.get(kept - 1).getId() == item.getId()
+                    && sorted.get(kept - 1).getTimestamp() == item.getTimestamp()) {
+                continue;
+            }
+            sorted.set(kept++, item);
+        }
+        sorted.subList(kept, sorted.size()).clear();
+    }
+
+    private static void skipFully(DataInputStream in, int count) throws IOException {
+        while (count > 0) {
+            int skipped = in.skipBytes(count);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.srm_campussaftey;
+
+/*
+ * How much of the campus feed stays "live": in the journal, in its in-memory indexes, and
+ * read (headers only) every time the feed opens. Posts older than the max age, and the
+ * oldest posts past the max count, move to the FeedArchive, which is only read when the
+ * user scrolls past the live feed and asks for older posts.
+ *
+ * Keeping the live part bounded is what keeps opening the feed (and its memory) the same
+ * after years of posts as after a week.
+ *
+ * Both limits can be changed through SharedPreferences (CampusSafetyPrefs).
+ * No Android dependencies, so the decisions are easy to test.
+ */
+public class FeedRetentionPolicy {
+
+    // --- Keys in CampusSafetyPrefs ---
+    public static final String KEY_MAX_AGE_MS = "FeedRetentionMaxAgeMs";
+    public static final String KEY_MAX_ITEMS = "FeedRetentionMaxItems";
+    // --- End of Keys ---
+
+    // --- Defaults ---
+    public static final long DEFAULT_MAX_AGE_MS = 90L * 24 * 60 * 60_000; // About one semester
+    public static final int DEFAULT_MAX_ITEMS = 5_000;
+    // --- End of Defaults ---
+
+    private final long maxAgeMs;
+    private final int maxItems;
+
+    public FeedRetentionPolicy(long maxAgeMs, int maxItems) {
+        this.maxAgeMs = maxAgeMs;
+        this.maxItems = maxItems;
+    }
+
+    public static FeedRetentionPolicy defaults() {
+        return new FeedRetentionPolicy(DEFAULT_MAX_AGE_MS, DEFAULT_MAX_ITEMS);
+    }
+
+    /**
+     * Never archives anything. Used while seeding the feed for benchmarks.
+     */
+    public static FeedRetentionPolicy keepAll() {
+        return new FeedRetentionPolicy(Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public long getMaxAgeMs() {
+        return maxAgeMs;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Posts older than this (at the given time) are expired.
+     */
+    public long cutoff(long nowMs) {
+        return nowMs - maxAgeMs;
+    }
+
+    public boolean isExpired(long timestamp, long nowMs) {
+        return timestamp < cutoff(nowMs);
+    }
+
+    /**
+     * How many of the oldest posts should leave the live feed.
+     *
+     * @param liveCount    Posts in the live feed.
+     * @param expiredCount Posts in it older than cutoff(now).
+     */
+    public int countToArchive(int liveCount, int expiredCount) {
+        return Math.min(liveCount, Math.max(expiredCount, liveCount - maxItems));
+    }
+}
@@ -0,0 +1,295 @@
+package com.srm_campussaftey;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Fetches changes to the campus incident feed from the campus security server.
+ *
+ * One request asks for everything that changed after a cursor:
+ *   GET <baseUrl>/incidents?limit=<n>&since=<cursor>     (no "since" on the very first sync)
+ *   If-None-Match: <ETag of the last response>
+ * and the server answers with one of:
+ *   304 Not Modified   nothing changed
+ *   200 OK             an ETag header and
+ *       {"cursor": "...", "hasMore": false,
+ *        "incidents": [{"id": "srv-1", "title": "...", "description": "...", "timestamp": 1700000000000,
+ *                       "category": "theft", "severity": "high", "status": "open",
+ *                       "latitude": 12.8231, "longitude": 80.0442}, ...]}
+ *   anything else      an error; 429 and 503 may say when to come back (Retry-After, in seconds)
+ * The cursor is opaque: whatever the server sends back is sent again next time.
+ *
+ * The body is parsed as a stream (JsonReader), one incident at a time, and gzip is accepted.
+ * Connections are not torn down after a response, so the pages of one sync can reuse them.
+ *
+ * Blocking: call it on a background thread (FeedSyncEngine does).
+ */
+public class FeedSyncClient {
+
+    // --- Request settings ---
+    public static final int DEFAULT_PAGE_LIMIT = 200;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 20_000;
+    // --- End of Request settings ---
+
+    // The server's names for NewsItem's categories, severities and statuses (index = value)
+    static final String[] CATEGORY_KEYS = {"other", "theft", "harassment", "medical", "hazard", "suspicious"};
+    static final String[] SEVERITY_KEYS = {"", "low", "medium", "high"};
+    static final String[] STATUS_KEYS = {"open", "resolved"};
+
+    /*
+     * One response: either "not modified" or a page of incidents with the cursor after them.
+     */
+    public static final class Page {
+        public final boolean notModified;
+        public final List<NewsItem> incidents;
+        public final String cursor; // Null if the server sent none
+        public final String etag;   // Null if the server sent none
+        public final boolean hasMore;
+
+        Page(boolean notModified, List<NewsItem> incidents, String cursor, String etag, boolean hasMore) {
+            this.notModified = notModified;
+            this.incidents = incidents;
+            this.cursor = cursor;
+            this.etag = etag;
+            this.hasMore = hasMore;
+        }
+    }
+
+    /*
+     * The server answered with an error status.
+     */
+    public static class HttpException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int code;
+        private final long retryAfterMs;
+
+        public HttpException(int code, long retryAfterMs) {
+            super("HTTP " + code);
+            this.code = code;
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * How long the server asked us to wait (Retry-After), or 0 if it did not say.
+         */
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+
+    private final String baseUrl;
+    private final int pageLimit;
+
+    public FeedSyncClient(String baseUrl) {
+        this(baseUrl, DEFAULT_PAGE_LIMIT);
+    }
+
+    public FeedSyncClient(String baseUrl, int pageLimit) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.pageLimit = pageLimit;
+    }
+
+    /**
+     * Asks for the changes after a cursor.
+     *
+     * @param cursor Cursor from the last page, or null for everything.
+     * @param etag   ETag from the last response, or null.
+     * @throws HttpException For an error status.
+     * @throws IOException   If the server could not be reached or sent something unreadable.
+     */
+    public Page fetch(String cursor, String etag) throws IOException {
+        StringBuilder url = new StringBuilder(baseUrl).append("/incidents?limit=").append(pageLimit);
+        if (cursor != null) {
+            url.append("&since=").append(URLEncoder.encode(cursor, "UTF-8"));
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(url.toString()).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("Accept", "application/json");
+        // Asking for gzip ourselves means we also unzip it ourselves (Android would otherwise do it)
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+
+        int code = connection.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            closeQuietly(connection.getInputStream());
+            return new Page(true, Collections.<NewsItem>emptyList(), cursor, etag, false);
+        }
+        if (code != HttpURLConnection.HTTP_OK) {
+            closeQuietly(connection.getErrorStream()); // Read to the end so the connection can be reused
+            throw new HttpException(code, parseRetryAfterMs(connection.getHeaderField("Retry-After")));
+        }
+        InputStream body = new BufferedInputStream(connection.getInputStream());
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+            body = new GZIPInputStream(body);
+        }
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            return readPage(reader, connection.getHeaderField("ETag"));
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Unreadable feed response", e); // Wrong JSON types
+        }
+    }
+
+    private static Page readPage(JsonReader reader, String etag) throws IOException {
+        String cursor = null;
+        boolean hasMore = false;
+        List<NewsItem> incidents = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("cursor")) {
+                cursor = reader.nextString();
+            } else if (name.equals("hasMore")) {
+                hasMore = reader.nextBoolean();
+            } else if (name.equals("incidents")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    NewsItem incident = readIncident(reader);
+                    if (incident != null) {
+                        incidents.add(incident);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue(); // Fields added by a newer server
+            }
+        }
+        reader.endObject();
+        return new Page(false, incidents, cursor, etag, hasMore);
+    }
+
+    /**
+     * Reads one incident object. Also used for the incidents pushed by IncidentStream.
+     *
+     * @return The incident, or null if it has no id (it could never be matched up later).
+     */
+    static NewsItem readIncident(JsonReader reader) throws IOException {
+        String remoteId = null;
+        String title = null;
+        String description = null;
+        long timestamp = 0;
+        int category = NewsItem.CATEGORY_OTHER;
+        int severity = NewsItem.SEVERITY_MEDIUM;
+        int status = NewsItem.STATUS_OPEN;
+        boolean hasLatitude = false;
+        boolean hasLongitude = false;
+        double latitude = 0;
+        double longitude = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    remoteId = reader.nextString(); // Numbers are read as text too
+                    break;
+                case "title":
+                    title = reader.nextString();
+                    break;
+                case "description":
+                    description = reader.nextString();
+                    break;
+                case "timestamp":
+                    timestamp = reader.nextLong();
+                    break;
+                case "category":
+                    category = indexOf(CATEGORY_KEYS, reader.nextString(), NewsItem.CATEGORY_OTHER);
+                    break;
+                case "severity":
+                    severity = indexOf(SEVERITY_KEYS, reader.nextString(), NewsItem.SEVERITY_MEDIUM);
+                    break;
+                case "status":
+                    status = indexOf(STATUS_KEYS, reader.nextString(), NewsItem.STATUS_OPEN);
+                    break;
+                case "latitude":
+                    latitude = reader.nextDouble();
+                    hasLatitude = true;
+                    break;
+                case "longitude":
+                    longitude = reader.nextDouble();
+                    hasLongitude = true;
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (remoteId == null) {
+            return null;
+        }
+        NewsItem item = new NewsItem(title, description, timestamp);
+        item.setRemoteId(remoteId);
+        item.setCategory(category);
+        item.setSeverity(severity);
+        item.setStatus(status);
+        if (hasLatitude && hasLongitude) {
+            item.setLocation(latitude, longitude);
+        }
+        return item;
+    }
+
+    private static int indexOf(String[] keys, String key, int missing) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equalsIgnoreCase(key)) {
+                return i;
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Retry-After in seconds; the HTTP-date form is rare for APIs and treated as "not given".
+     */
+    static long parseRetryAfterMs(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim())) * 1000;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[512];
+            while (in.read(buffer) >= 0) {
+                // Drain
+            }
+            in.close();
+        } catch (IOException e) {
+            // Nothing useful to do; the connection is just not reused
+        }
+    }
+}
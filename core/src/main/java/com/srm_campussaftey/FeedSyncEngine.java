@@ -0,0 +1,164 @@
+package com.srm_campussaftey;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Keeps the local campus feed a mirror of the campus security server's without downloading
+ * the whole feed every time.
+ *
+ * The Store remembers a cursor (and the ETag of the last response). A sync asks the server
+ * only for what changed after that cursor (FeedSyncClient), hands each page to the Store to
+ * merge in, and moves the cursor on with it. A sync where nothing changed is one request
+ * answered with "304 Not Modified" and no body.
+ *
+ * When a sync fails it is tried again later, each time waiting about twice as long (from
+ * BASE_BACKOFF_MS up to MAX_BACKOFF_MS). The wait is half fixed and half random ("jitter"),
+ * so phones that lost the server at the same moment do not all come back at the same
+ * moment. A Retry-After from the server is always respected. Pages saved before the
+ * failure are kept; the next sync starts after them.
+ *
+ * Every sync runs on the Scheduler's thread (network and Store calls block it), and all the
+ * state below is only touched there. requestSync() may be called from any thread.
+ */
+public class FeedSyncEngine {
+
+    // --- Sync settings ---
+    public static final int MAX_PAGES_PER_SYNC = 20; // The rest comes with the next sync
+    public static final long MIN_SYNC_INTERVAL_MS = 30_000; // Reopening the feed quickly does not sync again
+    public static final long BASE_BACKOFF_MS = 5_000;
+    public static final long MAX_BACKOFF_MS = 15 * 60_000;
+    // --- End Sync settings ---
+
+    /*
+     * The local side: where the incidents and the cursor are kept.
+     */
+    public interface Store {
+        /** @return The cursor after the last page saved, or null if nothing was ever synced. */
+        String getCursor() throws IOException;
+
+        /** @return The ETag of the last response, or null. */
+        String getETag() throws IOException;
+
+        /**
+         * Merges one page of incidents from the server (matched up by remote id: new ones are
+         * added, known ones updated), then saves the cursor and ETag that come after them.
+         * Applying the same page twice must change nothing: after a crash between the merge
+         * and the cursor, the page is downloaded again.
+         *
+         * @return The incidents that were added or changed, as stored (with local ids).
+         */
+        List<NewsItem> apply(List<NewsItem> incidents, String cursor, String etag) throws IOException;
+    }
+
+    // Interface for telling the app what a sync did. Called on the Scheduler's thread
+    public interface Listener {
+        void onSynced(List<NewsItem> changed);
+
+        void onSyncFailed(IOException e, long retryInMs);
+    }
+
+    private final Scheduler scheduler;
+    private final FeedSyncClient client;
+    private final Store store;
+    private final Listener listener;
+    private final Random random;
+
+    // --- Sync state (Scheduler thread only) ---
+    private boolean retryPending;
+    private int failures;
+    private boolean synced;
+    private long lastSyncNanos;
+    // --- End Sync state ---
+
+    public FeedSyncEngine(Scheduler scheduler, FeedSyncClient client, Store store, Listener listener) {
+        this(scheduler, client, store, listener, new Random());
+    }
+
+    FeedSyncEngine(Scheduler scheduler, FeedSyncClient client, Store store, Listener listener, Random random) {
+        this.scheduler = scheduler;
+        this.client = client;
+        this.store = store;
+        this.listener = listener;
+        this.random = random;
+    }
+
+    /**
+     * Syncs soon, unless a sync finished less than MIN_SYNC_INTERVAL_MS ago or a retry is
+     * already waiting out its backoff.
+     */
+    public void requestSync() {
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (retryPending) {
+                    return;
+                }
+                if (synced && scheduler.nanoTime() - lastSyncNanos < MIN_SYNC_INTERVAL_MS * 1_000_000L) {
+                    return;
+                }
+                sync();
+            }
+        });
+    }
+
+    private final Runnable retry = new Runnable() {
+        @Override
+        public void run() {
+            retryPending = false;
+            sync();
+        }
+    };
+
+    private void sync() {
+        List<NewsItem> changed = new ArrayList<>();
+        try {
+            String cursor = store.getCursor();
+            String etag = store.getETag();
+            for (int page = 0; page < MAX_PAGES_PER_SYNC; page++) {
+                FeedSyncClient.Page result = client.fetch(cursor, etag);
+                if (result.notModified) {
+                    break;
+                }
+                String nextCursor = result.cursor != null ? result.cursor : cursor;
+                changed.addAll(store.apply(result.incidents, nextCursor, result.etag));
+                boolean moved = nextCursor != null && !nextCursor.equals(cursor);
+                cursor = nextCursor;
+                etag = result.etag;
+                if (!result.hasMore || !moved) {
+                    break; // Done, or a server that says "more" without moving on would loop forever
+                }
+            }
+        } catch (IOException e) {
+            failures++;
+            long retryAfterMs = e instanceof FeedSyncClient.HttpException
+                    ? ((FeedSyncClient.HttpException) e).getRetryAfterMs() : 0;
+            long delayMs = backoffDelayMs(failures, retryAfterMs, random);
+            retryPending = true;
+            scheduler.postDelayed(retry, delayMs);
+            if (!changed.isEmpty()) {
+                listener.onSynced(changed); // The pages before the failure were saved
+            }
+            listener.onSyncFailed(e, delayMs);
+            return;
+        }
+        failures = 0;
+        synced = true;
+        lastSyncNanos = scheduler.nanoTime();
+        listener.onSynced(changed);
+    }
+
+    /**
+     * How long to wait before retrying after the given number of failures in a row:
+     * between half and all of BASE_BACKOFF_MS * 2^(failures - 1), capped at MAX_BACKOFF_MS,
+     * but never less than the server's Retry-After.
+     */
+    public static long backoffDelayMs(int failures, long retryAfterMs, Random random) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(Math.max(failures - 1, 0), 20));
+        long half = ceiling / 2;
+        long delayMs = half + (long) (random.nextDouble() * half);
+        return Math.max(delayMs, retryAfterMs);
+    }
+}
@@ -0,0 +1,202 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A spatial index over the incidents that have a location, for "what happened near me".
+ *
+ * The map is cut into a grid of square cells (CELL_METERS on a side, measured north-south).
+ * Each incident goes into the one cell it falls in. A query only looks at the cells
+ * that overlap the circle around the user, so its cost depends on how many incidents
+ * are nearby, not on how many there are in total.
+ *
+ * Inside a cell the incidents are kept sorted by time, so "in the last 24 h" is a binary
+ * search for the first recent one and everything older is never looked at.
+ *
+ * Cells are plain latitude/longitude steps; the query widens its longitude range to
+ * make up for cells getting narrower away from the equator. Queries across the
+ * 180th meridian are not handled (not a problem for one campus).
+ *
+ * Not thread-safe; NewsJournal uses it under its own lock.
+ */
+public class GeoIndex {
+
+    public static final double CELL_METERS = 250;
+    static final double METERS_PER_DEGREE = 111_320; // One degree of latitude
+    private static final double CELL_DEGREES = CELL_METERS / METERS_PER_DEGREE;
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private int size;
+
+    /*
+     * One incident found by a query.
+     */
+    public static class Hit {
+        public final long id;
+        public final long timestamp;
+        public final double distanceMeters;
+
+        Hit(long id, long timestamp, double distanceMeters) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.distanceMeters = distanceMeters;
+        }
+    }
+
+    // Closest first; newer first when two are the same distance away
+    private static final Comparator<Hit> CLOSEST_FIRST = new Comparator<Hit>() {
+        @Override
+        public int compare(Hit h1, Hit h2) {
+            int result = Double.compare(h1.distanceMeters, h2.distanceMeters);
+            return result != 0 ? result : Long.compare(h2.timestamp, h1.timestamp);
+        }
+    };
+
+    /*
+     * The incidents in one grid cell, oldest first. Parallel arrays keep it compact.
+     */
+    private static final class Cell {
+        long[] ids = new long[4];
+        long[] timestamps = new long[4];
+        double[] latitudes = new double[4];
+        double[] longitudes = new double[4];
+        int size;
+
+        void add(long id, long timestamp, double latitude, double longitude) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+            }
+            // Posts almost always arrive in time order, so this is normally the end
+            int position = firstAtOrAfter(timestamp + 1);
+            int moved = size - position;
+            if (moved > 0) {
+                System.arraycopy(ids, position, ids, position + 1, moved);
+                System.arraycopy(timestamps, position, timestamps, position + 1, moved);
+                System.arraycopy(latitudes, position, latitudes, position + 1, moved);
+                System.arraycopy(longitudes, position, longitudes, position + 1, moved);
+            }
+            ids[position] = id;
+            timestamps[position] = timestamp;
+            latitudes[position] = latitude;
+            longitudes[position] = longitude;
+            size++;
+        }
+
+        /**
+         * Binary search for the first incident at or after the given time.
+         */
+        int firstAtOrAfter(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Adds an incident. Incidents without a location are ignored.
+     * @return true if it was added.
+     */
+    public boolean add(NewsItem item) {
+        if (!item.hasLocation()) {
+            return false;
+        }
+        add(item.getId(), item.getTimestamp(), item.getLatitude(), item.getLongitude());
+        return true;
+    }
+
+    public void add(long id, long timestamp, double latitude, double longitude) {
+        long key = cellKey(cellRow(latitude), cellColumn(longitude));
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell();
+            cells.put(key, cell);
+        }
+        cell.add(id, timestamp, latitude, longitude);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the incidents within radiusMeters of a point, reported at or after sinceTimestamp.
+     *
+     * @return Up to "limit" hits, closest first.
+     */
+    public List<Hit> findNear(double latitude, double longitude, double radiusMeters, long sinceTimestamp, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        if (limit <= 0 || radiusMeters < 0) {
+            return hits;
+        }
+        // The bounding box of the circle, in degrees
+        double latitudeSpan = radiusMeters / METERS_PER_DEGREE;
+        double longitudeSpan = radiusMeters / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        int firstRow = cellRow(latitude - latitudeSpan);
+        int lastRow = cellRow(latitude + latitudeSpan);
+        int firstColumn = cellColumn(longitude - longitudeSpan);
+        int lastColumn = cellColumn(longitude + longitudeSpan);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Cell cell = cells.get(cellKey(row, column));
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = cell.firstAtOrAfter(sinceTimestamp); i < cell.size; i++) {
+                    double distance = distanceMeters(latitude, longitude, cell.latitudes[i], cell.longitudes[i]);
+                    if (distance <= radiusMeters) {
+                        hits.add(new Hit(cell.ids[i], cell.timestamps[i], distance));
+                    }
+                }
+            }
+        }
+        Collections.sort(hits, CLOSEST_FIRST);
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * Great-circle distance between two points (haversine formula).
+     */
+    public static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // --- Grid helpers ---
+
+    private static int cellRow(double latitude) {
+        return (int) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static int cellColumn(double longitude) {
+        return (int) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+}
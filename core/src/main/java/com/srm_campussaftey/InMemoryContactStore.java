@@ -0,0 +1,22 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A ContactStore that only lives in memory, for simulations and tests.
+ */
+public class InMemoryContactStore implements ContactStore {
+
+    private List<Contact> contacts = new ArrayList<>();
+
+    @Override
+    public synchronized List<Contact> load() {
+        return new ArrayList<>(contacts);
+    }
+
+    @Override
+    public synchronized void save(List<Contact> contacts) {
+        this.contacts = new ArrayList<>(contacts);
+    }
+}
@@ -0,0 +1,68 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Holds the incidents that arrived while the feed was not on screen, so they can be shown
+ * when it comes back.
+ *
+ * An incident that changes twice is kept once, as it is now. The buffer never holds more
+ * than its capacity: past that it forgets them all and only remembers that it overflowed,
+ * and the feed reloads from the journal instead (where every incident is saved anyway).
+ *
+ * Not thread safe; the app uses it on the main thread only.
+ */
+public class IncidentBuffer {
+
+    private final int capacity;
+    private final Map<Long, NewsItem> byId = new LinkedHashMap<>(); // In arrival order
+    private boolean overflowed;
+
+    public IncidentBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void addAll(Collection<NewsItem> incidents) {
+        if (overflowed) {
+            return;
+        }
+        for (NewsItem incident : incidents) {
+            byId.remove(incident.getId()); // So it moves to the end
+            byId.put(incident.getId(), incident);
+            if (byId.size() > capacity) {
+                byId.clear();
+                overflowed = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return True if incidents were dropped since the last drain() or clear().
+     */
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    public boolean isEmpty() {
+        return byId.isEmpty() && !overflowed;
+    }
+
+    /**
+     * Hands out what was buffered (in arrival order) and empties the buffer.
+     */
+    public List<NewsItem> drain() {
+        List<NewsItem> incidents = new ArrayList<>(byId.values());
+        clear();
+        return incidents;
+    }
+
+    public void clear() {
+        byId.clear();
+        overflowed = false;
+    }
+}
@@ -0,0 +1,249 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Indexes over the feed for the filter chips: "last 2 hours", "category = theft",
+ * "unresolved only", and any mix of them.
+ *
+ * Three lists of (timestamp, id) keys, each kept sorted by time:
+ *  - every incident,
+ *  - one list per category,
+ *  - the incidents that are still open.
+ * A query picks the smallest list that applies, jumps to the newest wanted entry with a
+ * binary search and walks back in time. It stops at the "since" time or when the page is
+ * full, so it never looks at incidents older than the time window or beyond one page. The
+ * only entries it has to skip are the ones that fail a second filter (e.g. resolved thefts
+ * when both category and "unresolved" are on).
+ *
+ * Pages are keyset pages like NewsJournal.readPage: pass the (timestamp, id) of the oldest
+ * incident already shown. The index only holds ids; NewsJournal reads the records.
+ *
+ * Not thread-safe; NewsJournal uses it under its own lock.
+ */
+public class IncidentIndex {
+
+    public static final int ANY_CATEGORY = -1;
+
+    /*
+     * What the feed is filtered by. Immutable; ALL shows everything.
+     */
+    public static final class Filter {
+        public static final Filter ALL = new Filter(Long.MIN_VALUE, ANY_CATEGORY, false);
+
+        private final long sinceTimestamp;
+        private final int category;
+        private final boolean unresolvedOnly;
+
+        /**
+         * @param sinceTimestamp Oldest timestamp to include, or Long.MIN_VALUE for any time.
+         * @param category       One of the NewsItem.CATEGORY_ values, or ANY_CATEGORY.
+         * @param unresolvedOnly Leave out resolved incidents.
+         */
+        public Filter(long sinceTimestamp, int category, boolean unresolvedOnly) {
+            this.sinceTimestamp = sinceTimestamp;
+            this.category = category;
+            this.unresolvedOnly = unresolvedOnly;
+        }
+
+        public long getSinceTimestamp() {
+            return sinceTimestamp;
+        }
+
+        public int getCategory() {
+            return category;
+        }
+
+        public boolean isUnresolvedOnly() {
+            return unresolvedOnly;
+        }
+
+        public boolean isAll() {
+            return sinceTimestamp == Long.MIN_VALUE && category == ANY_CATEGORY && !unresolvedOnly;
+        }
+
+        public boolean matches(NewsItem item) {
+            return matches(item.getTimestamp(), item.getCategory(), item.getStatus());
+        }
+
+        boolean matches(long timestamp, int itemCategory, int status) {
+            return timestamp >= sinceTimestamp
+                    && (category == ANY_CATEGORY || category == itemCategory)
+                    && (!unresolvedOnly || status == NewsItem.STATUS_OPEN);
+        }
+    }
+
+    private static final class Entry {
+        final long timestamp;
+        final long id;
+        int category;
+        int status;
+
+        Entry(long timestamp, long id, int category, int status) {
+            this.timestamp = timestamp;
+            this.id = id;
+            this.category = category;
+            this.status = status;
+        }
+    }
+
+    private final Map<Long, Entry> entriesById = new HashMap<>();
+    private final List<Entry> all = new ArrayList<>();
+    private final List<List<Entry>> byCategory = new ArrayList<>(); // Index = category
+    private final List<Entry> open = new ArrayList<>();
+
+    public IncidentIndex() {
+        for (int i = 0; i < NewsItem.CATEGORY_NAMES.length; i++) {
+            byCategory.add(new ArrayList<Entry>());
+        }
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    public int openCount() {
+        return open.size();
+    }
+
+    public int categoryCount(int category) {
+        return byCategory.get(category).size();
+    }
+
+    /**
+     * Adds an incident, or moves it between the lists if its category or status changed.
+     */
+    public void put(long id, long timestamp, int category, int status) {
+        if (category < 0 || category >= byCategory.size()) {
+            category = NewsItem.CATEGORY_OTHER;
+        }
+        Entry entry = entriesById.get(id);
+        if (entry != null && entry.timestamp != timestamp) {
+            remove(id); // The sort key changed; add it again below
+            entry = null;
+        }
+        if (entry == null) {
+            entry = new Entry(timestamp, id, category, status);
+            entriesById.put(id, entry);
+            insert(all, entry);
+            insert(byCategory.get(category), entry);
+            if (status == NewsItem.STATUS_OPEN) {
+                insert(open, entry);
+            }
+            return;
+        }
+        if (entry.category != category) {
+            delete(byCategory.get(entry.category), entry);
+            entry.category = category;
+            insert(byCategory.get(category), entry);
+        }
+        if (entry.status != status) {
+            if (status == NewsItem.STATUS_OPEN) {
+                insert(open, entry);
+            } else {
+                delete(open, entry);
+            }
+            entry.status = status;
+        }
+    }
+
+    public void clear() {
+        entriesById.clear();
+        all.clear();
+        for (List<Entry> list : byCategory) {
+            list.clear();
+        }
+        open.clear();
+    }
+
+    public void remove(long id) {
+        Entry entry = entriesById.remove(id);
+        if (entry == null) {
+            return;
+        }
+        delete(all, entry);
+        delete(byCategory.get(entry.category), entry);
+        if (entry.status == NewsItem.STATUS_OPEN) {
+            delete(open, entry);
+        }
+    }
+
+    /**
+     * One page of matching incidents, newest first.
+     *
+     * @param beforeTimestamp Timestamp of the oldest incident already shown (Long.MAX_VALUE for the first page).
+     * @param beforeId        Its id (Long.MAX_VALUE for the first page).
+     * @return Up to limit ids, strictly older than the key.
+     */
+    public long[] query(Filter filter, long beforeTimestamp, long beforeId, int limit) {
+        List<Entry> source = all;
+        if (filter.getCategory() != ANY_CATEGORY && filter.getCategory() < byCategory.size()) {
+            source = byCategory.get(filter.getCategory());
+        }
+        if (filter.isUnresolvedOnly() && open.size() < source.size()) {
+            source = open;
+        }
+        long[] ids = new long[Math.min(limit, source.size())];
+        int count = 0;
+        for (int i = lowerBound(source, beforeTimestamp, beforeId) - 1; i >= 0 && count < ids.length; i--) {
+            Entry entry = source.get(i);
+            if (entry.timestamp < filter.getSinceTimestamp()) {
+                break; // Everything further back is older still
+            }
+            if (filter.matches(entry.timestamp, entry.category, entry.status)) {
+                ids[count++] = entry.id;
+            }
+        }
+        if (count == ids.length) {
+            return ids;
+        }
+        long[] trimmed = new long[count];
+        System.arraycopy(ids, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    // --- Sorted list helpers ---
+
+    private static int compareKey(long timestamp1, long id1, long timestamp2, long id2) {
+        int result = Long.compare(timestamp1, timestamp2);
+        return result != 0 ? result : Long.compare(id1, id2);
+    }
+
+    /**
+     * Position of the first entry that is not older than the key.
+     */
+    private static int lowerBound(List<Entry> list, long timestamp, long id) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Entry entry = list.get(mid);
+            if (compareKey(entry.timestamp, entry.id, timestamp, id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Posts almost always arrive in time order, so this is normally a plain add at the end
+    private static void insert(List<Entry> list, Entry entry) {
+        int size = list.size();
+        if (size == 0 || compareKey(list.get(size - 1).timestamp, list.get(size - 1).id, entry.timestamp, entry.id) < 0) {
+            list.add(entry);
+        } else {
+            list.add(lowerBound(list, entry.timestamp, entry.id), entry);
+        }
+    }
+
+    private static void delete(List<Entry> list, Entry entry) {
+        int position = lowerBound(list, entry.timestamp, entry.id);
+        if (position < list.size() && list.get(position) == entry) {
+            list.remove(position);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.srm_campussaftey;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Receives new and changed incidents from the campus security server the moment they happen,
+ * over one long-lived connection (Server-Sent Events), instead of asking every few minutes.
+ *
+ *   GET <baseUrl>/incidents/stream
+ *   Accept: text/event-stream
+ *   Last-Event-ID: <id of the last event saved>     (when reconnecting)
+ *
+ * The server keeps the response open and writes events as they happen:
+ *   id: 1042
+ *   event: incident
+ *   data: {"id": "srv-1", "title": "...", "status": "open", ...}    (same fields as FeedSyncClient)
+ *   <empty line>
+ * Lines starting with ":" are heartbeats, sent every ~15 s so we can tell a quiet campus from
+ * a dead connection. If nothing at all arrives for HEARTBEAT_TIMEOUT_MS, the connection is
+ * given up and opened again. "retry: <ms>" from the server sets the shortest reconnect delay.
+ *
+ * Reconnects wait like FeedSyncEngine's retries (exponential, with jitter, capped), and start
+ * again from BASE_BACKOFF_MS once a connection has delivered anything. The Last-Event-ID sent
+ * is the one saved with the last incidents, so the server can replay what was missed.
+ *
+ * Incidents that arrive together (a burst during a live event) go to the Store as one batch.
+ *
+ * The connection is read on the Scheduler's thread, which it blocks, so give the stream a
+ * Scheduler of its own. start() and stop() may be called from any thread.
+ */
+public class IncidentStream {
+
+    // --- Stream settings ---
+    public static final long HEARTBEAT_TIMEOUT_MS = 45_000; // Three missed heartbeats
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int MAX_EVENT_CHARS = 64 * 1024; // A bigger event means a broken stream
+    private static final int MAX_BATCH = 100; // Saved even if more are waiting, to bound memory
+    // --- End Stream settings ---
+
+    /*
+     * The local side: where pushed incidents are merged in and the last event id is kept.
+     */
+    public interface Store {
+        /** @return The id of the last event saved, or null. */
+        String getLastEventId() throws IOException;
+
+        /**
+         * Merges incidents from the server (like FeedSyncEngine.Store: matched up by remote id,
+         * so the same incident twice changes nothing), then saves the event id after them.
+         * The list may be empty when only the event id moved on.
+         *
+         * @return The incidents that were added or changed, as stored (with local ids).
+         */
+        List<NewsItem> apply(List<NewsItem> incidents, String lastEventId) throws IOException;
+    }
+
+    // Interface for telling the app what arrived. Called on the Scheduler's thread
+    public interface Listener {
+        void onIncidents(List<NewsItem> changed);
+
+        void onDisconnected(IOException e, long reconnectInMs);
+    }
+
+    private final Scheduler scheduler;
+    private final String streamUrl;
+    private final Store store;
+    private final Listener listener;
+    private final long heartbeatTimeoutMs;
+    private final Random random;
+
+    // --- Connection state ---
+    private boolean started;      // Guarded by this
+    private volatile int generation; // Bumped by start() and stop(); older connect tasks give up
+    private volatile HttpURLConnection connection; // So stop() can break a blocked read
+    private long retryMs;         // Scheduler thread only, from "retry:"
+    // --- End Connection state ---
+
+    public IncidentStream(Scheduler scheduler, String baseUrl, Store store, Listener listener) {
+        this(scheduler, baseUrl, store, listener, HEARTBEAT_TIMEOUT_MS, new Random());
+    }
+
+    IncidentStream(Scheduler scheduler, String baseUrl, Store store, Listener listener,
+                   long heartbeatTimeoutMs, Random random) {
+        this.scheduler = scheduler;
+        this.streamUrl = (baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl)
+                + "/incidents/stream";
+        this.store = store;
+        this.listener = listener;
+        this.heartbeatTimeoutMs = heartbeatTimeoutMs;
+        this.random = random;
+    }
+
+    /**
+     * Connects (if not connected already) and keeps reconnecting until stop().
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        scheduler.post(new Connector(++generation));
+    }
+
+    /**
+     * Closes the connection and cancels any reconnect. Nothing is delivered after this returns
+     * except, at most, the batch already being saved.
+     */
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        generation++;
+        HttpURLConnection current = connection;
+        if (current != null) {
+            current.disconnect(); // The blocked read throws and the connect task sees it was stopped
+        }
+    }
+
+    public synchronized boolean isStarted() {
+        return started;
+    }
+
+    /*
+     * Connects, reads until the connection ends, and schedules the next try. One per start().
+     */
+    private class Connector implements Runnable {
+        private final int connectorGeneration;
+        private int failures; // In a row, since the last connection that delivered anything
+
+        Connector(int connectorGeneration) {
+            this.connectorGeneration = connectorGeneration;
+        }
+
+        @Override
+        public void run() {
+            if (connectorGeneration != generation) {
+                return; // Stopped (and maybe started again) since this was posted
+            }
+            IOException error;
+            try {
+                read(this);
+                error = new EOFException("Stream closed by the server");
+            } catch (IOException e) {
+                error = e;
+            }
+            if (connectorGeneration != generation) {
+                return;
+            }
+            failures++;
+            long retryAfterMs = error instanceof FeedSyncClient.HttpException
+                    ? ((FeedSyncClient.HttpException) error).getRetryAfterMs() : 0;
+            long delayMs = FeedSyncEngine.backoffDelayMs(failures, Math.max(retryAfterMs, retryMs), random);
+            scheduler.postDelayed(this, delayMs);
+            listener.onDisconnected(error, delayMs);
+        }
+    }
+
+    /**
+     * Opens the stream and handles events until it ends. Returns normally when the server
+     * closes it or the stream was stopped.
+     */
+    private void read(Connector connector) throws IOException {
+        String lastEventId = store.getLastEventId();
+        HttpURLConnection opened = (HttpURLConnection) new URL(streamUrl).openConnection();
+        opened.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        opened.setReadTimeout((int) heartbeatTimeoutMs); // No heartbeat in time = dead connection
+        opened.setUseCaches(false);
+        opened.setRequestProperty("Accept", "text/event-stream");
+        opened.setRequestProperty("Cache-Control", "no-cache");
+        // gzip would hold events back until a whole compressed block is full
+        opened.setRequestProperty("Accept-Encoding", "identity");
+        if (lastEventId != null) {
+            opened.setRequestProperty("Last-Event-ID", lastEventId);
+        }
+        connection = opened;
+        try {
+            if (connector.connectorGeneration != generation) {
+                return; // stop() came before the connection was there to break
+            }
+            int code = opened.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new FeedSyncClient.HttpException(code,
+                        FeedSyncClient.parseRetryAfterMs(opened.getHeaderField("Retry-After")));
+            }
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(opened.getInputStream(), StandardCharsets.UTF_8));
+            readEvents(reader, lastEventId, connector);
+        } finally {
+            connection = null;
+            opened.disconnect();
+        }
+    }
+
+    // Event parsing as in the Server-Sent Events spec, for the fields we use
+    private void readEvents(BufferedReader reader, String lastEventId, Connector connector) throws IOException {
+        String savedEventId = lastEventId;
+        String batchEventId = lastEventId; // Id at the end of the last whole event
+        String eventType = null;
+        StringBuilder data = new StringBuilder();
+        List<NewsItem> batch = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (connector.connectorGeneration != generation) {
+                return;
+            }
+            connector.failures = 0; // Anything arriving, even a heartbeat, means the server is back
+
+            if (line.isEmpty()) {
+                // End of an event
+                if (data.length() > 0 && (eventType == null || eventType.equals("incident"))) {
+                    NewsItem incident = parseIncident(data);
+                    if (incident != null) {
+                        batch.add(incident);
+                    }
+                }
+                eventType = null;
+                data.setLength(0);
+                batchEventId = lastEventId;
+                // Save once the burst is over: nothing more already waiting to be read
+                boolean burstOver = !reader.ready() || batch.size() >= MAX_BATCH;
+                if (burstOver && (!batch.isEmpty() || !equals(batchEventId, savedEventId))) {
+                    deliver(batch, batchEventId);
+                    batch = new ArrayList<>();
+                    savedEventId = batchEventId;
+                }
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue; // Heartbeat (or any other comment)
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(line.startsWith(" ", colon + 1) ? colon + 2 : colon + 1);
+            switch (field) {
+                case "data":
+                    if (data.length() + value.length() > MAX_EVENT_CHARS) {
+                        throw new IOException("Event too large");
+                    }
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    break;
+                case "event":
+                    eventType = value;
+                    break;
+                case "id":
+                    if (value.indexOf('\0') < 0) {
+                        lastEventId = value;
+                    }
+                    break;
+                case "retry":
+                    try {
+                        retryMs = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        // Ignored, as the spec says
+                    }
+                    break;
+                default:
+                    break; // Unknown fields are ignored
+            }
+        }
+        if (!batch.isEmpty() || !equals(batchEventId, savedEventId)) {
+            deliver(batch, batchEventId); // The server closed the stream right after a burst
+        }
+    }
+
+    private void deliver(List<NewsItem> batch, String lastEventId) throws IOException {
+        List<NewsItem> changed = store.apply(batch, lastEventId);
+        if (!changed.isEmpty()) {
+            listener.onIncidents(changed);
+        }
+    }
+
+    /**
+     * @return The incident, or null if the event cannot be read. A bad event is skipped:
+     * reconnecting would only get the same event again.
+     */
+    private static NewsItem parseIncident(CharSequence data) {
+        try (JsonReader reader = new JsonReader(new StringReader(data.toString()))) {
+            return FeedSyncClient.readIncident(reader);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
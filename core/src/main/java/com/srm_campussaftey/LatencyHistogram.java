@@ -0,0 +1,104 @@
+package com.srm_campussaftey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * A small, fixed-size histogram of durations in nanoseconds.
+ *
+ * Buckets are log-linear: every power of two is split into SUB_BUCKETS equal parts, so
+ * any recorded value lands in a bucket at most 1/SUB_BUCKETS (12.5%) wider than itself.
+ * Recording is one index calculation and one atomic increment, with no allocation,
+ * which makes it cheap enough to leave on in release builds.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // 8 per power of two
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLongArray totals = new AtomicLongArray(3); // count, sum, max
+
+    /**
+     * Records one duration. Negative values are ignored.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        counts.incrementAndGet(bucketIndex(nanos));
+        totals.incrementAndGet(0);
+        totals.addAndGet(1, nanos);
+        long max;
+        do {
+            max = totals.get(2);
+        } while (nanos > max && !totals.compareAndSet(2, max, nanos));
+    }
+
+    public long getCount() {
+        return totals.get(0);
+    }
+
+    public long getMaxNanos() {
+        return totals.get(2);
+    }
+
+    public long getMeanNanos() {
+        long count = totals.get(0);
+        return count == 0 ? 0 : totals.get(1) / count;
+    }
+
+    /**
+     * Returns the value at the given percentile (0-100), as the upper edge of its bucket.
+     * Returns 0 if nothing was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long count = totals.get(0);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        for (int i = 0; i < 3; i++) {
+            totals.set(i, 0);
+        }
+    }
+
+    // --- Bucket math ---
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value; // Small values get exact buckets
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // Position of the highest set bit
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
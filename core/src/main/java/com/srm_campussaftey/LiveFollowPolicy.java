@@ -0,0 +1,129 @@
+package com.srm_campussaftey;
+
+/*
+ * The rules for live location sharing after an SOS ("live follow").
+ *
+ * Two separate rates:
+ *  - How often the phone takes a fix. Faster when moving, slower when standing still, and
+ *    slower again (and without GPS) when the battery is low.
+ *  - How often the contacts get an SMS. Fixes are collected and at most one compact SMS goes
+ *    out per SMS interval, and only if the person moved noticeably (or as a "still here"
+ *    heartbeat after a long quiet spell).
+ *
+ * The length and SMS interval can be changed through SharedPreferences (CampusSafetyPrefs).
+ * No Android dependencies, so the decisions are easy to test.
+ */
+public class LiveFollowPolicy {
+
+    // --- Keys in CampusSafetyPrefs ---
+    public static final String KEY_ENABLED = "SosLiveFollowEnabled";
+    public static final String KEY_DURATION_MS = "SosLiveFollowDurationMs";
+    public static final String KEY_SMS_INTERVAL_MS = "SosLiveFollowSmsIntervalMs";
+    // --- End of Keys ---
+
+    // --- Defaults ---
+    public static final boolean DEFAULT_ENABLED = true;
+    public static final long DEFAULT_DURATION_MS = 60 * 60_000;   // Stop sharing after an hour
+    public static final long DEFAULT_SMS_INTERVAL_MS = 2 * 60_000; // At most one update SMS every 2 min
+    // --- End of Defaults ---
+
+    // --- Fix rates by speed (meters per second) ---
+    public static final float WALKING_SPEED = 0.5f;
+    public static final float FAST_SPEED = 2.5f;     // Running, cycling or in a vehicle
+    public static final long STILL_INTERVAL_MS = 60_000;
+    public static final long WALKING_INTERVAL_MS = 30_000;
+    public static final long FAST_INTERVAL_MS = 10_000;
+    // --- End fix rates ---
+
+    // --- Battery ---
+    public static final int LOW_BATTERY_PERCENT = 30;      // Fixes half as often
+    public static final int CRITICAL_BATTERY_PERCENT = 15; // A quarter as often, SMS half as often
+    // --- End battery ---
+
+    // Smaller moves are not worth an SMS (GPS noise alone can be this much)
+    public static final double MIN_MOVE_METERS = 50;
+    // Send the position anyway if nothing was sent for this long, so contacts know it still runs
+    public static final long HEARTBEAT_MS = 10 * 60_000;
+
+    private final long durationMs;
+    private final long smsIntervalMs;
+
+    public LiveFollowPolicy(long durationMs, long smsIntervalMs) {
+        this.durationMs = durationMs;
+        this.smsIntervalMs = smsIntervalMs;
+    }
+
+    public static LiveFollowPolicy defaults() {
+        return new LiveFollowPolicy(DEFAULT_DURATION_MS, DEFAULT_SMS_INTERVAL_MS);
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * How often to take a fix.
+     *
+     * @param speedMps       Current speed, or a negative value if not known yet.
+     * @param batteryPercent Battery level 0-100, or a negative value if unknown.
+     * @param charging       Whether the phone is plugged in (battery level is then ignored).
+     */
+    public long fixIntervalMs(float speedMps, int batteryPercent, boolean charging) {
+        long intervalMs;
+        if (speedMps >= FAST_SPEED) {
+            intervalMs = FAST_INTERVAL_MS;
+        } else if (speedMps >= WALKING_SPEED || speedMps < 0) {
+            intervalMs = WALKING_INTERVAL_MS; // Unknown speed: assume walking
+        } else {
+            intervalMs = STILL_INTERVAL_MS;
+        }
+        return intervalMs * batteryFactor(batteryPercent, charging);
+    }
+
+    /**
+     * Whether fixes should use GPS (high accuracy) rather than Wi-Fi/cell (balanced power).
+     */
+    public boolean useHighAccuracy(float speedMps, int batteryPercent, boolean charging) {
+        if (batteryFactor(batteryPercent, charging) > 1) {
+            return false;
+        }
+        return speedMps < 0 || speedMps >= WALKING_SPEED;
+    }
+
+    /**
+     * How long to collect fixes before considering the next update SMS.
+     */
+    public long smsIntervalMs(int batteryPercent, boolean charging) {
+        return isCritical(batteryPercent, charging) ? smsIntervalMs * 2 : smsIntervalMs;
+    }
+
+    /**
+     * Whether the latest fix is worth an SMS.
+     *
+     * @param movedMeters      Distance from the last position sent, or a negative value if none was sent.
+     * @param accuracyMeters   Accuracy of the latest fix (negative if unknown).
+     * @param sinceLastSentMs  Time since the last update SMS (or since the SOS).
+     */
+    public boolean shouldSend(double movedMeters, float accuracyMeters, long sinceLastSentMs) {
+        if (movedMeters < 0) {
+            return true; // Nothing sent yet
+        }
+        // A move smaller than the fix's own error circle may be no move at all
+        double threshold = Math.max(MIN_MOVE_METERS, accuracyMeters);
+        return movedMeters >= threshold || sinceLastSentMs >= HEARTBEAT_MS;
+    }
+
+    private static int batteryFactor(int batteryPercent, boolean charging) {
+        if (charging || batteryPercent < 0) {
+            return 1;
+        }
+        if (batteryPercent <= CRITICAL_BATTERY_PERCENT) {
+            return 4;
+        }
+        return batteryPercent <= LOW_BATTERY_PERCENT ? 2 : 1;
+    }
+
+    private static boolean isCritical(int batteryPercent, boolean charging) {
+        return !charging && batteryPercent >= 0 && batteryPercent <= CRITICAL_BATTERY_PERCENT;
+    }
+}
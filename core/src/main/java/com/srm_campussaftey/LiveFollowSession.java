@@ -0,0 +1,188 @@
+package com.srm_campussaftey;
+
+/*
+ * Keeps contacts updated on where the person is after an SOS, until they stop it or the
+ * time limit is reached ("live follow").
+ *
+ * - Fixes come in through onFix() at whatever rate the listener was last asked for
+ *   (onUpdateRateChanged). The rate follows the speed worked out from the last fixes and
+ *   the battery level, see LiveFollowPolicy.
+ * - Fixes are not sent one by one. Every SMS interval the latest one is looked at and sent
+ *   as one short SMS if the person moved enough, so contacts and the radio are not flooded.
+ * - When it ends, contacts who got updates get one last SMS saying sharing has stopped.
+ *
+ * No Android dependencies: LiveFollowService runs it against the fused location provider.
+ * Only use it on the Scheduler's thread; fix times must be on the Scheduler's clock.
+ */
+public class LiveFollowSession {
+
+    public interface Listener {
+        /** Take a fix every intervalMs, with GPS if highAccuracy. Also called once at start. */
+        void onUpdateRateChanged(long intervalMs, boolean highAccuracy);
+
+        /** Send this message to every contact. */
+        void onSend(String message);
+
+        /** Sharing is over; no more calls after this one. */
+        void onFinished(String reason, int updatesSent, int fixesReceived);
+    }
+
+    // Fixes closer together than this say too little about speed
+    private static final long MIN_SPEED_SAMPLE_NANOS = 1_000_000_000L;
+
+    private final Scheduler scheduler;
+    private final LiveFollowPolicy policy;
+    private final Listener listener;
+
+    // --- State (only touched on the scheduler thread) ---
+    private boolean started;
+    private boolean finished;
+    private LocationFix latestFix;
+    private LocationFix speedSampleFix;  // Fix the speed was last measured from
+    private float speedMps = -1;         // Smoothed; -1 until two fixes far enough apart arrived
+    private LocationFix lastSentFix;
+    private long lastSentNanos;
+    private int batteryPercent = -1;
+    private boolean charging;
+    private long requestedIntervalMs = -1;
+    private boolean requestedHighAccuracy;
+    private int updatesSent;
+    private int fixesReceived;
+    // --- End State ---
+
+    public LiveFollowSession(Scheduler scheduler, LiveFollowPolicy policy, Listener listener) {
+        this.scheduler = scheduler;
+        this.policy = policy;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts sharing. The SOS itself has just gone out, so the first update waits one SMS
+     * interval. Must be called on the scheduler thread.
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        lastSentNanos = scheduler.nanoTime();
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                stop("time limit reached");
+            }
+        }, policy.getDurationMs());
+        scheduleNextSms();
+        applyUpdateRate();
+    }
+
+    public void onFix(LocationFix fix) {
+        if (finished || fix == null) {
+            return;
+        }
+        fixesReceived++;
+        updateSpeed(fix);
+        latestFix = fix;
+        applyUpdateRate();
+    }
+
+    /**
+     * @param percent  Battery level 0-100, or a negative value if unknown.
+     * @param charging Whether the phone is plugged in.
+     */
+    public void onBatteryChanged(int percent, boolean charging) {
+        this.batteryPercent = percent;
+        this.charging = charging;
+        if (started && !finished) {
+            applyUpdateRate();
+        }
+    }
+
+    /**
+     * Ends sharing, e.g. when the person taps "Stop". Safe to call more than once.
+     */
+    public void stop(String reason) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (updatesSent > 0) {
+            LocationFix fix = latestFix != null ? latestFix : lastSentFix;
+            listener.onSend(SOSMessageBuilder.buildLiveEndMessage(fix.getLatitude(), fix.getLongitude(), fix.getAccuracyMeters()));
+        }
+        listener.onFinished(reason, updatesSent, fixesReceived);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Smoothed speed in meters per second, or -1 if not known yet.
+     */
+    public float getSpeedMetersPerSecond() {
+        return speedMps;
+    }
+
+    // --- Internals ---
+
+    private void scheduleNextSms() {
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (finished) {
+                    return;
+                }
+                maybeSendUpdate();
+                scheduleNextSms();
+            }
+        }, policy.smsIntervalMs(batteryPercent, charging));
+    }
+
+    private void maybeSendUpdate() {
+        LocationFix fix = latestFix;
+        if (fix == null || fix == lastSentFix) {
+            return; // Nothing new
+        }
+        double movedMeters = lastSentFix == null ? -1 : GeoIndex.distanceMeters(
+                lastSentFix.getLatitude(), lastSentFix.getLongitude(), fix.getLatitude(), fix.getLongitude());
+        long sinceLastSentMs = (scheduler.nanoTime() - lastSentNanos) / 1_000_000;
+        if (!policy.shouldSend(movedMeters, fix.getAccuracyMeters(), sinceLastSentMs)) {
+            return;
+        }
+        updatesSent++;
+        lastSentFix = fix;
+        lastSentNanos = scheduler.nanoTime();
+        listener.onSend(SOSMessageBuilder.buildLiveUpdateMessage(updatesSent, fix.getLatitude(), fix.getLongitude(),
+                fix.getAccuracyMeters(), speedMps));
+    }
+
+    private void updateSpeed(LocationFix fix) {
+        if (speedSampleFix == null) {
+            speedSampleFix = fix;
+            return;
+        }
+        long elapsedNanos = fix.getTimeNanos() - speedSampleFix.getTimeNanos();
+        if (elapsedNanos < MIN_SPEED_SAMPLE_NANOS) {
+            return;
+        }
+        double meters = GeoIndex.distanceMeters(speedSampleFix.getLatitude(), speedSampleFix.getLongitude(),
+                fix.getLatitude(), fix.getLongitude());
+        // Moves inside the fixes' error circles are treated as standing still
+        double noiseMeters = Math.max(Math.max(fix.getAccuracyMeters(), speedSampleFix.getAccuracyMeters()), 0);
+        float sample = meters <= noiseMeters ? 0 : (float) (meters * 1_000_000_000L / elapsedNanos);
+        speedMps = speedMps < 0 ? sample : (speedMps + sample) / 2;
+        speedSampleFix = fix;
+    }
+
+    private void applyUpdateRate() {
+        long intervalMs = policy.fixIntervalMs(speedMps, batteryPercent, charging);
+        boolean highAccuracy = policy.useHighAccuracy(speedMps, batteryPercent, charging);
+        if (intervalMs == requestedIntervalMs && highAccuracy == requestedHighAccuracy) {
+            return; // Re-registering for the same rate would only cost a binder call
+        }
+        requestedIntervalMs = intervalMs;
+        requestedHighAccuracy = highAccuracy;
+        listener.onUpdateRateChanged(intervalMs, highAccuracy);
+    }
+}
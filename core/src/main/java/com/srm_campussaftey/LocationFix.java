@@ -0,0 +1,35 @@
+package com.srm_campussaftey;
+
+/*
+ * One location fix, without any Android classes.
+ */
+public class LocationFix {
+
+    private final double latitude;
+    private final double longitude;
+    private final float accuracyMeters; // Negative if unknown
+    private final long timeNanos;       // When the fix was taken, on the Scheduler's clock
+
+    public LocationFix(double latitude, double longitude, float accuracyMeters, long timeNanos) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracyMeters = accuracyMeters;
+        this.timeNanos = timeNanos;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public float getAccuracyMeters() {
+        return accuracyMeters;
+    }
+
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+}
@@ -0,0 +1,32 @@
+package com.srm_campussaftey;
+
+/*
+ * Where SOSLocationFlow gets its fixes from: the fused location provider on a phone
+ * (FusedLocationSource) or a simulation (SimulatedLocationSource).
+ */
+public interface LocationSource {
+
+    /*
+     * Called on the Scheduler's thread with the fix, or null if there is none.
+     */
+    interface Callback {
+        void onResult(LocationFix fix);
+    }
+
+    /*
+     * A pending fresh-fix request.
+     */
+    interface Request {
+        void cancel();
+    }
+
+    /**
+     * The last fix the system already has. Should answer almost immediately.
+     */
+    void getLastFix(Callback callback);
+
+    /**
+     * A brand new high-accuracy fix. Answers null if none arrives within maxWaitMs.
+     */
+    Request getFreshFix(long maxWaitMs, Callback callback);
+}
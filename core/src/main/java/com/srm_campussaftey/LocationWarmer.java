@@ -0,0 +1,178 @@
+package com.srm_campussaftey;
+
+import java.util.Locale;
+
+/*
+ * Keeps the most recent location fix in memory, so an SOS (button or shortcut) can put a
+ * location in the very first SMS without asking the location provider and waiting.
+ *
+ * The fixes come from a low-power background request (opt-in, see SOSLocationWarmer in the
+ * app). This class decides how often to ask for them:
+ *  - Every MIN_INTERVAL_MS at balanced (Wi-Fi/cell) accuracy, to start with.
+ *  - Each fix that is less than STILL_METERS from the one before doubles the interval, up to
+ *    MAX_INTERVAL_MS: a phone lying on a desk needs few fixes. A real move resets it.
+ *  - On low battery (not charging) it only takes passive fixes: the ones other apps asked for.
+ *
+ * It also counts how often an SOS found a usable fix here (hit rate) and how old those fixes
+ * were, for the debug metrics screen.
+ *
+ * Thread-safe: fixes and lookups may come from different threads.
+ */
+public class LocationWarmer {
+
+    // --- Keys in CampusSafetyPrefs ---
+    public static final String KEY_ENABLED = "SosLocationWarmerEnabled";
+    public static final boolean DEFAULT_ENABLED = false; // Opt-in: it uses some battery
+    // --- End of Keys ---
+
+    // --- Rates ---
+    public static final long MIN_INTERVAL_MS = 2 * 60_000;
+    public static final long MAX_INTERVAL_MS = 16 * 60_000;
+    public static final double STILL_METERS = 50;
+    public static final int LOW_BATTERY_PERCENT = 20;
+    // --- End rates ---
+
+    // Interface for whoever requests the fixes
+    public interface Listener {
+        /** Ask for a fix every intervalMs; passive means only fixes other apps asked for. */
+        void onRateChanged(long intervalMs, boolean passive);
+    }
+
+    private final Listener listener;
+
+    private LocationFix latestFix;
+    private long intervalMs = MIN_INTERVAL_MS;
+    private boolean passive;
+    private int batteryPercent = -1;
+    private boolean charging;
+
+    // --- Metrics ---
+    private long fixesReceived;
+    private long lookups;
+    private long hits;
+    private long hitAgeTotalMs;
+    private long maxHitAgeMs;
+    private long lastLookupAgeMs = -1; // Age of the cached fix at the last lookup, -1 if there was none
+    // --- End metrics ---
+
+    public LocationWarmer(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reports the starting rate to the listener.
+     */
+    public synchronized void start() {
+        listener.onRateChanged(intervalMs, passive);
+    }
+
+    public synchronized void onFix(LocationFix fix) {
+        if (fix == null) {
+            return;
+        }
+        fixesReceived++;
+        long newIntervalMs = intervalMs;
+        if (latestFix != null) {
+            if (fix.getTimeNanos() < latestFix.getTimeNanos()) {
+                return; // Older than what we have (fixes can arrive out of order)
+            }
+            double moved = GeoIndex.distanceMeters(latestFix.getLatitude(), latestFix.getLongitude(),
+                    fix.getLatitude(), fix.getLongitude());
+            newIntervalMs = moved < STILL_METERS ? Math.min(intervalMs * 2, MAX_INTERVAL_MS) : MIN_INTERVAL_MS;
+        }
+        latestFix = fix;
+        setRate(newIntervalMs, passive);
+    }
+
+    /**
+     * @param percent  Battery level 0-100, or a negative value if unknown.
+     * @param charging Whether the phone is plugged in.
+     */
+    public synchronized void onBatteryChanged(int percent, boolean charging) {
+        this.batteryPercent = percent;
+        this.charging = charging;
+        setRate(intervalMs, !charging && percent >= 0 && percent <= LOW_BATTERY_PERCENT);
+    }
+
+    /**
+     * The cached fix if it is at most maxAgeMs old, otherwise null. O(1); counted in the
+     * hit rate, so only call it when an SOS actually wants a location.
+     *
+     * @param nowNanos Current time on the same clock as the fixes.
+     */
+    public synchronized LocationFix lookup(long nowNanos, long maxAgeMs) {
+        lookups++;
+        if (latestFix == null) {
+            lastLookupAgeMs = -1;
+            return null;
+        }
+        long ageMs = Math.max(0, (nowNanos - latestFix.getTimeNanos()) / 1_000_000);
+        lastLookupAgeMs = ageMs;
+        if (ageMs > maxAgeMs) {
+            return null;
+        }
+        hits++;
+        hitAgeTotalMs += ageMs;
+        maxHitAgeMs = Math.max(maxHitAgeMs, ageMs);
+        return latestFix;
+    }
+
+    public synchronized long getLookups() {
+        return lookups;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Share of lookups that found a usable fix, 0 to 1 (0 if there were none).
+     */
+    public synchronized double getHitRate() {
+        return lookups == 0 ? 0 : hits / (double) lookups;
+    }
+
+    public synchronized long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public synchronized boolean isPassive() {
+        return passive;
+    }
+
+    /**
+     * A few lines for the debug screen.
+     *
+     * @param nowNanos Current time on the same clock as the fixes.
+     */
+    public synchronized String format(long nowNanos) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.US, "Hit rate: %d of %d SOS lookups (%.0f%%)%n",
+                hits, lookups, getHitRate() * 100));
+        if (hits > 0) {
+            text.append(String.format(Locale.US, "Fix age at hit: %d s average, %d s max%n",
+                    hitAgeTotalMs / hits / 1000, maxHitAgeMs / 1000));
+        }
+        if (lastLookupAgeMs >= 0) {
+            text.append("Fix age at last lookup: ").append(lastLookupAgeMs / 1000).append(" s\n");
+        }
+        text.append("Cached fix age now: ");
+        if (latestFix == null) {
+            text.append("none");
+        } else {
+            text.append((nowNanos - latestFix.getTimeNanos()) / 1_000_000_000L).append(" s");
+        }
+        text.append(String.format(Locale.US, "%nFixes received: %d, every %d min%s", fixesReceived,
+                intervalMs / 60_000, passive ? " (passive, low battery)" : ""));
+        return text.toString();
+    }
+
+    private void setRate(long newIntervalMs, boolean newPassive) {
+        if (newIntervalMs == intervalMs && newPassive == passive) {
+            return;
+        }
+        intervalMs = newIntervalMs;
+        passive = newPassive;
+        listener.onRateChanged(intervalMs, passive);
+    }
+}
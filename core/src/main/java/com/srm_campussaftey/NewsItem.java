@@ -0,0 +1,134 @@
+package com.srm_campussaftey;
+
+/*
+ * This is a simple "Model" class, just like our Contact class.
+ * Its only job is to hold the data for a single news/incident post.
+ */
+public class NewsItem {
+
+    // --- Categories (stored as one byte, so only add to the end) ---
+    public static final int CATEGORY_OTHER = 0;
+    public static final int CATEGORY_THEFT = 1;
+    public static final int CATEGORY_HARASSMENT = 2;
+    public static final int CATEGORY_MEDICAL = 3;
+    public static final int CATEGORY_HAZARD = 4;
+    public static final int CATEGORY_SUSPICIOUS = 5;
+    public static final String[] CATEGORY_NAMES = {"Other", "Theft", "Harassment", "Medical", "Hazard", "Suspicious activity"};
+    // --- Severity ---
+    public static final int SEVERITY_LOW = 1;
+    public static final int SEVERITY_MEDIUM = 2;
+    public static final int SEVERITY_HIGH = 3;
+    public static final String[] SEVERITY_NAMES = {"", "Low", "Medium", "High"}; // By severity value
+    // --- Status ---
+    public static final int STATUS_OPEN = 0;
+    public static final int STATUS_RESOLVED = 1;
+    // --- End of Constants ---
+
+    private long id; // Assigned by NewsJournal when the item is first saved
+    private String title;
+    private String description;
+    private long timestamp; // We'll store the time as a simple number (milliseconds)
+    // Where the incident was reported from, if the phone knew its location
+    private boolean hasLocation;
+    private double latitude;
+    private double longitude;
+    // Posts from before these fields existed read as "Other", medium, still open
+    private int category = CATEGORY_OTHER;
+    private int severity = SEVERITY_MEDIUM;
+    private int status = STATUS_OPEN;
+    private String remoteId; // Id on the campus security server; null for posts made on this device
+
+    // A blank constructor is needed for saving/loading with some libraries (like Firebase)
+    public NewsItem() {
+    }
+
+    // Constructor: Called when we create a new NewsItem object
+    public NewsItem(String title, String description, long timestamp) {
+        this.title = title;
+        this.description = description;
+        this.timestamp = timestamp;
+    }
+
+    // "Getter" methods
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean hasLocation() {
+        return hasLocation;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLocation(double latitude, double longitude) {
+        this.hasLocation = true;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public int getCategory() {
+        return category;
+    }
+
+    public int getSeverity() {
+        return severity;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isResolved() {
+        return status == STATUS_RESOLVED;
+    }
+
+    /**
+     * Unknown values (e.g. from a newer version) fall back to "Other".
+     */
+    public void setCategory(int category) {
+        this.category = category >= 0 && category < CATEGORY_NAMES.length ? category : CATEGORY_OTHER;
+    }
+
+    public void setSeverity(int severity) {
+        this.severity = Math.max(SEVERITY_LOW, Math.min(SEVERITY_HIGH, severity));
+    }
+
+    public void setStatus(int status) {
+        this.status = status == STATUS_RESOLVED ? STATUS_RESOLVED : STATUS_OPEN;
+    }
+
+    public String getRemoteId() {
+        return remoteId;
+    }
+
+    public void setRemoteId(String remoteId) {
+        this.remoteId = remoteId;
+    }
+
+    public static String categoryName(int category) {
+        return category >= 0 && category < CATEGORY_NAMES.length ? CATEGORY_NAMES[category] : CATEGORY_NAMES[CATEGORY_OTHER];
+    }
+
+    // Only the journal hands out ids, so this is package-private
+    void setId(long id) {
+        this.id = id;
+    }
+}
@@ -0,0 +1,283 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Runs many simulated SOS sessions through the real core classes (DispatchScheduler,
+ * SOSLocationFlow, SOSMessageBuilder) with a simulated radio and GPS, then prints
+ * throughput and latency percentiles.
+ *
+ * Sessions are spread over "lanes". Each lane is one thread with its own scheduler,
+ * gateway and location source, like one phone's engine thread.
+ *
+ * Run with: ./gradlew :core:run --args="--sessions 5000 --contacts 5 --lanes 4"
+ */
+public class SOSLoadRunner {
+
+    // --- Settings (from the command line) ---
+    private int sessions = 1_000;
+    private int contactsPerSession = 5;
+    private int lanes = Runtime.getRuntime().availableProcessors();
+    private double ratePerSecond = 0;   // 0 = trigger everything at once
+    private long seed = 42;
+    private boolean withLocation = true;
+    private double transientFailureRate = 0.05;
+    private double permanentFailureRate = 0.01;
+    private double lostResultRate = 0;
+    private long handoffCostMicros = 200;
+    private long timeoutSeconds = 300;
+    // --- End Settings ---
+
+    // --- Results (shared between lanes) ---
+    private final LatencyHistogram firstSend = new LatencyHistogram();
+    private final LatencyHistogram allHandedOff = new LatencyHistogram();
+    private final LatencyHistogram allResolved = new LatencyHistogram();
+    private final LatencyHistogram handoff = new LatencyHistogram();
+    private final LatencyHistogram cachedFix = new LatencyHistogram();
+    private final LatencyHistogram refinedFix = new LatencyHistogram();
+    private final AtomicLong contactsSent = new AtomicLong();
+    private final AtomicLong contactsFailed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong followUps = new AtomicLong();
+    // --- End Results ---
+
+    /*
+     * One simulated phone: a thread plus the core classes running on it.
+     */
+    private class Lane {
+        final ExecutorScheduler scheduler;
+        final SimulatedSmsGateway gateway;
+        final SimulatedLocationSource locationSource;
+        final DispatchScheduler dispatchScheduler;
+        final Map<Long, Long> triggerBySession = new HashMap<>(); // Lane thread only
+        final CountDownLatch done;
+
+        Lane(int index, final CountDownLatch done) {
+            this.done = done;
+            scheduler = new ExecutorScheduler("sos-lane-" + index);
+            gateway = new SimulatedSmsGateway(scheduler, seed + index)
+                    .setHandoffCostNanos(handoffCostMicros * 1000)
+                    .setTransientFailureRate(transientFailureRate)
+                    .setPermanentFailureRate(permanentFailureRate)
+                    .setLostResultRate(lostResultRate);
+            locationSource = new SimulatedLocationSource(scheduler, seed * 31 + index);
+            dispatchScheduler = new DispatchScheduler(scheduler, new DispatchScheduler.Listener() {
+                @Override
+                public void onHandoff(DispatchSession session, int contactIndex, int attempt, long handoffNanos) {
+                    handoff.record(handoffNanos);
+                }
+
+                @Override
+                public void onSendError(DispatchSession session, int contactIndex, String error, long retryDelayMs) {
+                    if (retryDelayMs >= 0) {
+                        retries.incrementAndGet();
+                    }
+                }
+
+                @Override
+                public void onFirstSend(DispatchSession session, long latencyNanos) {
+                    firstSend.record(latencyNanos);
+                }
+
+                @Override
+                public void onAllHandedOff(DispatchSession session, long latencyNanos) {
+                    allHandedOff.record(latencyNanos);
+                }
+
+                @Override
+                public void onUpdate(DispatchSession.Summary summary) {
+                }
+
+                @Override
+                public void onComplete(DispatchSession.Summary summary) {
+                    Long triggerNanos = triggerBySession.remove(summary.sessionId);
+                    if (triggerNanos == null) {
+                        return; // A follow-up message, not counted as a session
+                    }
+                    allResolved.record(scheduler.nanoTime() - triggerNanos);
+                    contactsSent.addAndGet(summary.sent);
+                    contactsFailed.addAndGet(summary.failed);
+                    done.countDown();
+                }
+            });
+        }
+
+        /**
+         * One SOS, as SOSManager.sendSOS would do it. Runs on the lane thread.
+         */
+        void trigger(final long sessionId, final List<Contact> contacts) {
+            final long triggerNanos = scheduler.nanoTime();
+            if (!withLocation) {
+                triggerBySession.put(sessionId, triggerNanos);
+                String message = SOSMessageBuilder.buildMessageWithoutLocation(SOSMessageBuilder.MESSAGE_PREFIX);
+                dispatchScheduler.dispatch(sessionId, gateway, contacts, message, triggerNanos);
+                return;
+            }
+            new SOSLocationFlow(scheduler, locationSource, SOSLocationPolicy.defaults(), SOSMessageBuilder.MESSAGE_PREFIX,
+                    triggerNanos, new SOSLocationFlow.Listener() {
+                @Override
+                public void onSend(String message, boolean followUp) {
+                    if (followUp) {
+                        followUps.incrementAndGet();
+                        dispatchScheduler.dispatch(-sessionId, gateway, contacts, message, -1);
+                    } else {
+                        triggerBySession.put(sessionId, triggerNanos);
+                        dispatchScheduler.dispatch(sessionId, gateway, contacts, message, triggerNanos);
+                    }
+                }
+
+                @Override
+                public void onSpan(SOSLocationFlow.Span span, long nanos) {
+                    if (span == SOSLocationFlow.Span.CACHED_FIX) {
+                        cachedFix.record(nanos);
+                    } else if (span == SOSLocationFlow.Span.REFINED_FIX) {
+                        refinedFix.record(nanos);
+                    }
+                }
+
+                @Override
+                public void onFinished(String reason, Map<String, Long> stageTimings) {
+                    done.countDown();
+                }
+            }).start();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        SOSLoadRunner runner = new SOSLoadRunner();
+        runner.parseArgs(args);
+        runner.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if ("--no-location".equals(name)) {
+                withLocation = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + name);
+            }
+            String value = args[++i];
+            switch (name) {
+                case "--sessions":
+                    sessions = Integer.parseInt(value);
+                    break;
+                case "--contacts":
+                    contactsPerSession = Integer.parseInt(value);
+                    break;
+                case "--lanes":
+                    lanes = Integer.parseInt(value);
+                    break;
+                case "--rate":
+                    ratePerSecond = Double.parseDouble(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--transient-failure":
+                    transientFailureRate = Double.parseDouble(value);
+                    break;
+                case "--permanent-failure":
+                    permanentFailureRate = Double.parseDouble(value);
+                    break;
+                case "--lost-result":
+                    lostResultRate = Double.parseDouble(value);
+                    break;
+                case "--handoff-us":
+                    handoffCostMicros = Long.parseLong(value);
+                    break;
+                case "--timeout-s":
+                    timeoutSeconds = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        if (sessions < 1 || contactsPerSession < 1 || lanes < 1) {
+            throw new IllegalArgumentException("--sessions, --contacts and --lanes must be at least 1");
+        }
+    }
+
+    private void run() throws InterruptedException {
+        // Each session finishes its dispatch, and (with location) its location flow
+        CountDownLatch done = new CountDownLatch(withLocation ? sessions * 2 : sessions);
+        List<Lane> laneList = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            laneList.add(new Lane(i, done));
+        }
+        final List<Contact> contacts = new ArrayList<>(contactsPerSession);
+        for (int i = 0; i < contactsPerSession; i++) {
+            contacts.add(new Contact("Contact " + i, "+9190000" + String.format(Locale.US, "%05d", i)));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            final Lane lane = laneList.get(i % lanes);
+            final long sessionId = i + 1;
+            Runnable trigger = new Runnable() {
+                @Override
+                public void run() {
+                    lane.trigger(sessionId, contacts);
+                }
+            };
+            if (ratePerSecond > 0) {
+                lane.scheduler.postDelayed(trigger, (long) (i * 1000 / ratePerSecond));
+            } else {
+                lane.scheduler.post(trigger);
+            }
+        }
+
+        boolean finished = done.await(timeoutSeconds, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+        for (Lane lane : laneList) {
+            lane.scheduler.shutdown();
+        }
+
+        System.out.println(report(elapsedNanos, finished));
+    }
+
+    private String report(long elapsedNanos, boolean finished) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "sessions=%d contacts=%d lanes=%d rate=%s location=%b seed=%d%n",
+                sessions, contactsPerSession, lanes, ratePerSecond > 0 ? ratePerSecond + "/s" : "burst", withLocation, seed));
+        report.append(String.format(Locale.US, "failures: transient=%.3f permanent=%.3f lost=%.3f handoff=%d us%n",
+                transientFailureRate, permanentFailureRate, lostResultRate, handoffCostMicros));
+        if (!finished) {
+            report.append("WARNING: timed out before every session finished; numbers below are partial\n");
+        }
+        double seconds = elapsedNanos / 1e9;
+        long resolved = allResolved.getCount();
+        report.append(String.format(Locale.US, "wall time %.2f s, %d sessions resolved, %.1f sessions/s, %.1f SMS handoffs/s%n",
+                seconds, resolved, resolved / seconds, handoff.getCount() / seconds));
+        report.append(String.format(Locale.US, "contacts sent=%d failed=%d, retries=%d, follow-ups=%d%n%n",
+                contactsSent.get(), contactsFailed.get(), retries.get(), followUps.get()));
+
+        report.append(String.format(Locale.US, "%-22s %8s %10s %10s %10s %10s%n", "stage", "count", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        appendRow(report, "sms_handoff", handoff);
+        appendRow(report, "location_cached", cachedFix);
+        appendRow(report, "location_refined", refinedFix);
+        appendRow(report, "trigger_to_first_send", firstSend);
+        appendRow(report, "trigger_to_last_send", allHandedOff);
+        appendRow(report, "trigger_to_resolved", allResolved);
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(String.format(Locale.US, "%-22s %8d %10.3f %10.3f %10.3f %10.3f%n",
+                name,
+                histogram.getCount(),
+                histogram.getPercentileNanos(50) / 1e6,
+                histogram.getPercentileNanos(95) / 1e6,
+                histogram.getPercentileNanos(99) / 1e6,
+                histogram.getMaxNanos() / 1e6));
+    }
+}
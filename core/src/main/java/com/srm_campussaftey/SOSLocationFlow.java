@@ -0,0 +1,192 @@
+package com.srm_campussaftey;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Gets a location for one SOS without ever letting the SMS wait on GPS.
+ *
+ * Stage 1: ask for the last known fix (already cached by the system, normally instant) and
+ *          send the SOS straight away with it, including its age and accuracy. If it takes
+ *          longer than CACHED_FIX_WAIT_MS or is too old, send without a location.
+ * Stage 2: unless that fix was already fresh and accurate, ask for one high-accuracy fix
+ *          limited to the policy's budget. If it arrives in time and is better, send one
+ *          follow-up SMS. When the budget runs out, give up quietly.
+ *
+ * Every stage is timed relative to the trigger and reported when the flow finishes.
+ * It has no Android dependencies: SOSLocationPipeline runs it against the fused location
+ * provider, SOSLoadRunner against SimulatedLocationSource. Only use it on the Scheduler's thread.
+ */
+public class SOSLocationFlow {
+
+    // Spans reported to the listener, for latency tracing
+    public enum Span {
+        CACHED_FIX,    // Asking for the last known fix -> answer
+        REFINED_FIX,   // Asking for a high-accuracy fix -> answer
+        MESSAGE_BUILD  // Building one SMS text
+    }
+
+    public interface Listener {
+        /** Send this message to every contact. followUp is false for the first SOS. */
+        void onSend(String message, boolean followUp);
+
+        void onSpan(Span span, long nanos);
+
+        /** The flow is over. stageTimings maps stage name -> ms since the trigger. */
+        void onFinished(String reason, Map<String, Long> stageTimings);
+    }
+
+    private final Scheduler scheduler;
+    private final LocationSource locationSource;
+    private final SOSLocationPolicy policy;
+    private final String messagePrefix;
+    private final long triggerNanos;
+    private final Listener listener;
+
+    // Stage name -> milliseconds since the trigger, in the order they happened
+    private final Map<String, Long> stageTimings = new LinkedHashMap<>();
+
+    // --- State (only touched on the scheduler thread) ---
+    private boolean initialSent;
+    private float sentAccuracyMeters = -1; // -1 means "no location / unknown accuracy"
+    private boolean finished;
+    private LocationSource.Request refineRequest;
+    // --- End State ---
+
+    public SOSLocationFlow(Scheduler scheduler, LocationSource locationSource, SOSLocationPolicy policy,
+                           String messagePrefix, long triggerNanos, Listener listener) {
+        this.scheduler = scheduler;
+        this.locationSource = locationSource;
+        this.policy = policy;
+        this.messagePrefix = messagePrefix;
+        this.triggerNanos = triggerNanos;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts stage 1. Must be called on the scheduler thread.
+     */
+    public void start() {
+        markStage("start");
+
+        // If the cached fix does not come back quickly, don't wait for it
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (!initialSent) {
+                    sendInitial(null);
+                }
+            }
+        }, SOSLocationPolicy.CACHED_FIX_WAIT_MS);
+
+        final long cachedSpanStart = scheduler.nanoTime();
+        locationSource.getLastFix(new LocationSource.Callback() {
+            @Override
+            public void onResult(LocationFix fix) {
+                listener.onSpan(Span.CACHED_FIX, scheduler.nanoTime() - cachedSpanStart);
+                markStage("cached_fix");
+                if (initialSent) {
+                    return; // Too late, the SOS already went out without it
+                }
+                if (fix != null && !policy.isUsable(ageMillis(fix))) {
+                    fix = null; // Too old to be useful
+                }
+                sendInitial(fix);
+            }
+        });
+    }
+
+    private void sendInitial(LocationFix fix) {
+        initialSent = true;
+
+        long buildStart = scheduler.nanoTime();
+        String message;
+        long ageMs = -1;
+        if (fix != null) {
+            ageMs = ageMillis(fix);
+            sentAccuracyMeters = fix.getAccuracyMeters();
+            message = SOSMessageBuilder.buildMessage(messagePrefix, fix.getLatitude(), fix.getLongitude(), sentAccuracyMeters, ageMs);
+        } else {
+            message = SOSMessageBuilder.buildMessageWithoutLocation(messagePrefix);
+        }
+        listener.onSpan(Span.MESSAGE_BUILD, scheduler.nanoTime() - buildStart);
+        listener.onSend(message, false);
+        markStage("initial_sent");
+
+        if (policy.needsRefinement(fix != null, ageMs, sentAccuracyMeters)) {
+            requestRefinedFix();
+        } else {
+            finish("cached fix was fresh and accurate");
+        }
+    }
+
+    /**
+     * Stage 2: one high-accuracy fix, limited to whatever is left of the budget.
+     */
+    private void requestRefinedFix() {
+        long remainingMs = policy.getBudgetMs() - elapsedMillis();
+        if (remainingMs <= 0) {
+            finish("budget used up before refinement");
+            return;
+        }
+
+        // Backstop in case the source does not honour maxWaitMs
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (!finished) {
+                    refineRequest.cancel();
+                    finish("budget expired");
+                }
+            }
+        }, remainingMs);
+
+        final long refinedSpanStart = scheduler.nanoTime();
+        refineRequest = locationSource.getFreshFix(remainingMs, new LocationSource.Callback() {
+            @Override
+            public void onResult(LocationFix fix) {
+                if (finished) {
+                    return;
+                }
+                markStage("refined_fix");
+                if (fix == null) {
+                    finish("no refined fix within budget");
+                    return;
+                }
+                listener.onSpan(Span.REFINED_FIX, scheduler.nanoTime() - refinedSpanStart);
+                float accuracy = fix.getAccuracyMeters();
+                if (policy.shouldSendFollowUp(elapsedMillis(), accuracy, sentAccuracyMeters)) {
+                    long buildStart = scheduler.nanoTime();
+                    String message = SOSMessageBuilder.buildFollowUpMessage(fix.getLatitude(), fix.getLongitude(), accuracy);
+                    listener.onSpan(Span.MESSAGE_BUILD, scheduler.nanoTime() - buildStart);
+                    listener.onSend(message, true);
+                    markStage("follow_up_sent");
+                    finish("follow-up sent");
+                } else {
+                    finish("refined fix was not better");
+                }
+            }
+        });
+    }
+
+    private void finish(String reason) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        markStage("done");
+        listener.onFinished(reason, stageTimings);
+    }
+
+    private void markStage(String stage) {
+        stageTimings.put(stage, elapsedMillis());
+    }
+
+    private long elapsedMillis() {
+        return (scheduler.nanoTime() - triggerNanos) / 1_000_000;
+    }
+
+    private long ageMillis(LocationFix fix) {
+        return (scheduler.nanoTime() - fix.getTimeNanos()) / 1_000_000;
+    }
+}
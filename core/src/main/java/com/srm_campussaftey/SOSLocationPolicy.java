@@ -0,0 +1,95 @@
+package com.srm_campussaftey;
+
+/*
+ * The rules for how long an SOS may wait for a location, and which fixes are good enough.
+ *
+ * An SOS is sent in two steps:
+ *  1. Right away, with the freshest fix the phone already has (or "location unknown").
+ *  2. At most one follow-up, if a better high-accuracy fix arrives before the budget runs out.
+ *
+ * All thresholds can be changed through SharedPreferences (CampusSafetyPrefs, read by
+ * SOSDispatchPlan). This class has no Android dependencies, so the decisions are easy to test.
+ */
+public class SOSLocationPolicy {
+
+    // --- Keys in CampusSafetyPrefs ---
+    public static final String KEY_BUDGET_MS = "SosLocationBudgetMs";
+    public static final String KEY_MAX_FIX_AGE_MS = "SosMaxFixAgeMs";
+    public static final String KEY_FRESH_FIX_AGE_MS = "SosFreshFixAgeMs";
+    public static final String KEY_GOOD_ACCURACY_METERS = "SosGoodAccuracyMeters";
+    // --- End of Keys ---
+
+    // --- Defaults ---
+    public static final long DEFAULT_BUDGET_MS = 20_000;        // Stop waiting for a refined fix after 20 s
+    public static final long DEFAULT_MAX_FIX_AGE_MS = 15 * 60_000; // Older cached fixes are not sent at all
+    public static final long DEFAULT_FRESH_FIX_AGE_MS = 30_000;  // Younger (and accurate) fixes need no follow-up
+    public static final int DEFAULT_GOOD_ACCURACY_METERS = 50;
+    // How long to wait for the cached fix itself before sending without one
+    public static final long CACHED_FIX_WAIT_MS = 500;
+    // --- End of Defaults ---
+
+    private final long budgetMs;
+    private final long maxFixAgeMs;
+    private final long freshFixAgeMs;
+    private final int goodAccuracyMeters;
+
+    public SOSLocationPolicy(long budgetMs, long maxFixAgeMs, long freshFixAgeMs, int goodAccuracyMeters) {
+        this.budgetMs = budgetMs;
+        this.maxFixAgeMs = maxFixAgeMs;
+        this.freshFixAgeMs = freshFixAgeMs;
+        this.goodAccuracyMeters = goodAccuracyMeters;
+    }
+
+    public static SOSLocationPolicy defaults() {
+        return new SOSLocationPolicy(DEFAULT_BUDGET_MS, DEFAULT_MAX_FIX_AGE_MS, DEFAULT_FRESH_FIX_AGE_MS, DEFAULT_GOOD_ACCURACY_METERS);
+    }
+
+    public long getBudgetMs() {
+        return budgetMs;
+    }
+
+    public long getMaxFixAgeMs() {
+        return maxFixAgeMs;
+    }
+
+    /**
+     * Whether a cached fix is recent enough to put in the first message at all.
+     */
+    public boolean isUsable(long ageMs) {
+        return ageMs >= 0 && ageMs <= maxFixAgeMs;
+    }
+
+    /**
+     * Whether it is worth waiting for a refined fix after the first message.
+     *
+     * @param hasFix         Whether the first message contained a location.
+     * @param ageMs          Age of that fix.
+     * @param accuracyMeters Its accuracy radius (or a negative value if unknown).
+     */
+    public boolean needsRefinement(boolean hasFix, long ageMs, float accuracyMeters) {
+        if (!hasFix) {
+            return true;
+        }
+        boolean fresh = ageMs <= freshFixAgeMs;
+        boolean accurate = accuracyMeters >= 0 && accuracyMeters <= goodAccuracyMeters;
+        return !(fresh && accurate);
+    }
+
+    /**
+     * Whether a refined fix should be sent as the follow-up message.
+     *
+     * @param elapsedMs               Time since SOS was triggered.
+     * @param accuracyMeters          Accuracy of the refined fix (negative if unknown).
+     * @param previousAccuracyMeters  Accuracy of the fix already sent, or a negative value if none was sent.
+     */
+    public boolean shouldSendFollowUp(long elapsedMs, float accuracyMeters, float previousAccuracyMeters) {
+        if (elapsedMs > budgetMs) {
+            return false;
+        }
+        if (previousAccuracyMeters < 0) {
+            return true; // Anything beats "location unknown" or an unknown radius
+        }
+        // Only bother the contacts again if the new fix is clearly better
+        return accuracyMeters >= 0 && accuracyMeters < previousAccuracyMeters;
+    }
+}
@@ -0,0 +1,123 @@
+package com.srm_campussaftey;
+
+/*
+ * Builds the text of the SOS SMS.
+ * Kept free of Android classes so it can be reused anywhere the message is needed.
+ */
+public class SOSMessageBuilder {
+
+    public static final String MESSAGE_PREFIX = "EMERGENCY SOS! I need help.";
+    public static final String FOLLOW_UP_PREFIX = "SOS UPDATE: more accurate location.";
+    private static final String LOCATION_TEXT = " My approximate location is: https://maps.google.com/?q=";
+    private static final String NO_LOCATION_TEXT = " My location is unknown.";
+    private static final String LIVE_PREFIX = "SOS LIVE #";
+    private static final String LIVE_END_TEXT = "SOS LIVE ended. Last location: ";
+    private static final String MAPS_LINK = "https://maps.google.com/?q=";
+
+    /**
+     * Message for when a location fix is available.
+     *
+     * @param accuracyMeters Accuracy radius of the fix, or a negative value if unknown.
+     * @param ageMs          How old the fix is, or a negative value to leave the age out.
+     */
+    public static String buildMessage(String prefix, double latitude, double longitude, float accuracyMeters, long ageMs) {
+        // Sized up front so the builder never has to grow
+        StringBuilder message = new StringBuilder(prefix.length() + LOCATION_TEXT.length() + 72);
+        message.append(prefix)
+                .append(LOCATION_TEXT)
+                .append(latitude)
+                .append(',')
+                .append(longitude);
+        appendFixQuality(message, accuracyMeters, ageMs);
+        return message.toString();
+    }
+
+    /**
+     * Message for when there is no location.
+     */
+    public static String buildMessageWithoutLocation(String prefix) {
+        return prefix + NO_LOCATION_TEXT;
+    }
+
+    /**
+     * The one extra message sent when a better fix arrives after the first SOS went out.
+     */
+    public static String buildFollowUpMessage(double latitude, double longitude, float accuracyMeters) {
+        return buildMessage(FOLLOW_UP_PREFIX, latitude, longitude, accuracyMeters, -1);
+    }
+
+    /**
+     * One live-follow update, kept to a single SMS part, e.g.
+     * "SOS LIVE #3: https://maps.google.com/?q=12.82311,80.04425 (within 12 m, 1.4 m/s)".
+     *
+     * @param speedMps Current speed, or a negative value if unknown.
+     */
+    public static String buildLiveUpdateMessage(int updateNumber, double latitude, double longitude,
+                                                float accuracyMeters, float speedMps) {
+        StringBuilder message = new StringBuilder(LIVE_PREFIX.length() + MAPS_LINK.length() + 64);
+        message.append(LIVE_PREFIX).append(updateNumber).append(": ");
+        appendCompactLink(message, latitude, longitude);
+        boolean hasAccuracy = accuracyMeters >= 0;
+        boolean hasSpeed = speedMps >= 0;
+        if (hasAccuracy || hasSpeed) {
+            message.append(" (");
+            if (hasAccuracy) {
+                message.append("within ").append(Math.round(accuracyMeters)).append(" m");
+            }
+            if (hasSpeed) {
+                if (hasAccuracy) {
+                    message.append(", ");
+                }
+                message.append(Math.round(speedMps * 10) / 10.0).append(" m/s");
+            }
+            message.append(')');
+        }
+        return message.toString();
+    }
+
+    /**
+     * Sent once when live sharing stops, so contacts know no more updates are coming.
+     */
+    public static String buildLiveEndMessage(double latitude, double longitude, float accuracyMeters) {
+        StringBuilder message = new StringBuilder(LIVE_END_TEXT.length() + MAPS_LINK.length() + 40);
+        message.append(LIVE_END_TEXT);
+        appendCompactLink(message, latitude, longitude);
+        if (accuracyMeters >= 0) {
+            message.append(" (within ").append(Math.round(accuracyMeters)).append(" m)");
+        }
+        return message.toString();
+    }
+
+    // 5 decimals is about 1 m, plenty for a map link and much shorter than a full double
+    private static void appendCompactLink(StringBuilder message, double latitude, double longitude) {
+        message.append(MAPS_LINK)
+                .append(Math.round(latitude * 100_000) / 100_000.0)
+                .append(',')
+                .append(Math.round(longitude * 100_000) / 100_000.0);
+    }
+
+    // Adds e.g. " (within 25 m, 3 min old)" so contacts know how much to trust the link
+    private static void appendFixQuality(StringBuilder message, float accuracyMeters, long ageMs) {
+        boolean hasAccuracy = accuracyMeters >= 0;
+        boolean hasAge = ageMs >= 0;
+        if (!hasAccuracy && !hasAge) {
+            return;
+        }
+        message.append(" (");
+        if (hasAccuracy) {
+            message.append("within ").append(Math.round(accuracyMeters)).append(" m");
+        }
+        if (hasAge) {
+            if (hasAccuracy) {
+                message.append(", ");
+            }
+            long ageSeconds = ageMs / 1000;
+            if (ageSeconds < 60) {
+                message.append(ageSeconds).append(" s old");
+            } else {
+                message.append(ageSeconds / 60).append(" min old");
+            }
+        }
+        message.append(')');
+    }
+}
@@ -0,0 +1,479 @@
+package com.srm_campussaftey;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/*
+ * A write-ahead journal of SOS sessions, so an alert survives the app being killed half way.
+ *
+ * DispatchScheduler reports to it (as its Journal) at these points:
+ *  - A session starts: the message and contacts are written and fsync'd BEFORE the first SMS
+ *    is handed to the radio. This is the only write the trigger path waits for, and it is
+ *    one write + one fsync however many contacts there are.
+ *  - A contact's message was handed to the radio, and later sent/delivered/given up on.
+ *    These are batched: collected in memory and written + fsync'd together FLUSH_DELAY_MS
+ *    later (group commit), so a burst of radio results costs one fsync.
+ *  - The session is complete.
+ *
+ * After a crash, openUnfinished() returns every session that was started but never completed,
+ * with the contacts that still have no result. Resuming them sends only to those contacts.
+ * A contact whose "sent" was not on disk yet gets the SMS again; sending twice is better
+ * than not at all.
+ *
+ * File layout: records of [int length][byte type][payload][int CRC32 of type + payload].
+ * A record cut off by a crash fails its length or CRC check; it and anything after it is
+ * dropped when the file is opened. Once no session is open, the file is emptied.
+ *
+ * Everything runs on the dispatch Scheduler's thread. No Android dependencies.
+ */
+public class SOSOutbox implements DispatchScheduler.Journal {
+
+    public static final String FILE_NAME = "sos_outbox.wal";
+    public static final long FLUSH_DELAY_MS = 50;
+    // Older unfinished sessions are closed instead of resumed: a stale alert would only confuse
+    public static final long RESUME_WINDOW_MS = 30 * 60_000;
+    private static final long COMPACT_BYTES = 64 * 1024; // Empty the file when it is this big and nothing is open
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final DispatchSession.State[] STATES = DispatchSession.State.values();
+
+    // --- Record types ---
+    private static final byte STARTED = 1;
+    private static final byte HANDED_OFF = 2;
+    private static final byte CONTACT_DONE = 3;
+    private static final byte CLOSED = 4;
+    // --- End record types ---
+
+    // --- Why a session was closed ---
+    private static final byte CLOSED_COMPLETE = 0;
+    private static final byte CLOSED_RESUMED = 1;
+    private static final byte CLOSED_EXPIRED = 2;
+    // --- End reasons ---
+
+    // Interface for reporting write failures; SOS keeps sending without the journal
+    public interface Listener {
+        void onJournalError(String what, IOException e);
+    }
+
+    /*
+     * A session read back from the journal that was never completed.
+     */
+    public static class PendingSession {
+        private final long id;
+        private final long createdAtMs;
+        private final String message;
+        private final List<Contact> contacts;
+        private final boolean[] finished; // Per contact: sent, delivered or given up on
+        private final int[] handOffs;     // Per contact: attempts handed to the radio
+
+        PendingSession(long id, long createdAtMs, String message, List<Contact> contacts) {
+            this.id = id;
+            this.createdAtMs = createdAtMs;
+            this.message = message;
+            this.contacts = contacts;
+            this.finished = new boolean[contacts.size()];
+            this.handOffs = new int[contacts.size()];
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getCreatedAtMs() {
+            return createdAtMs;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * The contacts that still have to be sent to.
+         */
+        public List<Contact> getRemainingContacts() {
+            List<Contact> remaining = new ArrayList<>();
+            for (int i = 0; i < contacts.size(); i++) {
+                if (!finished[i]) {
+                    remaining.add(contacts.get(i));
+                }
+            }
+            return remaining;
+        }
+
+        /**
+         * How many of the remaining contacts were already handed to the radio at least once
+         * (they may get the SMS twice).
+         */
+        public int getPossiblyDuplicated() {
+            int count = 0;
+            for (int i = 0; i < contacts.size(); i++) {
+                if (!finished[i] && handOffs[i] > 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private final File file;
+    private final Scheduler scheduler;
+    private final Listener listener;
+
+    private boolean opened;
+    private FileOutputStream fileOut;
+    private long fileLength;
+    private final Map<Long, PendingSession> openSessions = new LinkedHashMap<>();
+    private final Set<Long> ownSessions = new HashSet<>(); // Started by this process: never resumed
+
+    // --- Group commit ---
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    private boolean flushScheduled;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    // --- End group commit ---
+
+    public SOSOutbox(File file, Scheduler scheduler, Listener listener) {
+        this.file = file;
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    // --- DispatchScheduler.Journal ---
+
+    @Override
+    public void onSessionStarted(DispatchSession session) {
+        try {
+            open();
+            beginRecord();
+            long nowMs = System.currentTimeMillis();
+            record.writeLong(session.getId());
+            record.writeLong(nowMs);
+            record.writeUTF(session.getMessage());
+            List<DispatchSession.ContactStatus> statuses = session.getStatuses();
+            record.writeInt(statuses.size());
+            List<Contact> contacts = new ArrayList<>(statuses.size());
+            for (DispatchSession.ContactStatus status : statuses) {
+                record.writeUTF(status.getContact().getName());
+                record.writeUTF(status.getContact().getPhone());
+                contacts.add(status.getContact());
+            }
+            endRecord(STARTED);
+            ownSessions.add(session.getId());
+            openSessions.put(session.getId(), new PendingSession(session.getId(), nowMs, session.getMessage(), contacts));
+            flush(); // Write-ahead: on disk before the first SMS goes out (with anything batched so far)
+        } catch (IOException e) {
+            listener.onJournalError("Could not record SOS session", e);
+        }
+    }
+
+    @Override
+    public void onHandedOff(DispatchSession session, int contactIndex, int attempt) {
+        try {
+            open();
+            beginRecord();
+            record.writeLong(session.getId());
+            record.writeInt(contactIndex);
+            record.writeInt(attempt);
+            endRecord(HANDED_OFF);
+            scheduleFlush();
+        } catch (IOException e) {
+            listener.onJournalError("Could not record SMS handoff", e);
+        }
+    }
+
+    @Override
+    public void onContactFinished(DispatchSession session, int contactIndex) {
+        try {
+            open();
+            beginRecord();
+            record.writeLong(session.getId());
+            record.writeInt(contactIndex);
+            record.writeByte(session.getStatuses().get(contactIndex).getState().ordinal());
+            endRecord(CONTACT_DONE);
+            scheduleFlush();
+        } catch (IOException e) {
+            listener.onJournalError("Could not record SMS result", e);
+        }
+    }
+
+    @Override
+    public void onSessionComplete(DispatchSession session) {
+        close(session.getId(), CLOSED_COMPLETE);
+        scheduleFlush();
+    }
+
+    // --- Recovery ---
+
+    /**
+     * Returns the sessions a previous process started and never completed, and marks them
+     * closed (the caller resumes them as new sessions). Sessions older than RESUME_WINDOW_MS
+     * are closed without being returned. Calling it again returns nothing new, so it is safe
+     * to call on every start and service reconnect.
+     */
+    public List<PendingSession> claimUnfinished(long nowMs) {
+        try {
+            open();
+        } catch (IOException e) {
+            listener.onJournalError("Could not read SOS outbox", e);
+            return Collections.emptyList();
+        }
+        List<PendingSession> claimed = new ArrayList<>();
+        for (PendingSession session : new ArrayList<>(openSessions.values())) {
+            if (ownSessions.contains(session.getId())) {
+                continue; // Still being sent by this process
+            }
+            boolean expired = nowMs - session.getCreatedAtMs() > RESUME_WINDOW_MS;
+            if (!expired && !session.getRemainingContacts().isEmpty()) {
+                claimed.add(session);
+            }
+            // Made durable together with the resumed session's own start record
+            close(session.getId(), expired ? CLOSED_EXPIRED : CLOSED_RESUMED);
+        }
+        scheduleFlush();
+        return claimed;
+    }
+
+    /**
+     * Writes everything batched so far and waits until it is on disk.
+     */
+    public void flush() throws IOException {
+        flushScheduled = false;
+        if (batch.size() == 0) {
+            return;
+        }
+        open();
+        try {
+            batch.writeTo(fileOut);
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            // Cut off whatever part made it, so later records are not stuck behind a torn one.
+            // The batch is kept and written again on the next flush.
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(fileLength);
+            } catch (IOException ignored) {
+                // Reopening will drop the torn record instead
+            }
+            throw e;
+        }
+        fileLength += batch.size();
+        batch.reset();
+        if (openSessions.isEmpty() && fileLength >= COMPACT_BYTES) {
+            truncate(0); // Nothing in it is needed any more
+        }
+    }
+
+    /**
+     * Flushes and closes the file. For tests and shutdown.
+     */
+    public void close() throws IOException {
+        flush();
+        if (fileOut != null) {
+            fileOut.close();
+            fileOut = null;
+        }
+        opened = false;
+    }
+
+    // --- Internals ---
+
+    private void close(long sessionId, byte reason) {
+        if (openSessions.remove(sessionId) == null) {
+            return;
+        }
+        ownSessions.remove(sessionId);
+        try {
+            beginRecord();
+            record.writeLong(sessionId);
+            record.writeByte(reason);
+            endRecord(CLOSED);
+        } catch (IOException e) {
+            listener.onJournalError("Could not close SOS session", e);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (!flushScheduled) {
+                    return; // Flushed in the meantime
+                }
+                try {
+                    flush();
+                } catch (IOException e) {
+                    listener.onJournalError("Could not write SOS outbox", e);
+                }
+            }
+        }, FLUSH_DELAY_MS);
+    }
+
+    /**
+     * Starts a new record in "record". Drops whatever a record that failed half way left
+     * behind (e.g. writeUTF turning down a message over 64 KB), so it never ends up in front
+     * of the next one under a valid CRC.
+     */
+    private void beginRecord() {
+        recordBytes.reset();
+    }
+
+    /**
+     * Frames the record built in "record" and adds it to the batch.
+     */
+    private void endRecord(byte type) throws IOException {
+        byte[] payload = recordBytes.toByteArray();
+        recordBytes.reset();
+        crc.reset();
+        crc.update(type);
+        crc.update(payload);
+        DataOutputStream out = new DataOutputStream(batch);
+        out.writeInt(payload.length + 1);
+        out.writeByte(type);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Reads the journal on first use: rebuilds the open sessions and cuts off a torn tail.
+     */
+    private void open() throws IOException {
+        if (opened) {
+            return;
+        }
+        long goodLength = 0;
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break; // Clean end
+                    }
+                    if (length < 1 || length > MAX_RECORD_BYTES) {
+                        break;
+                    }
+                    byte[] body = new byte[length];
+                    int storedCrc;
+                    try {
+                        in.readFully(body);
+                        storedCrc = in.readInt();
+                    } catch (EOFException e) {
+                        break; // Cut off by a crash
+                    }
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != storedCrc) {
+                        break;
+                    }
+                    boolean applied;
+                    try {
+                        applied = apply(body);
+                    } catch (EOFException e) {
+                        applied = false; // Shorter than its type needs
+                    }
+                    if (!applied) {
+                        break; // Makes no sense despite its CRC: treated as corrupt, like a bad CRC
+                    }
+                    goodLength += 4 + length + 4;
+                }
+            }
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        fileOut = new FileOutputStream(file, true);
+        fileLength = file.length();
+        opened = true;
+        if (openSessions.isEmpty()) {
+            truncate(0);
+        } else if (goodLength < fileLength) {
+            truncate(goodLength);
+        }
+    }
+
+    /**
+     * Replays one record into openSessions.
+     *
+     * @return False if the record holds a value that cannot be right (a contact state that
+     *         does not exist).
+     */
+    private boolean apply(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        long sessionId = in.readLong();
+        PendingSession session = openSessions.get(sessionId);
+        switch (type) {
+            case STARTED: {
+                long createdAtMs = in.readLong();
+                String message = in.readUTF();
+                int count = in.readInt();
+                List<Contact> contacts = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    contacts.add(new Contact(in.readUTF(), in.readUTF()));
+                }
+                openSessions.put(sessionId, new PendingSession(sessionId, createdAtMs, message, contacts));
+                break;
+            }
+            case HANDED_OFF: {
+                int contactIndex = in.readInt();
+                if (session != null && contactIndex >= 0 && contactIndex < session.handOffs.length) {
+                    session.handOffs[contactIndex]++;
+                }
+                break;
+            }
+            case CONTACT_DONE: {
+                int contactIndex = in.readInt();
+                int ordinal = in.readByte();
+                if (ordinal < 0 || ordinal >= STATES.length) {
+                    return false;
+                }
+                DispatchSession.State state = STATES[ordinal];
+                boolean done = state == DispatchSession.State.SENT || state == DispatchSession.State.DELIVERED
+                        || state == DispatchSession.State.FAILED;
+                if (session != null && done && contactIndex >= 0 && contactIndex < session.finished.length) {
+                    session.finished[contactIndex] = true;
+                }
+                break;
+            }
+            case CLOSED:
+                openSessions.remove(sessionId);
+                break;
+            default:
+                break; // Written by a newer version; nothing to do with it
+        }
+        return true;
+    }
+
+    private void truncate(long length) throws IOException {
+        if (fileLength == length) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+            raf.getFD().sync();
+        }
+        fileLength = length;
+    }
+}
@@ -0,0 +1,20 @@
+package com.srm_campussaftey;
+
+/*
+ * A clock plus a single thread to run work on.
+ *
+ * The SOS core classes (DispatchScheduler, SOSLocationFlow) keep their state on one thread and
+ * never lock, so every task and every gateway/location callback must run on the same thread.
+ * On Android this is a Handler (HandlerScheduler); on a plain JVM it is ExecutorScheduler.
+ */
+public interface Scheduler {
+
+    /**
+     * Monotonic time in nanoseconds. Location fix times must use the same clock.
+     */
+    long nanoTime();
+
+    void post(Runnable task);
+
+    void postDelayed(Runnable task, long delayMs);
+}
@@ -0,0 +1,286 @@
+package com.srm_campussaftey;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/*
+ * An in-memory inverted index over the feed: every word -> the ids of the posts that contain it.
+ *
+ * - Words come from the title and description, lower-cased and split on anything
+ *   that is not a letter or digit.
+ * - Every query word is a prefix: "lib" finds "library" and "libraries". The words are kept
+ *   sorted (TreeMap), so all words with a prefix sit next to each other.
+ * - A post matches when it matches every query word. Matches are collected in a BitSet
+ *   (journal ids are small, dense numbers), so combining thousands of posts is cheap.
+ * - Adding a post only touches the lists of its own words; nothing is rebuilt.
+ *
+ * The index can be saved and loaded (writeTo / readFrom) so it does not have to be built
+ * again from every post. getLastId() tells the caller which posts it already has.
+ *
+ * Not thread-safe; the app only uses it from one thread.
+ */
+public class SearchIndex {
+
+    public static final int MAGIC = 0x53524D49; // "SRMI"
+    public static final byte VERSION = 1;
+    // Longer "words" are almost always pasted links or junk; they are cut to this length
+    static final int MAX_TERM_LENGTH = 32;
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private long lastId; // Highest post id in the index
+
+    /*
+     * The ids of the posts containing one word, sorted, without duplicates.
+     * Posts are indexed in id order almost always, so adding is normally a plain append.
+     */
+    private static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        boolean add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                return insertSorted(id);
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            return true;
+        }
+
+        private boolean insertSorted(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return false; // Already there
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+            return true;
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(ids[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds one post. Adding the same post twice is harmless.
+     * @return true if the index changed.
+     */
+    public boolean add(NewsItem item) {
+        long id = item.getId();
+        if (id <= 0 || id > Integer.MAX_VALUE) {
+            return false; // Not saved in the journal yet
+        }
+        boolean changed = false;
+        for (String term : tokenize(item.getTitle() + " " + item.getDescription())) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(term, postings);
+            }
+            changed |= postings.add((int) id);
+        }
+        lastId = Math.max(lastId, id);
+        return changed;
+    }
+
+    /**
+     * Drops every post whose id is not set in "keep" (posts that left the journal for the
+     * archive), and words left without posts. One pass over every list.
+     * @return true if the index changed.
+     */
+    public boolean retainOnly(BitSet keep) {
+        boolean changed = false;
+        Iterator<Postings> iterator = terms.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            int kept = 0;
+            for (int i = 0; i < postings.size; i++) {
+                if (keep.get(postings.ids[i])) {
+                    postings.ids[kept++] = postings.ids[i];
+                }
+            }
+            if (kept != postings.size) {
+                changed = true;
+                postings.size = kept;
+                if (kept == 0) {
+                    iterator.remove();
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Finds the posts that match every word of the query (each word as a prefix).
+     *
+     * @param query What the user typed.
+     * @param limit Maximum number of ids to return.
+     * @return Matching post ids, highest (newest) first. Empty for a blank query.
+     */
+    public long[] search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+        BitSet matches = null;
+        for (String word : words) {
+            BitSet wordMatches = new BitSet((int) lastId + 1);
+            // Every word that starts with "word" sorts between "word" and "word" + MAX_VALUE
+            SortedMap<String, Postings> range = terms.subMap(word, word + Character.MAX_VALUE);
+            for (Postings postings : range.values()) {
+                postings.addTo(wordMatches);
+            }
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.and(wordMatches);
+            }
+            if (matches.isEmpty()) {
+                return new long[0];
+            }
+        }
+
+        long[] ids = new long[Math.min(limit, matches.cardinality())];
+        int count = 0;
+        for (int id = matches.length() - 1; id >= 0 && count < ids.length; id = matches.previousSetBit(id - 1)) {
+            ids[count++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * The highest post id in the index. Posts with a higher id still need to be added.
+     */
+    public long getLastId() {
+        return lastId;
+    }
+
+    public int getTermCount() {
+        return terms.size();
+    }
+
+    /**
+     * Splits text into lower-case words, without duplicates, in the order they appear.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = lower.substring(start, Math.min(i, start + MAX_TERM_LENGTH));
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // --- Saving and loading ---
+
+    /*
+     * Layout: [int magic][byte version][long lastId][int termCount], then per word:
+     *   [UTF word][int idCount][varint id gaps...]
+     * Ids are stored as the gap from the previous id, which is usually one byte.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(lastId);
+        out.writeInt(terms.size());
+        for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+            Postings postings = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(postings.size);
+            int previous = 0;
+            for (int i = 0; i < postings.size; i++) {
+                writeVarInt(out, postings.ids[i] - previous);
+                previous = postings.ids[i];
+            }
+        }
+    }
+
+    /**
+     * Loads an index saved by writeTo.
+     * @throws IOException If the data is not a saved index (the caller should rebuild).
+     */
+    public static SearchIndex readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a search index");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unknown search index version " + version);
+        }
+        SearchIndex index = new SearchIndex();
+        index.lastId = in.readLong();
+        int termCount = in.readInt();
+        if (termCount < 0) {
+            throw new IOException("Bad term count " + termCount);
+        }
+        for (int t = 0; t < termCount; t++) {
+            String term = in.readUTF();
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Bad posting count " + size);
+            }
+            Postings postings = new Postings();
+            postings.ids = new int[Math.max(2, size)];
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                previous += readVarInt(in);
+                postings.ids[i] = previous;
+            }
+            postings.size = size;
+            index.terms.put(term, postings);
+        }
+        return index;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Bad varint");
+    }
+}
@@ -0,0 +1,125 @@
+package com.srm_campussaftey;
+
+import java.util.Random;
+
+/*
+ * A fake location provider for running the SOS core off-device.
+ *
+ * The cached fix arrives after a random delay, is missing with probability
+ * noCachedFixRate and has a random age and accuracy. Fresh fixes take a random time to
+ * arrive and fail with probability freshFixFailureRate; if they would take longer than
+ * maxWaitMs the answer is null, like the real provider. Randomness comes from the seed.
+ */
+public class SimulatedLocationSource implements LocationSource {
+
+    private final Scheduler scheduler;
+    private final Random random;
+
+    // --- Settings (chainable setters below) ---
+    private double latitude = 12.8230;  // SRM Kattankulathur campus
+    private double longitude = 80.0444;
+    private long cachedMinMs = 1;
+    private long cachedMaxMs = 30;
+    private double noCachedFixRate = 0.1;
+    private long cachedAgeMinMs = 5_000;
+    private long cachedAgeMaxMs = 10 * 60_000;
+    private float cachedAccuracyMin = 10;
+    private float cachedAccuracyMax = 200;
+    private long freshMinMs = 1_000;
+    private long freshMaxMs = 8_000;
+    private double freshFixFailureRate = 0.05;
+    private float freshAccuracyMin = 3;
+    private float freshAccuracyMax = 20;
+    // --- End Settings ---
+
+    public SimulatedLocationSource(Scheduler scheduler, long seed) {
+        this.scheduler = scheduler;
+        this.random = new Random(seed);
+    }
+
+    public SimulatedLocationSource setPosition(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        return this;
+    }
+
+    public SimulatedLocationSource setCachedFix(long minLatencyMs, long maxLatencyMs, double missingRate) {
+        this.cachedMinMs = minLatencyMs;
+        this.cachedMaxMs = maxLatencyMs;
+        this.noCachedFixRate = missingRate;
+        return this;
+    }
+
+    public SimulatedLocationSource setCachedFixQuality(long minAgeMs, long maxAgeMs, float minAccuracy, float maxAccuracy) {
+        this.cachedAgeMinMs = minAgeMs;
+        this.cachedAgeMaxMs = maxAgeMs;
+        this.cachedAccuracyMin = minAccuracy;
+        this.cachedAccuracyMax = maxAccuracy;
+        return this;
+    }
+
+    public SimulatedLocationSource setFreshFix(long minLatencyMs, long maxLatencyMs, double failureRate) {
+        this.freshMinMs = minLatencyMs;
+        this.freshMaxMs = maxLatencyMs;
+        this.freshFixFailureRate = failureRate;
+        return this;
+    }
+
+    public SimulatedLocationSource setFreshFixAccuracy(float minAccuracy, float maxAccuracy) {
+        this.freshAccuracyMin = minAccuracy;
+        this.freshAccuracyMax = maxAccuracy;
+        return this;
+    }
+
+    @Override
+    public void getLastFix(final Callback callback) {
+        final boolean missing = random.nextDouble() < noCachedFixRate;
+        final long ageMs = between(cachedAgeMinMs, cachedAgeMaxMs);
+        final float accuracy = cachedAccuracyMin + random.nextFloat() * (cachedAccuracyMax - cachedAccuracyMin);
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (missing) {
+                    callback.onResult(null);
+                } else {
+                    long timeNanos = scheduler.nanoTime() - ageMs * 1_000_000L;
+                    callback.onResult(new LocationFix(latitude, longitude, accuracy, timeNanos));
+                }
+            }
+        }, between(cachedMinMs, cachedMaxMs));
+    }
+
+    @Override
+    public Request getFreshFix(long maxWaitMs, final Callback callback) {
+        final boolean fails = random.nextDouble() < freshFixFailureRate;
+        final float accuracy = freshAccuracyMin + random.nextFloat() * (freshAccuracyMax - freshAccuracyMin);
+        long latencyMs = between(freshMinMs, freshMaxMs);
+        final boolean timesOut = latencyMs > maxWaitMs;
+        final boolean[] cancelled = new boolean[1];
+
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled[0]) {
+                    return;
+                }
+                if (fails || timesOut) {
+                    callback.onResult(null);
+                } else {
+                    callback.onResult(new LocationFix(latitude, longitude, accuracy, scheduler.nanoTime()));
+                }
+            }
+        }, Math.min(latencyMs, maxWaitMs));
+
+        return new Request() {
+            @Override
+            public void cancel() {
+                cancelled[0] = true;
+            }
+        };
+    }
+
+    private long between(long min, long max) {
+        return max <= min ? min : min + (long) (random.nextDouble() * (max - min));
+    }
+}
@@ -0,0 +1,134 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * A fake radio for running the SOS core off-device.
+ *
+ * Every part gets a "sent" result after a random delay in [sentMinMs, sentMaxMs] and,
+ * if it was sent, a delivery report after a further random delay. Failures are injected
+ * with the configured probabilities. All randomness comes from the seed, so a run can be
+ * repeated exactly (as long as the same Scheduler thread is used).
+ */
+public class SimulatedSmsGateway implements SmsGateway {
+
+    // Same limits as a GSM-7 SMS
+    private static final int SINGLE_PART_LENGTH = 160;
+    private static final int MULTI_PART_LENGTH = 153;
+
+    private final Scheduler scheduler;
+    private final Random random;
+
+    // --- Settings (chainable setters below) ---
+    private long handoffCostNanos = 0;        // Busy time spent inside send(), like a binder call
+    private long sentMinMs = 50;
+    private long sentMaxMs = 500;
+    private long deliveredMinMs = 1_000;
+    private long deliveredMaxMs = 5_000;
+    private double transientFailureRate = 0;  // Per part, e.g. "no service"
+    private double permanentFailureRate = 0;  // Per send(), e.g. invalid number
+    private double lostResultRate = 0;        // Per part, the radio never reports back
+    // --- End Settings ---
+
+    private long sendCount;
+
+    public SimulatedSmsGateway(Scheduler scheduler, long seed) {
+        this.scheduler = scheduler;
+        this.random = new Random(seed);
+    }
+
+    public SimulatedSmsGateway setHandoffCostNanos(long nanos) {
+        this.handoffCostNanos = nanos;
+        return this;
+    }
+
+    public SimulatedSmsGateway setSentLatencyMs(long minMs, long maxMs) {
+        this.sentMinMs = minMs;
+        this.sentMaxMs = maxMs;
+        return this;
+    }
+
+    public SimulatedSmsGateway setDeliveredLatencyMs(long minMs, long maxMs) {
+        this.deliveredMinMs = minMs;
+        this.deliveredMaxMs = maxMs;
+        return this;
+    }
+
+    public SimulatedSmsGateway setTransientFailureRate(double rate) {
+        this.transientFailureRate = rate;
+        return this;
+    }
+
+    public SimulatedSmsGateway setPermanentFailureRate(double rate) {
+        this.permanentFailureRate = rate;
+        return this;
+    }
+
+    public SimulatedSmsGateway setLostResultRate(double rate) {
+        this.lostResultRate = rate;
+        return this;
+    }
+
+    /**
+     * How many times send() was called (including retries). Scheduler thread only.
+     */
+    public long getSendCount() {
+        return sendCount;
+    }
+
+    @Override
+    public List<String> divideMessage(String message) {
+        List<String> parts = new ArrayList<>();
+        if (message.length() <= SINGLE_PART_LENGTH) {
+            parts.add(message);
+            return parts;
+        }
+        for (int start = 0; start < message.length(); start += MULTI_PART_LENGTH) {
+            parts.add(message.substring(start, Math.min(message.length(), start + MULTI_PART_LENGTH)));
+        }
+        return parts;
+    }
+
+    @Override
+    public void send(String phone, List<String> parts, final Callback callback) {
+        sendCount++;
+        if (handoffCostNanos > 0) {
+            long end = System.nanoTime() + handoffCostNanos;
+            while (System.nanoTime() < end) {
+                // Spin: simulates the time the real call blocks the sending thread
+            }
+        }
+        if (random.nextDouble() < permanentFailureRate) {
+            throw new IllegalArgumentException("Simulated invalid destination address");
+        }
+
+        for (int i = 0; i < parts.size(); i++) {
+            if (random.nextDouble() < lostResultRate) {
+                continue; // DispatchScheduler's timeout has to deal with this one
+            }
+            final boolean sent = random.nextDouble() >= transientFailureRate;
+            long sentDelay = between(sentMinMs, sentMaxMs);
+            final long deliveredDelay = between(deliveredMinMs, deliveredMaxMs);
+            scheduler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onPartSent(sent, true, sent ? null : "Simulated no service");
+                    if (sent) {
+                        scheduler.postDelayed(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.onPartDelivered(true);
+                            }
+                        }, deliveredDelay);
+                    }
+                }
+            }, sentDelay);
+        }
+    }
+
+    private long between(long min, long max) {
+        return max <= min ? min : min + (long) (random.nextDouble() * (max - min));
+    }
+}
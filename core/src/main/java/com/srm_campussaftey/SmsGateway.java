@@ -0,0 +1,38 @@
+package com.srm_campussaftey;
+
+import java.util.List;
+
+/*
+ * Whatever actually sends the SMS: the phone's radio (SmsDispatchEngine) or a simulation
+ * (SimulatedSmsGateway).
+ */
+public interface SmsGateway {
+
+    /*
+     * Results for one send. Must be called on the Scheduler's thread, and never from
+     * inside send() itself.
+     */
+    interface Callback {
+        /**
+         * @param success          Whether the network accepted this part.
+         * @param transientFailure Whether the failure might go away by itself (no service, radio off...).
+         * @param error            Description of the failure, or null on success.
+         */
+        void onPartSent(boolean success, boolean transientFailure, String error);
+
+        void onPartDelivered(boolean success);
+    }
+
+    /**
+     * Splits a message into the parts that will be sent (one part if it fits in a single SMS).
+     */
+    List<String> divideMessage(String message);
+
+    /**
+     * Hands the parts to the radio. Returns right away; results come back on the callback.
+     *
+     * @throws IllegalArgumentException If the number is invalid (retrying will not help).
+     * @throws SecurityException        If sending is not allowed (retrying will not help).
+     */
+    void send(String phone, List<String> parts, Callback callback);
+}
@@ -0,0 +1,164 @@
+package com.srm_campussaftey;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Watches hardware key events and says when one of the TriggerPatterns has been completed.
+ *
+ * Built for being called on every volume key press, so onKey allocates nothing and needs
+ * no timers:
+ *  - The most recent presses (key + time) sit in two fixed-size ring arrays. After each
+ *    press every SEQUENCE pattern compares itself with the tail of the ring, which is a few
+ *    int/long comparisons. A press that comes too long after the previous one simply fails
+ *    the gap check, so nothing has to be "reset" on a timeout.
+ *  - A LONG_PRESS is tracked with the key being held and when it went down. Android repeats
+ *    key-down events while a key is held, so the pattern fires on the first repeat (or the
+ *    key-up) that is at least holdMs after the first down.
+ *
+ * setPatterns swaps in a new configuration at any time; the arrays are sized for it there.
+ *
+ * Not thread-safe; the accessibility service calls it from the main thread only.
+ */
+public class TriggerEngine {
+
+    public static final int NO_MATCH = -1;
+    private static final int NO_KEY = -1;
+
+    private List<TriggerPattern> patterns = Collections.emptyList();
+
+    // --- Recent presses (ring buffer) ---
+    private int[] recentKeys = new int[0];
+    private long[] recentTimes = new long[0];
+    private int next;   // Where the next press goes
+    private int count;  // How many presses are stored (up to the array length)
+    // --- End recent presses ---
+
+    // --- Key being held ---
+    private int heldKey = NO_KEY;
+    private long heldSinceMs;
+    private boolean holdFired; // So one long press triggers only once
+    // --- End key being held ---
+
+    public TriggerEngine(List<TriggerPattern> patterns) {
+        setPatterns(patterns);
+    }
+
+    /**
+     * Replaces the patterns (e.g. after the user picked a new shortcut) and forgets any
+     * presses made so far.
+     */
+    public void setPatterns(List<TriggerPattern> patterns) {
+        int longest = 0;
+        for (TriggerPattern pattern : patterns) {
+            if (pattern.getKind() == TriggerPattern.SEQUENCE) {
+                longest = Math.max(longest, pattern.getLength());
+            }
+        }
+        this.patterns = patterns;
+        recentKeys = new int[longest];
+        recentTimes = new long[longest];
+        reset();
+    }
+
+    public List<TriggerPattern> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * Forgets every press and any key being held.
+     */
+    public void reset() {
+        next = 0;
+        count = 0;
+        heldKey = NO_KEY;
+        holdFired = false;
+    }
+
+    /**
+     * Feeds one key event.
+     *
+     * @param keyCode     The key (TriggerPattern.KEY_VOLUME_UP / KEY_VOLUME_DOWN).
+     * @param down        True for key down (including repeats while held), false for key up.
+     * @param repeatCount 0 for the first key down, more for the repeats while the key is held.
+     * @param eventTimeMs When it happened, on a clock that never jumps (uptime).
+     * @return The index of the pattern that was just completed, or NO_MATCH.
+     */
+    public int onKey(int keyCode, boolean down, int repeatCount, long eventTimeMs) {
+        if (!down) {
+            int matched = NO_MATCH;
+            if (keyCode == heldKey) {
+                matched = checkHold(eventTimeMs);
+                heldKey = NO_KEY;
+            }
+            return matched;
+        }
+        if (repeatCount > 0) {
+            return keyCode == heldKey ? checkHold(eventTimeMs) : NO_MATCH; // Held, not a new press
+        }
+
+        heldKey = keyCode;
+        heldSinceMs = eventTimeMs;
+        holdFired = false;
+        if (recentKeys.length == 0) {
+            return NO_MATCH; // Only long-press patterns
+        }
+        recentKeys[next] = keyCode;
+        recentTimes[next] = eventTimeMs;
+        next = next + 1 == recentKeys.length ? 0 : next + 1;
+        if (count < recentKeys.length) {
+            count++;
+        }
+
+        for (int p = 0; p < patterns.size(); p++) {
+            TriggerPattern pattern = patterns.get(p);
+            if (pattern.getKind() == TriggerPattern.SEQUENCE && endsWith(pattern)) {
+                count = 0; // The presses that made up this pattern can't start the next one
+                return p;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * Whether the most recent presses are exactly this sequence, each within its gap.
+     */
+    private boolean endsWith(TriggerPattern pattern) {
+        int length = pattern.getLength();
+        if (count < length) {
+            return false;
+        }
+        int capacity = recentKeys.length;
+        int position = next - 1 < 0 ? capacity - 1 : next - 1; // Newest press
+        long laterTime = 0;
+        // Walk backwards: newest press against the last key of the pattern, and so on
+        for (int i = length - 1; i >= 0; i--) {
+            if (recentKeys[position] != pattern.getKey(i)) {
+                return false;
+            }
+            if (i < length - 1 && laterTime - recentTimes[position] > pattern.getMaxGapMs()) {
+                return false;
+            }
+            laterTime = recentTimes[position];
+            position = position == 0 ? capacity - 1 : position - 1;
+        }
+        return true;
+    }
+
+    private int checkHold(long eventTimeMs) {
+        if (holdFired) {
+            return NO_MATCH;
+        }
+        long heldMs = eventTimeMs - heldSinceMs;
+        for (int p = 0; p < patterns.size(); p++) {
+            TriggerPattern pattern = patterns.get(p);
+            if (pattern.getKind() == TriggerPattern.LONG_PRESS && pattern.getKey(0) == heldKey
+                    && heldMs >= pattern.getHoldMs()) {
+                holdFired = true;
+                count = 0;
+                return p;
+            }
+        }
+        return NO_MATCH;
+    }
+}
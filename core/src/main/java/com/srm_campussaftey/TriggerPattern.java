@@ -0,0 +1,225 @@
+package com.srm_campussaftey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * One hardware-key pattern that triggers a silent SOS, e.g. "Volume Down 3 times".
+ *
+ * Two kinds:
+ *  - SEQUENCE: the given keys pressed in order, each press at most maxGapMs after the one
+ *    before. "N presses of Volume Down" is a sequence of N Volume Downs; "Up, Down, Up, Down"
+ *    is an alternation.
+ *  - LONG_PRESS: one key held down for at least holdMs.
+ *
+ * Patterns are saved as text in CampusSafetyPrefs (KEY_TRIGGER_PATTERNS), several separated
+ * by ';':
+ *   presses:down:3:2000            3 x Volume Down, at most 2 s apart
+ *   sequence:up,down,up,down:1500  Up, Down, Up, Down, at most 1.5 s apart
+ *   hold:down:2000                 Volume Down held for 2 s
+ *
+ * Parsing allocates; it only happens when the setting changes. TriggerEngine does the
+ * per-key-press work. No Android dependencies.
+ */
+public class TriggerPattern {
+
+    // Same values as android.view.KeyEvent, so the service can pass key codes straight through
+    public static final int KEY_VOLUME_UP = 24;
+    public static final int KEY_VOLUME_DOWN = 25;
+
+    public static final int SEQUENCE = 0;
+    public static final int LONG_PRESS = 1;
+
+    // --- Key in CampusSafetyPrefs ---
+    public static final String KEY_TRIGGER_PATTERNS = "SosTriggerPatterns";
+    // --- Defaults ---
+    public static final String DEFAULT_PATTERNS = "presses:down:3:2000"; // The original shortcut
+    public static final int MAX_SEQUENCE_LENGTH = 10;
+
+    // Choices offered on the main screen
+    public static final String[] PRESETS = {
+            "presses:down:3:2000",
+            "presses:down:5:2000",
+            "sequence:up,down,up,down:1500",
+            "hold:down:2000",
+    };
+
+    private final int kind;
+    private final int[] keys;     // SEQUENCE: the keys in order; LONG_PRESS: the one key
+    private final long maxGapMs;  // SEQUENCE only
+    private final long holdMs;    // LONG_PRESS only
+
+    private TriggerPattern(int kind, int[] keys, long maxGapMs, long holdMs) {
+        this.kind = kind;
+        this.keys = keys;
+        this.maxGapMs = maxGapMs;
+        this.holdMs = holdMs;
+    }
+
+    public static TriggerPattern presses(int key, int count, long maxGapMs) {
+        if (count < 1 || count > MAX_SEQUENCE_LENGTH) { // Before the array is sized from it
+            throw new IllegalArgumentException("A sequence needs 1 to " + MAX_SEQUENCE_LENGTH + " presses");
+        }
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = key;
+        }
+        return sequence(keys, maxGapMs);
+    }
+
+    public static TriggerPattern sequence(int[] keys, long maxGapMs) {
+        if (keys.length < 1 || keys.length > MAX_SEQUENCE_LENGTH) {
+            throw new IllegalArgumentException("A sequence needs 1 to " + MAX_SEQUENCE_LENGTH + " presses");
+        }
+        if (maxGapMs <= 0) {
+            throw new IllegalArgumentException("Gap must be positive: " + maxGapMs);
+        }
+        return new TriggerPattern(SEQUENCE, keys.clone(), maxGapMs, 0);
+    }
+
+    public static TriggerPattern longPress(int key, long holdMs) {
+        if (holdMs <= 0) {
+            throw new IllegalArgumentException("Hold time must be positive: " + holdMs);
+        }
+        return new TriggerPattern(LONG_PRESS, new int[]{key}, 0, holdMs);
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public int getLength() {
+        return keys.length;
+    }
+
+    public int getKey(int index) {
+        return keys[index];
+    }
+
+    public long getMaxGapMs() {
+        return maxGapMs;
+    }
+
+    public long getHoldMs() {
+        return holdMs;
+    }
+
+    // --- Text form ---
+
+    /**
+     * Parses a ';'-separated list of patterns (see the class comment).
+     * @throws IllegalArgumentException If any pattern is malformed.
+     */
+    public static List<TriggerPattern> parseList(String spec) {
+        List<TriggerPattern> patterns = new ArrayList<>();
+        if (spec != null) {
+            for (String part : spec.split(";")) {
+                if (!part.trim().isEmpty()) {
+                    patterns.add(parse(part.trim()));
+                }
+            }
+        }
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("No trigger patterns in \"" + spec + "\"");
+        }
+        return Collections.unmodifiableList(patterns);
+    }
+
+    /**
+     * Parses one pattern, e.g. "presses:down:3:2000".
+     * @throws IllegalArgumentException If it is malformed.
+     */
+    public static TriggerPattern parse(String spec) {
+        String[] fields = spec.toLowerCase(Locale.ROOT).split(":");
+        try {
+            switch (fields[0]) {
+                case "presses":
+                    requireFields(fields, 4, spec);
+                    return presses(parseKey(fields[1]), Integer.parseInt(fields[2]), Long.parseLong(fields[3]));
+                case "sequence":
+                    requireFields(fields, 3, spec);
+                    String[] names = fields[1].split(",");
+                    int[] keys = new int[names.length];
+                    for (int i = 0; i < names.length; i++) {
+                        keys[i] = parseKey(names[i]);
+                    }
+                    return sequence(keys, Long.parseLong(fields[2]));
+                case "hold":
+                    requireFields(fields, 3, spec);
+                    return longPress(parseKey(fields[1]), Long.parseLong(fields[2]));
+                default:
+                    throw new IllegalArgumentException("Unknown trigger pattern \"" + spec + "\"");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number in trigger pattern \"" + spec + "\"", e);
+        }
+    }
+
+    private static void requireFields(String[] fields, int count, String spec) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException("Trigger pattern \"" + spec + "\" needs " + count + " fields");
+        }
+    }
+
+    private static int parseKey(String name) {
+        switch (name.trim()) {
+            case "up":
+                return KEY_VOLUME_UP;
+            case "down":
+                return KEY_VOLUME_DOWN;
+            default:
+                throw new IllegalArgumentException("Unknown key \"" + name + "\" (use up or down)");
+        }
+    }
+
+    private static String keyName(int key, boolean capitalized) {
+        String name = key == KEY_VOLUME_UP ? "up" : "down";
+        return capitalized ? Character.toUpperCase(name.charAt(0)) + name.substring(1) : name;
+    }
+
+    /**
+     * The text form, which parse() reads back.
+     */
+    @Override
+    public String toString() {
+        if (kind == LONG_PRESS) {
+            return "hold:" + keyName(keys[0], false) + ":" + holdMs;
+        }
+        boolean allSame = true;
+        for (int key : keys) {
+            allSame &= key == keys[0];
+        }
+        if (allSame) {
+            return "presses:" + keyName(keys[0], false) + ":" + keys.length + ":" + maxGapMs;
+        }
+        StringBuilder builder = new StringBuilder("sequence:");
+        for (int i = 0; i < keys.length; i++) {
+            builder.append(i == 0 ? "" : ",").append(keyName(keys[i], false));
+        }
+        return builder.append(':').append(maxGapMs).toString();
+    }
+
+    /**
+     * A sentence for the user, e.g. "Press Volume Down 3 times".
+     */
+    public String describe() {
+        if (kind == LONG_PRESS) {
+            return "Hold Volume " + keyName(keys[0], true) + " for " + formatSeconds(holdMs);
+        }
+        String pattern = toString();
+        if (pattern.startsWith("presses:")) {
+            return "Press Volume " + keyName(keys[0], true) + " " + keys.length + " times";
+        }
+        StringBuilder builder = new StringBuilder("Press Volume ");
+        for (int i = 0; i < keys.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(keyName(keys[i], true));
+        }
+        return builder.toString();
+    }
+
+    private static String formatSeconds(long ms) {
+        return ms % 1000 == 0 ? (ms / 1000) + " seconds" : String.format(Locale.ROOT, "%.1f seconds", ms / 1000.0);
+    }
+}
@@ -0,0 +1,92 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips through the binary storage format, including files from a "newer version".
+ */
+public class BinaryCodecTest {
+
+    @Test
+    public void contacts_roundTripWithNullsAndUnicode() throws IOException {
+        List<Contact> contacts = Arrays.asList(
+                new Contact("Amma \u0b85\u0bae\u0bcd\u0bae\u0bbe", "+919876543210"),
+                new Contact(null, "+919876543211"),
+                new Contact("", null));
+        contacts.get(0).setId(7);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.writeContacts(new DataOutputStream(bytes), contacts);
+        List<Contact> read = BinaryCodec.readContacts(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(3, read.size());
+        assertEquals(contacts.get(0).getName(), read.get(0).getName());
+        assertEquals(7, read.get(0).getId());
+        assertNull(read.get(1).getName());
+        assertEquals("", read.get(2).getName());
+        assertNull(read.get(2).getPhone());
+    }
+
+    @Test
+    public void newsItem_skipsFieldsAddedByANewerVersion() throws IOException {
+        byte[] payload = BinaryCodec.encodeNewsItem(new NewsItem("Theft", "Bike stolen", 0));
+        // A newer writer appended an extra field, then another record follows
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(payload);
+        out.writeDouble(12.82);
+        out.writeInt(42);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        NewsItem item = BinaryCodec.readNewsItem(in, payload.length + 8, 1000L, 7L);
+        assertFalse(item.hasLocation());
+        assertEquals("Theft", item.getTitle());
+        assertEquals("Bike stolen", item.getDescription());
+        assertEquals(1000L, item.getTimestamp());
+        assertEquals(7L, item.getId());
+        assertEquals(42, in.readInt()); // The stream is left right after the record
+    }
+
+    @Test
+    public void newsItem_keepsLocationAndReadsOldRecordsWithout() throws IOException {
+        NewsItem located = new NewsItem("Stray dogs", "Tech Park", 0);
+        located.setLocation(12.8231, 80.0442);
+        located.setRemoteId("srv-17");
+        byte[] payload = BinaryCodec.encodeNewsItem(located);
+        NewsItem read = BinaryCodec.readNewsItem(new DataInputStream(new ByteArrayInputStream(payload)), payload.length, 0, 1);
+        assertTrue(read.hasLocation());
+        assertEquals(12.8231, read.getLatitude(), 0);
+        assertEquals(80.0442, read.getLongitude(), 0);
+        assertEquals("srv-17", read.getRemoteId());
+
+        // A record from before locations: just the two strings
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(1);
+        out.write('T');
+        out.writeInt(1);
+        out.write('D');
+        NewsItem old = BinaryCodec.readNewsItem(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), bytes.size(), 0, 2);
+        assertEquals("D", old.getDescription());
+        assertFalse(old.hasLocation());
+        assertNull(old.getRemoteId());
+    }
+
+    @Test(expected = IOException.class)
+    public void readContacts_rejectsOtherFiles() throws IOException {
+        BinaryCodec.readContacts(new DataInputStream(new ByteArrayInputStream(new byte[]{'{', '"', 'a', '"', 0, 0, 0, 0, 0})));
+    }
+}
@@ -0,0 +1,84 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * The contacts screen's list: ids, the id and phone indexes, and turning down duplicates.
+ */
+public class ContactListTest {
+
+    @Test
+    public void add_rejectsTheSameNumberInAnotherFormat() {
+        ContactList list = new ContactList();
+        assertEquals(0, list.add(new Contact("Amma", "+91 98765 43210")));
+        assertEquals(ContactList.DUPLICATE_PHONE, list.add(new Contact("Mom", "+91-98765-43210")));
+        assertEquals(1, list.add(new Contact("Amma", "+91 98765 43211"))); // Same name is fine
+        assertNotEquals(list.get(0).getId(), list.get(1).getId());
+        assertEquals(1, list.indexOfPhone("+919876543211"));
+    }
+
+    @Test
+    public void removeAndUpdate_keepTheIndexesInStep() {
+        ContactList list = new ContactList();
+        for (int i = 0; i < 5; i++) {
+            list.add(new Contact("Contact " + i, "+9190000" + i));
+        }
+        long thirdId = list.get(2).getId();
+        long lastId = list.get(4).getId();
+
+        assertEquals(1, list.remove(list.get(1).getId()));
+        assertEquals(ContactList.NOT_FOUND, list.remove(12345));
+        assertEquals(1, list.indexOf(thirdId)); // Moved up one place
+        assertEquals(3, list.indexOf(lastId));
+        assertEquals(3, list.indexOfPhone("+91900004"));
+        assertEquals(ContactList.NOT_FOUND, list.indexOfPhone("+91900001"));
+
+        // The freed number can be used again; a taken one cannot
+        assertEquals(3, list.update(lastId, "Renamed", "+91 90000 1"));
+        assertEquals(ContactList.DUPLICATE_PHONE, list.update(lastId, "Renamed", "+91900000"));
+        assertEquals("Renamed", list.get(3).getName());
+        assertEquals(3, list.indexOfPhone("+91900001"));
+        assertEquals(ContactList.NOT_FOUND, list.indexOfPhone("+91900004"));
+    }
+
+    @Test
+    public void update_leavesEarlierCopiesAlone() {
+        ContactList list = new ContactList();
+        list.add(new Contact("Amma", "111"));
+        long id = list.get(0).getId();
+        List<Contact> saving = list.toList(); // Still being written on the DiskIO thread
+
+        assertEquals(0, list.update(id, "Mom", "222"));
+        assertEquals("Amma", saving.get(0).getName());
+        assertEquals("111", saving.get(0).getPhone());
+        assertEquals("Mom", list.get(0).getName());
+        assertEquals(id, list.get(0).getId());
+    }
+
+    @Test
+    public void addLoaded_givesIdsToOldContactsAndKeepsOldDuplicates() {
+        Contact saved = new Contact("Saved", "111");
+        saved.setId(9);
+        Contact old = new Contact("Old", "222");
+        Contact oldDuplicate = new Contact("Old again", "222");
+        ContactList list = new ContactList();
+        list.addLoaded(Arrays.asList(saved, old, oldDuplicate));
+
+        assertEquals(3, list.size());
+        assertEquals(9, saved.getId());
+        assertEquals(10, old.getId()); // New ids come after the highest saved one
+        assertEquals(11, oldDuplicate.getId());
+        assertEquals(1, list.indexOfPhone("222"));
+
+        // Deleting the first of the two hands the number over to the other
+        list.remove(old.getId());
+        assertEquals(1, list.indexOfPhone("222"));
+        assertEquals(ContactList.DUPLICATE_PHONE, list.add(new Contact("New", "222")));
+    }
+}
@@ -0,0 +1,33 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Per-minute event counts, as shown on the debug metrics screen.
+ */
+public class EventRateCounterTest {
+
+    @Test
+    public void countsTheLastCompleteMinuteAndTheAverage() {
+        EventRateCounter counter = new EventRateCounter();
+        counter.start(0);
+        for (int i = 0; i < 30; i++) {
+            counter.record(i * 1000L); // 30 events in minute 0
+        }
+        counter.record(61_000);         // 1 event in minute 1
+        assertEquals(30, counter.getLastMinuteCount(61_000));
+        assertEquals(1, counter.getLastMinuteCount(125_000)); // Minute 2: minute 1 is the last complete one
+        assertEquals(0, counter.getLastMinuteCount(300_000)); // Nothing for a few minutes
+        assertEquals(31, counter.getTotal());
+        assertEquals(31 / 5.0, counter.getAveragePerMinute(300_000), 1e-9);
+    }
+
+    @Test
+    public void noEvents_isZeroEverywhere() {
+        EventRateCounter counter = new EventRateCounter();
+        counter.start(1_000);
+        assertEquals("0 total, 0.0/min average, 0 in the last minute", counter.format(600_000));
+    }
+}
@@ -0,0 +1,141 @@
+package com.srm_campussaftey;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The compressed cold tier of the feed: paging across blocks, repeats and overlapping
+ * blocks, torn appends. Also the retention rules that decide what goes there.
+ */
+public class FeedArchiveTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        File directory = Files.createTempDirectory("archive").toFile();
+        directory.deleteOnExit();
+        file = new File(directory, "archive.bin");
+        file.deleteOnExit();
+    }
+
+    private static List<NewsItem> posts(int fromId, int toId) {
+        List<NewsItem> posts = new ArrayList<>();
+        for (int id = fromId; id <= toId; id++) {
+            NewsItem post = new NewsItem("Bike stolen near the library", "Blue bicycle taken from the stand near"
+                    + " the central library, lock cut. Report " + id, id * 1000L);
+            post.setId(id);
+            post.setCategory(id % 3 == 0 ? NewsItem.CATEGORY_MEDICAL : NewsItem.CATEGORY_THEFT);
+            post.setStatus(id % 2 == 0 ? NewsItem.STATUS_RESOLVED : NewsItem.STATUS_OPEN);
+            if (id % 5 == 0) {
+                post.setLocation(12.8231, 80.0442);
+            }
+            posts.add(post);
+        }
+        return posts;
+    }
+
+    private static List<Long> ids(List<NewsItem> items) {
+        List<Long> ids = new ArrayList<>();
+        for (NewsItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void readPage_pagesNewestFirstAcrossBlocksAndFilters() throws IOException {
+        FeedArchive archive = new FeedArchive(file);
+        assertFalse(archive.hasPosts());
+        archive.append(posts(1, 600)); // Three blocks
+        archive.append(posts(601, 700));
+        assertTrue(archive.hasPosts());
+
+        FeedArchive reopened = new FeedArchive(file);
+        assertEquals(700, reopened.size());
+        List<NewsItem> first = reopened.readPage(null, Long.MAX_VALUE, Long.MAX_VALUE, 30);
+        assertEquals(30, first.size());
+        assertEquals(700L, first.get(0).getId());
+        NewsItem last = first.get(29);
+        assertEquals(671L, last.getId());
+        // The next page crosses from the newest block into the one before it
+        List<NewsItem> second = reopened.readPage(null, last.getTimestamp(), last.getId(), 80);
+        assertEquals(670L, second.get(0).getId());
+        assertEquals(591L, second.get(79).getId());
+
+        NewsItem original = posts(595, 595).get(0);
+        NewsItem read = second.get(670 - 595);
+        assertEquals(original.getDescription(), read.getDescription());
+        assertEquals(original.getCategory(), read.getCategory());
+        assertEquals(original.getStatus(), read.getStatus());
+        assertTrue(read.hasLocation());
+
+        IncidentIndex.Filter medicalSince = new IncidentIndex.Filter(400_000L, NewsItem.CATEGORY_MEDICAL, true);
+        List<NewsItem> medical = reopened.readPage(medicalSince, Long.MAX_VALUE, Long.MAX_VALUE, 1000);
+        assertEquals(50, medical.size()); // Odd multiples of 3 from 400 to 700
+        assertEquals(699L, medical.get(0).getId());
+        assertEquals(405L, medical.get(49).getId());
+
+        // Much smaller than the same posts as plain records
+        int plainBytes = 0;
+        for (NewsItem post : posts(1, 700)) {
+            plainBytes += 4 + 20 + BinaryCodec.encodeNewsItem(post).length;
+        }
+        assertTrue(file.length() * 4 < plainBytes);
+    }
+
+    @Test
+    public void readPage_mergesOverlappingBlocksWithoutRepeatsAndSurvivesATornAppend() throws IOException {
+        FeedArchive archive = new FeedArchive(file);
+        archive.append(posts(1, 100));
+        archive.append(posts(90, 110)); // Archived again after a crash
+        List<NewsItem> late = posts(50, 50);
+        late.get(0).setId(500); // An old incident that came from the server later
+        archive.append(late);
+
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0, 0, 1, 0, 7, 7}); // A block cut off half way
+        }
+        FeedArchive reopened = new FeedArchive(file);
+        List<NewsItem> page = reopened.readPage(null, 95_000L, 95L, 50);
+        assertEquals(50, page.size());
+        assertEquals(94L, page.get(0).getId());
+        assertEquals(500L, page.get(44).getId()); // Timestamp 50 000, id 500: after post 50
+        assertEquals(50L, page.get(45).getId());
+        assertEquals(100 + 21 + 1, reopened.size()); // Repeats still count, the torn block does not
+
+        reopened.append(posts(111, 120));
+        List<NewsItem> newest = new FeedArchive(file).readPage(null, Long.MAX_VALUE, Long.MAX_VALUE, 200);
+        assertEquals(121, newest.size()); // 120 posts plus the late one, each once
+        assertEquals(120L, newest.get(0).getId());
+        assertEquals(ids(newest).size(), new HashSet<>(ids(newest)).size());
+    }
+
+    @Test
+    public void retention_archivesExpiredPostsAndTheOldestPastTheLimit() {
+        FeedRetentionPolicy policy = new FeedRetentionPolicy(10_000, 100);
+        assertEquals(90_000, policy.cutoff(100_000));
+        assertTrue(policy.isExpired(89_999, 100_000));
+        assertFalse(policy.isExpired(90_000, 100_000));
+        assertEquals(0, policy.countToArchive(100, 0));
+        assertEquals(20, policy.countToArchive(120, 5));
+        assertEquals(30, policy.countToArchive(120, 30));
+        assertEquals(40, policy.countToArchive(40, 60));
+
+        FeedRetentionPolicy keepAll = FeedRetentionPolicy.keepAll();
+        assertFalse(keepAll.isExpired(0, System.currentTimeMillis()));
+        assertEquals(0, keepAll.countToArchive(1_000_000, 0));
+    }
+}
@@ -0,0 +1,234 @@
+package com.srm_campussaftey;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Delta sync against a mock campus server on localhost: cursors, ETags, paging, and
+ * backing off after failures. The engine runs on a virtual clock; only the HTTP is real.
+ */
+public class FeedSyncEngineTest {
+
+    /*
+     * Answers requests from a queue of canned responses and remembers what was asked.
+     */
+    private static class MockServer implements HttpHandler {
+        final List<String> queries = new ArrayList<>();
+        final List<String> etagsSent = new ArrayList<>();
+        final List<Object[]> responses = new ArrayList<>(); // {status, body, headers...}
+
+        void respond(int status, String body, String... headers) {
+            Object[] response = new Object[2 + headers.length];
+            response[0] = status;
+            response[1] = body;
+            System.arraycopy(headers, 0, response, 2, headers.length);
+            responses.add(response);
+        }
+
+        @Override
+        public synchronized void handle(HttpExchange exchange) throws IOException {
+            queries.add(exchange.getRequestURI().getQuery());
+            etagsSent.add(exchange.getRequestHeaders().getFirst("If-None-Match"));
+            Object[] response = responses.remove(0);
+            int status = (Integer) response[0];
+            byte[] body = response[1] == null ? new byte[0] : ((String) response[1]).getBytes(StandardCharsets.UTF_8);
+            for (int i = 2; i + 1 < response.length; i += 2) {
+                exchange.getResponseHeaders().add((String) response[i], (String) response[i + 1]);
+            }
+            if ("gzip".equals(exchange.getResponseHeaders().getFirst("Content-Encoding"))) {
+                ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+                try (GZIPOutputStream out = new GZIPOutputStream(zipped)) {
+                    out.write(body);
+                }
+                body = zipped.toByteArray();
+            }
+            exchange.sendResponseHeaders(status, status == 304 || body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /*
+     * The local feed, as a map by remote id.
+     */
+    private static class MemoryStore implements FeedSyncEngine.Store {
+        final Map<String, NewsItem> incidents = new LinkedHashMap<>();
+        String cursor;
+        String etag;
+
+        @Override
+        public String getCursor() {
+            return cursor;
+        }
+
+        @Override
+        public String getETag() {
+            return etag;
+        }
+
+        @Override
+        public List<NewsItem> apply(List<NewsItem> page, String cursor, String etag) {
+            List<NewsItem> changed = new ArrayList<>();
+            for (NewsItem incident : page) {
+                NewsItem known = incidents.get(incident.getRemoteId());
+                if (known == null || known.getStatus() != incident.getStatus()) {
+                    incidents.put(incident.getRemoteId(), incident);
+                    changed.add(incident);
+                }
+            }
+            this.cursor = cursor;
+            this.etag = etag;
+            return changed;
+        }
+    }
+
+    private static class RecordingListener implements FeedSyncEngine.Listener {
+        final List<List<NewsItem>> synced = new ArrayList<>();
+        final List<Long> retryDelays = new ArrayList<>();
+
+        @Override
+        public void onSynced(List<NewsItem> changed) {
+            synced.add(changed);
+        }
+
+        @Override
+        public void onSyncFailed(IOException e, long retryInMs) {
+            retryDelays.add(retryInMs);
+        }
+    }
+
+    private HttpServer server;
+    private MockServer mock;
+    private ManualScheduler scheduler;
+    private MemoryStore store;
+    private RecordingListener listener;
+    private FeedSyncEngine engine;
+
+    @Before
+    public void setUp() throws IOException {
+        mock = new MockServer();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/incidents", mock);
+        server.start();
+        scheduler = new ManualScheduler();
+        store = new MemoryStore();
+        listener = new RecordingListener();
+        FeedSyncClient client = new FeedSyncClient("http://127.0.0.1:" + server.getAddress().getPort() + "/", 2);
+        engine = new FeedSyncEngine(scheduler, client, store, listener, new Random(42));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static String incident(String id, long timestamp, String category, String status) {
+        return "{\"id\":\"" + id + "\",\"title\":\"Incident " + id + "\",\"description\":\"d\",\"timestamp\":" + timestamp
+                + ",\"category\":\"" + category + "\",\"severity\":\"high\",\"status\":\"" + status
+                + "\",\"latitude\":12.8231,\"longitude\":80.0442,\"addedLater\":[1,2]}";
+    }
+
+    @Test
+    public void sync_pagesFromTheCursorThenOnlyAsksWhatChanged() {
+        mock.respond(200, "{\"cursor\":\"c1\",\"hasMore\":true,\"incidents\":["
+                + incident("a", 1000, "theft", "open") + "," + incident("b", 2000, "medical", "open") + "]}", "ETag", "\"e1\"");
+        mock.respond(200, "{\"cursor\":\"c2\",\"hasMore\":false,\"incidents\":["
+                        + incident("c", 3000, "unknown", "open") + "," + incident("a", 1000, "theft", "resolved") + "]}",
+                "ETag", "\"e2\"", "Content-Encoding", "gzip");
+
+        engine.requestSync();
+        scheduler.runFor(0);
+
+        assertEquals("limit=2", mock.queries.get(0));
+        assertEquals("limit=2&since=c1", mock.queries.get(1));
+        assertNull(mock.etagsSent.get(0));
+        assertEquals(3, store.incidents.size());
+        NewsItem a = store.incidents.get("a");
+        assertTrue(a.isResolved());
+        assertEquals(NewsItem.CATEGORY_THEFT, a.getCategory());
+        assertEquals(NewsItem.SEVERITY_HIGH, a.getSeverity());
+        assertTrue(a.hasLocation());
+        assertEquals(NewsItem.CATEGORY_OTHER, store.incidents.get("c").getCategory());
+        assertEquals("c2", store.cursor);
+        assertEquals("\"e2\"", store.etag);
+        assertEquals(4, listener.synced.get(0).size());
+
+        // Opened again right away: no request at all
+        engine.requestSync();
+        scheduler.runFor(0);
+        assertEquals(2, mock.queries.size());
+
+        // Later: one request, answered "not modified"
+        mock.respond(304, null, "ETag", "\"e2\"");
+        scheduler.runFor(FeedSyncEngine.MIN_SYNC_INTERVAL_MS);
+        engine.requestSync();
+        scheduler.runFor(0);
+        assertEquals("limit=2&since=c2", mock.queries.get(2));
+        assertEquals("\"e2\"", mock.etagsSent.get(2));
+        assertEquals(0, listener.synced.get(1).size());
+        assertEquals("c2", store.cursor);
+    }
+
+    @Test
+    public void sync_backsOffAfterFailuresAndKeepsRetryAfter() {
+        mock.respond(503, "busy", "Retry-After", "120");
+        mock.respond(500, "oops");
+        mock.respond(200, "{\"cursor\":\"c1\",\"hasMore\":false,\"incidents\":[" + incident("a", 1000, "hazard", "open") + "]}");
+
+        engine.requestSync();
+        scheduler.runFor(0);
+        assertEquals(1, listener.retryDelays.size());
+        assertTrue(listener.retryDelays.get(0) >= 120_000);
+
+        // Waiting out the backoff: asking again does not hit the server early
+        engine.requestSync();
+        scheduler.runFor(listener.retryDelays.get(0) - 1);
+        assertEquals(1, mock.queries.size());
+
+        scheduler.runFor(1);
+        assertEquals(2, listener.retryDelays.size());
+        long second = listener.retryDelays.get(1);
+        assertTrue(second >= FeedSyncEngine.BASE_BACKOFF_MS && second <= 2 * FeedSyncEngine.BASE_BACKOFF_MS);
+
+        scheduler.runFor(second);
+        assertEquals(3, mock.queries.size());
+        assertEquals(1, store.incidents.size());
+        assertEquals("c1", store.cursor);
+        assertNull(store.etag);
+    }
+
+    @Test
+    public void backoffDelay_growsWithJitterUpToTheCap() {
+        Random random = new Random(42);
+        long ceiling = FeedSyncEngine.BASE_BACKOFF_MS;
+        for (int failures = 1; failures <= 12; failures++) {
+            long delay = FeedSyncEngine.backoffDelayMs(failures, 0, random);
+            assertTrue(delay >= ceiling / 2 && delay <= ceiling);
+            ceiling = Math.min(ceiling * 2, FeedSyncEngine.MAX_BACKOFF_MS);
+        }
+        assertEquals(3_600_000, FeedSyncEngine.backoffDelayMs(1, 3_600_000, random));
+    }
+}
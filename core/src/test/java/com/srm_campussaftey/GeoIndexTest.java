@@ -0,0 +1,57 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * "Near me" queries against the grid index, checked against the plain distance formula.
+ */
+public class GeoIndexTest {
+
+    // SRM Kattankulathur campus
+    private static final double LAT = 12.8231;
+    private static final double LNG = 80.0442;
+    private static final double METERS_PER_DEGREE_LNG = GeoIndex.METERS_PER_DEGREE * Math.cos(Math.toRadians(LAT));
+
+    private static NewsItem incident(long id, long timestamp, double metersNorth, double metersEast) {
+        NewsItem item = new NewsItem("Incident " + id, "", timestamp);
+        item.setId(id);
+        item.setLocation(LAT + metersNorth / GeoIndex.METERS_PER_DEGREE, LNG + metersEast / METERS_PER_DEGREE_LNG);
+        return item;
+    }
+
+    @Test
+    public void findNear_filtersByRadiusAndTimeClosestFirst() {
+        GeoIndex index = new GeoIndex();
+        index.add(incident(1, 1000, 100, 0));   // Close but too old
+        index.add(incident(2, 5000, 0, 250));   // In range, across a cell border
+        index.add(incident(3, 6000, -50, -50)); // Closest
+        index.add(incident(4, 7000, 400, 0));   // Too far
+        index.add(incident(5, 8000, 0, -299));  // Just inside
+        assertFalse(index.add(new NewsItem("No location", "", 9000)));
+
+        List<GeoIndex.Hit> hits = index.findNear(LAT, LNG, 300, 2000, 10);
+        assertEquals(3, hits.size());
+        assertEquals(3, hits.get(0).id);
+        assertEquals(2, hits.get(1).id);
+        assertEquals(5, hits.get(2).id);
+        assertTrue(hits.get(2).distanceMeters <= 300);
+
+        assertEquals(1, index.findNear(LAT, LNG, 300, 2000, 1).size());
+    }
+
+    @Test
+    public void findNear_outOfOrderTimestampsStaySorted() {
+        GeoIndex index = new GeoIndex();
+        index.add(incident(1, 5000, 10, 10));
+        index.add(incident(2, 1000, 10, 10)); // Reported late with an older time
+        index.add(incident(3, 3000, 10, 10));
+        assertEquals(2, index.findNear(LAT, LNG, 100, 3000, 10).size());
+        assertEquals(3, index.findNear(LAT, LNG, 100, 0, 10).size());
+    }
+}
@@ -0,0 +1,72 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The feed filter indexes: time window, category and unresolved queries, paging and updates.
+ */
+public class IncidentIndexTest {
+
+    private static final long MINUTE = 60_000L;
+
+    // Ids 1..10, one a minute; odd ids are thefts, ids 3 and 7 are resolved
+    private static IncidentIndex sample() {
+        IncidentIndex index = new IncidentIndex();
+        for (long id = 1; id <= 10; id++) {
+            int category = id % 2 == 1 ? NewsItem.CATEGORY_THEFT : NewsItem.CATEGORY_HAZARD;
+            int status = id == 3 || id == 7 ? NewsItem.STATUS_RESOLVED : NewsItem.STATUS_OPEN;
+            index.put(id, id * MINUTE, category, status);
+        }
+        return index;
+    }
+
+    @Test
+    public void query_combinesFiltersNewestFirst() {
+        IncidentIndex index = sample();
+        long first = Long.MAX_VALUE;
+
+        assertArrayEquals(new long[]{10, 9, 8}, index.query(IncidentIndex.Filter.ALL, first, first, 3));
+        assertArrayEquals(new long[]{10, 9, 8, 7},
+                index.query(new IncidentIndex.Filter(7 * MINUTE, IncidentIndex.ANY_CATEGORY, false), first, first, 20));
+        assertArrayEquals(new long[]{9, 5, 1},
+                index.query(new IncidentIndex.Filter(Long.MIN_VALUE, NewsItem.CATEGORY_THEFT, true), first, first, 20));
+        assertArrayEquals(new long[]{9},
+                index.query(new IncidentIndex.Filter(6 * MINUTE, NewsItem.CATEGORY_THEFT, true), first, first, 20));
+        assertEquals(0, index.query(new IncidentIndex.Filter(Long.MIN_VALUE, NewsItem.CATEGORY_MEDICAL, false), first, first, 20).length);
+    }
+
+    @Test
+    public void query_pagesByTheLastKey() {
+        IncidentIndex index = sample();
+        IncidentIndex.Filter thefts = new IncidentIndex.Filter(Long.MIN_VALUE, NewsItem.CATEGORY_THEFT, false);
+
+        assertArrayEquals(new long[]{9, 7}, index.query(thefts, Long.MAX_VALUE, Long.MAX_VALUE, 2));
+        assertArrayEquals(new long[]{5, 3}, index.query(thefts, 7 * MINUTE, 7, 2));
+        assertArrayEquals(new long[]{1}, index.query(thefts, 3 * MINUTE, 3, 2));
+    }
+
+    @Test
+    public void put_movesAnIncidentBetweenLists() {
+        IncidentIndex index = sample();
+        IncidentIndex.Filter open = new IncidentIndex.Filter(Long.MIN_VALUE, IncidentIndex.ANY_CATEGORY, true);
+        assertEquals(8, index.openCount());
+
+        index.put(10, 10 * MINUTE, NewsItem.CATEGORY_HAZARD, NewsItem.STATUS_RESOLVED);
+        index.put(3, 3 * MINUTE, NewsItem.CATEGORY_THEFT, NewsItem.STATUS_OPEN);
+        index.put(9, 9 * MINUTE, NewsItem.CATEGORY_MEDICAL, NewsItem.STATUS_OPEN);
+
+        assertEquals(10, index.size());
+        assertEquals(8, index.openCount());
+        assertArrayEquals(new long[]{9, 8, 6}, index.query(open, Long.MAX_VALUE, Long.MAX_VALUE, 3));
+        assertEquals(4, index.categoryCount(NewsItem.CATEGORY_THEFT));
+        assertArrayEquals(new long[]{9},
+                index.query(new IncidentIndex.Filter(Long.MIN_VALUE, NewsItem.CATEGORY_MEDICAL, false), Long.MAX_VALUE, Long.MAX_VALUE, 5));
+
+        index.remove(9);
+        assertEquals(9, index.size());
+        assertEquals(0, index.categoryCount(NewsItem.CATEGORY_MEDICAL));
+    }
+}
@@ -0,0 +1,271 @@
+package com.srm_campussaftey;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The pushed incident stream against a stand-in campus server on localhost: events and
+ * heartbeats, resuming from the last event id, reconnect backoff, and stop(). Reconnect
+ * delays run on a virtual clock; the connections are real. Also the hidden-feed buffer.
+ */
+public class IncidentStreamTest {
+
+    private static final long HEARTBEAT_TIMEOUT_MS = 300;
+
+    /*
+     * Answers each connection with the next script: chunks of stream text, written with a
+     * pause before each one ("wait:<ms>"), then closes. Remembers the Last-Event-ID sent.
+     */
+    private static class StreamServer implements HttpHandler {
+        final List<String> lastEventIds = new ArrayList<>();
+        final List<String[]> scripts = new ArrayList<>();
+        final CountDownLatch holding = new CountDownLatch(1); // Counted down by a "hold" script
+
+        void script(String... chunks) {
+            scripts.add(chunks);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String[] chunks;
+            synchronized (this) {
+                lastEventIds.add(exchange.getRequestHeaders().getFirst("Last-Event-ID"));
+                chunks = scripts.remove(0);
+            }
+            if (chunks[0].startsWith("status:")) {
+                String[] parts = chunks[0].substring(7).split(",");
+                if (parts.length > 1) {
+                    exchange.getResponseHeaders().add("Retry-After", parts[1]);
+                }
+                exchange.sendResponseHeaders(Integer.parseInt(parts[0]), -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String chunk : chunks) {
+                    if (chunk.startsWith("wait:")) {
+                        Thread.sleep(Long.parseLong(chunk.substring(5)));
+                    } else if (chunk.equals("hold")) {
+                        holding.countDown();
+                        Thread.sleep(2_000);
+                    } else {
+                        out.write(chunk.getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // The client went away first
+            }
+        }
+    }
+
+    /*
+     * The local feed, as a map by remote id, plus every batch it was handed.
+     */
+    private static class MemoryStore implements IncidentStream.Store {
+        final Map<String, NewsItem> incidents = new LinkedHashMap<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+        String lastEventId;
+
+        @Override
+        public String getLastEventId() {
+            return lastEventId;
+        }
+
+        @Override
+        public synchronized List<NewsItem> apply(List<NewsItem> batch, String lastEventId) {
+            List<NewsItem> changed = new ArrayList<>();
+            for (NewsItem incident : batch) {
+                NewsItem known = incidents.get(incident.getRemoteId());
+                if (known == null || known.getStatus() != incident.getStatus()) {
+                    incidents.put(incident.getRemoteId(), incident);
+                    changed.add(incident);
+                }
+            }
+            batchSizes.add(batch.size());
+            this.lastEventId = lastEventId;
+            return changed;
+        }
+    }
+
+    private static class RecordingListener implements IncidentStream.Listener {
+        final List<List<NewsItem>> delivered = new ArrayList<>();
+        final List<IOException> errors = new ArrayList<>();
+        final List<Long> reconnectDelays = new ArrayList<>();
+
+        @Override
+        public void onIncidents(List<NewsItem> changed) {
+            delivered.add(changed);
+        }
+
+        @Override
+        public void onDisconnected(IOException e, long reconnectInMs) {
+            errors.add(e);
+            reconnectDelays.add(reconnectInMs);
+        }
+    }
+
+    private HttpServer server;
+    private StreamServer streamServer;
+    private ManualScheduler scheduler;
+    private MemoryStore store;
+    private RecordingListener listener;
+    private IncidentStream stream;
+
+    @Before
+    public void setUp() throws IOException {
+        streamServer = new StreamServer();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/incidents/stream", streamServer);
+        server.setExecutor(Executors.newCachedThreadPool()); // A held stream must not block the next one
+        server.start();
+        scheduler = new ManualScheduler();
+        store = new MemoryStore();
+        listener = new RecordingListener();
+        stream = new IncidentStream(scheduler, "http://127.0.0.1:" + server.getAddress().getPort(),
+                store, listener, HEARTBEAT_TIMEOUT_MS, new Random(42));
+    }
+
+    @After
+    public void tearDown() {
+        stream.stop();
+        server.stop(0);
+    }
+
+    private static String event(String eventId, String remoteId, String status) {
+        return "id: " + eventId + "\nevent: incident\ndata: {\"id\":\"" + remoteId + "\",\"title\":\"Incident " + remoteId
+                + "\",\ndata: \"timestamp\":1000,\"category\":\"medical\",\"status\":\"" + status + "\"}\n\n";
+    }
+
+    @Test
+    public void stream_deliversBurstsAsOneBatchAndResumesFromTheLastEventId() {
+        streamServer.script(": connected\n\nretry: 1000\n\n",
+                "wait:50", event("1", "a", "open") + ": ping\n\n" + event("2", "b", "open"),
+                "wait:50", "event: typing\ndata: ignored\n\n" + event("3", "c", "open"));
+        streamServer.script(event("3", "c", "open") + event("4", "a", "resolved") + "id: 5\ndata: not json\n\n");
+
+        stream.start();
+        scheduler.runFor(0);
+
+        assertNull(streamServer.lastEventIds.get(0));
+        assertEquals(Arrays.asList(2, 1), store.batchSizes);
+        assertEquals(3, store.incidents.size());
+        assertEquals(NewsItem.CATEGORY_MEDICAL, store.incidents.get("b").getCategory());
+        assertEquals("3", store.lastEventId);
+        assertEquals(2, listener.delivered.size());
+
+        // The server closed the stream: reconnect after the backoff, from event 3
+        long delay = listener.reconnectDelays.get(0);
+        assertTrue(delay >= 1000 && delay <= FeedSyncEngine.BASE_BACKOFF_MS);
+        scheduler.runFor(delay);
+        assertEquals("3", streamServer.lastEventIds.get(1));
+        assertTrue(store.incidents.get("a").isResolved());
+        assertEquals(1, listener.delivered.get(2).size()); // The replayed event 3 changed nothing
+        assertEquals("5", store.lastEventId); // A bad event is skipped, but its id still counts
+    }
+
+    @Test
+    public void stream_reconnectsWhenHeartbeatsStopAndBacksOffWhileTheServerIsDown() {
+        streamServer.script(": ping\n\n", "wait:" + HEARTBEAT_TIMEOUT_MS * 4);
+        streamServer.script("status:503,60");
+        streamServer.script("status:500");
+        streamServer.script(event("1", "a", "open"));
+
+        stream.start();
+        scheduler.runFor(0);
+        assertTrue(listener.errors.get(0) instanceof SocketTimeoutException);
+        long first = listener.reconnectDelays.get(0);
+        assertTrue(first <= FeedSyncEngine.BASE_BACKOFF_MS);
+
+        scheduler.runFor(first);
+        assertTrue(listener.reconnectDelays.get(1) >= 60_000); // Retry-After
+
+        scheduler.runFor(listener.reconnectDelays.get(1));
+        long third = listener.reconnectDelays.get(2);
+        assertTrue(third >= FeedSyncEngine.BASE_BACKOFF_MS * 2 && third <= FeedSyncEngine.BASE_BACKOFF_MS * 4);
+
+        scheduler.runFor(third);
+        assertEquals(1, store.incidents.size());
+        assertEquals(4, streamServer.lastEventIds.size());
+    }
+
+    @Test
+    public void stop_breaksAnOpenStreamAndCancelsTheReconnect() throws Exception {
+        streamServer.script(event("1", "a", "open"), "hold");
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    streamServer.holding.await(5, TimeUnit.SECONDS);
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                stream.stop();
+            }
+        }).start();
+
+        stream.start();
+        scheduler.runFor(0); // Blocks reading the stream until stop()
+
+        assertFalse(stream.isStarted());
+        assertEquals(1, store.incidents.size());
+        assertTrue(listener.errors.isEmpty());
+        scheduler.runFor(FeedSyncEngine.MAX_BACKOFF_MS);
+        assertEquals(1, streamServer.lastEventIds.size());
+    }
+
+    @Test
+    public void buffer_keepsTheLatestOfEachIncidentUpToItsCapacity() {
+        IncidentBuffer buffer = new IncidentBuffer(3);
+        NewsItem a = item(1, NewsItem.STATUS_OPEN);
+        NewsItem b = item(2, NewsItem.STATUS_OPEN);
+        NewsItem aResolved = item(1, NewsItem.STATUS_RESOLVED);
+        buffer.addAll(Arrays.asList(a, b));
+        buffer.addAll(Arrays.asList(aResolved));
+        assertEquals(Arrays.asList(b, aResolved), buffer.drain());
+        assertTrue(buffer.isEmpty());
+
+        buffer.addAll(Arrays.asList(item(1, 0), item(2, 0), item(3, 0)));
+        buffer.addAll(Arrays.asList(item(4, 0)));
+        assertTrue(buffer.isOverflowed());
+        buffer.addAll(Arrays.asList(item(5, 0)));
+        assertEquals(0, buffer.drain().size());
+        assertFalse(buffer.isOverflowed());
+    }
+
+    private static NewsItem item(long id, int status) {
+        NewsItem item = new NewsItem("Incident", "", 1000L);
+        item.setId(id);
+        item.setStatus(status);
+        return item;
+    }
+}
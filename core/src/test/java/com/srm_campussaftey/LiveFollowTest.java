@@ -0,0 +1,128 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Live location sharing after an SOS, on a virtual clock: a person walks, stops and
+ * runs while fixes arrive at whatever rate the session asks for.
+ */
+public class LiveFollowTest {
+
+    private static final double START_LATITUDE = 12.8231;
+    private static final double START_LONGITUDE = 80.0442;
+
+    /*
+     * Remembers what the session asked for and sent.
+     */
+    private static class RecordingListener implements LiveFollowSession.Listener {
+        final List<String> messages = new ArrayList<>();
+        long intervalMs = -1;
+        boolean highAccuracy;
+        String finishedReason;
+
+        @Override
+        public void onUpdateRateChanged(long intervalMs, boolean highAccuracy) {
+            this.intervalMs = intervalMs;
+            this.highAccuracy = highAccuracy;
+        }
+
+        @Override
+        public void onSend(String message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void onFinished(String reason, int updatesSent, int fixesReceived) {
+            finishedReason = reason;
+        }
+    }
+
+    // Feeds one fix per requested interval for durationMs, moving north at speedMps
+    private static double walk(ManualScheduler scheduler, LiveFollowSession session, RecordingListener listener,
+                               double northMeters, float speedMps, long durationMs) {
+        long endNanos = scheduler.nanoTime() + durationMs * 1_000_000L;
+        while (scheduler.nanoTime() < endNanos && !session.isFinished()) {
+            session.onFix(new LocationFix(START_LATITUDE + northMeters / GeoIndex.METERS_PER_DEGREE,
+                    START_LONGITUDE, 10, scheduler.nanoTime()));
+            scheduler.runFor(listener.intervalMs);
+            northMeters += speedMps * listener.intervalMs / 1000.0;
+        }
+        return northMeters;
+    }
+
+    @Test
+    public void fixRate_followsSpeedAndBattery() {
+        ManualScheduler scheduler = new ManualScheduler();
+        RecordingListener listener = new RecordingListener();
+        LiveFollowSession session = new LiveFollowSession(scheduler, LiveFollowPolicy.defaults(), listener);
+        session.start();
+        assertEquals(LiveFollowPolicy.WALKING_INTERVAL_MS, listener.intervalMs); // Speed unknown yet
+
+        double position = walk(scheduler, session, listener, 0, 4, 2 * 60_000);
+        assertEquals(LiveFollowPolicy.FAST_INTERVAL_MS, listener.intervalMs);
+        assertTrue(listener.highAccuracy);
+
+        walk(scheduler, session, listener, position, 0, 5 * 60_000);
+        assertEquals(LiveFollowPolicy.STILL_INTERVAL_MS, listener.intervalMs);
+        assertFalse(listener.highAccuracy);
+
+        session.onBatteryChanged(10, false);
+        assertEquals(4 * LiveFollowPolicy.STILL_INTERVAL_MS, listener.intervalMs);
+        session.onBatteryChanged(10, true);
+        assertEquals(LiveFollowPolicy.STILL_INTERVAL_MS, listener.intervalMs);
+    }
+
+    @Test
+    public void updates_areBatchedAndSkippedWhenStandingStill() {
+        ManualScheduler scheduler = new ManualScheduler();
+        RecordingListener listener = new RecordingListener();
+        LiveFollowSession session = new LiveFollowSession(scheduler, LiveFollowPolicy.defaults(), listener);
+        session.start();
+
+        // Running for 10 min: fixes every 10 s, but only one SMS per 2 min interval
+        double position = walk(scheduler, session, listener, 0, 4, 10 * 60_000);
+        assertEquals(5, listener.messages.size());
+        assertTrue(listener.messages.get(0), listener.messages.get(0).startsWith("SOS LIVE #1: https://maps.google.com/?q=12.82"));
+        for (String message : listener.messages) {
+            assertTrue(message, message.length() <= 160); // One SMS part
+        }
+
+        // Standing still: nothing until the heartbeat
+        walk(scheduler, session, listener, position, 0, LiveFollowPolicy.HEARTBEAT_MS - 60_000);
+        assertEquals(5, listener.messages.size());
+        walk(scheduler, session, listener, position, 0, 3 * 60_000);
+        assertEquals(6, listener.messages.size());
+    }
+
+    @Test
+    public void stop_sendsEndMessageOnce_andTimeLimitStopsSharing() {
+        ManualScheduler scheduler = new ManualScheduler();
+        RecordingListener listener = new RecordingListener();
+        LiveFollowSession session = new LiveFollowSession(scheduler, new LiveFollowPolicy(30 * 60_000, 60_000), listener);
+        session.start();
+        walk(scheduler, session, listener, 0, 1, 60 * 60_000);
+        assertTrue(session.isFinished());
+        assertEquals("time limit reached", listener.finishedReason);
+        String last = listener.messages.get(listener.messages.size() - 1);
+        assertTrue(last, last.startsWith("SOS LIVE ended."));
+
+        int sent = listener.messages.size();
+        session.stop("user cancelled");
+        assertEquals(sent, listener.messages.size());
+
+        // Cancelled before any update: no end message either
+        RecordingListener quiet = new RecordingListener();
+        LiveFollowSession early = new LiveFollowSession(scheduler, LiveFollowPolicy.defaults(), quiet);
+        early.start();
+        early.stop("user cancelled");
+        assertTrue(quiet.messages.isEmpty());
+        assertEquals("user cancelled", quiet.finishedReason);
+    }
+}
@@ -0,0 +1,93 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The background fix cache: how often it asks for fixes, and the hit rate an SOS sees.
+ */
+public class LocationWarmerTest {
+
+    private static final long MINUTE_NANOS = 60_000_000_000L;
+
+    /*
+     * Remembers the last rate the warmer asked for.
+     */
+    private static class RateListener implements LocationWarmer.Listener {
+        long intervalMs = -1;
+        boolean passive;
+        int changes;
+
+        @Override
+        public void onRateChanged(long intervalMs, boolean passive) {
+            this.intervalMs = intervalMs;
+            this.passive = passive;
+            changes++;
+        }
+    }
+
+    private static LocationFix fixAt(double northMeters, long timeNanos) {
+        return new LocationFix(12.8231 + northMeters / GeoIndex.METERS_PER_DEGREE, 80.0442, 30, timeNanos);
+    }
+
+    @Test
+    public void interval_backsOffWhenStillAndResetsOnMove() {
+        RateListener listener = new RateListener();
+        LocationWarmer warmer = new LocationWarmer(listener);
+        warmer.start();
+        assertEquals(LocationWarmer.MIN_INTERVAL_MS, listener.intervalMs);
+
+        long time = 0;
+        warmer.onFix(fixAt(0, time));
+        for (int i = 0; i < 6; i++) {
+            warmer.onFix(fixAt(5, time += listener.intervalMs * 1_000_000L));
+        }
+        assertEquals(LocationWarmer.MAX_INTERVAL_MS, listener.intervalMs);
+
+        warmer.onFix(fixAt(500, time += listener.intervalMs * 1_000_000L));
+        assertEquals(LocationWarmer.MIN_INTERVAL_MS, listener.intervalMs);
+
+        // An older fix arriving late does not replace the cached one
+        warmer.onFix(fixAt(0, time - MINUTE_NANOS));
+        assertEquals(LocationWarmer.MIN_INTERVAL_MS, listener.intervalMs);
+    }
+
+    @Test
+    public void lowBattery_switchesToPassive() {
+        RateListener listener = new RateListener();
+        LocationWarmer warmer = new LocationWarmer(listener);
+        warmer.start();
+        warmer.onBatteryChanged(80, false);
+        assertFalse(listener.passive);
+        warmer.onBatteryChanged(15, false);
+        assertTrue(listener.passive);
+        warmer.onBatteryChanged(15, true);
+        assertFalse(listener.passive);
+        assertEquals(3, listener.changes); // Start, passive on, passive off
+    }
+
+    @Test
+    public void lookup_countsHitsAndAges() {
+        LocationWarmer warmer = new LocationWarmer(new RateListener());
+        long maxAgeMs = 15 * 60_000;
+        assertNull(warmer.lookup(0, maxAgeMs)); // Nothing cached yet
+
+        warmer.onFix(fixAt(0, 0));
+        assertNotNull(warmer.lookup(3 * MINUTE_NANOS, maxAgeMs));
+        assertNull(warmer.lookup(20 * MINUTE_NANOS, maxAgeMs)); // Too old
+        warmer.onFix(fixAt(0, 20 * MINUTE_NANOS));
+        assertNotNull(warmer.lookup(21 * MINUTE_NANOS, maxAgeMs));
+
+        assertEquals(4, warmer.getLookups());
+        assertEquals(2, warmer.getHits());
+        assertEquals(0.5, warmer.getHitRate(), 1e-9);
+        String report = warmer.format(21 * MINUTE_NANOS);
+        assertTrue(report, report.contains("2 of 4 SOS lookups (50%)"));
+        assertTrue(report, report.contains("120 s average, 180 s max"));
+    }
+}
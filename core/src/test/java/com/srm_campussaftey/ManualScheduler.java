@@ -0,0 +1,50 @@
+package com.srm_campussaftey;
+
+import java.util.PriorityQueue;
+
+/*
+ * A Scheduler whose clock only moves when the test says so. Shared by the core tests.
+ */
+class ManualScheduler implements Scheduler {
+    private static class Task {
+        final long dueNanos;
+        final long order;
+        final Runnable runnable;
+
+        Task(long dueNanos, long order, Runnable runnable) {
+            this.dueNanos = dueNanos;
+            this.order = order;
+            this.runnable = runnable;
+        }
+    }
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>(11, (a, b) ->
+            a.dueNanos != b.dueNanos ? Long.compare(a.dueNanos, b.dueNanos) : Long.compare(a.order, b.order));
+    private long now = 1_000_000_000L;
+    private long order;
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public void post(Runnable task) {
+        postDelayed(task, 0);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        queue.add(new Task(now + delayMs * 1_000_000L, order++, task));
+    }
+
+    void runFor(long ms) {
+        long end = now + ms * 1_000_000L;
+        while (!queue.isEmpty() && queue.peek().dueNanos <= end) {
+            Task task = queue.poll();
+            now = task.dueNanos;
+            task.runnable.run();
+        }
+        now = end;
+    }
+}
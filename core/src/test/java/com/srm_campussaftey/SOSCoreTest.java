@@ -0,0 +1,164 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the SOS core against the simulated radio and GPS on a virtual clock,
+ * so the tests take no real time and always behave the same.
+ */
+public class SOSCoreTest {
+
+    /*
+     * Remembers what the DispatchScheduler reported.
+     */
+    private static class RecordingListener implements DispatchScheduler.Listener {
+        final List<DispatchSession.Summary> completed = new ArrayList<>();
+        int retries;
+
+        @Override
+        public void onHandoff(DispatchSession session, int contactIndex, int attempt, long handoffNanos) {
+        }
+
+        @Override
+        public void onSendError(DispatchSession session, int contactIndex, String error, long retryDelayMs) {
+            if (retryDelayMs >= 0) {
+                retries++;
+            }
+        }
+
+        @Override
+        public void onFirstSend(DispatchSession session, long latencyNanos) {
+        }
+
+        @Override
+        public void onAllHandedOff(DispatchSession session, long latencyNanos) {
+        }
+
+        @Override
+        public void onUpdate(DispatchSession.Summary summary) {
+        }
+
+        @Override
+        public void onComplete(DispatchSession.Summary summary) {
+            completed.add(summary);
+        }
+    }
+
+    private static final List<Contact> CONTACTS = Arrays.asList(
+            new Contact("Mom", "+919876543210"), new Contact("Dad", "+919876543211"));
+
+    @Test
+    public void dispatch_retriesTransientFailuresUntilDelivered() {
+        ManualScheduler scheduler = new ManualScheduler();
+        RecordingListener listener = new RecordingListener();
+        // Every part fails the first time round
+        SimulatedSmsGateway gateway = new SimulatedSmsGateway(scheduler, 1) {
+            private int sends;
+
+            @Override
+            public void send(String phone, List<String> parts, Callback callback) {
+                if (sends++ < CONTACTS.size()) {
+                    scheduler.postDelayed(() -> callback.onPartSent(false, true, "No service"), 100);
+                    return;
+                }
+                super.send(phone, parts, callback);
+            }
+        }.setSentLatencyMs(100, 100).setDeliveredLatencyMs(1_000, 1_000);
+
+        new DispatchScheduler(scheduler, listener).dispatch(1, gateway, CONTACTS, "help", 0);
+        scheduler.runFor(DispatchSession.BASE_BACKOFF_MS + 200);
+        assertEquals(CONTACTS.size(), listener.retries);
+        assertEquals(1, listener.completed.size());
+        assertEquals(CONTACTS.size(), listener.completed.get(0).sent);
+        assertEquals(0, listener.completed.get(0).failed);
+    }
+
+    @Test
+    public void dispatch_lostResultTimesOutAndGivesUp() {
+        ManualScheduler scheduler = new ManualScheduler();
+        RecordingListener listener = new RecordingListener();
+        SimulatedSmsGateway gateway = new SimulatedSmsGateway(scheduler, 1).setLostResultRate(1.0);
+
+        new DispatchScheduler(scheduler, listener).dispatch(1, gateway, CONTACTS, "help", 0);
+        scheduler.runFor(10 * DispatchScheduler.SENT_TIMEOUT_MS);
+        assertEquals(1, listener.completed.size());
+        assertEquals(CONTACTS.size(), listener.completed.get(0).failed);
+        assertEquals(CONTACTS.size() * (DispatchSession.MAX_ATTEMPTS - 1), listener.retries);
+    }
+
+    @Test
+    public void locationFlow_sendsWithoutLocationWhenCachedFixIsSlow_thenFollowsUp() {
+        ManualScheduler scheduler = new ManualScheduler();
+        SimulatedLocationSource source = new SimulatedLocationSource(scheduler, 1)
+                .setCachedFix(SOSLocationPolicy.CACHED_FIX_WAIT_MS + 100, SOSLocationPolicy.CACHED_FIX_WAIT_MS + 100, 0)
+                .setFreshFix(2_000, 2_000, 0);
+        final List<String> sent = new ArrayList<>();
+        final String[] finishReason = new String[1];
+
+        new SOSLocationFlow(scheduler, source, SOSLocationPolicy.defaults(), SOSMessageBuilder.MESSAGE_PREFIX,
+                scheduler.nanoTime(), new SOSLocationFlow.Listener() {
+            @Override
+            public void onSend(String message, boolean followUp) {
+                sent.add(message);
+            }
+
+            @Override
+            public void onSpan(SOSLocationFlow.Span span, long nanos) {
+            }
+
+            @Override
+            public void onFinished(String reason, Map<String, Long> stageTimings) {
+                finishReason[0] = reason;
+            }
+        }).start();
+
+        scheduler.runFor(SOSLocationPolicy.CACHED_FIX_WAIT_MS);
+        assertEquals(1, sent.size());
+        assertFalse(sent.get(0).contains("maps.google.com"));
+
+        scheduler.runFor(SOSLocationPolicy.DEFAULT_BUDGET_MS);
+        assertEquals(2, sent.size());
+        assertTrue(sent.get(1).startsWith(SOSMessageBuilder.FOLLOW_UP_PREFIX));
+        assertEquals("follow-up sent", finishReason[0]);
+    }
+
+    @Test
+    public void locationFlow_givesUpQuietlyWhenBudgetRunsOut() {
+        ManualScheduler scheduler = new ManualScheduler();
+        SimulatedLocationSource source = new SimulatedLocationSource(scheduler, 1)
+                .setCachedFix(1, 1, 1.0) // No cached fix
+                .setFreshFix(SOSLocationPolicy.DEFAULT_BUDGET_MS * 2, SOSLocationPolicy.DEFAULT_BUDGET_MS * 2, 0);
+        final List<String> sent = new ArrayList<>();
+        final String[] finishReason = new String[1];
+
+        new SOSLocationFlow(scheduler, source, SOSLocationPolicy.defaults(), SOSMessageBuilder.MESSAGE_PREFIX,
+                scheduler.nanoTime(), new SOSLocationFlow.Listener() {
+            @Override
+            public void onSend(String message, boolean followUp) {
+                sent.add(message);
+            }
+
+            @Override
+            public void onSpan(SOSLocationFlow.Span span, long nanos) {
+            }
+
+            @Override
+            public void onFinished(String reason, Map<String, Long> stageTimings) {
+                finishReason[0] = reason;
+            }
+        }).start();
+
+        scheduler.runFor(SOSLocationPolicy.DEFAULT_BUDGET_MS * 3);
+        assertEquals(1, sent.size());
+        assertEquals("budget expired", finishReason[0]);
+    }
+}
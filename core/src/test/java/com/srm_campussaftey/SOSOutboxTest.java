@@ -0,0 +1,210 @@
+package com.srm_campussaftey;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The SOS outbox journal: a process "crashes" by dropping its outbox without closing it,
+ * and a new outbox on the same file takes over.
+ */
+public class SOSOutboxTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final List<Contact> CONTACTS = Arrays.asList(new Contact("Mom", "+919876543210"),
+            new Contact("Dad", "+919876543211"), new Contact("Warden", "+919876543212"));
+
+    private static final SOSOutbox.Listener FAIL_ON_ERROR = new SOSOutbox.Listener() {
+        @Override
+        public void onJournalError(String what, IOException e) {
+            fail(what + ": " + e);
+        }
+    };
+
+    private static final DispatchScheduler.Listener NO_OP = new DispatchScheduler.Listener() {
+        @Override
+        public void onHandoff(DispatchSession session, int contactIndex, int attempt, long handoffNanos) {
+        }
+
+        @Override
+        public void onSendError(DispatchSession session, int contactIndex, String error, long retryDelayMs) {
+        }
+
+        @Override
+        public void onFirstSend(DispatchSession session, long latencyNanos) {
+        }
+
+        @Override
+        public void onAllHandedOff(DispatchSession session, long latencyNanos) {
+        }
+
+        @Override
+        public void onUpdate(DispatchSession.Summary summary) {
+        }
+
+        @Override
+        public void onComplete(DispatchSession.Summary summary) {
+        }
+    };
+
+    // Sends to Mom only; the radio never reports back for anyone else (the app dies first)
+    private static SimulatedSmsGateway onlyFirstContactGateway(final Scheduler scheduler) {
+        return new SimulatedSmsGateway(scheduler, 1) {
+            @Override
+            public void send(String phone, List<String> parts, Callback callback) {
+                if (phone.equals(CONTACTS.get(0).getPhone())) {
+                    super.send(phone, parts, callback);
+                }
+            }
+        }.setSentLatencyMs(100, 100).setDeliveredLatencyMs(1_000, 1_000);
+    }
+
+    private SOSOutbox startCrashingSession(File file, ManualScheduler scheduler) {
+        SOSOutbox outbox = new SOSOutbox(file, scheduler, FAIL_ON_ERROR);
+        DispatchScheduler dispatcher = new DispatchScheduler(scheduler, NO_OP);
+        dispatcher.setJournal(outbox);
+        dispatcher.dispatch(7, onlyFirstContactGateway(scheduler), CONTACTS, "help", -1);
+        scheduler.runFor(5_000); // Mom's result arrives and is flushed
+        return outbox;
+    }
+
+    @Test
+    public void crash_resumesOnlyContactsWithoutResult_once() throws IOException {
+        File file = new File(folder.getRoot(), SOSOutbox.FILE_NAME);
+        startCrashingSession(file, new ManualScheduler()); // Never closed: the process died
+
+        ManualScheduler scheduler = new ManualScheduler();
+        SOSOutbox restarted = new SOSOutbox(file, scheduler, FAIL_ON_ERROR);
+        List<SOSOutbox.PendingSession> pending = restarted.claimUnfinished(System.currentTimeMillis());
+        assertEquals(1, pending.size());
+        assertEquals(7, pending.get(0).getId());
+        assertEquals("help", pending.get(0).getMessage());
+        List<Contact> remaining = pending.get(0).getRemainingContacts();
+        assertEquals(2, remaining.size());
+        assertEquals("Dad", remaining.get(0).getName());
+        assertEquals("Warden", remaining.get(1).getName());
+        assertEquals(2, pending.get(0).getPossiblyDuplicated()); // Handed off, no result on disk
+
+        // A second call (service reconnect) and a second restart resume nothing
+        assertTrue(restarted.claimUnfinished(System.currentTimeMillis()).isEmpty());
+        scheduler.runFor(SOSOutbox.FLUSH_DELAY_MS);
+        SOSOutbox again = new SOSOutbox(file, new ManualScheduler(), FAIL_ON_ERROR);
+        assertTrue(again.claimUnfinished(System.currentTimeMillis()).isEmpty());
+        assertEquals(0, file.length()); // Nothing open: emptied
+    }
+
+    @Test
+    public void tornTail_isDroppedAndJournalStaysUsable() throws IOException {
+        File file = new File(folder.getRoot(), SOSOutbox.FILE_NAME);
+        startCrashingSession(file, new ManualScheduler());
+        long goodLength = file.length();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0, 0, 0, 40, 3, 1, 2}); // A record cut off half way
+        }
+
+        ManualScheduler scheduler = new ManualScheduler();
+        SOSOutbox restarted = new SOSOutbox(file, scheduler, FAIL_ON_ERROR);
+        assertEquals(1, restarted.claimUnfinished(System.currentTimeMillis()).size());
+        assertEquals(goodLength, file.length()); // Torn record cut off
+        restarted.flush();
+        assertTrue(file.length() > goodLength); // The resume record follows the good ones...
+        SOSOutbox again = new SOSOutbox(file, new ManualScheduler(), FAIL_ON_ERROR);
+        assertTrue(again.claimUnfinished(System.currentTimeMillis()).isEmpty()); // ...and is readable
+    }
+
+    @Test
+    public void failedRecord_leavesNothingBehindForTheNextOne() throws IOException {
+        File file = new File(folder.getRoot(), SOSOutbox.FILE_NAME);
+        final List<String> errors = new ArrayList<>();
+        SOSOutbox outbox = new SOSOutbox(file, new ManualScheduler(), new SOSOutbox.Listener() {
+            @Override
+            public void onJournalError(String what, IOException e) {
+                errors.add(what);
+            }
+        });
+        StringBuilder huge = new StringBuilder();
+        while (huge.length() <= 65_535) {
+            huge.append("help ");
+        }
+        outbox.onSessionStarted(new DispatchSession(1, huge.toString(), CONTACTS)); // Too long for writeUTF
+        outbox.onSessionStarted(new DispatchSession(2, "help", CONTACTS));
+        assertEquals(1, errors.size());
+
+        List<SOSOutbox.PendingSession> pending = new SOSOutbox(file, new ManualScheduler(), FAIL_ON_ERROR)
+                .claimUnfinished(System.currentTimeMillis());
+        assertEquals(1, pending.size());
+        assertEquals(2, pending.get(0).getId());
+        assertEquals("help", pending.get(0).getMessage());
+        assertEquals(3, pending.get(0).getRemainingContacts().size());
+    }
+
+    @Test
+    public void unknownContactState_isTreatedAsCorrupt() throws IOException {
+        File file = new File(folder.getRoot(), SOSOutbox.FILE_NAME);
+        startCrashingSession(file, new ManualScheduler());
+        long goodLength = file.length();
+        // A CONTACT_DONE record (type 3) for Dad with a state that does not exist, correctly framed
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream bodyOut = new DataOutputStream(body);
+        bodyOut.writeByte(3);
+        bodyOut.writeLong(7);
+        bodyOut.writeInt(1);
+        bodyOut.writeByte(99);
+        CRC32 crc = new CRC32();
+        crc.update(body.toByteArray());
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            out.writeInt(body.size());
+            out.write(body.toByteArray());
+            out.writeInt((int) crc.getValue());
+        }
+
+        List<SOSOutbox.PendingSession> pending = new SOSOutbox(file, new ManualScheduler(), FAIL_ON_ERROR)
+                .claimUnfinished(System.currentTimeMillis());
+        assertEquals(1, pending.size());
+        assertEquals(2, pending.get(0).getRemainingContacts().size()); // Dad still has no result
+        assertEquals(goodLength, file.length()); // Cut off like a torn record
+    }
+
+    @Test
+    public void completedSessions_areNotResumed() throws IOException {
+        File file = new File(folder.getRoot(), SOSOutbox.FILE_NAME);
+        ManualScheduler scheduler = new ManualScheduler();
+        SOSOutbox outbox = new SOSOutbox(file, scheduler, FAIL_ON_ERROR);
+        DispatchScheduler dispatcher = new DispatchScheduler(scheduler, NO_OP);
+        dispatcher.setJournal(outbox);
+        SimulatedSmsGateway gateway = new SimulatedSmsGateway(scheduler, 1).setSentLatencyMs(100, 100);
+        dispatcher.dispatch(1, gateway, CONTACTS, "help", -1);
+        dispatcher.dispatch(2, gateway, CONTACTS, "help again", -1);
+        scheduler.runFor(5_000);
+
+        SOSOutbox restarted = new SOSOutbox(file, new ManualScheduler(), FAIL_ON_ERROR);
+        assertTrue(restarted.claimUnfinished(System.currentTimeMillis()).isEmpty());
+    }
+
+    @Test
+    public void oldSessions_expireInsteadOfResuming() {
+        File file = new File(folder.getRoot(), SOSOutbox.FILE_NAME);
+        startCrashingSession(file, new ManualScheduler());
+
+        SOSOutbox restarted = new SOSOutbox(file, new ManualScheduler(), FAIL_ON_ERROR);
+        long later = System.currentTimeMillis() + SOSOutbox.RESUME_WINDOW_MS + 60_000;
+        assertTrue(restarted.claimUnfinished(later).isEmpty());
+        assertTrue(restarted.claimUnfinished(System.currentTimeMillis()).isEmpty()); // Closed for good
+    }
+}
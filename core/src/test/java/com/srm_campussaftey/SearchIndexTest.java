@@ -0,0 +1,82 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Prefix search, incremental adds and save/load of the feed search index.
+ */
+public class SearchIndexTest {
+
+    private static NewsItem post(long id, String title, String description) {
+        NewsItem item = new NewsItem(title, description, id * 1000);
+        item.setId(id);
+        return item;
+    }
+
+    private static SearchIndex sampleIndex() {
+        SearchIndex index = new SearchIndex();
+        index.add(post(1, "Theft", "Bike stolen near the library"));
+        index.add(post(2, "Power cut", "Hostel block B, library generator running"));
+        index.add(post(3, "Stray dogs", "Near the Tech Park entrance"));
+        index.add(post(4, "Phone theft", "Libraries should lock their lockers"));
+        return index;
+    }
+
+    @Test
+    public void search_matchesPrefixesOfEveryWordNewestFirst() {
+        SearchIndex index = sampleIndex();
+        assertArrayEquals(new long[]{4, 2, 1}, index.search("LIB", 10));
+        assertArrayEquals(new long[]{4, 1}, index.search("lib thef", 10));
+        assertArrayEquals(new long[]{4}, index.search("lib thef", 1));
+        assertArrayEquals(new long[0], index.search("library dogs", 10));
+        assertArrayEquals(new long[0], index.search("  ,. ", 10));
+    }
+
+    @Test
+    public void add_isIncrementalAndIgnoresRepeats() {
+        SearchIndex index = sampleIndex();
+        assertFalse(index.add(post(2, "Power cut", "Hostel block B, library generator running")));
+        index.add(post(5, "Library closed", "Exam week"));
+        assertEquals(5, index.getLastId());
+        assertArrayEquals(new long[]{5, 4, 2, 1}, index.search("lib", 10));
+    }
+
+    @Test
+    public void writeTo_readFrom_keepsEverything() throws IOException {
+        SearchIndex index = sampleIndex();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+
+        SearchIndex loaded = SearchIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(index.getLastId(), loaded.getLastId());
+        assertEquals(index.getTermCount(), loaded.getTermCount());
+        assertArrayEquals(index.search("lib", 10), loaded.search("lib", 10));
+        assertArrayEquals(new long[]{3}, loaded.search("tech park", 10));
+    }
+
+    @Test
+    public void retainOnly_dropsArchivedPostsAndTheirWords() {
+        SearchIndex index = sampleIndex();
+        int terms = index.getTermCount();
+        BitSet keep = new BitSet();
+        keep.set(2);
+        keep.set(4);
+        assertTrue(index.retainOnly(keep));
+        assertArrayEquals(new long[]{4, 2}, index.search("lib", 10));
+        assertArrayEquals(new long[0], index.search("dogs", 10));
+        assertTrue(index.getTermCount() < terms);
+        assertFalse(index.retainOnly(keep));
+    }
+}
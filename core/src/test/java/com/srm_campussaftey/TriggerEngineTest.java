@@ -0,0 +1,111 @@
+package com.srm_campussaftey;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Key patterns for the silent SOS shortcut, fed through the engine as raw key events.
+ */
+public class TriggerEngineTest {
+
+    private static final int UP = TriggerPattern.KEY_VOLUME_UP;
+    private static final int DOWN = TriggerPattern.KEY_VOLUME_DOWN;
+
+    // A short tap: key down then key up 80 ms later. Returns the match from either event.
+    private static int tap(TriggerEngine engine, int key, long timeMs) {
+        int matched = engine.onKey(key, true, 0, timeMs);
+        int onUp = engine.onKey(key, false, 0, timeMs + 80);
+        return matched != TriggerEngine.NO_MATCH ? matched : onUp;
+    }
+
+    @Test
+    public void presses_needEveryPressWithinTheGap() {
+        TriggerEngine engine = new TriggerEngine(TriggerPattern.parseList("presses:down:3:2000"));
+        assertEquals(TriggerEngine.NO_MATCH, tap(engine, DOWN, 0));
+        assertEquals(TriggerEngine.NO_MATCH, tap(engine, DOWN, 1900));
+        assertEquals(TriggerEngine.NO_MATCH, tap(engine, DOWN, 4000)); // 2.1 s gap: starts over
+        assertEquals(TriggerEngine.NO_MATCH, tap(engine, DOWN, 5000));
+        assertEquals(0, tap(engine, DOWN, 6000));
+        // The presses that matched are used up
+        assertEquals(TriggerEngine.NO_MATCH, tap(engine, DOWN, 6500));
+    }
+
+    @Test
+    public void alternation_isBrokenByTheWrongKey() {
+        TriggerEngine engine = new TriggerEngine(TriggerPattern.parseList("sequence:up,down,up,down:1500"));
+        long t = 0;
+        tap(engine, UP, t += 300);
+        tap(engine, DOWN, t += 300);
+        tap(engine, DOWN, t += 300); // Wrong key
+        tap(engine, UP, t += 300);
+        assertEquals(TriggerEngine.NO_MATCH, tap(engine, DOWN, t += 300));
+        tap(engine, UP, t += 300);
+        assertEquals(0, tap(engine, DOWN, t += 300)); // Last four: up, down, up, down
+    }
+
+    @Test
+    public void longPress_firesOnceWhileHeld() {
+        TriggerEngine engine = new TriggerEngine(TriggerPattern.parseList("hold:down:2000"));
+        assertEquals(TriggerEngine.NO_MATCH, engine.onKey(DOWN, true, 0, 0));
+        int matches = 0;
+        for (int repeat = 1; repeat <= 60; repeat++) { // Key repeats every 50 ms for 3 s
+            if (engine.onKey(DOWN, true, repeat, repeat * 50L) != TriggerEngine.NO_MATCH) {
+                matches++;
+                assertEquals(40, repeat); // The first repeat at 2 s
+            }
+        }
+        assertEquals(TriggerEngine.NO_MATCH, engine.onKey(DOWN, false, 0, 3100));
+        assertEquals(1, matches);
+        // A short press is not a long press
+        engine.onKey(DOWN, true, 0, 5000);
+        assertEquals(TriggerEngine.NO_MATCH, engine.onKey(DOWN, false, 0, 5300));
+    }
+
+    @Test
+    public void setPatterns_swapsTheConfigurationInPlace() {
+        TriggerEngine engine = new TriggerEngine(TriggerPattern.parseList(TriggerPattern.DEFAULT_PATTERNS));
+        tap(engine, DOWN, 0);
+        tap(engine, DOWN, 100);
+        engine.setPatterns(TriggerPattern.parseList("presses:up:2:1000;hold:down:1000"));
+        assertEquals(TriggerEngine.NO_MATCH, tap(engine, DOWN, 200)); // Old presses were forgotten
+        tap(engine, UP, 300);
+        assertEquals(0, tap(engine, UP, 400));
+        engine.onKey(DOWN, true, 0, 1000);
+        assertEquals(1, engine.onKey(DOWN, false, 0, 2100)); // Released after 1.1 s
+    }
+
+    @Test
+    public void patterns_roundTripThroughText() {
+        for (String preset : TriggerPattern.PRESETS) {
+            assertEquals(preset, TriggerPattern.parse(preset).toString());
+        }
+        List<TriggerPattern> patterns = TriggerPattern.parseList(" presses:DOWN:3:2000 ; hold:up:1500 ");
+        assertEquals(2, patterns.size());
+        assertEquals("Press Volume Down 3 times", patterns.get(0).describe());
+        assertEquals("Hold Volume Up for 1.5 seconds", patterns.get(1).describe());
+        assertNotEquals(TriggerPattern.SEQUENCE, patterns.get(1).getKind());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsUnknownKeys() {
+        TriggerPattern.parse("presses:power:3:2000");
+    }
+
+    @Test
+    public void parse_rejectsPressCountsOutOfRange() {
+        String[] specs = {"presses:down:-1:2000", "presses:down:0:2000", "presses:down:2147483647:2000"};
+        for (String spec : specs) {
+            try {
+                TriggerPattern.parse(spec);
+                fail("Accepted " + spec);
+            } catch (IllegalArgumentException expected) {
+                // What SOSAccessibilityService.readPatterns catches
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// Runs on a real device against the app (:app), outside the app's process:
+// - StartupBenchmark: cold and warm start times of the main screen
+// - BaselineProfileGenerator: records the startup profile for :app
+// Run with: ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest
+// Profile:  ./gradlew :app:generateBaselineProfile
+plugins {
+    alias(libs.plugins.android.test)
+    alias(libs.plugins.baselineprofile)
+}
+
+android {
+    namespace = "com.srm_campussaftey.macrobenchmark"
+    compileSdk = 36
+
+    defaultConfig {
+        minSdk = 28 // Macrobenchmark needs Android 9+
+        targetSdk = 36
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+
+    targetProjectPath = ":app"
+}
+
+baselineProfile {
+    useConnectedDevices = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
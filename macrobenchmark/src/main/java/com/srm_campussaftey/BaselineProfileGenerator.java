@@ -0,0 +1,38 @@
+package com.srm_campussaftey;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Records which code runs while the main screen starts, for :app's Baseline Profile.
+ *
+ * Only startup is recorded: tapping SOS here would text the device's real contacts. The SOS
+ * path is listed by hand in app/src/main/baseline-prof.txt, which is merged with the result.
+ *
+ * Run with ./gradlew :app:generateBaselineProfile (needs a rooted device or an emulator
+ * with a non-Play system image).
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(StartupBenchmark.TARGET_PACKAGE, scope -> {
+            scope.pressHome();
+            scope.startActivityAndWait();
+            scope.getDevice().wait(Until.hasObject(By.res(StartupBenchmark.TARGET_PACKAGE, "sosButton")), 5_000);
+            return Unit.INSTANCE;
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.srm_campussaftey;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import kotlin.Unit;
+
+/**
+ * Measures scroll jank in the campus feed with FEED_SIZE posts.
+ *
+ * Each iteration opens the feed and flings down FLINGS times, loading pages as it goes.
+ * FrameTimingMetric reports frameDurationCpuMs (time the app spent on each frame) and
+ * frameOverrunMs (how late each frame was; above 0 is a dropped frame) as P50/P90/P95/P99
+ * over all frames of the flings.
+ *
+ * The feed is filled through FeedSeedReceiver before each iteration (only the first one adds
+ * posts; later ones find the feed full), and the run fails if it ends up with fewer than
+ * FEED_SIZE posts. Needs a real device; run with
+ * ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class FeedScrollBenchmark {
+
+    private static final int FEED_SIZE = 10_000;
+    private static final int ITERATIONS = 5;
+    private static final int FLINGS = 30;
+    private static final long WAIT_TIMEOUT_MS = 5_000;
+    private static final Pattern BROADCAST_RESULT = Pattern.compile("result=(-?\\d+)");
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void scrollFeed_noProfile() {
+        measureScroll(new CompilationMode.None());
+    }
+
+    @Test
+    public void scrollFeed_baselineProfile() {
+        measureScroll(new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void measureScroll(CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                StartupBenchmark.TARGET_PACKAGE,
+                Collections.singletonList(new FrameTimingMetric()),
+                compilationMode,
+                null, // Not a startup measurement: the process is kept between iterations
+                ITERATIONS,
+                scope -> {
+                    seedFeed(scope.getDevice());
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    // The feed screen is not exported, so it is opened the way a user does
+                    scope.getDevice().wait(Until.findObject(By.res(StartupBenchmark.TARGET_PACKAGE, "feedButton")), WAIT_TIMEOUT_MS).click();
+                    scope.getDevice().wait(Until.hasObject(By.res(StartupBenchmark.TARGET_PACKAGE, "newsTitle")), WAIT_TIMEOUT_MS);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    UiObject2 list = scope.getDevice().findObject(By.res(StartupBenchmark.TARGET_PACKAGE, "feedRecyclerView"));
+                    // Keeps the fling away from the gesture navigation area at the bottom
+                    list.setGestureMargin(scope.getDevice().getDisplayWidth() / 5);
+                    for (int i = 0; i < FLINGS; i++) {
+                        list.fling(Direction.DOWN);
+                        scope.getDevice().waitForIdle();
+                    }
+                    return Unit.INSTANCE;
+                });
+    }
+
+    // Blocks until the app has written the posts (am broadcast waits for the receiver to finish).
+    // Fails if the feed ends up smaller than FEED_SIZE, so a short feed never passes as a result
+    private static void seedFeed(UiDevice device) {
+        String output;
+        try {
+            output = device.executeShellCommand("am broadcast -n " + StartupBenchmark.TARGET_PACKAGE
+                    + "/.FeedSeedReceiver --ei count " + FEED_SIZE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not seed the feed", e);
+        }
+        // "Broadcast completed: result=<feed size>"
+        Matcher matcher = BROADCAST_RESULT.matcher(output);
+        int feedSize = matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+        if (feedSize < FEED_SIZE) {
+            throw new IllegalStateException("Feed has " + feedSize + " posts, expected " + FEED_SIZE + ": " + output.trim());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.srm_campussaftey;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Measures how long the app takes to show a usable SOS button.
+ *
+ * Each start reports timeToInitialDisplayMs (first frame) and timeToFullDisplayMs
+ * (MainActivity calls reportFullyDrawn once the SOS button has been drawn), as min/median/max
+ * over ITERATIONS launches. Cold = process killed before every launch; warm = process kept,
+ * activity recreated. Each is measured with and without the Baseline Profile, so the
+ * profile's effect shows up as the difference.
+ *
+ * Needs a real device (emulators give unreliable numbers); run with
+ * ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    static final String TARGET_PACKAGE = "com.srm_campussaftey";
+    private static final int ITERATIONS = 10;
+    private static final long SOS_BUTTON_TIMEOUT_MS = 5_000;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStart_noProfile() {
+        measureStartup(StartupMode.COLD, new CompilationMode.None());
+    }
+
+    @Test
+    public void coldStart_baselineProfile() {
+        measureStartup(StartupMode.COLD, new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    @Test
+    public void warmStart_noProfile() {
+        measureStartup(StartupMode.WARM, new CompilationMode.None());
+    }
+
+    @Test
+    public void warmStart_baselineProfile() {
+        measureStartup(StartupMode.WARM, new CompilationMode.Partial(BaselineProfileMode.Require));
+    }
+
+    private void measureStartup(StartupMode startupMode, CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                TARGET_PACKAGE,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    // Counts as started once the SOS button can be pressed
+                    scope.getDevice().wait(Until.hasObject(By.res(TARGET_PACKAGE, "sosButton")), SOS_BUTTON_TIMEOUT_MS);
+                    return Unit.INSTANCE;
+                });
+    }
+}